@@ -0,0 +1,78 @@
+package cc.benchmarks;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.comptes.Compte;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Création et consultation des comptes.
+ * La création travaille sur son propre modèle, recréé avec {@code taille} comptes à chaque itération : le modèle
+ * ne grossit que des comptes créés pendant une itération, au lieu de s'éloigner de {@code taille} tout au long de
+ * l'essai.
+ * La sous-classe {@link Concurrent} rejoue les mêmes benchmarks avec autant de threads que de processeurs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class ComptesBenchmark {
+
+    // Logins uniques d'un thread à l'autre et d'une itération à l'autre
+    private final AtomicLong prochainLogin = new AtomicLong();
+
+    @Benchmark
+    public Compte creerCompteDrinker(ModeleCreation modele) throws Exception {
+        return modele.facadeModele.creerCompteDrinker("nouveau" + prochainLogin.incrementAndGet(), "password");
+    }
+
+    @Benchmark
+    public Compte getCompteById(ModelePeuple modele) throws Exception {
+        return modele.facadeModele.getCompteById(1 + ThreadLocalRandom.current().nextInt(modele.taille));
+    }
+
+    @Benchmark
+    public Compte getCompteByLogin(ModelePeuple modele) throws Exception {
+        return modele.facadeModele.getCompteByLogin(modele.logins[ThreadLocalRandom.current().nextInt(modele.taille)]);
+    }
+
+    @Threads(Threads.MAX)
+    public static class Concurrent extends ComptesBenchmark {
+    }
+
+    @State(Scope.Benchmark)
+    public static class ModeleCreation {
+
+        @Param({"1000", "100000", "1000000"})
+        public int taille;
+
+        FacadeModele facadeModele;
+
+        @Setup(Level.Iteration)
+        public void remplir() throws Exception {
+            facadeModele = new FacadeModele();
+            for (int i = 0; i < taille; i++)
+                facadeModele.creerCompteDrinker("drinker" + i, "password");
+        }
+
+    }
+
+}
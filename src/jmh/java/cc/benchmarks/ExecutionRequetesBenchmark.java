@@ -0,0 +1,96 @@
+package cc.benchmarks;
+
+import cc.modele.data.boissons.TypeBoisson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Comparaison des deux modes d'exécution des requêtes : pool de threads plateforme borné comme le connecteur Tomcat
+ * (200 threads par défaut) et un thread virtuel par requête ({@code spring.threads.virtual.enabled=true}).
+ * <p>
+ * Chaque requête simulée consulte un compte, prépare une boisson, puis bloque {@code latenceMs} millisecondes
+ * (E/S vers la machine, vérification BCrypt). Le benchmark mesure le temps de traitement d'une rafale de
+ * {@code nbRequetes} requêtes simultanées : au-delà de 200 requêtes bloquées, le mode plateforme les sérialise.
+ * La latence est simulée par {@code Thread.sleep} : pour une mesure de bout en bout sur un serveur démarré, cf. {@link ChargeHttp}.
+ * <p>
+ * Exemple : mvn -Pbenchmarks test-compile exec:exec -Djmh.args="ExecutionRequetesBenchmark -p taille=1000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class ExecutionRequetesBenchmark {
+
+    // Valeur par défaut de server.tomcat.threads.max
+    private static final int THREADS_CONNECTEUR = 200;
+
+    @Param({"plateforme", "virtuels"})
+    public String mode;
+
+    @Param({"0", "10"})
+    public int latenceMs;
+
+    @Param({"1000", "10000"})
+    public int nbRequetes;
+
+    private ExecutorService executeur;
+
+    @Setup(Level.Trial)
+    public void demarrer() {
+        executeur = mode.equals("virtuels")
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(THREADS_CONNECTEUR);
+    }
+
+    @TearDown(Level.Trial)
+    public void arreter() {
+        executeur.shutdownNow();
+    }
+
+    @Benchmark
+    public int rafale(ModelePeuple modele) throws Exception {
+        List<Future<Integer>> reponses = new ArrayList<>(nbRequetes);
+        for (int i = 0; i < nbRequetes; i++)
+            reponses.add(executeur.submit(() -> requete(modele)));
+        int total = 0;
+        for (Future<Integer> reponse : reponses)
+            total += reponse.get();
+        return total;
+    }
+
+    private int requete(ModelePeuple modele) throws Exception {
+        ThreadLocalRandom aleatoire = ThreadLocalRandom.current();
+        int idCompte = modele.facadeModele.getCompteByLogin(modele.logins[aleatoire.nextInt(modele.taille)]).getId();
+        int idMachine = 1 + aleatoire.nextInt(modele.taille);
+        // Les machines d'id impair servent du café, celles d'id pair du thé (cf. ModelePeuple)
+        String typeBoisson = idMachine % 2 == 1 ? TypeBoisson.CAFE : TypeBoisson.THE;
+        modele.facadeModele.preparerBoisson(idMachine, typeBoisson, idCompte, aleatoire.nextInt(4));
+        if (latenceMs > 0)
+            Thread.sleep(latenceMs);
+        return idCompte;
+    }
+
+}
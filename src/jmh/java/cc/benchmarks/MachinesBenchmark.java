@@ -0,0 +1,77 @@
+package cc.benchmarks;
+
+import cc.modele.data.boissons.Boisson;
+import cc.modele.data.boissons.TypeBoisson;
+import cc.modele.data.machines.Machine;
+import cc.modele.data.machines.Salles;
+import cc.modele.exceptions.FormatSalleIncorrectException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consultation des machines par salle, vérification du format de salle et préparation de boissons.
+ * La sous-classe {@link Concurrent} rejoue les mêmes benchmarks avec autant de threads que de processeurs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class MachinesBenchmark {
+
+    private static final String[] SALLES_VALIDES = {"A00", "b17", "M38", "z99", "Q05"};
+    private static final String[] SALLES_INCORRECTES = {"1AB", "A1", "A123", "AB1", "A-1"};
+
+    @Benchmark
+    public Collection<Machine> getAllMachinesBySalle(ModelePeuple modele) throws Exception {
+        return modele.facadeModele.getAllMachinesBySalle(modele.salles[ThreadLocalRandom.current().nextInt(ModelePeuple.NB_SALLES)]);
+    }
+
+    // Vérification seule du format, sur la chaîne et sans exception
+    @Benchmark
+    public int cleSalle_valide() {
+        return Salles.cle(SALLES_VALIDES[ThreadLocalRandom.current().nextInt(SALLES_VALIDES.length)]);
+    }
+
+    @Benchmark
+    public int cleSalle_incorrecte() {
+        return Salles.cle(SALLES_INCORRECTES[ThreadLocalRandom.current().nextInt(SALLES_INCORRECTES.length)]);
+    }
+
+    // Refus par l'API du modèle : mesure surtout la création de l'exception et de sa pile d'appels
+    @Benchmark
+    public boolean getAllMachinesBySalle_salleIncorrecte(ModelePeuple modele) {
+        try {
+            modele.facadeModele.getAllMachinesBySalle(SALLES_INCORRECTES[ThreadLocalRandom.current().nextInt(SALLES_INCORRECTES.length)]);
+            return true;
+        } catch (FormatSalleIncorrectException e) {
+            return false;
+        }
+    }
+
+    // L'historique des machines grossit au fil des itérations, comme en production
+    @Benchmark
+    public Boisson preparerBoisson(ModelePeuple modele) throws Exception {
+        ThreadLocalRandom aleatoire = ThreadLocalRandom.current();
+        int idMachine = 1 + aleatoire.nextInt(modele.taille);
+        // Les machines d'id impair servent du café, celles d'id pair du thé (cf. ModelePeuple)
+        String typeBoisson = idMachine % 2 == 1 ? TypeBoisson.CAFE : TypeBoisson.THE;
+        return modele.facadeModele.preparerBoisson(idMachine, typeBoisson, 1 + aleatoire.nextInt(modele.taille), aleatoire.nextInt(4));
+    }
+
+    @Threads(Threads.MAX)
+    public static class Concurrent extends MachinesBenchmark {
+    }
+
+}
@@ -0,0 +1,46 @@
+package cc.benchmarks;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.TypeBoisson;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Modèle pré-rempli avec {@code taille} comptes et {@code taille} machines, partagé par tous les threads d'un benchmark.
+ * Les machines sont réparties uniformément sur les 2600 salles possibles ("A00" à "Z99").
+ */
+@State(Scope.Benchmark)
+public class ModelePeuple {
+
+    static final int NB_SALLES = 26 * 100;
+
+    @Param({"1000", "100000", "1000000"})
+    public int taille;
+
+    FacadeModele facadeModele;
+    String[] logins;
+    String[] salles;
+
+    @Setup(Level.Trial)
+    public void remplir() throws Exception {
+        facadeModele = new FacadeModele();
+        logins = new String[taille];
+        for (int i = 0; i < taille; i++) {
+            logins[i] = "drinker" + i;
+            facadeModele.creerCompteDrinker(logins[i], "password");
+        }
+        salles = new String[NB_SALLES];
+        for (int i = 0; i < NB_SALLES; i++)
+            salles[i] = salle(i);
+        for (int i = 0; i < taille; i++)
+            facadeModele.ajouterMachine("machine" + i, i % 2 == 0 ? TypeBoisson.CAFE : TypeBoisson.THE, salles[i % NB_SALLES]);
+    }
+
+    static String salle(int numero) {
+        return (char) ('A' + numero / 100) + String.format("%02d", numero % 100);
+    }
+
+}
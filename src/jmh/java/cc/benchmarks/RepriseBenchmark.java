@@ -0,0 +1,111 @@
+package cc.benchmarks;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.TypeBoisson;
+import cc.modele.evenements.EcouteurModele;
+import cc.modele.persistance.PersistanceModele;
+import cc.modele.statistiques.ClassementBuveurs;
+import cc.modele.statistiques.StatistiquesBoissons;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Reprise de l'état au démarrage : chargement d'un instantané de {@code nbComptes} comptes et {@code nbBoissons} boissons,
+ * réparties sur {@code nbMachines} machines et sur les 30 derniers jours, puis reconstruction des statistiques et du classement.
+ * <p>
+ * Mesure d'un démarrage complet du modèle, dans un tas de 4 Go (à augmenter avec -jvmArgsAppend pour des paramètres plus grands).
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class RepriseBenchmark {
+
+    private static final long MILLIS_JOUR = TimeUnit.DAYS.toMillis(1);
+    // Empreinte BCrypt quelconque : les mots de passe ne sont pas vérifiés
+    private static final String EMPREINTE = "$2a$10$" + "a".repeat(53);
+
+    @Param({"1000000"})
+    public int nbComptes;
+
+    @Param({"1000"})
+    public int nbMachines;
+
+    @Param({"50000000"})
+    public int nbBoissons;
+
+    private Path repertoire;
+    private PersistanceModele persistance;
+
+    @Setup(Level.Trial)
+    public void ecrireInstantane() throws Exception {
+        repertoire = Files.createTempDirectory("cc-reprise");
+        FacadeModele facadeModele = new FacadeModele();
+        for (int i = 1; i <= nbComptes; i++)
+            facadeModele.restaurerCompte(i, "drinker" + i, EMPREINTE, "drinker");
+        for (int i = 1; i <= nbMachines; i++)
+            facadeModele.restaurerMachine(i, "machine" + i, i % 2 == 1 ? TypeBoisson.CAFE : TypeBoisson.THE, ModelePeuple.salle(i % ModelePeuple.NB_SALLES));
+        // Boissons datées dans l'ordre de l'historique de chaque machine
+        SplittableRandom aleatoire = new SplittableRandom(42);
+        long debut = System.currentTimeMillis() - 30 * MILLIS_JOUR;
+        long pas = 30 * MILLIS_JOUR / (nbBoissons / nbMachines);
+        for (int index = 0; index < nbBoissons / nbMachines; index++)
+            for (int idMachine = 1; idMachine <= nbMachines; idMachine++)
+                facadeModele.restaurerBoisson(idMachine, index, debut + index * pas + aleatoire.nextInt((int) pas), 1 + aleatoire.nextInt(nbComptes), aleatoire.nextInt(4));
+        facadeModele.terminerRestauration();
+
+        PersistanceModele ecriture = creerPersistance(facadeModele, List.of());
+        ecriture.demarrer();
+        ecriture.prendreInstantane();
+        ecriture.arreter();
+    }
+
+    @TearDown(Level.Invocation)
+    public void arreter() throws IOException {
+        persistance.arreter();
+        persistance = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void supprimer() throws IOException {
+        try (Stream<Path> fichiers = Files.walk(repertoire)) {
+            fichiers.sorted(Comparator.reverseOrder()).forEach(fichier -> fichier.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public FacadeModele demarrer() throws IOException {
+        FacadeModele facadeModele = new FacadeModele();
+        List<EcouteurModele> ecouteurs = List.of(new StatistiquesBoissons(facadeModele), new ClassementBuveurs(facadeModele));
+        persistance = creerPersistance(facadeModele, ecouteurs);
+        persistance.demarrer();
+        return facadeModele;
+    }
+
+    private PersistanceModele creerPersistance(FacadeModele facadeModele, List<EcouteurModele> ecouteurs) {
+        return new PersistanceModele(facadeModele, ecouteurs, repertoire.toString(), true, 10L, 3600L, Long.MAX_VALUE);
+    }
+
+}
@@ -0,0 +1,168 @@
+package cc.config;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.comptes.Compte;
+import cc.modele.evenements.EcouteurModele;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache des identifiants déjà vérifiés par BCrypt.
+ * <p>
+ * Pour chaque hash BCrypt (propre à un compte), le cache conserve une empreinte HMAC-SHA256 du mot de passe
+ * vérifié avec succès, pendant une durée limitée. Le mot de passe en clair n'est jamais conservé, et la clé HMAC,
+ * tirée au démarrage, ne quitte pas la mémoire du processus.
+ * Les entrées d'un compte sont invalidées quand son type change.
+ * <p>
+ * La durée de vie étant la même pour toutes les entrées, l'ordre d'insertion est aussi l'ordre d'expiration :
+ * une file d'insertion suffit à retirer, en temps constant à chaque mémorisation, les entrées expirées puis,
+ * si le cache est plein, les plus anciennes. Une entrée remplacée ou invalidée reste dans la file jusqu'à ce
+ * qu'elle en atteigne la tête ; la file étant bornée à la taille maximale, la table l'est aussi.
+ */
+@Component
+public class CacheAuthentification implements EcouteurModele {
+
+    private static final String ALGORITHME = "HmacSHA256";
+
+    private final long dureeVieNanos;
+    private final int tailleMax;
+    private final SecretKeySpec cle;
+    private final ThreadLocal<Mac> macs;
+
+    private final Map<String, Entree> entrees = new ConcurrentHashMap<>();
+    private final Queue<Entree> fileInsertion = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger longueurFile = new AtomicInteger();
+    private final ReentrantLock verrouFile = new ReentrantLock();
+    private final LongAdder succes = new LongAdder();
+    // Vérifications non trouvées dans le cache, renvoyées à BCrypt : ce ne sont pas des échecs d'authentification
+    private final LongAdder absences = new LongAdder();
+
+    public CacheAuthentification(FacadeModele facadeModele,
+                                 @Value("${cc.auth.cache.duree-vie-secondes:300}") long dureeVieSecondes,
+                                 @Value("${cc.auth.cache.taille-max:100000}") int tailleMax) {
+        this.dureeVieNanos = TimeUnit.SECONDS.toNanos(dureeVieSecondes);
+        this.tailleMax = tailleMax;
+        byte[] octetsCle = new byte[32];
+        new SecureRandom().nextBytes(octetsCle);
+        this.cle = new SecretKeySpec(octetsCle, ALGORITHME);
+        this.macs = ThreadLocal.withInitial(this::creerMac);
+        facadeModele.ajouterEcouteur(this);
+    }
+
+    /**
+     * @param motDePasse     le mot de passe présenté
+     * @param motDePasseHash le hash BCrypt du compte
+     * @return true si ce mot de passe a déjà été vérifié pour ce hash, et que la vérification n'a pas expiré
+     */
+    public boolean estVerifie(CharSequence motDePasse, String motDePasseHash) {
+        Entree entree = entrees.get(motDePasseHash);
+        if (entree != null && entree.expiration - System.nanoTime() > 0
+                && MessageDigest.isEqual(entree.empreinte, empreinte(motDePasse, motDePasseHash))) {
+            succes.increment();
+            return true;
+        }
+        absences.increment();
+        return false;
+    }
+
+    /**
+     * Mémorise une vérification BCrypt réussie.
+     *
+     * @param motDePasse     le mot de passe vérifié
+     * @param motDePasseHash le hash BCrypt du compte
+     */
+    public void memoriser(CharSequence motDePasse, String motDePasseHash) {
+        long maintenant = System.nanoTime();
+        Entree entree = new Entree(motDePasseHash, empreinte(motDePasse, motDePasseHash), maintenant + dureeVieNanos);
+        entrees.put(motDePasseHash, entree);
+        fileInsertion.offer(entree);
+        longueurFile.incrementAndGet();
+        retirerAnciennes(maintenant);
+    }
+
+    private void retirerAnciennes(long maintenant) {
+        // Un seul thread vide la tête de la file ; les autres lui laissent le travail
+        if (!verrouFile.tryLock())
+            return;
+        try {
+            Entree tete;
+            while ((tete = fileInsertion.peek()) != null
+                    && (longueurFile.get() > tailleMax || tete.expiration - maintenant <= 0)) {
+                fileInsertion.poll();
+                longueurFile.decrementAndGet();
+                // Sans effet si l'entrée a déjà été remplacée ou invalidée
+                entrees.remove(tete.motDePasseHash, tete);
+            }
+        } finally {
+            verrouFile.unlock();
+        }
+    }
+
+    public void invalider(String motDePasseHash) {
+        entrees.remove(motDePasseHash);
+    }
+
+    @Override
+    public void typeCompteModifie(Compte compte) {
+        invalider(compte.getPassword());
+    }
+
+    public long getNbSucces() {
+        return succes.sum();
+    }
+
+    public long getNbAbsences() {
+        return absences.sum();
+    }
+
+    public int taille() {
+        return entrees.size();
+    }
+
+    private byte[] empreinte(CharSequence motDePasse, String motDePasseHash) {
+        Mac mac = macs.get();
+        mac.update(motDePasseHash.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        return mac.doFinal(motDePasse.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac creerMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHME);
+            mac.init(cle);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Entree {
+
+        private final String motDePasseHash;
+        private final byte[] empreinte;
+        private final long expiration;
+
+        private Entree(String motDePasseHash, byte[] empreinte, long expiration) {
+            this.motDePasseHash = motDePasseHash;
+            this.empreinte = empreinte;
+            this.expiration = expiration;
+        }
+
+    }
+
+}
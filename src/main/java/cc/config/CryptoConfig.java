@@ -1,30 +1,84 @@
 package cc.config;
 
+import cc.modele.data.comptes.Role;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
-import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import reactor.core.publisher.Mono;
 
 @Configuration
-public class CryptoConfig extends WebSecurityConfigurerAdapter {
+public class CryptoConfig {
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(ServiceHachage serviceHachage, CacheAuthentification cacheAuthentification) {
+        return new PasswordEncoderAvecCache(serviceHachage, cacheAuthentification);
     }
 
-    @Override
-    protected void configure(HttpSecurity http) throws Exception {
-        http
-                .csrf().disable()
-                .authorizeRequests()
-                .antMatchers(HttpMethod.POST,"/api/drinkers").permitAll()
-                .antMatchers(HttpMethod.GET,"/api/drinkers").permitAll()
-                .and().httpBasic()
-                .and().sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
+    @Bean
+    @Profile("!reactif")
+    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+        return http
+                .csrf(AbstractHttpConfigurer::disable)
+                .authorizeHttpRequests(requetes -> requetes
+                        .requestMatchers(HttpMethod.POST,"/api/drinkers").permitAll()
+                        .requestMatchers(HttpMethod.POST,"/api/drinkers/import").hasRole(Role.FABULOUS)
+                        .requestMatchers(HttpMethod.GET,"/api/drinkers").hasRole(Role.FABULOUS)
+                        .requestMatchers(HttpMethod.GET,"/api/drinkers/top").hasRole(Role.FABULOUS)
+                        .requestMatchers(HttpMethod.PATCH,"/api/drinkers/*/type").hasRole(Role.FABULOUS)
+                        .requestMatchers(HttpMethod.GET,"/api/drinkers/**").authenticated()
+                        .requestMatchers(HttpMethod.POST,"/api/machines").hasRole(Role.FABULOUS)
+                        .requestMatchers(HttpMethod.GET,"/api/machines","/api/machines/*").permitAll()
+                        .requestMatchers(HttpMethod.PUT,"/api/machines/*/*").hasRole(Role.DRINKER)
+                        .requestMatchers(HttpMethod.POST,"/api/commandes").hasRole(Role.DRINKER)
+                        // Servis uniquement sur le port de management, lié à l'interface locale
+                        .requestMatchers(HttpMethod.GET,"/actuator/health","/actuator/prometheus").permitAll()
+                        .anyRequest().authenticated())
+                .httpBasic(basic -> basic.authenticationEntryPoint(new PointEntreeAuthentification()))
+                .sessionManagement(sessions -> sessions.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .build();
+    }
+
+    // Mêmes règles pour la variante réactive de l'API
+    @Bean
+    @Profile("reactif")
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        return http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .authorizeExchange(echanges -> echanges
+                        .pathMatchers(HttpMethod.POST,"/api/drinkers").permitAll()
+                        .pathMatchers(HttpMethod.POST,"/api/drinkers/import").hasRole(Role.FABULOUS)
+                        .pathMatchers(HttpMethod.GET,"/api/drinkers").hasRole(Role.FABULOUS)
+                        .pathMatchers(HttpMethod.GET,"/api/drinkers/top").hasRole(Role.FABULOUS)
+                        .pathMatchers(HttpMethod.PATCH,"/api/drinkers/*/type").hasRole(Role.FABULOUS)
+                        .pathMatchers(HttpMethod.GET,"/api/drinkers/**").authenticated()
+                        .pathMatchers(HttpMethod.POST,"/api/machines").hasRole(Role.FABULOUS)
+                        .pathMatchers(HttpMethod.GET,"/api/machines","/api/machines/*").permitAll()
+                        .pathMatchers(HttpMethod.PUT,"/api/machines/*/*").hasRole(Role.DRINKER)
+                        .pathMatchers(HttpMethod.POST,"/api/commandes").hasRole(Role.DRINKER)
+                        .pathMatchers(HttpMethod.GET,"/actuator/health","/actuator/prometheus").permitAll()
+                        .anyExchange().authenticated())
+                .httpBasic(basic -> basic.authenticationEntryPoint(new PointEntreeAuthentificationReactive()))
+                // Sans état, comme la variante servlet
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .build();
+    }
+
+    // Recherche en mémoire, sans blocage ; la vérification BCrypt est faite hors des threads Netty par Spring Security
+    @Bean
+    @Profile("reactif")
+    public ReactiveUserDetailsService reactiveUserDetailsService(CustomUserDetailService userDetailsService) {
+        return login -> Mono.fromCallable(() -> userDetailsService.loadUserByUsername(login))
+                .onErrorResume(UsernameNotFoundException.class, e -> Mono.empty());
     }
 }
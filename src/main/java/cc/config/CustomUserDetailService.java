@@ -1,6 +1,105 @@
 package cc.config;
 
-public class CustomUserDetailService {
+import cc.modele.FacadeModele;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.comptes.TypeCompte;
+import cc.modele.exceptions.CompteInconnuException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Résolution des utilisateurs Spring Security à partir des comptes du modèle.
+ * Appelé à chaque requête authentifiée : la recherche passe par l'index des logins, et les listes
+ * d'autorités, immuables, sont calculées une fois pour toutes par type de compte.
+ */
+@Service
+public class CustomUserDetailService implements UserDetailsService {
+
+    private static final String PREFIXE_ROLE = "ROLE_";
+
+    private static final Map<String, List<GrantedAuthority>> AUTORITES_PAR_TYPE = TypeCompte.getAllTypes().stream()
+            .collect(Collectors.toUnmodifiableMap(Function.identity(), CustomUserDetailService::autorites));
+    private static final List<GrantedAuthority> AUCUNE_AUTORITE = List.of();
+
+    private final FacadeModele facadeModele;
+
+    public CustomUserDetailService(FacadeModele facadeModele) {
+        this.facadeModele = facadeModele;
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String login) throws UsernameNotFoundException {
+        try {
+            return new CompteUserDetails(facadeModele.getCompteByLogin(login));
+        } catch (CompteInconnuException e) {
+            throw new UsernameNotFoundException(login);
+        }
+    }
+
+    private static List<GrantedAuthority> autorites(String type) {
+        return List.copyOf(AuthorityUtils.createAuthorityList(Arrays.stream(TypeCompte.getRoles(type))
+                .map(role -> PREFIXE_ROLE + role)
+                .toArray(String[]::new)));
+    }
+
+    /**
+     * Utilisateur adossé à un compte : le type est lu à chaque appel, un changement de type
+     * est donc pris en compte dès la requête suivante.
+     */
+    static final class CompteUserDetails implements UserDetails {
+
+        private final Compte compte;
+
+        CompteUserDetails(Compte compte) {
+            this.compte = compte;
+        }
+
+        @Override
+        public Collection<? extends GrantedAuthority> getAuthorities() {
+            return AUTORITES_PAR_TYPE.getOrDefault(compte.getType(), AUCUNE_AUTORITE);
+        }
+
+        @Override
+        public String getPassword() {
+            return compte.getPassword();
+        }
+
+        @Override
+        public String getUsername() {
+            return compte.getLogin();
+        }
+
+        @Override
+        public boolean isAccountNonExpired() {
+            return true;
+        }
+
+        @Override
+        public boolean isAccountNonLocked() {
+            return true;
+        }
+
+        @Override
+        public boolean isCredentialsNonExpired() {
+            return true;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+    }
 
 }
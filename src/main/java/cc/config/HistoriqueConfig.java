@@ -0,0 +1,43 @@
+package cc.config;
+
+import cc.modele.data.boissons.FabriqueHistoriques;
+import cc.modele.data.boissons.HistoriqueBoissons;
+import cc.modele.data.boissons.ReserveSegments;
+import cc.modele.data.boissons.StockageMappe;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+@Configuration
+public class HistoriqueConfig {
+
+    // "memoire" (dans le tas) ou "mappe" (segments de fichiers projetés en mémoire, hors du tas)
+    @Value("${cc.historique.mode:memoire}")
+    private String mode;
+
+    @Value("${cc.historique.repertoire:historiques}")
+    private String repertoire;
+
+    @Value("${cc.historique.taille-segment:1048576}")
+    private int tailleSegment;
+
+    // Segments de toutes les machines regroupés par fichier : une projection par fichier, pas par machine (cf. vm.max_map_count)
+    @Value("${cc.historique.taille-fichier:67108864}")
+    private int tailleFichier;
+
+    @Bean
+    public FabriqueHistoriques fabriqueHistoriques() {
+        switch (mode) {
+            case "memoire":
+                return FabriqueHistoriques.EN_MEMOIRE;
+            case "mappe":
+                ReserveSegments reserve = new ReserveSegments(Paths.get(repertoire), tailleSegment, tailleFichier);
+                return idMachine -> new HistoriqueBoissons(new StockageMappe(reserve));
+            default:
+                throw new IllegalArgumentException("Mode de stockage des historiques inconnu : " + mode);
+        }
+    }
+
+}
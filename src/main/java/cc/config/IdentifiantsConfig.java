@@ -0,0 +1,44 @@
+package cc.config;
+
+import cc.modele.identifiants.GenerateurIdentifiants;
+import cc.modele.identifiants.SequenceAtomique;
+import cc.modele.identifiants.SequenceParBlocs;
+import cc.modele.identifiants.ServiceIdentifiants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdentifiantsConfig {
+
+    // "atomique" (compteur partagé) ou "blocs" (plages réservées par groupe de threads)
+    @Value("${cc.identifiants.mode:atomique}")
+    private String mode;
+
+    @Value("${cc.identifiants.taille-bloc:1000}")
+    private int tailleBloc;
+
+    // Marques hautes persistées lors du précédent arrêt
+    @Value("${cc.identifiants.comptes.marque-haute:0}")
+    private int marqueHauteComptes;
+
+    @Value("${cc.identifiants.machines.marque-haute:0}")
+    private int marqueHauteMachines;
+
+    @Bean
+    public ServiceIdentifiants serviceIdentifiants() {
+        return new ServiceIdentifiants(generateur(marqueHauteComptes), generateur(marqueHauteMachines));
+    }
+
+    private GenerateurIdentifiants generateur(int marqueHaute) {
+        switch (mode) {
+            case "atomique":
+                return new SequenceAtomique(marqueHaute);
+            case "blocs":
+                return new SequenceParBlocs(marqueHaute, tailleBloc);
+            default:
+                throw new IllegalArgumentException("Mode de génération d'identifiants inconnu : " + mode);
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package cc.config;
+
+import cc.modele.FacadeModele;
+import cc.modele.exceptions.CompteDejaExistantException;
+import cc.modele.exceptions.InformationsIncompletesException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+@Configuration
+public class InitialisationConfig {
+
+    @Value("${cc.admin.login:fabulous}")
+    private String loginAdmin;
+
+    @Value("${cc.admin.password:CoffeeLover}")
+    private String passwordAdmin;
+
+    // Compte "fabulous" présent dès le démarrage (sorte de compte admin)
+    @Bean
+    public ApplicationRunner creerCompteAdmin(FacadeModele facadeModele, PasswordEncoder passwordEncoder) {
+        return arguments -> {
+            try {
+                facadeModele.creerCompteFabulous(loginAdmin, passwordEncoder.encode(passwordAdmin));
+            } catch (CompteDejaExistantException e) {
+                // Compte déjà présent : rien à faire
+            } catch (InformationsIncompletesException e) {
+                throw new IllegalStateException("Identifiants du compte admin incomplets", e);
+            }
+        };
+    }
+
+}
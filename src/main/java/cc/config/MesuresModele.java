@@ -0,0 +1,98 @@
+package cc.config;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.TypeBoisson;
+import cc.modele.evenements.OperationModele;
+import cc.modele.evenements.SondeModele;
+import cc.modele.exceptions.TypeBoissonInconnuException;
+import cc.modele.statistiques.StatistiquesBoissons;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Métriques du modèle : durée de chaque opération de la façade (histogrammes), nombre de boissons préparées
+ * par type, taille des registres et efficacité du cache d'authentification.
+ * <p>
+ * Les timers sont créés une fois pour toutes, un par opération : une mesure ne fait aucune allocation.
+ * Les compteurs de boissons et de registres sont lus à la demande dans les structures existantes,
+ * sans coût supplémentaire sur le chemin des commandes.
+ */
+@Component
+public class MesuresModele implements SondeModele, MeterBinder {
+
+    private final FacadeModele facadeModele;
+    private final StatistiquesBoissons statistiquesBoissons;
+    private final CacheAuthentification cacheAuthentification;
+
+    // Indexé par l'ordinal de l'opération ; null tant que les métriques ne sont pas enregistrées
+    private volatile Timer[] timers;
+
+    public MesuresModele(FacadeModele facadeModele, StatistiquesBoissons statistiquesBoissons, CacheAuthentification cacheAuthentification) {
+        this.facadeModele = facadeModele;
+        this.statistiquesBoissons = statistiquesBoissons;
+        this.cacheAuthentification = cacheAuthentification;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        OperationModele[] operations = OperationModele.values();
+        Timer[] timersOperations = new Timer[operations.length];
+        for (OperationModele operation : operations)
+            timersOperations[operation.ordinal()] = Timer.builder("cc.modele.operations")
+                    .description("Durée des opérations de la façade du modèle")
+                    .tag("operation", operation.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .register(registry);
+
+        for (String typeBoisson : TypeBoisson.getAllTypes())
+            FunctionCounter.builder("cc.boissons.preparees", statistiquesBoissons, statistiques -> nbBoissons(statistiques, typeBoisson))
+                    .description("Nombre de boissons préparées")
+                    .tag("type", typeBoisson)
+                    .register(registry);
+        Gauge.builder("cc.comptes", facadeModele, FacadeModele::getNbComptes)
+                .description("Nombre de comptes")
+                .register(registry);
+        Gauge.builder("cc.machines", facadeModele, FacadeModele::getNbMachines)
+                .description("Nombre de machines")
+                .register(registry);
+        FunctionCounter.builder("cc.auth.cache", cacheAuthentification, CacheAuthentification::getNbSucces)
+                .description("Vérifications de mots de passe dans le cache d'authentification")
+                .tag("resultat", "succes")
+                .register(registry);
+        FunctionCounter.builder("cc.auth.cache", cacheAuthentification, CacheAuthentification::getNbAbsences)
+                .description("Vérifications de mots de passe dans le cache d'authentification")
+                .tag("resultat", "absent")
+                .register(registry);
+
+        timers = timersOperations;
+        facadeModele.setSonde(this);
+    }
+
+    @Override
+    public long debut() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void fin(OperationModele operation, long debut) {
+        Timer[] timersOperations = timers;
+        if (timersOperations != null)
+            timersOperations[operation.ordinal()].record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+    }
+
+    private static double nbBoissons(StatistiquesBoissons statistiques, String typeBoisson) {
+        try {
+            return statistiques.getParType(typeBoisson).getNbBoissons();
+        } catch (TypeBoissonInconnuException e) {
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package cc.config;
+
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Encodeur de mots de passe qui ne refait pas la vérification BCrypt d'identifiants déjà vérifiés récemment.
+ * Les calculs BCrypt sont délégués au {@link ServiceHachage} : le thread appelant attend le résultat,
+ * mais le nombre de calculs simultanés reste borné par le pool du service.
+ */
+public class PasswordEncoderAvecCache implements PasswordEncoder {
+
+    private final ServiceHachage serviceHachage;
+    private final CacheAuthentification cache;
+
+    public PasswordEncoderAvecCache(ServiceHachage serviceHachage, CacheAuthentification cache) {
+        this.serviceHachage = serviceHachage;
+        this.cache = cache;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return attendre(serviceHachage.encoder(rawPassword));
+    }
+
+    /**
+     * @throws InternalAuthenticationServiceException si le service de hachage est saturé
+     */
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword != null && encodedPassword != null && cache.estVerifie(rawPassword, encodedPassword))
+            return true;
+        boolean verifie;
+        try {
+            verifie = attendre(serviceHachage.verifier(rawPassword, encodedPassword));
+        } catch (RejectedExecutionException e) {
+            // Échec d'authentification "technique" : la requête est refusée sans être comptée comme un mauvais mot de passe
+            throw new InternalAuthenticationServiceException("Service de hachage saturé", e);
+        }
+        if (verifie && rawPassword != null && encodedPassword != null)
+            cache.memoriser(rawPassword, encodedPassword);
+        return verifie;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return serviceHachage.upgradeEncoding(encodedPassword);
+    }
+
+    private static <T> T attendre(CompletableFuture<T> resultat) {
+        try {
+            return resultat.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+}
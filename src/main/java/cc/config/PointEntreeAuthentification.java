@@ -0,0 +1,36 @@
+package cc.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.AuthenticationEntryPoint;
+import org.springframework.security.web.authentication.www.BasicAuthenticationEntryPoint;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Réponse aux requêtes non authentifiées : 401 (authentification HTTP Basic),
+ * sauf si l'authentification n'a pas pu être vérifiée faute de capacité de hachage (503, à réessayer).
+ */
+public class PointEntreeAuthentification implements AuthenticationEntryPoint {
+
+    private final BasicAuthenticationEntryPoint basique = new BasicAuthenticationEntryPoint();
+
+    public PointEntreeAuthentification() {
+        basique.setRealmName("Realm");
+    }
+
+    @Override
+    public void commence(HttpServletRequest request, HttpServletResponse response, AuthenticationException authException) throws IOException {
+        if (authException instanceof InternalAuthenticationServiceException) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        basique.commence(request, response, authException);
+    }
+
+}
@@ -0,0 +1,36 @@
+package cc.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.server.ServerAuthenticationEntryPoint;
+import org.springframework.security.web.server.authentication.HttpBasicServerAuthenticationEntryPoint;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Équivalent de {@link PointEntreeAuthentification} pour le profil "reactif" :
+ * 401 (authentification HTTP Basic), ou 503 si l'authentification n'a pas pu être vérifiée faute de capacité de hachage.
+ */
+public class PointEntreeAuthentificationReactive implements ServerAuthenticationEntryPoint {
+
+    private final HttpBasicServerAuthenticationEntryPoint basique = new HttpBasicServerAuthenticationEntryPoint();
+
+    public PointEntreeAuthentificationReactive() {
+        basique.setRealm("Realm");
+    }
+
+    @Override
+    public Mono<Void> commence(ServerWebExchange exchange, AuthenticationException authException) {
+        if (authException instanceof InternalAuthenticationServiceException) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+            return response.setComplete();
+        }
+        return basique.commence(exchange, authException);
+    }
+
+}
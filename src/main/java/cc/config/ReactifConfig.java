@@ -0,0 +1,21 @@
+package cc.config;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Profil "reactif" : API servie par WebFlux (cf. application-reactif.properties).
+ * Tomcat reste présent pour le profil par défaut : le serveur Netty est donc désigné explicitement.
+ */
+@Configuration
+@Profile("reactif")
+public class ReactifConfig {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+}
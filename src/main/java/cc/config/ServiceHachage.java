@@ -0,0 +1,187 @@
+package cc.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Service de hachage des mots de passe (BCrypt), sur un pool dédié dimensionné sur le nombre de cœurs.
+ * <p>
+ * Les calculs BCrypt, volontairement coûteux, ne s'exécutent jamais sur les threads du serveur :
+ * au plus un calcul par thread du pool, les demandes suivantes attendent dans une file bornée.
+ * Quand la file est pleine, la demande est refusée immédiatement ({@link RejectedExecutionException})
+ * plutôt que d'accumuler des requêtes en attente. Chaque demande obtient un résultat : un calcul en échec, y compris sur
+ * une {@link Error}, termine la demande en échec, et l'arrêt du service termine en échec les demandes encore en file.
+ * <p>
+ * Métriques : durée des calculs BCrypt, profondeur de la file, threads actifs et demandes refusées.
+ */
+@Component
+public class ServiceHachage implements MeterBinder {
+
+    private final PasswordEncoder encodeur;
+    private final ThreadPoolExecutor executeur;
+    private final LongAdder rejets = new LongAdder();
+
+    // Null tant que les métriques ne sont pas enregistrées
+    private volatile Timer timerEncodage;
+    private volatile Timer timerVerification;
+
+    @Autowired
+    public ServiceHachage(@Value("${cc.hachage.nb-threads:0}") int nbThreads,
+                          @Value("${cc.hachage.capacite-file:1024}") int capaciteFile) {
+        this(new BCryptPasswordEncoder(), nbThreads > 0 ? nbThreads : Runtime.getRuntime().availableProcessors(), capaciteFile);
+    }
+
+    ServiceHachage(PasswordEncoder encodeur, int nbThreads, int capaciteFile) {
+        this.encodeur = encodeur;
+        AtomicInteger numeroThread = new AtomicInteger();
+        this.executeur = new ThreadPoolExecutor(nbThreads, nbThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capaciteFile), runnable -> {
+            Thread thread = new Thread(runnable, "hachage-" + numeroThread.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param motDePasse le mot de passe en clair
+     * @return le hash BCrypt, ou un échec {@link RejectedExecutionException} si le service est saturé
+     */
+    public CompletableFuture<String> encoder(CharSequence motDePasse) {
+        return soumettre(() -> {
+            long debut = System.nanoTime();
+            String hash = encodeur.encode(motDePasse);
+            mesurer(timerEncodage, debut);
+            return hash;
+        });
+    }
+
+    /**
+     * @param motDePasse     le mot de passe présenté
+     * @param motDePasseHash le hash BCrypt du compte
+     * @return true si le mot de passe correspond, ou un échec {@link RejectedExecutionException} si le service est saturé
+     */
+    public CompletableFuture<Boolean> verifier(CharSequence motDePasse, String motDePasseHash) {
+        return soumettre(() -> {
+            long debut = System.nanoTime();
+            boolean verifie = encodeur.matches(motDePasse, motDePasseHash);
+            mesurer(timerVerification, debut);
+            return verifie;
+        });
+    }
+
+    public boolean upgradeEncoding(String motDePasseHash) {
+        return encodeur.upgradeEncoding(motDePasseHash);
+    }
+
+    /**
+     * @return le nombre de demandes en attente d'un thread du pool
+     */
+    public int getProfondeurFile() {
+        return executeur.getQueue().size();
+    }
+
+    public int getNbActifs() {
+        return executeur.getActiveCount();
+    }
+
+    public long getNbTraites() {
+        return executeur.getCompletedTaskCount();
+    }
+
+    public long getNbRejets() {
+        return rejets.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        timerEncodage = timer(registry, "encodage");
+        timerVerification = timer(registry, "verification");
+        Gauge.builder("cc.hachage.file", this, ServiceHachage::getProfondeurFile)
+                .description("Demandes de hachage en attente d'un thread")
+                .register(registry);
+        Gauge.builder("cc.hachage.actifs", this, ServiceHachage::getNbActifs)
+                .description("Threads de hachage occupés")
+                .register(registry);
+        FunctionCounter.builder("cc.hachage.rejets", this, ServiceHachage::getNbRejets)
+                .description("Demandes de hachage refusées, service saturé")
+                .register(registry);
+    }
+
+    private static Timer timer(MeterRegistry registry, String calcul) {
+        return Timer.builder("cc.hachage.duree")
+                .description("Durée des calculs BCrypt")
+                .tag("calcul", calcul)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static void mesurer(Timer timer, long debut) {
+        if (timer != null)
+            timer.record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Arrête le service : les demandes encore en file échouent ({@link RejectedExecutionException}), les calculs en cours se terminent.
+     */
+    @PreDestroy
+    public void arreter() {
+        for (Runnable tache : executeur.shutdownNow())
+            ((Demande<?>) tache).resultat.completeExceptionally(new RejectedExecutionException("Service de hachage arrêté"));
+    }
+
+    private <T> CompletableFuture<T> soumettre(Supplier<T> calcul) {
+        Demande<T> demande = new Demande<>(calcul);
+        try {
+            executeur.execute(demande);
+        } catch (RejectedExecutionException e) {
+            // Après l'arrêt, le refus n'est pas une saturation
+            if (!executeur.isShutdown())
+                rejets.increment();
+            demande.resultat.completeExceptionally(e);
+        }
+        return demande.resultat;
+    }
+
+    // Tâche du pool, qui garde son résultat : retrouvée parmi les tâches non exécutées à l'arrêt
+    private static final class Demande<T> implements Runnable {
+
+        private final Supplier<T> calcul;
+        private final CompletableFuture<T> resultat = new CompletableFuture<>();
+
+        private Demande(Supplier<T> calcul) {
+            this.calcul = calcul;
+        }
+
+        @Override
+        public void run() {
+            try {
+                resultat.complete(calcul.get());
+            } catch (Throwable e) {
+                resultat.completeExceptionally(e);
+                // Une erreur reste signalée au thread (journalisée, thread remplacé) ; la demande est terminée quoi qu'il arrive
+                if (e instanceof Error)
+                    throw (Error) e;
+            }
+        }
+
+    }
+
+}
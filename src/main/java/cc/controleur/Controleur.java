@@ -1,49 +1,567 @@
 package cc.controleur;
 
+import cc.config.ServiceHachage;
 import cc.modele.FacadeModele;
+import cc.modele.data.boissons.HistoriqueBoissons;
+import cc.modele.data.boissons.TypeBoisson;
 import cc.modele.data.comptes.Compte;
-import cc.modele.exceptions.CompteDejaExistantException;
-import cc.modele.exceptions.InformationsIncompletesException;
+import cc.modele.data.comptes.TypeCompte;
+import cc.modele.data.machines.Machine;
+import cc.modele.exceptions.*;
+import cc.modele.preparation.Commande;
+import cc.modele.preparation.DemandePreparation;
+import cc.modele.preparation.MoteurPreparation;
+import cc.modele.statistiques.Agregat;
+import cc.modele.statistiques.ClassementBuveurs;
+import cc.modele.statistiques.HeureDePointe;
+import cc.modele.statistiques.PlaceClassement;
+import cc.modele.statistiques.SerieBoissons;
+import cc.modele.statistiques.StatistiquesBoissons;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.InputStream;
 import java.net.URI;
-import java.util.Collection;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 
 
 @RestController
 @RequestMapping("/api")
+@Profile("!reactif")
 public class Controleur {
 
+    private static final int LIMITE_PAR_DEFAUT = 100;
+    private static final int LIMITE_MAX = 1000;
+    private static final int CLASSEMENT_MAX = 100;
+    private static final int LOT_COMMANDES_MAX = 100;
 
     @Autowired
     FacadeModele facadeModele;
 
+    @Autowired
+    MoteurPreparation moteurPreparation;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    ServiceHachage serviceHachage;
+
+    @Autowired
+    StatistiquesBoissons statistiquesBoissons;
+
+    @Autowired
+    ClassementBuveurs classementBuveurs;
+
+    @Autowired
+    ImportComptes importComptes;
+
+    @Autowired
+    DiffusionCommandes diffusionCommandes;
+
+    @Autowired
+    VuesJson vuesJson;
+
+    // Traitements asynchrones du contrôleur (threads virtuels avec spring.threads.virtual.enabled)
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    AsyncTaskExecutor executeurAsynchrone;
+
 
     @PostMapping("/drinkers")
-    public ResponseEntity<Compte> registerDrinker(@RequestParam String login, @RequestParam String password){
+    public CompletableFuture<ResponseEntity<Compte>> registerDrinker(@RequestParam String login, @RequestParam String password){
+        // Contrôles préalables : pas de calcul BCrypt pour une demande vouée à l'échec
+        if (login.isBlank() || password.isBlank())
+            return CompletableFuture.completedFuture(ResponseEntity.status(400).build());
+        if (!facadeModele.getLoginsExistants(List.of(login)).isEmpty())
+            return CompletableFuture.completedFuture(ResponseEntity.status(409).build());
+
+        // Le mot de passe est encodé hors des threads du serveur ; la façade attend un mot de passe déjà encodé.
+        // La création (et l'attente de l'écriture du journal) ne retient pas un thread de hachage : elle s'exécute à part
+        ServletUriComponentsBuilder uriCompte = ServletUriComponentsBuilder.fromCurrentRequestUri();
+        return serviceHachage.encoder(password)
+                .thenApplyAsync(passwordEncode -> {
+                    try {
+                        Compte drinker = facadeModele.creerCompteDrinker(login, passwordEncode);
+                        URI nextLocation = uriCompte.path("/{id}")
+                                .buildAndExpand(drinker.getId())
+                                .toUri();
+                        return ResponseEntity.created(nextLocation).<Compte>build();
+                    } catch (InformationsIncompletesException e) {
+                        return ResponseEntity.status(400).<Compte>build();
+                    } catch (CompteDejaExistantException e) {
+                        return ResponseEntity.status(409).<Compte>build();
+                    }
+                }, executeurAsynchrone)
+                .exceptionally(e -> {
+                    // Service de hachage saturé : à réessayer
+                    if (e.getCause() instanceof RejectedExecutionException)
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+                    throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                });
+    }
+
+    @PostMapping(value = "/drinkers/import", consumes = {ImportComptes.TYPE_NDJSON, ImportComptes.TYPE_CSV})
+    public ResponseEntity<StreamingResponseBody> importerDrinkers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType typeContenu,
+                                                                  InputStream corps) {
+        ImportComptes.Format format = typeContenu.isCompatibleWith(MediaType.parseMediaType(ImportComptes.TYPE_CSV))
+                ? ImportComptes.Format.CSV
+                : ImportComptes.Format.NDJSON;
+        // Le corps est lu et les comptes créés pendant l'écriture du compte rendu
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ImportComptes.TYPE_NDJSON))
+                .body(importComptes.importer(corps, format));
+    }
+
+    @GetMapping("/drinkers")
+    public ResponseEntity<byte[]> getAll(@RequestParam(required = false) Integer after,
+                                         @RequestParam(required = false) Integer limit){
+
+        if (after == null && limit == null)
+            return vue(vuesJson.getTousComptes());
+        if (limit != null && (limit < 1 || limit > LIMITE_MAX))
+            return ResponseEntity.status(400).build();
+
+        int taillePage = limit == null ? LIMITE_PAR_DEFAUT : limit;
+        // Un élément de plus que demandé : indique s'il existe une page suivante
+        List<Compte> comptes = facadeModele.getComptesApres(after, taillePage + 1);
+        return page(comptes, taillePage, Compte::getId, vuesJson::getComptes);
+    }
+
+    @GetMapping("/drinkers/top")
+    public ResponseEntity<List<PlaceClassement>> getTopDrinkers(@RequestParam(defaultValue = "10") int k) {
+        if (k < 1 || k > CLASSEMENT_MAX)
+            return ResponseEntity.status(400).build();
+        return ResponseEntity.ok(classementBuveurs.getPremiers(k));
+    }
+
+    @GetMapping("/drinkers/{idDrinker}")
+    public ResponseEntity<byte[]> getDrinker(@PathVariable Integer idDrinker) {
+        try {
+            return json(vuesJson.getCompte(facadeModele.getCompteById(idDrinker)));
+        } catch (CompteInconnuException e) {
+            return ResponseEntity.status(404).build();
+        }
+    }
+
+    @PatchMapping(value = "/drinkers/{idDrinker}/type", consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<Compte> modifierTypeCompte(@PathVariable Integer idDrinker, @RequestBody String type) {
+        try {
+            return ResponseEntity.ok(facadeModele.modifierTypeCompte(idDrinker, type.trim()));
+        } catch (TypeCompteInconnuException e) {
+            return ResponseEntity.status(400).build();
+        } catch (CompteInconnuException e) {
+            return ResponseEntity.status(404).build();
+        }
+    }
+
+    @GetMapping(value = "/drinkers/{idDrinker}/commandes/evenements", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> suivreCommandesDrinker(@PathVariable Integer idDrinker, Principal principal) {
+        if (principal == null)
+            return ResponseEntity.status(401).build();
+
+        try {
+            Compte compte = facadeModele.getCompteByLogin(principal.getName());
+            if (!compte.getId().equals(idDrinker) && !TypeCompte.FABULOUS.equals(compte.getType()))
+                return ResponseEntity.status(403).build();
+        } catch (CompteInconnuException e) {
+            return ResponseEntity.status(401).build();
+        }
+        if (!compteExiste(idDrinker))
+            return ResponseEntity.status(404).build();
+        return ResponseEntity.ok(diffusionCommandes.abonnerCompte(idDrinker));
+    }
 
+    @PostMapping("/machines")
+    public ResponseEntity<Machine> ajouterMachine(@RequestBody Map<String, String> informations) {
         try {
-            Compte drinker = facadeModele.creerCompteDrinker(login, password);
-            URI nextLocation = ServletUriComponentsBuilder.fromCurrentRequestUri()
+            Machine machine = facadeModele.ajouterMachine(informations.get("nom"), informations.get("typeBoissons"), informations.get("salle"));
+            URI location = ServletUriComponentsBuilder.fromCurrentRequestUri()
                     .path("/{id}")
-                    .buildAndExpand(drinker.getId())
+                    .buildAndExpand(machine.getId())
                     .toUri();
-            return ResponseEntity.created(nextLocation).build();
-        } catch (InformationsIncompletesException e) {
+            return ResponseEntity.created(location).body(machine);
+        } catch (InformationsIncompletesException | TypeBoissonInconnuException | FormatSalleIncorrectException e) {
             return ResponseEntity.status(400).build();
-        } catch (CompteDejaExistantException e) {
+        } catch (MachineDejaExistanteException e) {
             return ResponseEntity.status(409).build();
         }
     }
 
-    @GetMapping("/drinkers")
-    public ResponseEntity<Collection<Compte>> getAll(){
+    @GetMapping("/machines")
+    public ResponseEntity<byte[]> getAllMachines(@RequestParam(required = false) String salle,
+                                                 @RequestParam(required = false) Integer after,
+                                                 @RequestParam(required = false) Integer limit) {
+        if (limit != null && (limit < 1 || limit > LIMITE_MAX))
+            return ResponseEntity.status(400).build();
+
+        if (salle != null) {
+            // Le filtre par salle lit directement le groupe de machines de la salle, qui reste petit
+            try {
+                return vue(vuesJson.getMachinesSalle(salle));
+            } catch (FormatSalleIncorrectException e) {
+                return ResponseEntity.status(400).build();
+            }
+        }
+        if (after == null && limit == null)
+            return vue(vuesJson.getToutesMachines());
+
+        int taillePage = limit == null ? LIMITE_PAR_DEFAUT : limit;
+        List<Machine> machines = facadeModele.getMachinesApres(after, taillePage + 1);
+        return page(machines, taillePage, Machine::getId, vuesJson::getMachines);
+    }
+
+    @GetMapping("/machines/{idMachine}")
+    public ResponseEntity<?> getMachine(@PathVariable Integer idMachine, Principal principal) {
+        try {
+            Machine machine = facadeModele.getMachineById(idMachine);
+            if (!estFabulous(principal))
+                return json(vuesJson.getMachine(machine));
+
+            // Historique complet pour les fabulous : écrit en flux, sans charger les boissons en mémoire
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(new FluxDetailMachine(objectMapper.getFactory(), machine));
+        } catch (MachineInconnueException e) {
+            return ResponseEntity.status(404).build();
+        }
+    }
+
+    @GetMapping(value = "/machines/{idMachine}/commandes/evenements", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> suivreCommandesMachine(@PathVariable Integer idMachine, Principal principal) {
+        if (principal == null)
+            return ResponseEntity.status(401).build();
+
+        try {
+            Compte compte = facadeModele.getCompteByLogin(principal.getName());
+            Machine machine = facadeModele.getMachineById(idMachine);
+            // Un "drinker" ne suit que ses propres commandes sur la machine
+            Integer idDrinker = TypeCompte.FABULOUS.equals(compte.getType()) ? null : compte.getId();
+            return ResponseEntity.ok(diffusionCommandes.abonnerMachine(machine.getId(), idDrinker));
+        } catch (CompteInconnuException e) {
+            return ResponseEntity.status(401).build();
+        } catch (MachineInconnueException e) {
+            return ResponseEntity.status(404).build();
+        }
+    }
+
+    @PutMapping("/machines/{idMachine}/{typeBoisson}")
+    public ResponseEntity<Commande> preparerBoisson(@PathVariable Integer idMachine, @PathVariable String typeBoisson,
+                                                    @RequestBody Map<String, Integer> preparation, Principal principal) {
+        if (principal == null)
+            return ResponseEntity.status(401).build();
+        if (!TypeBoisson.getAllTypes().contains(typeBoisson))
+            return ResponseEntity.status(400).build();
+        Integer nbSucres = preparation.get("nbSucres");
+        if (nbSucres == null || nbSucres < 0 || nbSucres > HistoriqueBoissons.NB_SUCRES_MAX)
+            return ResponseEntity.status(400).build();
+
+        try {
+            Compte compte = facadeModele.getCompteByLogin(principal.getName());
+            Machine machine = facadeModele.getMachineById(idMachine);
+            if (!machine.getTypeBoissons().equals(typeBoisson))
+                return ResponseEntity.status(TypeBoisson.CAFE.equals(typeBoisson) ? 418 : 400).build();
+
+            // La préparation est asynchrone : on rend la main dès que la commande est en file
+            Commande commande = moteurPreparation.soumettre(machine.getId(), typeBoisson, compte.getId(), nbSucres);
+            URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                    .path("/api/commandes/{id}")
+                    .buildAndExpand(commande.getId())
+                    .toUri();
+            return ResponseEntity.accepted().location(location).body(commande);
+        } catch (CompteInconnuException e) {
+            return ResponseEntity.status(401).build();
+        } catch (MachineInconnueException e) {
+            return ResponseEntity.status(404).build();
+        } catch (FileAttentePleineException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+    }
+
+    @PostMapping("/commandes")
+    public ResponseEntity<List<Map<String, Object>>> commanderLot(@RequestBody List<DemandePreparation> demandes, Principal principal) {
+        if (principal == null)
+            return ResponseEntity.status(401).build();
+        if (demandes.isEmpty() || demandes.size() > LOT_COMMANDES_MAX)
+            return ResponseEntity.status(400).build();
+
+        Compte compte;
+        try {
+            compte = facadeModele.getCompteByLogin(principal.getName());
+        } catch (CompteInconnuException e) {
+            return ResponseEntity.status(401).build();
+        }
+        boolean fabulous = TypeCompte.FABULOUS.equals(compte.getType());
+
+        // Validation de tout le lot avant la soumission ; chaque machine et chaque compte n'est recherché qu'une fois
+        int[] statuts = new int[demandes.size()];
+        List<DemandePreparation> valides = new ArrayList<>(demandes.size());
+        List<Integer> indicesValides = new ArrayList<>(demandes.size());
+        Map<Integer, Machine> machines = new HashMap<>();
+        Map<Integer, Boolean> comptesExistants = new HashMap<>();
+        for (int i = 0; i < demandes.size(); i++) {
+            DemandePreparation demande = demandes.get(i);
+            statuts[i] = validerDemande(demande, compte, fabulous, machines, comptesExistants);
+            if (statuts[i] == 202) {
+                Integer idDrinker = demande.getIdDrinker() != null ? demande.getIdDrinker() : compte.getId();
+                valides.add(new DemandePreparation(demande.getIdMachine(), demande.getTypeBoisson(), idDrinker, demande.getNbSucres()));
+                indicesValides.add(i);
+            }
+        }
+
+        Commande[] commandes = new Commande[demandes.size()];
+        List<Commande> soumises = moteurPreparation.soumettreLot(valides);
+        for (int i = 0; i < soumises.size(); i++) {
+            int indice = indicesValides.get(i);
+            commandes[indice] = soumises.get(i);
+            if (commandes[indice] == null)
+                statuts[indice] = HttpStatus.SERVICE_UNAVAILABLE.value();
+        }
+
+        List<Map<String, Object>> resultats = new ArrayList<>(demandes.size());
+        for (int i = 0; i < demandes.size(); i++) {
+            Map<String, Object> resultat = new LinkedHashMap<>();
+            resultat.put("statut", statuts[i]);
+            if (commandes[i] != null)
+                resultat.put("commande", commandes[i]);
+            resultats.add(resultat);
+        }
+        return ResponseEntity.ok(resultats);
+    }
+
+    @GetMapping("/commandes/{idCommande}")
+    public ResponseEntity<Commande> getCommande(@PathVariable Long idCommande, Principal principal) {
+        if (principal == null)
+            return ResponseEntity.status(401).build();
+
+        try {
+            Compte compte = facadeModele.getCompteByLogin(principal.getName());
+            Commande commande = moteurPreparation.getCommande(idCommande);
+            if (!commande.getIdDrinker().equals(compte.getId()) && !TypeCompte.FABULOUS.equals(compte.getType()))
+                return ResponseEntity.status(403).build();
+            return ResponseEntity.ok(commande);
+        } catch (CompteInconnuException e) {
+            return ResponseEntity.status(401).build();
+        } catch (CommandeInconnueException e) {
+            return ResponseEntity.status(404).build();
+        }
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStatistiques() {
+        Map<String, Agregat> parType = new LinkedHashMap<>();
+        try {
+            for (String typeBoisson : TypeBoisson.getAllTypes())
+                parType.put(typeBoisson, statistiquesBoissons.getParType(typeBoisson));
+        } catch (TypeBoissonInconnuException e) {
+            return ResponseEntity.status(500).build();
+        }
+        Map<String, Object> statistiques = new LinkedHashMap<>();
+        statistiques.put("global", statistiquesBoissons.getGlobal());
+        statistiques.put("parType", parType);
+        return ResponseEntity.ok(statistiques);
+    }
+
+    @GetMapping("/stats/types/{typeBoisson}")
+    public ResponseEntity<Agregat> getStatistiquesType(@PathVariable String typeBoisson) {
+        try {
+            return ResponseEntity.ok(statistiquesBoissons.getParType(typeBoisson));
+        } catch (TypeBoissonInconnuException e) {
+            return ResponseEntity.status(400).build();
+        }
+    }
+
+    @GetMapping("/stats/machines/{idMachine}")
+    public ResponseEntity<Agregat> getStatistiquesMachine(@PathVariable Integer idMachine) {
+        try {
+            return ResponseEntity.ok(statistiquesBoissons.getParMachine(idMachine));
+        } catch (MachineInconnueException e) {
+            return ResponseEntity.status(404).build();
+        }
+    }
+
+    @GetMapping("/stats/machines/{idMachine}/boissons")
+    public ResponseEntity<Map<String, Long>> compterBoissonsMachine(@PathVariable Integer idMachine,
+                                                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime debut,
+                                                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fin) {
+        if (!debut.isBefore(fin))
+            return ResponseEntity.status(400).build();
+        try {
+            return ResponseEntity.ok(Map.of("nbBoissons", statistiquesBoissons.compterBoissons(idMachine, debut, fin)));
+        } catch (MachineInconnueException e) {
+            return ResponseEntity.status(404).build();
+        }
+    }
+
+    @GetMapping("/stats/machines/{idMachine}/serie")
+    public ResponseEntity<SerieBoissons> getSerieMachine(@PathVariable Integer idMachine,
+                                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime debut,
+                                                         @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fin,
+                                                         @RequestParam(defaultValue = "PT1H") String pas) {
+        if (!debut.isBefore(fin))
+            return ResponseEntity.status(400).build();
+        try {
+            return ResponseEntity.ok(statistiquesBoissons.getSerie(idMachine, debut, fin, Duration.parse(pas)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return ResponseEntity.status(400).build();
+        } catch (MachineInconnueException e) {
+            return ResponseEntity.status(404).build();
+        }
+    }
 
-        return ResponseEntity.ok(facadeModele.getAllComptes());
+    @GetMapping("/stats/salles/{salle}/heure-de-pointe")
+    public ResponseEntity<HeureDePointe> getHeureDePointeSalle(@PathVariable String salle,
+                                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime debut,
+                                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fin) {
+        if (!debut.isBefore(fin))
+            return ResponseEntity.status(400).build();
+        try {
+            HeureDePointe heureDePointe = statistiquesBoissons.getHeureDePointe(salle, debut, fin);
+            return heureDePointe == null ? ResponseEntity.noContent().build() : ResponseEntity.ok(heureDePointe);
+        } catch (FormatSalleIncorrectException | IllegalArgumentException e) {
+            return ResponseEntity.status(400).build();
+        }
+    }
+
+    @GetMapping("/stats/salles/{salle}")
+    public ResponseEntity<Agregat> getStatistiquesSalle(@PathVariable String salle) {
+        try {
+            return ResponseEntity.ok(statistiquesBoissons.getParSalle(salle));
+        } catch (FormatSalleIncorrectException e) {
+            return ResponseEntity.status(400).build();
+        }
     }
 
+    @GetMapping("/stats/drinkers/{idDrinker}")
+    public ResponseEntity<Agregat> getStatistiquesDrinker(@PathVariable Integer idDrinker, Principal principal) {
+        if (principal == null)
+            return ResponseEntity.status(401).build();
+
+        try {
+            Compte compte = facadeModele.getCompteByLogin(principal.getName());
+            if (!compte.getId().equals(idDrinker) && !TypeCompte.FABULOUS.equals(compte.getType()))
+                return ResponseEntity.status(403).build();
+        } catch (CompteInconnuException e) {
+            return ResponseEntity.status(401).build();
+        }
+        try {
+            return ResponseEntity.ok(statistiquesBoissons.getParCompte(idDrinker));
+        } catch (CompteInconnuException e) {
+            return ResponseEntity.status(404).build();
+        }
+    }
+
+    /**
+     * Liste complète, déjà sérialisée : si l'ETag correspond à l'en-tête "If-None-Match" de la requête,
+     * la réponse est un 304 sans corps.
+     */
+    private static ResponseEntity<byte[]> vue(VuesJson.Vue vue) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(vue.getEtag())
+                .body(vue.getOctets());
+    }
+
+    private static ResponseEntity<byte[]> json(byte[] octets) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(octets);
+    }
+
+    /**
+     * Réponse paginée : si la liste dépasse la taille de page, elle est tronquée
+     * et l'en-tête "Link" indique le curseur de la page suivante.
+     */
+    private static <T> ResponseEntity<byte[]> page(List<T> elements, int taillePage, Function<T, Integer> id,
+                                                   Function<List<T>, byte[]> serialisation) {
+        if (elements.size() <= taillePage)
+            return json(serialisation.apply(elements));
+
+        List<T> page = elements.subList(0, taillePage);
+        URI suivante = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", id.apply(page.get(taillePage - 1)))
+                .replaceQueryParam("limit", taillePage)
+                .build()
+                .toUri();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.LINK, "<" + suivante + ">; rel=\"next\"")
+                .body(serialisation.apply(page));
+    }
+
+    private boolean estFabulous(Principal principal) {
+        if (principal == null)
+            return false;
+        try {
+            return TypeCompte.FABULOUS.equals(facadeModele.getCompteByLogin(principal.getName()).getType());
+        } catch (CompteInconnuException e) {
+            return false;
+        }
+    }
+
+    // Statut HTTP qu'aurait reçu la demande seule : 202 si elle peut être soumise
+    private int validerDemande(DemandePreparation demande, Compte compte, boolean fabulous,
+                               Map<Integer, Machine> machines, Map<Integer, Boolean> comptesExistants) {
+        if (demande == null || demande.getIdMachine() == null || !TypeBoisson.getAllTypes().contains(demande.getTypeBoisson()))
+            return 400;
+        Integer nbSucres = demande.getNbSucres();
+        if (nbSucres == null || nbSucres < 0 || nbSucres > HistoriqueBoissons.NB_SUCRES_MAX)
+            return 400;
+        Integer idDrinker = demande.getIdDrinker();
+        if (idDrinker != null && !idDrinker.equals(compte.getId())) {
+            // Commander pour d'autres comptes est réservé aux comptes "fabulous"
+            if (!fabulous)
+                return 403;
+            if (!comptesExistants.computeIfAbsent(idDrinker, this::compteExiste))
+                return 404;
+        }
+        Machine machine = machines.computeIfAbsent(demande.getIdMachine(), this::trouverMachine);
+        if (machine == null)
+            return 404;
+        if (!machine.getTypeBoissons().equals(demande.getTypeBoisson()))
+            return TypeBoisson.CAFE.equals(demande.getTypeBoisson()) ? 418 : 400;
+        return 202;
+    }
+
+    private boolean compteExiste(Integer idCompte) {
+        try {
+            facadeModele.getCompteById(idCompte);
+            return true;
+        } catch (CompteInconnuException e) {
+            return false;
+        }
+    }
+
+    private Machine trouverMachine(Integer idMachine) {
+        try {
+            return facadeModele.getMachineById(idMachine);
+        } catch (MachineInconnueException e) {
+            return null;
+        }
+    }
 
 }
@@ -0,0 +1,659 @@
+package cc.controleur;
+
+import cc.config.ServiceHachage;
+import cc.modele.data.boissons.HistoriqueBoissons;
+import cc.modele.data.boissons.TypeBoisson;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.comptes.TypeCompte;
+import cc.modele.data.machines.Machine;
+import cc.modele.exceptions.*;
+import cc.modele.preparation.Commande;
+import cc.modele.preparation.DemandePreparation;
+import cc.modele.reactif.EtatMachine;
+import cc.modele.reactif.FacadeModeleReactive;
+import cc.modele.statistiques.Agregat;
+import cc.modele.statistiques.HeureDePointe;
+import cc.modele.statistiques.PlaceClassement;
+import cc.modele.statistiques.SerieBoissons;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Variante non bloquante de l'API (profil "reactif", WebFlux sur Netty), sur la façade réactive du modèle.
+ * Mêmes routes, mêmes statuts et mêmes corps que {@link Controleur}, plus le suivi de l'état d'une machine en Server-Sent Events.
+ * <p>
+ * Seuls l'import en masse et le détail complet d'une machine lisent ou écrivent sur un flux bloquant ({@link StreamingResponseBody}) :
+ * ils s'exécutent sur le scheduler élastique, jamais sur les threads Netty.
+ */
+@RestController
+@RequestMapping("/api")
+@Profile("reactif")
+public class ControleurReactif {
+
+    private static final int LIMITE_PAR_DEFAUT = 100;
+    private static final int LIMITE_MAX = 1000;
+    private static final int CLASSEMENT_MAX = 100;
+    private static final int LOT_COMMANDES_MAX = 100;
+    private static final int TAMPONS_IMPORT = 16;
+
+    private static final Executor EXECUTEUR_BLOQUANT = tache -> Schedulers.boundedElastic().schedule(tache);
+
+    @Autowired
+    FacadeModeleReactive facadeModele;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    ServiceHachage serviceHachage;
+
+    @Autowired
+    ImportComptes importComptes;
+
+    @Autowired
+    VuesJson vuesJson;
+
+    @Autowired
+    DiffusionCommandesReactive diffusionCommandes;
+
+
+    @PostMapping(value = "/drinkers", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public Mono<ResponseEntity<Compte>> registerDrinker(ServerWebExchange exchange) {
+        return exchange.getFormData().flatMap(formulaire -> {
+            String login = formulaire.getFirst("login");
+            String password = formulaire.getFirst("password");
+            // Contrôles préalables : pas de calcul BCrypt pour une demande vouée à l'échec
+            if (login == null || password == null || login.isBlank() || password.isBlank())
+                return statut(400);
+            return facadeModele.getLoginsExistants(List.of(login)).flatMap(existants -> {
+                if (!existants.isEmpty())
+                    return statut(409);
+                // Le mot de passe est encodé par le service de hachage ; la suite s'exécute à la fin du calcul
+                return Mono.fromFuture(serviceHachage.encoder(password))
+                        .flatMap(passwordEncode -> facadeModele.creerCompteDrinker(login, passwordEncode))
+                        .map(drinker -> ResponseEntity.created(uri(exchange.getRequest(), "/{id}", drinker.getId())).<Compte>build())
+                        .onErrorResume(InformationsIncompletesException.class, e -> statut(400))
+                        .onErrorResume(CompteDejaExistantException.class, e -> statut(409))
+                        // Service de hachage saturé : à réessayer
+                        .onErrorResume(RejectedExecutionException.class, e -> indisponible());
+            });
+        });
+    }
+
+    /**
+     * Le corps est lu au fil de l'import, jamais rassemblé en mémoire ; le compte rendu est écrit au fil de l'eau.
+     */
+    @PostMapping(value = "/drinkers/import", consumes = {ImportComptes.TYPE_NDJSON, ImportComptes.TYPE_CSV})
+    public ResponseEntity<Flux<DataBuffer>> importerDrinkers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType typeContenu,
+                                                             @RequestBody Flux<DataBuffer> corps, ServerHttpResponse reponse) {
+        ImportComptes.Format format = typeContenu.isCompatibleWith(MediaType.parseMediaType(ImportComptes.TYPE_CSV))
+                ? ImportComptes.Format.CSV
+                : ImportComptes.Format.NDJSON;
+        Flux<DataBuffer> compteRendu = ecrire(reponse.bufferFactory(), sortie -> {
+            // Au plus TAMPONS_IMPORT tampons du corps lus d'avance
+            try (InputStream entree = new EntreeCorps(corps, TAMPONS_IMPORT)) {
+                importComptes.importer(entree, format).writeTo(sortie);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ImportComptes.TYPE_NDJSON))
+                .body(compteRendu);
+    }
+
+    @GetMapping("/drinkers")
+    public Mono<ResponseEntity<byte[]>> getAll(@RequestParam(required = false) Integer after,
+                                               @RequestParam(required = false) Integer limit,
+                                               ServerHttpRequest requete) {
+        if (after == null && limit == null)
+            return Mono.fromCallable(vuesJson::getTousComptes).map(ControleurReactif::vue);
+        if (limit != null && (limit < 1 || limit > LIMITE_MAX))
+            return statut(400);
+
+        int taillePage = limit == null ? LIMITE_PAR_DEFAUT : limit;
+        // Un élément de plus que demandé : indique s'il existe une page suivante
+        return facadeModele.getComptesApres(after, taillePage + 1)
+                .map(comptes -> page(requete, comptes, taillePage, Compte::getId, vuesJson::getComptes));
+    }
+
+    @GetMapping("/drinkers/top")
+    public Mono<ResponseEntity<List<PlaceClassement>>> getTopDrinkers(@RequestParam(defaultValue = "10") int k) {
+        if (k < 1 || k > CLASSEMENT_MAX)
+            return statut(400);
+        return facadeModele.getPremiers(k).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/drinkers/{idDrinker}")
+    public Mono<ResponseEntity<byte[]>> getDrinker(@PathVariable Integer idDrinker) {
+        return facadeModele.getCompteById(idDrinker)
+                .map(compte -> json(vuesJson.getCompte(compte)))
+                .onErrorResume(CompteInconnuException.class, e -> statut(404));
+    }
+
+    @PatchMapping(value = "/drinkers/{idDrinker}/type", consumes = MediaType.TEXT_PLAIN_VALUE)
+    public Mono<ResponseEntity<Compte>> modifierTypeCompte(@PathVariable Integer idDrinker, @RequestBody String type) {
+        return facadeModele.modifierTypeCompte(idDrinker, type.trim())
+                .map(ResponseEntity::ok)
+                .onErrorResume(TypeCompteInconnuException.class, e -> statut(400))
+                .onErrorResume(CompteInconnuException.class, e -> statut(404));
+    }
+
+    @GetMapping(value = "/drinkers/{idDrinker}/commandes/evenements", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Mono<ResponseEntity<Flux<ServerSentEvent<String>>>> suivreCommandesDrinker(@PathVariable Integer idDrinker, Principal principal) {
+        if (principal == null)
+            return statut(401);
+
+        return facadeModele.getCompteByLogin(principal.getName())
+                .onErrorMap(CompteInconnuException.class, AuthentificationInvalideException::new)
+                .<ResponseEntity<Flux<ServerSentEvent<String>>>>flatMap(compte -> {
+                    if (!compte.getId().equals(idDrinker) && !TypeCompte.FABULOUS.equals(compte.getType()))
+                        return statut(403);
+                    return facadeModele.getCompteById(idDrinker)
+                            .map(suivi -> ResponseEntity.ok(diffusionCommandes.suivreCompte(suivi.getId())));
+                })
+                .onErrorResume(AuthentificationInvalideException.class, e -> statut(401))
+                .onErrorResume(CompteInconnuException.class, e -> statut(404));
+    }
+
+    @PostMapping("/machines")
+    public Mono<ResponseEntity<Machine>> ajouterMachine(@RequestBody Map<String, String> informations, ServerHttpRequest requete) {
+        return facadeModele.ajouterMachine(informations.get("nom"), informations.get("typeBoissons"), informations.get("salle"))
+                .map(machine -> ResponseEntity.created(uri(requete, "/{id}", machine.getId())).body(machine))
+                .onErrorResume(e -> e instanceof InformationsIncompletesException
+                        || e instanceof TypeBoissonInconnuException
+                        || e instanceof FormatSalleIncorrectException, e -> statut(400))
+                .onErrorResume(MachineDejaExistanteException.class, e -> statut(409));
+    }
+
+    @GetMapping("/machines")
+    public Mono<ResponseEntity<byte[]>> getAllMachines(@RequestParam(required = false) String salle,
+                                                       @RequestParam(required = false) Integer after,
+                                                       @RequestParam(required = false) Integer limit,
+                                                       ServerHttpRequest requete) {
+        if (limit != null && (limit < 1 || limit > LIMITE_MAX))
+            return statut(400);
+
+        if (salle != null)
+            return Mono.fromCallable(() -> vuesJson.getMachinesSalle(salle))
+                    .map(ControleurReactif::vue)
+                    .onErrorResume(FormatSalleIncorrectException.class, e -> statut(400));
+        if (after == null && limit == null)
+            return Mono.fromCallable(vuesJson::getToutesMachines).map(ControleurReactif::vue);
+
+        int taillePage = limit == null ? LIMITE_PAR_DEFAUT : limit;
+        return facadeModele.getMachinesApres(after, taillePage + 1)
+                .map(machines -> page(requete, machines, taillePage, Machine::getId, vuesJson::getMachines));
+    }
+
+    @GetMapping("/machines/{idMachine}")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getMachine(@PathVariable Integer idMachine, Principal principal,
+                                                             ServerHttpResponse reponse) {
+        DataBufferFactory tampons = reponse.bufferFactory();
+        return Mono.zip(facadeModele.getMachineById(idMachine), estFabulous(principal))
+                .map(machineEtFabulous -> {
+                    Machine machine = machineEtFabulous.getT1();
+                    // Historique complet pour les fabulous : écrit en flux, sans charger les boissons en mémoire
+                    Flux<DataBuffer> corps = machineEtFabulous.getT2()
+                            ? ecrire(tampons, new FluxDetailMachine(objectMapper.getFactory(), machine))
+                            : Flux.just(tampons.wrap(vuesJson.getMachine(machine)));
+                    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(corps);
+                })
+                .onErrorResume(MachineInconnueException.class, e -> statut(404));
+    }
+
+    /**
+     * Suivi d'une machine : son état courant (nombre de boissons préparées), puis son nouvel état à chaque boisson préparée.
+     */
+    @GetMapping(value = "/machines/{idMachine}/evenements", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Mono<ResponseEntity<Flux<ServerSentEvent<EtatMachine>>>> suivreMachine(@PathVariable Integer idMachine) {
+        // La machine est cherchée avant l'ouverture du flux : une machine inconnue donne une 404, pas un flux en erreur
+        return facadeModele.getMachineById(idMachine)
+                .map(machine -> ResponseEntity.ok(facadeModele.getEvenementsMachine(machine.getId())
+                        .map(etat -> ServerSentEvent.builder(etat).event("machine").build())))
+                .onErrorResume(MachineInconnueException.class, e -> statut(404));
+    }
+
+    @GetMapping(value = "/machines/{idMachine}/commandes/evenements", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Mono<ResponseEntity<Flux<ServerSentEvent<String>>>> suivreCommandesMachine(@PathVariable Integer idMachine, Principal principal) {
+        if (principal == null)
+            return statut(401);
+
+        return Mono.zip(facadeModele.getCompteByLogin(principal.getName()), facadeModele.getMachineById(idMachine))
+                .map(compteEtMachine -> {
+                    Compte compte = compteEtMachine.getT1();
+                    // Un "drinker" ne suit que ses propres commandes sur la machine
+                    Integer idDrinker = TypeCompte.FABULOUS.equals(compte.getType()) ? null : compte.getId();
+                    return ResponseEntity.ok(diffusionCommandes.suivreMachine(compteEtMachine.getT2().getId(), idDrinker));
+                })
+                .onErrorResume(CompteInconnuException.class, e -> statut(401))
+                .onErrorResume(MachineInconnueException.class, e -> statut(404));
+    }
+
+    @PutMapping("/machines/{idMachine}/{typeBoisson}")
+    public Mono<ResponseEntity<Commande>> preparerBoisson(@PathVariable Integer idMachine, @PathVariable String typeBoisson,
+                                                          @RequestBody Map<String, Integer> preparation, Principal principal,
+                                                          ServerHttpRequest requete) {
+        if (principal == null)
+            return statut(401);
+        if (!TypeBoisson.getAllTypes().contains(typeBoisson))
+            return statut(400);
+        Integer nbSucres = preparation.get("nbSucres");
+        if (nbSucres == null || nbSucres < 0 || nbSucres > HistoriqueBoissons.NB_SUCRES_MAX)
+            return statut(400);
+
+        return Mono.zip(facadeModele.getCompteByLogin(principal.getName()), facadeModele.getMachineById(idMachine))
+                .<ResponseEntity<Commande>>flatMap(compteEtMachine -> {
+                    Compte compte = compteEtMachine.getT1();
+                    Machine machine = compteEtMachine.getT2();
+                    if (!machine.getTypeBoissons().equals(typeBoisson))
+                        return statut(TypeBoisson.CAFE.equals(typeBoisson) ? 418 : 400);
+
+                    // La préparation est asynchrone : on rend la main dès que la commande est en file
+                    return facadeModele.soumettre(machine.getId(), typeBoisson, compte.getId(), nbSucres)
+                            .map(commande -> ResponseEntity.accepted()
+                                    .location(uriApplication(requete, "/api/commandes/{id}", commande.getId()))
+                                    .body(commande));
+                })
+                .onErrorResume(CompteInconnuException.class, e -> statut(401))
+                .onErrorResume(MachineInconnueException.class, e -> statut(404))
+                .onErrorResume(FileAttentePleineException.class, e -> indisponible());
+    }
+
+    @PostMapping("/commandes")
+    public Mono<ResponseEntity<List<Map<String, Object>>>> commanderLot(@RequestBody List<DemandePreparation> demandes, Principal principal) {
+        if (principal == null)
+            return statut(401);
+        if (demandes.isEmpty() || demandes.size() > LOT_COMMANDES_MAX)
+            return statut(400);
+
+        return facadeModele.getCompteByLogin(principal.getName())
+                .flatMap(compte -> commanderLot(demandes, compte))
+                .onErrorResume(CompteInconnuException.class, e -> statut(401));
+    }
+
+    @GetMapping("/commandes/{idCommande}")
+    public Mono<ResponseEntity<Commande>> getCommande(@PathVariable Long idCommande, Principal principal) {
+        if (principal == null)
+            return statut(401);
+
+        return Mono.zip(facadeModele.getCompteByLogin(principal.getName()), facadeModele.getCommande(idCommande))
+                .map(compteEtCommande -> {
+                    Compte compte = compteEtCommande.getT1();
+                    Commande commande = compteEtCommande.getT2();
+                    if (!commande.getIdDrinker().equals(compte.getId()) && !TypeCompte.FABULOUS.equals(compte.getType()))
+                        return ResponseEntity.status(403).<Commande>build();
+                    return ResponseEntity.ok(commande);
+                })
+                .onErrorResume(CompteInconnuException.class, e -> statut(401))
+                .onErrorResume(CommandeInconnueException.class, e -> statut(404));
+    }
+
+    @GetMapping("/stats")
+    public Mono<ResponseEntity<Map<String, Object>>> getStatistiques() {
+        return Flux.fromIterable(TypeBoisson.getAllTypes())
+                .concatMap(typeBoisson -> facadeModele.getStatistiquesType(typeBoisson)
+                        .map(agregat -> Map.entry(typeBoisson, agregat)))
+                .collect(LinkedHashMap<String, Agregat>::new, (parType, entree) -> parType.put(entree.getKey(), entree.getValue()))
+                .zipWith(facadeModele.getStatistiquesGlobales(), (parType, global) -> {
+                    Map<String, Object> statistiques = new LinkedHashMap<>();
+                    statistiques.put("global", global);
+                    statistiques.put("parType", parType);
+                    return ResponseEntity.ok(statistiques);
+                })
+                .onErrorResume(TypeBoissonInconnuException.class, e -> statut(500));
+    }
+
+    @GetMapping("/stats/types/{typeBoisson}")
+    public Mono<ResponseEntity<Agregat>> getStatistiquesType(@PathVariable String typeBoisson) {
+        return facadeModele.getStatistiquesType(typeBoisson)
+                .map(ResponseEntity::ok)
+                .onErrorResume(TypeBoissonInconnuException.class, e -> statut(400));
+    }
+
+    @GetMapping("/stats/machines/{idMachine}")
+    public Mono<ResponseEntity<Agregat>> getStatistiquesMachine(@PathVariable Integer idMachine) {
+        return facadeModele.getStatistiquesMachine(idMachine)
+                .map(ResponseEntity::ok)
+                .onErrorResume(MachineInconnueException.class, e -> statut(404));
+    }
+
+    @GetMapping("/stats/machines/{idMachine}/boissons")
+    public Mono<ResponseEntity<Map<String, Long>>> compterBoissonsMachine(@PathVariable Integer idMachine,
+                                                                          @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime debut,
+                                                                          @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fin) {
+        if (!debut.isBefore(fin))
+            return statut(400);
+        return facadeModele.compterBoissons(idMachine, debut, fin)
+                .map(nbBoissons -> ResponseEntity.ok(Map.of("nbBoissons", nbBoissons)))
+                .onErrorResume(MachineInconnueException.class, e -> statut(404));
+    }
+
+    @GetMapping("/stats/machines/{idMachine}/serie")
+    public Mono<ResponseEntity<SerieBoissons>> getSerieMachine(@PathVariable Integer idMachine,
+                                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime debut,
+                                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fin,
+                                                               @RequestParam(defaultValue = "PT1H") String pas) {
+        if (!debut.isBefore(fin))
+            return statut(400);
+        return Mono.fromCallable(() -> Duration.parse(pas))
+                .flatMap(duree -> facadeModele.getSerie(idMachine, debut, fin, duree))
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> e instanceof DateTimeParseException || e instanceof IllegalArgumentException, e -> statut(400))
+                .onErrorResume(MachineInconnueException.class, e -> statut(404));
+    }
+
+    @GetMapping("/stats/salles/{salle}/heure-de-pointe")
+    public Mono<ResponseEntity<HeureDePointe>> getHeureDePointeSalle(@PathVariable String salle,
+                                                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime debut,
+                                                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fin) {
+        if (!debut.isBefore(fin))
+            return statut(400);
+        return facadeModele.getHeureDePointe(salle, debut, fin)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.noContent().build())
+                .onErrorResume(e -> e instanceof FormatSalleIncorrectException || e instanceof IllegalArgumentException, e -> statut(400));
+    }
+
+    @GetMapping("/stats/salles/{salle}")
+    public Mono<ResponseEntity<Agregat>> getStatistiquesSalle(@PathVariable String salle) {
+        return facadeModele.getStatistiquesSalle(salle)
+                .map(ResponseEntity::ok)
+                .onErrorResume(FormatSalleIncorrectException.class, e -> statut(400));
+    }
+
+    @GetMapping("/stats/drinkers/{idDrinker}")
+    public Mono<ResponseEntity<Agregat>> getStatistiquesDrinker(@PathVariable Integer idDrinker, Principal principal) {
+        if (principal == null)
+            return statut(401);
+
+        return facadeModele.getCompteByLogin(principal.getName())
+                .onErrorMap(CompteInconnuException.class, AuthentificationInvalideException::new)
+                .<ResponseEntity<Agregat>>flatMap(compte -> {
+                    if (!compte.getId().equals(idDrinker) && !TypeCompte.FABULOUS.equals(compte.getType()))
+                        return statut(403);
+                    return facadeModele.getStatistiquesCompte(idDrinker).map(ResponseEntity::ok);
+                })
+                .onErrorResume(AuthentificationInvalideException.class, e -> statut(401))
+                .onErrorResume(CompteInconnuException.class, e -> statut(404));
+    }
+
+    private Mono<ResponseEntity<List<Map<String, Object>>>> commanderLot(List<DemandePreparation> demandes, Compte compte) {
+        boolean fabulous = TypeCompte.FABULOUS.equals(compte.getType());
+
+        // Validation de tout le lot avant la soumission ; chaque machine et chaque compte n'est recherché qu'une fois
+        return Flux.fromIterable(demandes)
+                .concatMap(new ValidationLot(compte, fabulous)::valider)
+                .collectList()
+                .flatMap(statutsValidation -> {
+                    int[] statuts = statutsValidation.stream().mapToInt(Integer::intValue).toArray();
+                    List<DemandePreparation> valides = new ArrayList<>(demandes.size());
+                    List<Integer> indicesValides = new ArrayList<>(demandes.size());
+                    for (int i = 0; i < demandes.size(); i++) {
+                        if (statuts[i] == 202) {
+                            DemandePreparation demande = demandes.get(i);
+                            Integer idDrinker = demande.getIdDrinker() != null ? demande.getIdDrinker() : compte.getId();
+                            valides.add(new DemandePreparation(demande.getIdMachine(), demande.getTypeBoisson(), idDrinker, demande.getNbSucres()));
+                            indicesValides.add(i);
+                        }
+                    }
+                    return facadeModele.soumettreLot(valides).map(soumises -> {
+                        Commande[] commandes = new Commande[demandes.size()];
+                        for (int i = 0; i < soumises.size(); i++) {
+                            int indice = indicesValides.get(i);
+                            commandes[indice] = soumises.get(i);
+                            if (commandes[indice] == null)
+                                statuts[indice] = HttpStatus.SERVICE_UNAVAILABLE.value();
+                        }
+
+                        List<Map<String, Object>> resultats = new ArrayList<>(demandes.size());
+                        for (int i = 0; i < demandes.size(); i++) {
+                            Map<String, Object> resultat = new LinkedHashMap<>();
+                            resultat.put("statut", statuts[i]);
+                            if (commandes[i] != null)
+                                resultat.put("commande", commandes[i]);
+                            resultats.add(resultat);
+                        }
+                        return ResponseEntity.ok(resultats);
+                    });
+                });
+    }
+
+    /**
+     * Réponse paginée : si la liste dépasse la taille de page, elle est tronquée
+     * et l'en-tête "Link" indique le curseur de la page suivante.
+     */
+    /**
+     * Liste complète, déjà sérialisée : si l'ETag correspond à l'en-tête "If-None-Match" de la requête,
+     * la réponse est un 304 sans corps.
+     */
+    private static ResponseEntity<byte[]> vue(VuesJson.Vue vue) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(vue.getEtag())
+                .body(vue.getOctets());
+    }
+
+    private static ResponseEntity<byte[]> json(byte[] octets) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(octets);
+    }
+
+    private static <T> ResponseEntity<byte[]> page(ServerHttpRequest requete, List<T> elements, int taillePage, Function<T, Integer> id,
+                                                   Function<List<T>, byte[]> serialisation) {
+        if (elements.size() <= taillePage)
+            return json(serialisation.apply(elements));
+
+        List<T> page = elements.subList(0, taillePage);
+        URI suivante = UriComponentsBuilder.fromUri(requete.getURI())
+                .replaceQueryParam("after", id.apply(page.get(taillePage - 1)))
+                .replaceQueryParam("limit", taillePage)
+                .build()
+                .toUri();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.LINK, "<" + suivante + ">; rel=\"next\"")
+                .body(serialisation.apply(page));
+    }
+
+    private Mono<Boolean> estFabulous(Principal principal) {
+        if (principal == null)
+            return Mono.just(false);
+        return facadeModele.getCompteByLogin(principal.getName())
+                .map(compte -> TypeCompte.FABULOUS.equals(compte.getType()))
+                .onErrorReturn(CompteInconnuException.class, false);
+    }
+
+    // Écriture sur un flux bloquant, hors des threads Netty ; le corps est émis au fil de l'écriture
+    private static Flux<DataBuffer> ecrire(DataBufferFactory tampons, StreamingResponseBody ecriture) {
+        return Flux.from(DataBufferUtils.outputStreamPublisher(sortie -> {
+            try {
+                ecriture.writeTo(sortie);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, tampons, EXECUTEUR_BLOQUANT));
+    }
+
+    // URI relative à la requête courante (sans paramètres)
+    private static URI uri(ServerHttpRequest requete, String chemin, Object... variables) {
+        return UriComponentsBuilder.fromUri(requete.getURI())
+                .replaceQuery(null)
+                .path(chemin)
+                .buildAndExpand(variables)
+                .toUri();
+    }
+
+    // URI relative à la racine de l'application
+    private static URI uriApplication(ServerHttpRequest requete, String chemin, Object... variables) {
+        return UriComponentsBuilder.fromUri(requete.getURI())
+                .replacePath(requete.getPath().contextPath().value())
+                .replaceQuery(null)
+                .path(chemin)
+                .buildAndExpand(variables)
+                .toUri();
+    }
+
+    private static <T> Mono<ResponseEntity<T>> statut(int statut) {
+        return Mono.just(ResponseEntity.status(statut).build());
+    }
+
+    private static <T> Mono<ResponseEntity<T>> indisponible() {
+        return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build());
+    }
+
+    // Lecture bloquante d'un corps de requête, tampon par tampon ; la fermeture annule la lecture du reste du corps
+    private static final class EntreeCorps extends InputStream {
+
+        private final Stream<byte[]> morceaux;
+        private final Iterator<byte[]> suivants;
+        private byte[] courant = new byte[0];
+        private int position;
+
+        private EntreeCorps(Flux<DataBuffer> corps, int nbTampons) {
+            this.morceaux = corps
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .map(EntreeCorps::octets)
+                    .toStream(nbTampons);
+            this.suivants = morceaux.iterator();
+        }
+
+        @Override
+        public int read() {
+            if (!remplir())
+                return -1;
+            return courant[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] octets, int debut, int longueur) {
+            if (longueur == 0)
+                return 0;
+            if (!remplir())
+                return -1;
+            int lus = Math.min(longueur, courant.length - position);
+            System.arraycopy(courant, position, octets, debut, lus);
+            position += lus;
+            return lus;
+        }
+
+        @Override
+        public void close() {
+            morceaux.close();
+        }
+
+        private boolean remplir() {
+            while (position == courant.length) {
+                if (!suivants.hasNext())
+                    return false;
+                courant = suivants.next();
+                position = 0;
+            }
+            return true;
+        }
+
+        private static byte[] octets(DataBuffer tampon) {
+            try {
+                byte[] octets = new byte[tampon.readableByteCount()];
+                tampon.read(octets);
+                return octets;
+            } finally {
+                DataBufferUtils.release(tampon);
+            }
+        }
+
+    }
+
+    // Compte de l'appelant disparu : distingué du compte consulté inconnu (401 plutôt que 404)
+    private static final class AuthentificationInvalideException extends RuntimeException {
+
+        private AuthentificationInvalideException(Throwable cause) {
+            super(cause);
+        }
+
+    }
+
+    // Statut HTTP qu'aurait reçu chaque demande seule : 202 si elle peut être soumise
+    private final class ValidationLot {
+
+        private final Compte compte;
+        private final boolean fabulous;
+        private final Map<Integer, Mono<Machine>> machines = new HashMap<>();
+        private final Map<Integer, Mono<Boolean>> comptesExistants = new HashMap<>();
+
+        private ValidationLot(Compte compte, boolean fabulous) {
+            this.compte = compte;
+            this.fabulous = fabulous;
+        }
+
+        Mono<Integer> valider(DemandePreparation demande) {
+            if (demande == null || demande.getIdMachine() == null || !TypeBoisson.getAllTypes().contains(demande.getTypeBoisson()))
+                return Mono.just(400);
+            Integer nbSucres = demande.getNbSucres();
+            if (nbSucres == null || nbSucres < 0 || nbSucres > HistoriqueBoissons.NB_SUCRES_MAX)
+                return Mono.just(400);
+            Integer idDrinker = demande.getIdDrinker();
+            Mono<Boolean> drinkerAutorise = Mono.just(true);
+            if (idDrinker != null && !idDrinker.equals(compte.getId())) {
+                // Commander pour d'autres comptes est réservé aux comptes "fabulous"
+                if (!fabulous)
+                    return Mono.just(403);
+                drinkerAutorise = comptesExistants.computeIfAbsent(idDrinker, id -> facadeModele.getCompteById(id)
+                        .map(trouve -> true)
+                        .onErrorReturn(CompteInconnuException.class, false)
+                        .cache());
+            }
+            Mono<Machine> machine = machines.computeIfAbsent(demande.getIdMachine(), id -> facadeModele.getMachineById(id)
+                    .onErrorResume(MachineInconnueException.class, e -> Mono.empty())
+                    .cache());
+            return drinkerAutorise.flatMap(autorise -> {
+                if (!autorise)
+                    return Mono.just(404);
+                return machine.map(trouvee -> {
+                    if (!trouvee.getTypeBoissons().equals(demande.getTypeBoisson()))
+                        return TypeBoisson.CAFE.equals(demande.getTypeBoisson()) ? 418 : 400;
+                    return 202;
+                }).defaultIfEmpty(404);
+            });
+        }
+
+    }
+
+}
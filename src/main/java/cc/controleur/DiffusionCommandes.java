@@ -0,0 +1,364 @@
+package cc.controleur;
+
+import cc.modele.evenements.EcouteurPreparation;
+import cc.modele.preparation.Commande;
+import cc.modele.preparation.MoteurPreparation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Diffusion des changements d'état des commandes (Server-Sent Events) aux clients abonnés à une machine ou à un compte.
+ * <p>
+ * Chaque changement est sérialisé une seule fois, puis déposé dans la file bornée de chaque abonné concerné :
+ * la notification, faite dans le thread du moteur de préparation, n'écrit jamais vers un client.
+ * Les files sont vidées par un pool d'expéditeurs partagé, au plus un expéditeur par abonné à la fois :
+ * aucun thread n'est dédié à un abonné.
+ * <p>
+ * Un abonné dont la file est pleine ne suit pas le rythme des commandes : son flux est terminé plutôt que
+ * de retenir des événements en mémoire. Le client se réabonne, et relit l'état de ses commandes via GET /api/commandes/{id}.
+ * <p>
+ * Un envoi bloque tant que le client ne lit pas, jusqu'au délai d'écriture du conteneur (server.tomcat.connection-timeout) :
+ * ni une interruption ni {@link SseEmitter#complete()} ne le débloquent. Une surveillance évince l'abonné dont un envoi dure plus
+ * que le délai d'envoi, et remplace l'expéditeur bloqué dans le pool le temps que l'envoi échoue : les autres abonnés sont servis.
+ */
+@Component
+@Profile("!reactif")
+public class DiffusionCommandes implements EcouteurPreparation, MeterBinder {
+
+    // Nombre maximal d'événements envoyés d'affilée à un même abonné
+    private static final int LOT_MAX = 16;
+    // Nombre maximal d'expéditeurs bloqués remplacés dans le pool
+    private static final int REMPLACEMENTS_MAX = 256;
+
+    private final ObjectMapper objectMapper;
+    private final int capaciteFile;
+    private final long delaiMillis;
+    private final long delaiEnvoiNanos;
+    private final ExecutorService expediteurs;
+    private final ScheduledExecutorService surveillance;
+
+    // Abonnés par machine suivie et par compte suivi
+    private final Map<Integer, Set<Abonnement>> abonnesMachines = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Abonnement>> abonnesComptes = new ConcurrentHashMap<>();
+    private final AtomicInteger nbAbonnes = new AtomicInteger();
+    private final LongAdder evictions = new LongAdder();
+    // Abonnés dont la file est en cours de vidage, surveillés
+    private final Set<Abonnement> envoisEnCours = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock verrouRemplacements = new ReentrantLock();
+    private int nbRemplacements;
+
+    @Autowired
+    public DiffusionCommandes(MoteurPreparation moteurPreparation, ObjectMapper objectMapper,
+                              @Value("${cc.diffusion.capacite-file:64}") int capaciteFile,
+                              @Value("${cc.diffusion.nb-threads:0}") int nbThreads,
+                              @Value("${cc.diffusion.delai-secondes:600}") long delaiSecondes,
+                              @Value("${cc.diffusion.delai-envoi-millis:5000}") long delaiEnvoiMillis,
+                              @Value("${spring.threads.virtual.enabled:false}") boolean threadsVirtuels) {
+        this(objectMapper, capaciteFile, delaiSecondes, delaiEnvoiMillis, threadsVirtuels
+                ? creerExpediteursVirtuels()
+                : creerExpediteurs(nbThreads > 0 ? nbThreads : Runtime.getRuntime().availableProcessors()));
+        moteurPreparation.ajouterEcouteur(this);
+    }
+
+    DiffusionCommandes(ObjectMapper objectMapper, int capaciteFile, long delaiSecondes, long delaiEnvoiMillis, ExecutorService expediteurs) {
+        this.objectMapper = objectMapper;
+        this.capaciteFile = capaciteFile;
+        this.delaiMillis = TimeUnit.SECONDS.toMillis(delaiSecondes);
+        this.delaiEnvoiNanos = TimeUnit.MILLISECONDS.toNanos(delaiEnvoiMillis);
+        this.expediteurs = expediteurs;
+        this.surveillance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "diffusion-surveillance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periode = Math.max(1, delaiEnvoiMillis / 2);
+        surveillance.scheduleWithFixedDelay(this::surveiller, periode, periode, TimeUnit.MILLISECONDS);
+    }
+
+    private static ExecutorService creerExpediteurs(int nbThreads) {
+        AtomicInteger numeroThread = new AtomicInteger();
+        return Executors.newFixedThreadPool(nbThreads, runnable -> {
+            Thread thread = new Thread(runnable, "diffusion-" + numeroThread.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Un thread virtuel par vidage de file : un client lent ne retient pas de thread plateforme
+    private static ExecutorService creerExpediteursVirtuels() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("diffusion-", 1).factory());
+    }
+
+    /**
+     * @param idMachine l'identifiant de la machine suivie
+     * @param idDrinker si non null, seules les commandes de ce compte sont diffusées
+     * @return le flux des changements d'état des commandes de la machine, à partir de l'abonnement
+     */
+    public SseEmitter abonnerMachine(Integer idMachine, Integer idDrinker) {
+        return abonner(new SseEmitter(delaiMillis), idMachine, idDrinker);
+    }
+
+    /**
+     * @param idDrinker l'identifiant du compte suivi
+     * @return le flux des changements d'état des commandes du compte, toutes machines confondues, à partir de l'abonnement
+     */
+    public SseEmitter abonnerCompte(Integer idDrinker) {
+        return abonner(new SseEmitter(delaiMillis), null, idDrinker);
+    }
+
+    // Abonnement à une machine si idMachine est renseigné, à un compte sinon
+    SseEmitter abonner(SseEmitter emetteur, Integer idMachine, Integer idDrinker) {
+        Abonnement abonnement = idMachine != null
+                ? new Abonnement(emetteur, abonnesMachines, idMachine, idDrinker)
+                : new Abonnement(emetteur, abonnesComptes, idDrinker, null);
+        abonnement.index.compute(abonnement.cle, (cle, abonnes) -> {
+            Set<Abonnement> ensemble = abonnes != null ? abonnes : ConcurrentHashMap.newKeySet();
+            ensemble.add(abonnement);
+            return ensemble;
+        });
+        nbAbonnes.incrementAndGet();
+        emetteur.onCompletion(abonnement::retirer);
+        emetteur.onError(erreur -> abonnement.retirer());
+        emetteur.onTimeout(() -> {
+            abonnement.retirer();
+            emetteur.complete();
+        });
+        return emetteur;
+    }
+
+    @Override
+    public void commandeModifiee(Commande commande) {
+        Set<Abonnement> abonnesMachine = abonnesMachines.get(commande.getIdMachine());
+        Set<Abonnement> abonnesCompte = abonnesComptes.get(commande.getIdDrinker());
+        if (abonnesMachine == null && abonnesCompte == null)
+            return;
+
+        Evenement evenement;
+        try {
+            evenement = new Evenement(commande.getEtat(), objectMapper.writeValueAsString(commande));
+        } catch (JsonProcessingException e) {
+            // Ne se produit pas (une commande est toujours sérialisable) ; le moteur n'a pas à en pâtir
+            return;
+        }
+        if (abonnesMachine != null)
+            for (Abonnement abonnement : abonnesMachine)
+                if (abonnement.idDrinker == null || abonnement.idDrinker.equals(commande.getIdDrinker()))
+                    abonnement.publier(evenement);
+        if (abonnesCompte != null)
+            for (Abonnement abonnement : abonnesCompte)
+                abonnement.publier(evenement);
+    }
+
+    public int getNbAbonnes() {
+        return nbAbonnes.get();
+    }
+
+    /**
+     * @return le nombre d'abonnés déconnectés car leur file était pleine
+     */
+    public long getNbEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cc.diffusion.abonnes", this, DiffusionCommandes::getNbAbonnes)
+                .description("Abonnés aux changements d'état des commandes")
+                .register(registry);
+        FunctionCounter.builder("cc.diffusion.evictions", this, DiffusionCommandes::getNbEvictions)
+                .description("Abonnés déconnectés, trop lents pour suivre les commandes")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void arreter() {
+        surveillance.shutdownNow();
+        expediteurs.shutdownNow();
+    }
+
+    // Évince les abonnés dont l'envoi en cours dépasse le délai d'envoi
+    void surveiller() {
+        long maintenant = System.nanoTime();
+        for (Abonnement abonnement : envoisEnCours)
+            if (maintenant - abonnement.debutEnvoi > delaiEnvoiNanos)
+                abonnement.bloquer();
+    }
+
+    // Un thread de plus (ou de moins) dans un pool d'expéditeurs plateforme ; un thread virtuel bloqué ne retient pas le pool
+    private boolean remplacerExpediteur(int delta) {
+        if (!(expediteurs instanceof ThreadPoolExecutor pool))
+            return false;
+        verrouRemplacements.lock();
+        try {
+            if (delta > 0 && nbRemplacements >= REMPLACEMENTS_MAX)
+                return false;
+            nbRemplacements += delta;
+            // La taille maximale reste supérieure ou égale à la taille de base
+            if (delta > 0) {
+                pool.setMaximumPoolSize(pool.getMaximumPoolSize() + delta);
+                pool.setCorePoolSize(pool.getCorePoolSize() + delta);
+            } else {
+                pool.setCorePoolSize(pool.getCorePoolSize() + delta);
+                pool.setMaximumPoolSize(pool.getMaximumPoolSize() + delta);
+            }
+            return true;
+        } finally {
+            verrouRemplacements.unlock();
+        }
+    }
+
+    // Abonné : sa file est vidée par au plus un expéditeur à la fois, l'ordre des événements est conservé
+    private final class Abonnement implements Runnable {
+
+        private final SseEmitter emetteur;
+        private final Map<Integer, Set<Abonnement>> index;
+        private final Integer cle;
+        private final Integer idDrinker;
+        private final BlockingQueue<Evenement> evenements = new ArrayBlockingQueue<>(capaciteFile);
+        private final AtomicBoolean planifie = new AtomicBoolean();
+        private final AtomicBoolean retire = new AtomicBoolean();
+        // Flux à terminer par l'expéditeur : seul lui écrit vers le client
+        private volatile boolean evince;
+        // Début de l'envoi en cours, lu par la surveillance
+        private volatile long debutEnvoi;
+        private final AtomicBoolean bloque = new AtomicBoolean();
+        // Expéditeur remplacé dans le pool, à rendre une fois l'envoi terminé
+        private final AtomicBoolean remplace = new AtomicBoolean();
+
+        private Abonnement(SseEmitter emetteur, Map<Integer, Set<Abonnement>> index, Integer cle, Integer idDrinker) {
+            this.emetteur = emetteur;
+            this.index = index;
+            this.cle = cle;
+            this.idDrinker = idDrinker;
+        }
+
+        void publier(Evenement evenement) {
+            if (retire.get())
+                return;
+            if (!evenements.offer(evenement)) {
+                evincer();
+                return;
+            }
+            planifier();
+        }
+
+        void planifier() {
+            if (planifie.compareAndSet(false, true)) {
+                try {
+                    expediteurs.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // Arrêt en cours
+                    retirer();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            debutEnvoi = System.nanoTime();
+            envoisEnCours.add(this);
+            try {
+                Evenement evenement;
+                int envoyes = 0;
+                while (!evince && envoyes < LOT_MAX && (evenement = evenements.poll()) != null) {
+                    debutEnvoi = System.nanoTime();
+                    emetteur.send(SseEmitter.event().name(evenement.etat).data(evenement.json, MediaType.APPLICATION_JSON));
+                    envoyes++;
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client déconnecté, flux déjà terminé, ou délai d'écriture du conteneur dépassé
+                retirer();
+                return;
+            } finally {
+                envoisEnCours.remove(this);
+                if (remplace.compareAndSet(true, false))
+                    remplacerExpediteur(-1);
+            }
+            if (evince) {
+                evenements.clear();
+                emetteur.complete();
+                return;
+            }
+            planifie.set(false);
+            // Événements arrivés, ou éviction décidée, entre la fin du lot et la libération : on se replanifie
+            if (evince || !evenements.isEmpty())
+                planifier();
+        }
+
+        // Appelé par la surveillance : l'expéditeur est bloqué dans send, seul le conteneur peut l'en sortir
+        void bloquer() {
+            if (!bloque.compareAndSet(false, true))
+                return;
+            if (retirer())
+                evictions.increment();
+            evince = true;
+            if (remplacerExpediteur(1)) {
+                remplace.set(true);
+                // Envoi terminé entre-temps : le remplaçant est rendu ici
+                if (!envoisEnCours.contains(this) && remplace.compareAndSet(true, false))
+                    remplacerExpediteur(-1);
+            }
+        }
+
+        private void evincer() {
+            if (!retirer())
+                return;
+            evictions.increment();
+            evince = true;
+            planifier();
+        }
+
+        private boolean retirer() {
+            if (!retire.compareAndSet(false, true))
+                return false;
+            index.computeIfPresent(cle, (c, abonnes) -> {
+                abonnes.remove(this);
+                return abonnes.isEmpty() ? null : abonnes;
+            });
+            nbAbonnes.decrementAndGet();
+            return true;
+        }
+
+    }
+
+    private static final class Evenement {
+
+        private final String etat;
+        private final String json;
+
+        private Evenement(String etat, String json) {
+            this.etat = etat;
+            this.json = json;
+        }
+
+    }
+
+}
@@ -0,0 +1,149 @@
+package cc.controleur;
+
+import cc.modele.evenements.EcouteurPreparation;
+import cc.modele.preparation.Commande;
+import cc.modele.preparation.MoteurPreparation;
+import cc.modele.reactif.Canaux;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Diffusion des changements d'état des commandes (Server-Sent Events) aux clients abonnés à une machine ou à un compte,
+ * pour la variante réactive de l'API : même contrat que {@link DiffusionCommandes}.
+ * <p>
+ * Chaque changement est sérialisé une seule fois, puis déposé dans le tampon borné de chaque abonné concerné :
+ * la notification, faite dans le thread du moteur de préparation, n'attend jamais un client.
+ * Chaque flux s'ouvre sur un commentaire, envoyé dès que l'abonné est inscrit.
+ * Un abonné dont le tampon est plein ne suit pas le rythme des commandes : il est désinscrit aussitôt, et son flux se termine
+ * après les événements déjà retenus, plutôt que d'en accumuler en mémoire. Le client se réabonne, et relit l'état de ses commandes via GET /api/commandes/{id}.
+ */
+@Component
+@Profile("reactif")
+public class DiffusionCommandesReactive implements EcouteurPreparation, MeterBinder {
+
+    private static final ServerSentEvent<String> OUVERTURE = ServerSentEvent.<String>builder().comment("abonnement").build();
+
+    private final ObjectMapper objectMapper;
+    private final int capaciteFile;
+    private final Duration delai;
+
+    private final Canaux<Evenement> abonnesMachines = new Canaux<>();
+    private final Canaux<Evenement> abonnesComptes = new Canaux<>();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public DiffusionCommandesReactive(MoteurPreparation moteurPreparation, ObjectMapper objectMapper,
+                                      @Value("${cc.diffusion.capacite-file:64}") int capaciteFile,
+                                      @Value("${cc.diffusion.delai-secondes:600}") long delaiSecondes) {
+        this(objectMapper, capaciteFile, delaiSecondes);
+        moteurPreparation.ajouterEcouteur(this);
+    }
+
+    DiffusionCommandesReactive(ObjectMapper objectMapper, int capaciteFile, long delaiSecondes) {
+        this.objectMapper = objectMapper;
+        this.capaciteFile = capaciteFile;
+        this.delai = Duration.ofSeconds(delaiSecondes);
+    }
+
+    /**
+     * @param idMachine l'identifiant de la machine suivie
+     * @param idDrinker si non null, seules les commandes de ce compte sont diffusées
+     * @return le flux des changements d'état des commandes de la machine, à partir de l'abonnement
+     */
+    public Flux<ServerSentEvent<String>> suivreMachine(Integer idMachine, Integer idDrinker) {
+        Flux<Evenement> evenements = abonnesMachines.suivre(idMachine);
+        if (idDrinker != null)
+            evenements = evenements.filter(evenement -> idDrinker.equals(evenement.idDrinker));
+        return diffuser(evenements);
+    }
+
+    /**
+     * @param idDrinker l'identifiant du compte suivi
+     * @return le flux des changements d'état des commandes du compte, toutes machines confondues, à partir de l'abonnement
+     */
+    public Flux<ServerSentEvent<String>> suivreCompte(Integer idDrinker) {
+        return diffuser(abonnesComptes.suivre(idDrinker));
+    }
+
+    @Override
+    public void commandeModifiee(Commande commande) {
+        boolean machineSuivie = abonnesMachines.estSuivie(commande.getIdMachine());
+        boolean compteSuivi = abonnesComptes.estSuivie(commande.getIdDrinker());
+        if (!machineSuivie && !compteSuivi)
+            return;
+
+        Evenement evenement;
+        try {
+            evenement = new Evenement(commande.getIdDrinker(),
+                    ServerSentEvent.builder(objectMapper.writeValueAsString(commande)).event(commande.getEtat()).build());
+        } catch (JsonProcessingException e) {
+            // Ne se produit pas (une commande est toujours sérialisable) ; le moteur n'a pas à en pâtir
+            return;
+        }
+        if (machineSuivie)
+            abonnesMachines.publier(commande.getIdMachine(), () -> evenement);
+        if (compteSuivi)
+            abonnesComptes.publier(commande.getIdDrinker(), () -> evenement);
+    }
+
+    public int getNbAbonnes() {
+        return abonnesMachines.getNbAbonnes() + abonnesComptes.getNbAbonnes();
+    }
+
+    /**
+     * @return le nombre d'abonnés déconnectés car leur tampon était plein
+     */
+    public long getNbEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cc.diffusion.abonnes", this, DiffusionCommandesReactive::getNbAbonnes)
+                .description("Abonnés aux changements d'état des commandes")
+                .register(registry);
+        FunctionCounter.builder("cc.diffusion.evictions", this, DiffusionCommandesReactive::getNbEvictions)
+                .description("Abonnés déconnectés, trop lents pour suivre les commandes")
+                .register(registry);
+    }
+
+    private Flux<ServerSentEvent<String>> diffuser(Flux<Evenement> evenements) {
+        Flux<ServerSentEvent<String>> changements = evenements
+                .onBackpressureBuffer(capaciteFile, evenement -> evictions.increment())
+                // Tampon plein : le flux se termine normalement, le client se réabonne
+                .onErrorResume(Exceptions::isOverflow, e -> Flux.empty())
+                .map(evenement -> evenement.sse);
+        // Commentaire émis une fois l'abonnement au canal enregistré : la réponse part sans attendre un changement,
+        // et le client sait qu'il ne manquera plus rien
+        return Flux.merge(1, changements, Mono.just(OUVERTURE))
+                .take(delai);
+    }
+
+    private static final class Evenement {
+
+        private final Integer idDrinker;
+        private final ServerSentEvent<String> sse;
+
+        private Evenement(Integer idDrinker, ServerSentEvent<String> sse) {
+            this.idDrinker = idDrinker;
+            this.sse = sse;
+        }
+
+    }
+
+}
@@ -0,0 +1,68 @@
+package cc.controleur;
+
+import cc.modele.data.machines.Machine;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.ZoneId;
+
+/**
+ * Détail d'une machine, avec toutes ses boissons préparées, écrit en JSON au fil de l'eau.
+ * Les boissons sont lues directement dans l'historique de la machine, sans liste intermédiaire :
+ * la mémoire utilisée ne dépend pas de la taille de l'historique.
+ * <p>
+ * {@code nbBoissonsPreparees} compte toutes les boissons de la machine, y compris celles dont le détail a été
+ * compacté ; {@code nbBoissonsCompactees} donne le nombre de ces dernières, absentes de {@code boissonsPreparees}.
+ * Les deux compteurs sont lus avant le tableau, qui peut contenir en plus les boissons préparées pendant l'écriture.
+ */
+class FluxDetailMachine implements StreamingResponseBody {
+
+    private final JsonFactory jsonFactory;
+    private final Machine machine;
+
+    FluxDetailMachine(JsonFactory jsonFactory, Machine machine) {
+        this.jsonFactory = jsonFactory;
+        this.machine = machine;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        FormatDateIso formatDate = new FormatDateIso(ZoneId.systemDefault());
+        try (JsonGenerator json = jsonFactory.createGenerator(outputStream, JsonEncoding.UTF8)) {
+            // Le flux de la réponse reste géré par le conteneur
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.writeStartObject();
+            json.writeNumberField("id", machine.getId());
+            json.writeStringField("nom", machine.getNom());
+            json.writeStringField("typeBoissons", machine.getTypeBoissons());
+            json.writeStringField("salle", machine.getSalle());
+            json.writeNumberField("nbBoissonsPreparees", machine.getNbBoissonsPreparees());
+            json.writeNumberField("nbBoissonsCompactees", machine.getHistorique().premier());
+            json.writeArrayFieldStart("boissonsPreparees");
+            try {
+                machine.getHistorique().parcourir((dateMillis, idCompte, nbSucres) -> {
+                    try {
+                        json.writeStartObject();
+                        json.writeNumberField("idDrinker", idCompte);
+                        json.writeFieldName("dateHeurePreparation");
+                        json.writeString(formatDate.getTampon(), 0, formatDate.formater(dateMillis));
+                        json.writeNumberField("nbSucres", nbSucres);
+                        json.writeEndObject();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package cc.controleur;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Écrit des dates en millisecondes epoch au format {@link DateTimeFormatter#ISO_LOCAL_DATE_TIME}, celui utilisé
+ * par Jackson pour les {@code LocalDateTime} : secondes toujours présentes, fraction sans zéros finaux.
+ * <p>
+ * Le décalage du fuseau et la partie date sont calculés une fois puis réutilisés tant que les dates restent dans
+ * la même journée et avant la prochaine transition du fuseau : pour un historique trié, l'écriture d'une date
+ * n'alloue rien. Non thread-safe : une instance par réponse.
+ */
+class FormatDateIso {
+
+    private static final long MILLIS_PAR_JOUR = 86_400_000L;
+    // "yyyy-MM-ddT" + "HH:mm:ss" + ".SSS"
+    private static final int LONGUEUR_DATE = 11;
+
+    private final ZoneRules regles;
+    private final char[] tampon = new char[LONGUEUR_DATE + 12];
+
+    private long debutDecalage = Long.MAX_VALUE;
+    private long finDecalage = Long.MIN_VALUE;
+    private long decalageMillis;
+    private long jour = Long.MIN_VALUE;
+
+    FormatDateIso(ZoneId zone) {
+        this.regles = zone.getRules();
+    }
+
+    /**
+     * Met en forme une date dans le tampon.
+     *
+     * @param dateMillis la date, en millisecondes depuis l'epoch
+     * @return le nombre de caractères écrits dans {@link #getTampon()}
+     */
+    int formater(long dateMillis) {
+        if (dateMillis < debutDecalage || dateMillis >= finDecalage)
+            calculerDecalage(dateMillis);
+        long locale = dateMillis + decalageMillis;
+        long jourLocal = Math.floorDiv(locale, MILLIS_PAR_JOUR);
+        if (jourLocal != jour)
+            ecrireDate(jourLocal);
+
+        int millisJour = (int) Math.floorMod(locale, MILLIS_PAR_JOUR);
+        int millis = millisJour % 1000;
+        int secondes = millisJour / 1000;
+        int i = LONGUEUR_DATE;
+        i = deuxChiffres(secondes / 3600, i);
+        tampon[i++] = ':';
+        i = deuxChiffres(secondes / 60 % 60, i);
+        tampon[i++] = ':';
+        i = deuxChiffres(secondes % 60, i);
+        if (millis != 0) {
+            tampon[i++] = '.';
+            tampon[i++] = (char) ('0' + millis / 100);
+            if (millis % 100 != 0) {
+                tampon[i++] = (char) ('0' + millis / 10 % 10);
+                if (millis % 10 != 0)
+                    tampon[i++] = (char) ('0' + millis % 10);
+            }
+        }
+        return i;
+    }
+
+    char[] getTampon() {
+        return tampon;
+    }
+
+    private void calculerDecalage(long dateMillis) {
+        Instant instant = Instant.ofEpochMilli(dateMillis);
+        decalageMillis = regles.getOffset(instant).getTotalSeconds() * 1000L;
+        ZoneOffsetTransition suivante = regles.nextTransition(instant);
+        debutDecalage = dateMillis;
+        finDecalage = suivante == null ? Long.MAX_VALUE : suivante.toEpochSecond() * 1000L;
+    }
+
+    private void ecrireDate(long jourLocal) {
+        // Une fois par jour : la mise en forme de la date passe par le formateur standard
+        String date = DateTimeFormatter.ISO_LOCAL_DATE.format(LocalDate.ofEpochDay(jourLocal));
+        if (date.length() != LONGUEUR_DATE - 1)
+            throw new IllegalArgumentException("Année hors de l'intervalle 0000-9999 : " + date);
+        date.getChars(0, date.length(), tampon, 0);
+        tampon[LONGUEUR_DATE - 1] = 'T';
+        jour = jourLocal;
+    }
+
+    private int deuxChiffres(int valeur, int i) {
+        tampon[i] = (char) ('0' + valeur / 10);
+        tampon[i + 1] = (char) ('0' + valeur % 10);
+        return i + 2;
+    }
+
+}
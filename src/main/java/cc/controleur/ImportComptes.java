@@ -0,0 +1,182 @@
+package cc.controleur;
+
+import cc.config.ServiceHachage;
+import cc.modele.FacadeModele;
+import cc.modele.data.comptes.Compte;
+import cc.modele.exceptions.CompteDejaExistantException;
+import cc.modele.exceptions.InformationsIncompletesException;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Import en masse de comptes "drinker", à partir d'un corps NDJSON ({"login": ..., "password": ...} par ligne)
+ * ou CSV ("login,password" par ligne, ligne d'en-tête facultative).
+ * <p>
+ * Le corps est lu ligne à ligne et traité par lots : seul le lot courant est en mémoire.
+ * Pour chaque lot, l'unicité des logins est contrôlée en une passe, puis les mots de passe des lignes valides
+ * sont encodés en parallèle par le {@link ServiceHachage}.
+ * Le compte rendu est écrit en NDJSON au fil de l'eau, une ligne de résultat par ligne importée.
+ */
+@Component
+public class ImportComptes {
+
+    public static final String TYPE_NDJSON = "application/x-ndjson";
+    public static final String TYPE_CSV = "text/csv";
+
+    public enum Format {NDJSON, CSV}
+
+    private static final int TAILLE_LOT = 64;
+    private static final String EN_TETE_CSV = "login,password";
+
+    private final FacadeModele facadeModele;
+    private final ServiceHachage serviceHachage;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public ImportComptes(FacadeModele facadeModele, ServiceHachage serviceHachage, ObjectMapper objectMapper) {
+        this.facadeModele = facadeModele;
+        this.serviceHachage = serviceHachage;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param corps  le corps de la requête, lu pendant l'écriture du compte rendu
+     * @param format le format du corps
+     * @return le compte rendu, écrit au fil de l'import
+     */
+    public StreamingResponseBody importer(InputStream corps, Format format) {
+        return sortie -> {
+            BufferedReader lecteur = new BufferedReader(new InputStreamReader(corps, StandardCharsets.UTF_8));
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(sortie, JsonEncoding.UTF8)) {
+                // Le flux de la réponse reste géré par le conteneur
+                json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                // Un résultat par ligne : séparateur écrit explicitement après chaque résultat
+                json.setRootValueSeparator(null);
+                List<Ligne> lot = new ArrayList<>(TAILLE_LOT);
+                int numero = 0;
+                String texte;
+                while ((texte = lecteur.readLine()) != null) {
+                    numero++;
+                    if (texte.isBlank() || (format == Format.CSV && numero == 1 && texte.strip().equalsIgnoreCase(EN_TETE_CSV)))
+                        continue;
+                    lot.add(format == Format.CSV ? lireCsv(numero, texte) : lireNdjson(numero, texte));
+                    if (lot.size() == TAILLE_LOT) {
+                        traiter(lot, json);
+                        lot.clear();
+                    }
+                }
+                traiter(lot, json);
+            }
+        };
+    }
+
+    private Ligne lireNdjson(int numero, String texte) {
+        try {
+            JsonNode noeud = objectMapper.readTree(texte);
+            if (noeud.path("login").isTextual() && noeud.path("password").isTextual())
+                return new Ligne(numero, noeud.get("login").asText(), noeud.get("password").asText());
+        } catch (IOException e) {
+            // Ligne illisible : rejetée ci-dessous
+        }
+        return new Ligne(numero, null, null);
+    }
+
+    // Le login ne contient pas de virgule : le mot de passe est tout ce qui suit la première
+    private static Ligne lireCsv(int numero, String texte) {
+        int virgule = texte.indexOf(',');
+        if (virgule < 0)
+            return new Ligne(numero, null, null);
+        return new Ligne(numero, texte.substring(0, virgule).strip(), texte.substring(virgule + 1));
+    }
+
+    private void traiter(List<Ligne> lot, JsonGenerator json) throws IOException {
+        if (lot.isEmpty())
+            return;
+
+        // Unicité des logins : dans le lot, puis contre l'index des comptes existants
+        Set<String> logins = new HashSet<>();
+        for (Ligne ligne : lot) {
+            if (ligne.login == null || ligne.password == null || ligne.login.isBlank() || ligne.password.isBlank())
+                ligne.statut = 400;
+            else if (!logins.add(ligne.login))
+                ligne.statut = 409;
+        }
+        Set<String> existants = facadeModele.getLoginsExistants(logins);
+
+        // Encodage en parallèle des seuls mots de passe à conserver
+        List<CompletableFuture<String>> encodages = new ArrayList<>(lot.size());
+        for (Ligne ligne : lot) {
+            if (ligne.statut == 0 && existants.contains(ligne.login))
+                ligne.statut = 409;
+            encodages.add(ligne.statut == 0 ? serviceHachage.encoder(ligne.password) : null);
+        }
+
+        for (int i = 0; i < lot.size(); i++) {
+            Ligne ligne = lot.get(i);
+            if (ligne.statut == 0)
+                creer(ligne, encodages.get(i));
+            json.writeStartObject();
+            json.writeNumberField("ligne", ligne.numero);
+            json.writeNumberField("statut", ligne.statut);
+            if (ligne.idDrinker != null)
+                json.writeNumberField("idDrinker", ligne.idDrinker);
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+        json.flush();
+    }
+
+    private void creer(Ligne ligne, CompletableFuture<String> encodage) {
+        try {
+            Compte compte = facadeModele.creerCompteDrinker(ligne.login, encodage.get());
+            ligne.idDrinker = compte.getId();
+            ligne.statut = 201;
+        } catch (CompteDejaExistantException e) {
+            // Login pris entre le contrôle du lot et la création
+            ligne.statut = 409;
+        } catch (InformationsIncompletesException e) {
+            ligne.statut = 400;
+        } catch (ExecutionException e) {
+            // Service de hachage saturé : ligne à réimporter
+            ligne.statut = e.getCause() instanceof RejectedExecutionException ? 503 : 400;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ligne.statut = 503;
+        }
+    }
+
+    private static final class Ligne {
+
+        private final int numero;
+        private final String login;
+        private final String password;
+        private int statut;
+        private Integer idDrinker;
+
+        private Ligne(int numero, String login, String password) {
+            this.numero = numero;
+            this.login = login;
+            this.password = password;
+        }
+
+    }
+
+}
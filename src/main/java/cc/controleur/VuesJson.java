@@ -0,0 +1,227 @@
+package cc.controleur;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.Boisson;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.machines.Machine;
+import cc.modele.data.machines.Salles;
+import cc.modele.evenements.EcouteurModele;
+import cc.modele.exceptions.FormatSalleIncorrectException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Vues JSON précalculées des comptes et des machines : octets UTF-8 de chaque entité, et des listes
+ * (tous les comptes, toutes les machines, machines d'une salle) avec leur ETag.
+ * <p>
+ * Une entité n'est sérialisée qu'à la première lecture qui suit sa création ou sa dernière modification.
+ * Une liste est assemblée à partir des octets de ses entités, sans passer par Jackson, puis réutilisée
+ * tant que sa version n'a pas changé. Les modifications sont connues par les notifications du modèle :
+ * compte créé, type de compte modifié, boisson préparée (nombre de boissons bues du compte), machine ajoutée,
+ * modèle restauré. Le nombre de boissons préparées par une machine n'apparaît pas dans sa vue JSON :
+ * une boisson préparée n'invalide que la vue du compte.
+ * <p>
+ * L'ETag d'une liste est sa version, préfixée par l'instant de démarrage : un ETag émis avant un redémarrage
+ * ne correspond à aucune liste.
+ */
+@Component
+public class VuesJson implements EcouteurModele {
+
+    private final FacadeModele facadeModele;
+    private final ObjectMapper objectMapper;
+    private final String demarrage = Long.toString(System.currentTimeMillis(), 36);
+
+    // Octets de chaque entité ; retirés à chaque modification, recalculés à la lecture suivante
+    private final Map<Integer, byte[]> octetsComptes = new ConcurrentHashMap<>();
+    private final Map<Integer, byte[]> octetsMachines = new ConcurrentHashMap<>();
+
+    // Incrémentées après chaque modification : une liste n'est valide que pour la version lue avant son assemblage
+    private final AtomicLong versionComptes = new AtomicLong();
+    private final AtomicLong versionMachines = new AtomicLong();
+    private volatile Vue vueComptes;
+    private volatile Vue vueMachines;
+    // Indexé par la clé de la salle (cf. Salles)
+    private final AtomicReferenceArray<Vue> vuesSalles = new AtomicReferenceArray<>(Salles.NB_CLES);
+
+    @Autowired
+    public VuesJson(FacadeModele facadeModele, ObjectMapper objectMapper) {
+        this.facadeModele = facadeModele;
+        this.objectMapper = objectMapper;
+        facadeModele.ajouterEcouteur(this);
+    }
+
+    @Override
+    public void compteCree(Compte compte) {
+        versionComptes.incrementAndGet();
+    }
+
+    @Override
+    public void typeCompteModifie(Compte compte) {
+        octetsComptes.remove(compte.getId());
+        versionComptes.incrementAndGet();
+    }
+
+    @Override
+    public void boissonPreparee(Machine machine, Boisson boisson) {
+        octetsComptes.remove(boisson.getIdDrinker());
+        versionComptes.incrementAndGet();
+    }
+
+    @Override
+    public void machineAjoutee(Machine machine) {
+        versionMachines.incrementAndGet();
+    }
+
+    @Override
+    public void modeleRestaure() {
+        octetsComptes.clear();
+        octetsMachines.clear();
+        versionComptes.incrementAndGet();
+        versionMachines.incrementAndGet();
+    }
+
+    /**
+     * @return la vue JSON du compte
+     */
+    public byte[] getCompte(Compte compte) {
+        // Calcul atomique pour l'id : une invalidation concurrente attend la fin du calcul, puis retire le résultat
+        return octetsComptes.computeIfAbsent(compte.getId(), id -> serialiser(compte));
+    }
+
+    /**
+     * @return la vue JSON de la machine (sans son historique)
+     */
+    public byte[] getMachine(Machine machine) {
+        return octetsMachines.computeIfAbsent(machine.getId(), id -> serialiser(machine));
+    }
+
+    /**
+     * @return le tableau JSON des comptes, dans l'ordre de la collection
+     */
+    public byte[] getComptes(Collection<Compte> comptes) {
+        return tableau(comptes, this::getCompte);
+    }
+
+    /**
+     * @return le tableau JSON des machines, dans l'ordre de la collection
+     */
+    public byte[] getMachines(Collection<Machine> machines) {
+        return tableau(machines, this::getMachine);
+    }
+
+    /**
+     * @return la liste de tous les comptes
+     */
+    public Vue getTousComptes() {
+        long version = versionComptes.get();
+        Vue vue = vueComptes;
+        if (vue == null || vue.version != version) {
+            vue = new Vue(version, etag("c", version), getComptes(facadeModele.getAllComptes()));
+            vueComptes = vue;
+        }
+        return vue;
+    }
+
+    /**
+     * @return la liste de toutes les machines
+     */
+    public Vue getToutesMachines() {
+        long version = versionMachines.get();
+        Vue vue = vueMachines;
+        if (vue == null || vue.version != version) {
+            vue = new Vue(version, etag("m", version), getMachines(facadeModele.getAllMachines()));
+            vueMachines = vue;
+        }
+        return vue;
+    }
+
+    /**
+     * @param salle la salle
+     * @return la liste des machines de la salle
+     * @throws FormatSalleIncorrectException si le format du nom de la salle est incorrect
+     */
+    public Vue getMachinesSalle(String salle) throws FormatSalleIncorrectException {
+        int cleSalle = facadeModele.verifierFormatSalle(salle);
+        long version = versionMachines.get();
+        Vue vue = vuesSalles.get(cleSalle);
+        if (vue == null || vue.version != version) {
+            vue = new Vue(version, etag("m", version), getMachines(facadeModele.getAllMachinesBySalle(salle)));
+            vuesSalles.set(cleSalle, vue);
+        }
+        return vue;
+    }
+
+    private String etag(String type, long version) {
+        return "\"" + type + demarrage + "-" + version + "\"";
+    }
+
+    private byte[] serialiser(Object entite) {
+        try {
+            return objectMapper.writeValueAsBytes(entite);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Octets des entités recopiés bout à bout dans un tableau alloué à la taille exacte
+    private static <T> byte[] tableau(Collection<T> entites, Function<T, byte[]> octets) {
+        List<byte[]> elements = new ArrayList<>(entites.size());
+        int taille = 2;
+        for (T entite : entites) {
+            byte[] element = octets.apply(entite);
+            elements.add(element);
+            taille += element.length;
+        }
+        taille += Math.max(0, elements.size() - 1);
+
+        byte[] tableau = new byte[taille];
+        int position = 0;
+        tableau[position++] = '[';
+        for (byte[] element : elements) {
+            if (position > 1)
+                tableau[position++] = ',';
+            System.arraycopy(element, 0, tableau, position, element.length);
+            position += element.length;
+        }
+        tableau[position] = ']';
+        return tableau;
+    }
+
+    /**
+     * Liste sérialisée, avec la version du modèle dont elle est issue.
+     */
+    public static final class Vue {
+
+        private final long version;
+        private final String etag;
+        private final byte[] octets;
+
+        private Vue(long version, String etag, byte[] octets) {
+            this.version = version;
+            this.etag = etag;
+            this.octets = octets;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public byte[] getOctets() {
+            return octets;
+        }
+
+    }
+
+}
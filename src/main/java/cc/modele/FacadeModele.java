@@ -1,18 +1,39 @@
 package cc.modele;
 
 import cc.modele.data.boissons.Boisson;
+import cc.modele.data.boissons.BoissonsCompactees;
+import cc.modele.data.boissons.FabriqueHistoriques;
+import cc.modele.data.boissons.HeureLocale;
+import cc.modele.data.boissons.HistoriqueBoissons;
+import cc.modele.data.boissons.ResumeBoissons;
+import cc.modele.data.boissons.ResumesBoissons;
 import cc.modele.data.boissons.TypeBoisson;
 import cc.modele.data.comptes.Compte;
 import cc.modele.data.comptes.TypeCompte;
 import cc.modele.data.machines.Machine;
+import cc.modele.data.machines.Salles;
+import cc.modele.evenements.EcouteurModele;
+import cc.modele.evenements.OperationModele;
+import cc.modele.evenements.SondeModele;
 import cc.modele.exceptions.*;
-import org.apache.tomcat.util.codec.binary.StringUtils;
+import cc.modele.identifiants.ServiceIdentifiants;
+import cc.modele.persistance.JournalModele;
+import cc.modele.registres.RegistreComptes;
+import cc.modele.registres.RegistreMachines;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
@@ -23,8 +44,74 @@ public class FacadeModele {
 
     // TODO compléter la classe et les méthodes
 
-    List<Compte> tousLesComptes = new ArrayList<>();
-    List<Machine> listeMachine = new ArrayList<>();
+    // Puissance de 2
+    private static final int NB_VERROUS_COMPTES = 64;
+
+    private final RegistreComptes registreComptes = new RegistreComptes();
+    private final RegistreMachines registreMachines = new RegistreMachines();
+    private final ServiceIdentifiants serviceIdentifiants;
+    private final FabriqueHistoriques fabriqueHistoriques;
+    private final List<EcouteurModele> ecouteurs = new CopyOnWriteArrayList<>();
+    private final BoissonsCompactees boissonsCompactees = new BoissonsCompactees();
+    // Boissons détaillées restaurées, résumées pour les écouteurs : uniquement pendant la reprise
+    private ResumesBoissons boissonsRestaurees = new ResumesBoissons();
+    private final HeureLocale heureRestauration = new HeureLocale(ZoneId.systemDefault());
+    private final ReentrantLock verrouCompactage = new ReentrantLock();
+    // Verrous des comptes, répartis par id : un verrou par compte coûterait trop cher en mémoire
+    private final ReentrantLock[] verrousComptes = new ReentrantLock[NB_VERROUS_COMPTES];
+    private volatile JournalModele journal = JournalModele.AUCUN;
+    private volatile SondeModele sonde = SondeModele.AUCUNE;
+
+    public FacadeModele() {
+        this(new ServiceIdentifiants());
+    }
+
+    public FacadeModele(ServiceIdentifiants serviceIdentifiants) {
+        this(serviceIdentifiants, FabriqueHistoriques.EN_MEMOIRE);
+    }
+
+    @Autowired
+    public FacadeModele(ServiceIdentifiants serviceIdentifiants, FabriqueHistoriques fabriqueHistoriques) {
+        this.serviceIdentifiants = serviceIdentifiants;
+        this.fabriqueHistoriques = fabriqueHistoriques;
+        for (int i = 0; i < NB_VERROUS_COMPTES; i++)
+            verrousComptes[i] = new ReentrantLock();
+    }
+
+    /**
+     * Abonne un écouteur aux modifications du modèle.
+     *
+     * @param ecouteur l'écouteur à notifier après chaque modification
+     */
+    public void ajouterEcouteur(EcouteurModele ecouteur) {
+        ecouteurs.add(ecouteur);
+    }
+
+    /**
+     * Branche le journal dans lequel chaque modification est écrite avant de rendre la main à l'appelant.
+     *
+     * @param journal le journal (JournalModele.AUCUN pour ne rien persister)
+     */
+    public void setJournal(JournalModele journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Branche la sonde qui mesure la durée de chaque opération de la façade.
+     *
+     * @param sonde la sonde (SondeModele.AUCUNE pour ne rien mesurer)
+     */
+    public void setSonde(SondeModele sonde) {
+        this.sonde = sonde;
+    }
+
+    public int getNbComptes() {
+        return registreComptes.taille();
+    }
+
+    public int getNbMachines() {
+        return registreMachines.taille();
+    }
 
     /**
      * Créer un nouveau compte de type "drinker".
@@ -36,17 +123,26 @@ public class FacadeModele {
      * @throws InformationsIncompletesException si les informations fournies sont incomplètes (login ou password vide)
      */
     public Compte creerCompteDrinker(String login, String password) throws InformationsIncompletesException, CompteDejaExistantException {
-
-        if (login == null || password == null || login.isBlank() || password.isBlank())
-            throw new InformationsIncompletesException();
-
-        Optional<Compte> drinkerExistant = tousLesComptes.stream().filter(compte -> compte.getLogin().equals(login)).findAny();
-        if (drinkerExistant.isPresent())
-            throw new CompteDejaExistantException();
-
-        Compte drinker = new Compte(login,password,"drinker");
-        tousLesComptes.add(drinker);
-        return drinker;
+        long debut = sonde.debut();
+        try {
+            if (login == null || password == null || login.isBlank() || password.isBlank())
+                throw new InformationsIncompletesException();
+
+            if (registreComptes.contientLogin(login))
+                throw new CompteDejaExistantException();
+
+            Compte drinker = new Compte(serviceIdentifiants.prochainIdCompte(), login, password, TypeCompte.DRINKER);
+            registreComptes.reserver(drinker);
+            // Création journalisée avant que le compte soit accessible par son id : aucun enregistrement qui le concerne ne peut la précéder
+            long sequence = journal.compteCree(drinker);
+            registreComptes.publier(drinker);
+            journal.attendre(sequence);
+            for (EcouteurModele ecouteur : ecouteurs)
+                ecouteur.compteCree(drinker);
+            return drinker;
+        } finally {
+            sonde.fin(OperationModele.CREER_COMPTE_DRINKER, debut);
+        }
     }
 
     /**
@@ -59,16 +155,26 @@ public class FacadeModele {
      * @throws InformationsIncompletesException si les informations fournies sont incomplètes (login ou password vide)
      */
     public Compte creerCompteFabulous(String login, String password) throws InformationsIncompletesException, CompteDejaExistantException {
-        if (login == null || password == null || login.isBlank() || password.isBlank())
-            throw new InformationsIncompletesException();
-
-        Optional<Compte> fabulousExistant = tousLesComptes.stream().filter(compte -> compte.getLogin().equals(login)).findAny();
-        if (fabulousExistant.isPresent())
-            throw new CompteDejaExistantException();
-
-        Compte fabulous = new Compte(login,password,"fabulous");
-        tousLesComptes.add(fabulous);
-        return fabulous;
+        long debut = sonde.debut();
+        try {
+            if (login == null || password == null || login.isBlank() || password.isBlank())
+                throw new InformationsIncompletesException();
+
+            if (registreComptes.contientLogin(login))
+                throw new CompteDejaExistantException();
+
+            Compte fabulous = new Compte(serviceIdentifiants.prochainIdCompte(), login, password, TypeCompte.FABULOUS);
+            registreComptes.reserver(fabulous);
+            // Création journalisée avant que le compte soit accessible par son id : aucun enregistrement qui le concerne ne peut la précéder
+            long sequence = journal.compteCree(fabulous);
+            registreComptes.publier(fabulous);
+            journal.attendre(sequence);
+            for (EcouteurModele ecouteur : ecouteurs)
+                ecouteur.compteCree(fabulous);
+            return fabulous;
+        } finally {
+            sonde.fin(OperationModele.CREER_COMPTE_FABULOUS, debut);
+        }
     }
 
     /**
@@ -77,8 +183,28 @@ public class FacadeModele {
      * @return une collection de tous les comptes
      */
     public Collection<Compte> getAllComptes() {
+        long debut = sonde.debut();
+        try {
+            return registreComptes.getTous();
+        } finally {
+            sonde.fin(OperationModele.GET_ALL_COMPTES, debut);
+        }
+    }
 
-        return tousLesComptes;
+    /**
+     * Retourne une page de comptes, triés par id.
+     *
+     * @param apres  l'id du dernier compte de la page précédente (exclu), ou null pour la première page
+     * @param limite le nombre maximal de comptes de la page
+     * @return les comptes de la page (au plus {@code limite})
+     */
+    public List<Compte> getComptesApres(Integer apres, int limite) {
+        long debut = sonde.debut();
+        try {
+            return registreComptes.getPage(apres, limite);
+        } finally {
+            sonde.fin(OperationModele.GET_COMPTES_APRES, debut);
+        }
     }
 
     /**
@@ -89,11 +215,31 @@ public class FacadeModele {
      * @throws CompteInconnuException si aucun compte n'existe avec cet identifiant
      */
     public Compte getCompteById(Integer idCompte) throws CompteInconnuException {
+        long debut = sonde.debut();
+        try {
+            return registreComptes.getParId(idCompte);
+        } finally {
+            sonde.fin(OperationModele.GET_COMPTE_BY_ID, debut);
+        }
+    }
 
-        Optional<Compte> optionalCompte = tousLesComptes.stream().filter(compte -> compte.getId().equals(idCompte)).findAny();
-        if (optionalCompte.isEmpty())
-            throw new CompteInconnuException();
-        return optionalCompte.get();
+    /**
+     * Contrôle d'unicité d'un lot de logins, en une passe sur l'index des logins.
+     *
+     * @param logins les logins à contrôler
+     * @return les logins du lot déjà utilisés par un compte
+     */
+    public Set<String> getLoginsExistants(Collection<String> logins) {
+        long debut = sonde.debut();
+        try {
+            Set<String> existants = new HashSet<>();
+            for (String login : logins)
+                if (registreComptes.contientLogin(login))
+                    existants.add(login);
+            return existants;
+        } finally {
+            sonde.fin(OperationModele.GET_LOGINS_EXISTANTS, debut);
+        }
     }
 
     /**
@@ -104,10 +250,12 @@ public class FacadeModele {
      * @throws CompteInconnuException si aucun compte n'existe avec ce login
      */
     public Compte getCompteByLogin(String login) throws CompteInconnuException {
-        Optional<Compte> optionalCompte = tousLesComptes.stream().filter(compte -> compte.getLogin().equals(login)).findAny();
-        if (optionalCompte.isEmpty())
-            throw new CompteInconnuException();
-        return optionalCompte.get();
+        long debut = sonde.debut();
+        try {
+            return registreComptes.getParLogin(login);
+        } finally {
+            sonde.fin(OperationModele.GET_COMPTE_BY_LOGIN, debut);
+        }
     }
 
     /**
@@ -120,15 +268,29 @@ public class FacadeModele {
      * @throws TypeCompteInconnuException si le nouveau type de compte n'existe pas
      */
     public Compte modifierTypeCompte(Integer idCompte, String nouveauType) throws TypeCompteInconnuException, CompteInconnuException {
-
-        if (!TypeCompte.getAllTypes().contains(nouveauType))
-            throw new TypeCompteInconnuException();
-
-        Compte compte = getCompteById(idCompte);
-        int index = tousLesComptes.indexOf(compte);
-        compte.setType(nouveauType);
-        tousLesComptes.set(index,compte);
-        return compte;
+        long debut = sonde.debut();
+        try {
+            if (!TypeCompte.getAllTypes().contains(nouveauType))
+                throw new TypeCompteInconnuException();
+
+            Compte compte = registreComptes.getParId(idCompte);
+            long sequence;
+            // Le journal reçoit les modifications d'un même compte dans l'ordre où elles sont appliquées
+            ReentrantLock verrouCompte = getVerrouCompte(compte.getId());
+            verrouCompte.lock();
+            try {
+                compte.setType(nouveauType);
+                sequence = journal.typeCompteModifie(compte);
+            } finally {
+                verrouCompte.unlock();
+            }
+            journal.attendre(sequence);
+            for (EcouteurModele ecouteur : ecouteurs)
+                ecouteur.typeCompteModifie(compte);
+            return compte;
+        } finally {
+            sonde.fin(OperationModele.MODIFIER_TYPE_COMPTE, debut);
+        }
     }
 
     /**
@@ -144,23 +306,32 @@ public class FacadeModele {
      * @throws FormatSalleIncorrectException    si le format du nom de la salle est incorrect (doit être de la forme "1 lettre suivie de 2 chiffres", p.ex. "A38")
      */
     public Machine ajouterMachine(String nom, String typeBoissons, String salle) throws MachineDejaExistanteException, InformationsIncompletesException, TypeBoissonInconnuException, FormatSalleIncorrectException {
-        if (nom == null || typeBoissons == null || salle == null || salle.isBlank() || nom.isBlank() || typeBoissons.isBlank())
-            throw new InformationsIncompletesException();
-        if (!TypeBoisson.getAllTypes().contains(typeBoissons))
-            throw new TypeBoissonInconnuException();
-        char charArray[] = salle.toCharArray();
-        if (Character.isDigit(charArray[0]) || salle.length() != 3)
-            throw new FormatSalleIncorrectException();
-
-
-
-
-        Optional<Machine> optionalMachine = listeMachine.stream().filter(machine -> machine.getNom().equals(nom)).findAny();
-        if (optionalMachine.isPresent())
-            throw new MachineDejaExistanteException();
-        Machine machine = new Machine(nom, typeBoissons, salle);
-        listeMachine.add(machine);
-        return machine;
+        long debut = sonde.debut();
+        try {
+            if (nom == null || typeBoissons == null || salle == null || salle.isBlank() || nom.isBlank() || typeBoissons.isBlank())
+                throw new InformationsIncompletesException();
+            if (!TypeBoisson.getAllTypes().contains(typeBoissons))
+                throw new TypeBoissonInconnuException();
+            cleSalle(salle);
+
+
+
+
+            if (registreMachines.contientNom(nom))
+                throw new MachineDejaExistanteException();
+            int idMachine = serviceIdentifiants.prochainIdMachine();
+            Machine machine = new Machine(idMachine, nom, typeBoissons, salle, fabriqueHistoriques.creer(idMachine), registreComptes::trouverParId);
+            registreMachines.reserver(machine);
+            // Ajout journalisé avant que la machine soit accessible par son id : aucune boisson ne peut le précéder dans le journal
+            long sequence = journal.machineAjoutee(machine);
+            registreMachines.publier(machine);
+            journal.attendre(sequence);
+            for (EcouteurModele ecouteur : ecouteurs)
+                ecouteur.machineAjoutee(machine);
+            return machine;
+        } finally {
+            sonde.fin(OperationModele.AJOUTER_MACHINE, debut);
+        }
     }
 
     /**
@@ -169,8 +340,28 @@ public class FacadeModele {
      * @return une collection de toutes les machines
      */
     public Collection<Machine> getAllMachines() {
+        long debut = sonde.debut();
+        try {
+            return registreMachines.getToutes();
+        } finally {
+            sonde.fin(OperationModele.GET_ALL_MACHINES, debut);
+        }
+    }
 
-        return listeMachine;
+    /**
+     * Retourne une page de machines, triées par id.
+     *
+     * @param apres  l'id de la dernière machine de la page précédente (exclu), ou null pour la première page
+     * @param limite le nombre maximal de machines de la page
+     * @return les machines de la page (au plus {@code limite})
+     */
+    public List<Machine> getMachinesApres(Integer apres, int limite) {
+        long debut = sonde.debut();
+        try {
+            return registreMachines.getPage(apres, limite);
+        } finally {
+            sonde.fin(OperationModele.GET_MACHINES_APRES, debut);
+        }
     }
 
     /**
@@ -181,18 +372,35 @@ public class FacadeModele {
      * @throws FormatSalleIncorrectException si le format du nom de la salle est incorrect (doit être de la forme "1 lettre suivie de 2 chiffres", p.ex. "A38")
      */
     public Collection<Machine> getAllMachinesBySalle(String salle) throws FormatSalleIncorrectException {
+        long debut = sonde.debut();
+        try {
+            return registreMachines.getParSalle(cleSalle(salle));
+        } finally {
+            sonde.fin(OperationModele.GET_ALL_MACHINES_BY_SALLE, debut);
+        }
+    }
 
-        char charArray[] = salle.toCharArray();
-        if (Character.isDigit(charArray[0]) || salle.length() != 3)
-            throw new FormatSalleIncorrectException();
-
-        List<Machine> machinesDeLaSalle = new ArrayList<>();
-        for (Machine machine : listeMachine){
-            if (machine.getSalle().equals(salle))
-                machinesDeLaSalle.add(machine);
-
+    /**
+     * Vérifie le format du nom d'une salle.
+     *
+     * @param salle le nom de la salle
+     * @return la clé de la salle (cf. {@link Salles})
+     * @throws FormatSalleIncorrectException si le format du nom de la salle est incorrect (doit être de la forme "1 lettre suivie de 2 chiffres", p.ex. "A38")
+     */
+    public int verifierFormatSalle(String salle) throws FormatSalleIncorrectException {
+        long debut = sonde.debut();
+        try {
+            return cleSalle(salle);
+        } finally {
+            sonde.fin(OperationModele.VERIFIER_FORMAT_SALLE, debut);
         }
-        return machinesDeLaSalle;
+    }
+
+    private static int cleSalle(String salle) throws FormatSalleIncorrectException {
+        int cle = Salles.cle(salle);
+        if (cle == Salles.CLE_INVALIDE)
+            throw new FormatSalleIncorrectException();
+        return cle;
     }
 
     /**
@@ -203,11 +411,12 @@ public class FacadeModele {
      * @throws MachineInconnueException si aucune machine n'existe avec cet identifiant
      */
     public Machine getMachineById(Integer idMachine) throws MachineInconnueException {
-
-        Optional<Machine> optionalMachine = listeMachine.stream().filter(machine -> machine.getId().equals(idMachine)).findAny();
-        if (optionalMachine.isEmpty())
-            throw new MachineInconnueException();
-        return optionalMachine.get();
+        long debut = sonde.debut();
+        try {
+            return registreMachines.getParId(idMachine);
+        } finally {
+            sonde.fin(OperationModele.GET_MACHINE_BY_ID, debut);
+        }
     }
 
     /**
@@ -218,10 +427,12 @@ public class FacadeModele {
      * @throws MachineInconnueException si aucune machine n'existe avec ce nom
      */
     public Machine getMachineByNom(String nom) throws MachineInconnueException {
-        Optional<Machine> optionalMachine = listeMachine.stream().filter(machine -> machine.getNom().equals(nom)).findAny();
-        if (optionalMachine.isEmpty())
-            throw new MachineInconnueException();
-        return optionalMachine.get();
+        long debut = sonde.debut();
+        try {
+            return registreMachines.getParNom(nom);
+        } finally {
+            sonde.fin(OperationModele.GET_MACHINE_BY_NOM, debut);
+        }
     }
 
     /**
@@ -238,16 +449,188 @@ public class FacadeModele {
      * @throws NbSucresIncorrectException  si le nombre de sucres est incorrect
      */
     public Boisson preparerBoisson(Integer idMachine, String typeBoisson, Integer idCompte, Integer nbSucres) throws CompteInconnuException, MachineInconnueException, TypeBoissonInconnuException, NbSucresIncorrectException {
-       Compte compte = getCompteById(idCompte);
-       Machine machine = getMachineById(idMachine);
-       if (nbSucres < 0)
-           throw new NbSucresIncorrectException();
-       Boisson boisson = machine.preparerBoisson(compte,nbSucres);
-       if (!TypeBoisson.getAllTypes().contains(machine.getTypeBoissons()))
-           throw new TypeBoissonInconnuException();
+        long debut = sonde.debut();
+        try {
+            Compte compte = registreComptes.getParId(idCompte);
+            Machine machine = registreMachines.getParId(idMachine);
+            if (!TypeBoisson.getAllTypes().contains(typeBoisson))
+                throw new TypeBoissonInconnuException();
+            if (nbSucres == null || nbSucres < 0 || nbSucres > HistoriqueBoissons.NB_SUCRES_MAX)
+                throw new NbSucresIncorrectException();
+
+            long dateMillis = System.currentTimeMillis();
+            Boisson boisson;
+            long sequence;
+            // Le journal reçoit les boissons d'une machine dans l'ordre de son historique
+            ReentrantLock verrouMachine = machine.getVerrou();
+            verrouMachine.lock();
+            try {
+                int index = machine.getNbBoissonsPreparees();
+                boisson = machine.preparerBoisson(compte, nbSucres, dateMillis);
+                sequence = journal.boissonPreparee(machine, index, dateMillis, compte.getId(), nbSucres);
+            } finally {
+                verrouMachine.unlock();
+            }
+            journal.attendre(sequence);
+            compte.incrementerNbBoissonsBues();
+            for (EcouteurModele ecouteur : ecouteurs)
+                ecouteur.boissonPreparee(machine, boisson);
+            return boisson;
+        } finally {
+            sonde.fin(OperationModele.PREPARER_BOISSON, debut);
+        }
+    }
+
+
+    /**
+     * Restaure un compte persisté, sans le journaliser ni notifier les écouteurs.
+     * Réservé à la reprise de l'état au démarrage ; sans effet si un compte existe déjà avec cet id.
+     *
+     * @return le compte restauré (ou celui déjà présent)
+     * @throws CompteDejaExistantException si un autre compte utilise déjà ce login
+     */
+    public Compte restaurerCompte(Integer idCompte, String login, String password, String type) throws CompteDejaExistantException {
+        Compte compte = registreComptes.trouverParId(idCompte);
+        if (compte != null)
+            return compte;
+        compte = new Compte(idCompte, login, password, type);
+        registreComptes.ajouter(compte);
+        serviceIdentifiants.getComptes().avancer(idCompte);
+        return compte;
+    }
+
+    /**
+     * Restaure le type persisté d'un compte, sans le journaliser ni notifier les écouteurs.
+     *
+     * @throws CompteInconnuException si aucun compte n'existe avec cet identifiant
+     */
+    public void restaurerTypeCompte(Integer idCompte, String type) throws CompteInconnuException {
+        getCompteById(idCompte).setType(type);
+    }
+
+    /**
+     * Restaure une machine persistée, sans la journaliser ni notifier les écouteurs.
+     * Réservé à la reprise de l'état au démarrage ; sans effet si une machine existe déjà avec cet id.
+     *
+     * @return la machine restaurée (ou celle déjà présente)
+     * @throws MachineDejaExistanteException si une autre machine utilise déjà ce nom
+     */
+    public Machine restaurerMachine(Integer idMachine, String nom, String typeBoissons, String salle) throws MachineDejaExistanteException {
+        Machine machine = registreMachines.trouverParId(idMachine);
+        if (machine != null)
+            return machine;
+        machine = new Machine(idMachine, nom, typeBoissons, salle, fabriqueHistoriques.creer(idMachine), registreComptes::trouverParId);
+        registreMachines.ajouter(machine);
+        serviceIdentifiants.getMachines().avancer(idMachine);
+        return machine;
+    }
 
+    /**
+     * Restaure une boisson persistée dans l'historique d'une machine, sans la journaliser ni notifier les écouteurs.
+     * Les boissons déjà présentes dans l'historique (position inférieure à sa taille) sont ignorées ;
+     * les autres sont ajoutées aux {@link #getBoissonsRestaurees() résumés des boissons restaurées}.
+     *
+     * @param index la position de la boisson dans l'historique de la machine
+     * @return true si la boisson a été ajoutée
+     * @throws MachineInconnueException si aucune machine n'existe avec cet identifiant
+     * @throws IllegalStateException    si des boissons précédentes de la machine manquent
+     */
+    public boolean restaurerBoisson(Integer idMachine, int index, long dateMillis, int idCompte, int nbSucres) throws MachineInconnueException {
+        HistoriqueBoissons historique = getMachineById(idMachine).getHistorique();
+        if (index < historique.taille())
+            return false;
+        if (index > historique.taille())
+            throw new IllegalStateException("Historique incomplet pour la machine " + idMachine + " : boisson " + index + " attendue en position " + historique.taille());
+        historique.ajouter(dateMillis, idCompte, nbSucres);
+        boissonsRestaurees.ajouter(idMachine, idCompte, heureRestauration.heure(dateMillis), nbSucres);
+        return true;
+    }
+
+    /**
+     * @return les résumés des boissons détaillées restaurées, chargés avec l'instantané puis complétés par la relecture
+     * du journal ; réservé à la reprise de l'état persisté, jusqu'à la notification des écouteurs (vides ensuite)
+     */
+    public ResumesBoissons getBoissonsRestaurees() {
+        return boissonsRestaurees;
+    }
+
+    /**
+     * Compacte les boissons préparées avant une date dans les historiques de toutes les machines
+     * (cf. {@link HistoriqueBoissons#compacter(long, HistoriqueBoissons.Visiteur)}), en les ajoutant aux résumés des boissons compactées.
+     *
+     * @param avantMillis la date limite (exclue), en millisecondes epoch
+     * @return le nombre de boissons compactées
+     */
+    public long compacterHistoriques(long avantMillis) {
+        ZoneId zone = ZoneId.systemDefault();
+        verrouCompactage.lock();
+        try {
+            long nbCompactees = 0;
+            for (Machine machine : registreMachines.getToutes()) {
+                int idMachine = machine.getId();
+                nbCompactees += machine.getHistorique().compacter(avantMillis, (dateMillis, idCompte, nbSucres) -> {
+                    int heure = LocalDateTime.ofInstant(Instant.ofEpochMilli(dateMillis), zone).getHour();
+                    boissonsCompactees.ajouter(idMachine, idCompte, heure, nbSucres);
+                });
+            }
+            return nbCompactees;
+        } finally {
+            verrouCompactage.unlock();
+        }
+    }
+
+    /**
+     * @return les résumés des boissons compactées, à ne lire que sous le {@link #getVerrouCompactage() verrou de compactage}
+     */
+    public BoissonsCompactees getBoissonsCompactees() {
+        return boissonsCompactees;
+    }
+
+    /**
+     * @return le verrou qui ordonne les modifications d'un compte entre le modèle et le journal
+     * (partagé par plusieurs comptes, à ne tenir que le temps d'une modification)
+     */
+    public ReentrantLock getVerrouCompte(int idCompte) {
+        return verrousComptes[idCompte & (NB_VERROUS_COMPTES - 1)];
+    }
+
+    /**
+     * @return le verrou qui exclut les compactages : tant qu'il est tenu, les historiques détaillés
+     * et les résumés des boissons compactées sont cohérents entre eux
+     */
+    public Lock getVerrouCompactage() {
+        return verrouCompactage;
+    }
+
+    /**
+     * Termine la reprise de l'état persisté : recalcule les compteurs dérivés des résumés des boissons restaurées
+     * et compactées, sans reparcourir les historiques, et prévient les écouteurs, qui peuvent reconstruire leur propre
+     * état à partir des mêmes résumés. Les résumés des boissons restaurées sont ensuite libérés.
+     */
+    public void terminerRestauration() {
+        // Dimensionné sur les comptes existants, pas sur la marque haute de la séquence (qui peut réserver des ids inutilisés)
+        int idCompteMax = 0;
+        for (Compte compte : registreComptes.getTous())
+            idCompteMax = Math.max(idCompteMax, compte.getId());
+        long[] nbBoissonsParCompte = new long[idCompteMax + 1];
+        ajouterNbBoissons(nbBoissonsParCompte, boissonsRestaurees);
+        verrouCompactage.lock();
+        try {
+            ajouterNbBoissons(nbBoissonsParCompte, boissonsCompactees);
+        } finally {
+            verrouCompactage.unlock();
+        }
+        for (Compte compte : registreComptes.getTous())
+            compte.setNbBoissonsBues(nbBoissonsParCompte[compte.getId()]);
+        for (EcouteurModele ecouteur : ecouteurs)
+            ecouteur.modeleRestaure();
+        boissonsRestaurees = new ResumesBoissons();
+    }
 
-       return boisson;
+    private static void ajouterNbBoissons(long[] nbBoissonsParCompte, ResumesBoissons resumes) {
+        for (Map.Entry<Integer, ResumeBoissons> resume : resumes.getParCompte().entrySet())
+            if (resume.getKey() < nbBoissonsParCompte.length)
+                nbBoissonsParCompte[resume.getKey()] += resume.getValue().getNbBoissons();
     }
 
 }
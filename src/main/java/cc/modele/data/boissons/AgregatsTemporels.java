@@ -0,0 +1,146 @@
+package cc.modele.data.boissons;
+
+import java.util.Map;
+
+/**
+ * Agrégats temporels d'un historique : nombre de boissons (et total des sucres) par minute, par heure et par jour.
+ * <p>
+ * Une requête sur une plage de dates combine les résolutions : jours entiers au milieu de la plage, puis heures
+ * et minutes aux bords. Son coût dépend du nombre d'intervalles parcourus, pas du nombre de boissons.
+ * Les minutes peuvent être purgées au-delà d'une durée de rétention : les bords de plage sont alors arrondis
+ * à l'heure (un intervalle est compté si son début est dans la plage).
+ */
+public class AgregatsTemporels {
+
+    private final SerieTemporelle[] series;
+
+    public AgregatsTemporels() {
+        Resolution[] resolutions = Resolution.values();
+        series = new SerieTemporelle[resolutions.length];
+        for (Resolution resolution : resolutions)
+            series[resolution.ordinal()] = new SerieTemporelle(resolution);
+    }
+
+    /**
+     * Visiteur des pages des séries, pour la persistance.
+     */
+    public interface VisiteurPages {
+        void visiter(Resolution resolution, long premierIntervalle, long numeroPage, long[] page);
+    }
+
+    // Appelé par l'historique, sous son verrou
+    void ajouter(long dateMillis, int nbSucres) {
+        for (SerieTemporelle serie : series)
+            serie.ajouter(dateMillis, nbSucres);
+    }
+
+    /**
+     * @param debutMillis le début de la plage (inclus), en millisecondes epoch
+     * @param finMillis   la fin de la plage (exclue), en millisecondes epoch
+     * @return le nombre de boissons préparées dans la plage
+     */
+    public long compter(long debutMillis, long finMillis) {
+        return compter(series.length - 1, debutMillis, finMillis);
+    }
+
+    /**
+     * Sous-échantillonnage : nombre de boissons par pas de temps.
+     *
+     * @param pasMillis le pas, multiple d'une minute
+     * @return le nombre de boissons de chaque pas de la plage (le dernier pas peut être tronqué par la fin de plage)
+     */
+    public long[] reechantillonner(long debutMillis, long finMillis, long pasMillis) {
+        if (pasMillis <= 0 || pasMillis % Resolution.MINUTE.getDureeMillis() != 0)
+            throw new IllegalArgumentException("Le pas doit être un multiple d'une minute : " + pasMillis);
+        int nbPas = (int) Math.max(0, (finMillis - debutMillis + pasMillis - 1) / pasMillis);
+        long[] valeurs = new long[nbPas];
+        for (int i = 0; i < nbPas; i++) {
+            long debutPas = debutMillis + i * pasMillis;
+            valeurs[i] = compter(debutPas, Math.min(debutPas + pasMillis, finMillis));
+        }
+        return valeurs;
+    }
+
+    /**
+     * Ajoute au cumul le nombre de boissons de chaque intervalle de la résolution dont le début est dans la plage.
+     *
+     * @param cumul le cumul, indexé à partir de l'intervalle contenant {@code debutMillis}
+     */
+    public void cumuler(Resolution resolution, long debutMillis, long finMillis, long[] cumul) {
+        SerieTemporelle serie = series[resolution.ordinal()];
+        long duree = resolution.getDureeMillis();
+        long premier = Math.floorDiv(debutMillis, duree);
+        long fin = Math.min(premier + cumul.length, Math.floorDiv(finMillis - 1, duree) + 1);
+        for (long intervalle = premier; intervalle < fin; intervalle++)
+            cumul[(int) (intervalle - premier)] += serie.compter(intervalle, intervalle + 1);
+    }
+
+    /**
+     * Supprime les intervalles d'une résolution entièrement antérieurs à une date.
+     */
+    public void purgerAvant(Resolution resolution, long dateMillis) {
+        series[resolution.ordinal()].purgerAvant(dateMillis);
+    }
+
+    public void parcourirPages(VisiteurPages visiteur) {
+        for (SerieTemporelle serie : series)
+            for (Map.Entry<Long, long[]> page : serie.copierPages().entrySet())
+                visiteur.visiter(serie.getResolution(), serie.getPremierIntervalle(), page.getKey(), page.getValue());
+    }
+
+    /**
+     * Restaure une page persistée ; les boissons restaurées ensuite dans l'historique ne doivent pas être réagrégées.
+     */
+    public void restaurerPage(Resolution resolution, long premierIntervalle, long numeroPage, long[] page) {
+        if (page.length != SerieTemporelle.taillePage())
+            throw new IllegalArgumentException("Taille de page incorrecte : " + page.length);
+        series[resolution.ordinal()].restaurer(premierIntervalle, numeroPage, page);
+    }
+
+    public static int getTaillePage() {
+        return SerieTemporelle.taillePage();
+    }
+
+    // Copie détachée, prise sous le verrou de l'historique
+    AgregatsTemporels copier() {
+        AgregatsTemporels copie = new AgregatsTemporels();
+        for (SerieTemporelle serie : series) {
+            SerieTemporelle serieCopie = copie.series[serie.getResolution().ordinal()];
+            serieCopie.restaurer(serie.getPremierIntervalle());
+            serie.copierPages().forEach((numero, page) -> serieCopie.restaurer(serie.getPremierIntervalle(), numero, page));
+        }
+        return copie;
+    }
+
+    private long compter(int niveau, long debut, long fin) {
+        if (debut >= fin)
+            return 0;
+        SerieTemporelle serie = series[niveau];
+        long duree = serie.getResolution().getDureeMillis();
+        // Intervalles dont le début est dans la plage
+        long premierDebutDansPlage = Math.floorDiv(debut - 1, duree) + 1;
+        long finDebutsDansPlage = Math.floorDiv(fin - 1, duree) + 1;
+        if (niveau == 0)
+            return serie.compter(premierDebutDansPlage, finDebutsDansPlage);
+
+        // Intervalles entièrement contenus dans la plage
+        long premierEntier = premierDebutDansPlage;
+        long finEntiers = Math.floorDiv(fin, duree);
+        SerieTemporelle plusFine = series[niveau - 1];
+        if (premierEntier >= finEntiers)
+            return plusFine.couvre(debut) ? compter(niveau - 1, debut, fin) : serie.compter(premierDebutDansPlage, finDebutsDansPlage);
+
+        long total = serie.compter(premierEntier, finEntiers);
+        long debutEntiers = premierEntier * duree;
+        long finEntiersMillis = finEntiers * duree;
+        // Bords : résolution plus fine si elle est disponible, sinon arrondi à l'intervalle courant
+        if (plusFine.couvre(debut))
+            total += compter(niveau - 1, debut, debutEntiers);
+        if (plusFine.couvre(finEntiersMillis))
+            total += compter(niveau - 1, finEntiersMillis, fin);
+        else
+            total += serie.compter(finEntiers, finDebutsDansPlage);
+        return total;
+    }
+
+}
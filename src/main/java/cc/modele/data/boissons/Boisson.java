@@ -1,6 +1,7 @@
 package cc.modele.data.boissons;
 
 import cc.modele.data.comptes.Compte;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import java.time.LocalDateTime;
 
@@ -22,10 +23,15 @@ public class Boisson {
         return dateHeurePreparation;
     }
 
+    @JsonIgnore
     public Compte getCompte() {
         return compte;
     }
 
+    public Integer getIdDrinker() {
+        return compte == null ? null : compte.getId();
+    }
+
     public String getType() {
         return type;
     }
@@ -0,0 +1,10 @@
+package cc.modele.data.boissons;
+
+/**
+ * Résumés des boissons compactées (retirées des historiques détaillés), par machine et par compte.
+ * <p>
+ * Les résumés ne changent qu'au compactage. Ils ne sont lus et modifiés que sous le verrou de compactage du modèle,
+ * qui rend l'instantané cohérent : chaque boisson y est soit détaillée dans l'historique de sa machine, soit résumée ici.
+ */
+public class BoissonsCompactees extends ResumesBoissons {
+}
@@ -0,0 +1,15 @@
+package cc.modele.data.boissons;
+
+/**
+ * Création de l'historique de boissons d'une nouvelle machine.
+ */
+public interface FabriqueHistoriques {
+
+    /**
+     * Historiques stockés dans le tas.
+     */
+    FabriqueHistoriques EN_MEMOIRE = idMachine -> new HistoriqueBoissons();
+
+    HistoriqueBoissons creer(int idMachine);
+
+}
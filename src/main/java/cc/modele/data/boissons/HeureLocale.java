@@ -0,0 +1,34 @@
+package cc.modele.data.boissons;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Heure locale (0 à 23) de dates en millisecondes epoch, pour les parcours d'historiques triés par date.
+ * <p>
+ * Les décalages horaires étant des multiples d'un quart d'heure, l'heure n'est recalculée qu'au changement de quart d'heure.
+ * Non thread-safe : une instance par parcours.
+ */
+public final class HeureLocale {
+
+    private static final long MILLIS_QUART_HEURE = 15 * 60 * 1000L;
+
+    private final ZoneId zone;
+    private long quartHeure = Long.MIN_VALUE;
+    private int heure;
+
+    public HeureLocale(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    public int heure(long dateMillis) {
+        long quartHeureDate = Math.floorDiv(dateMillis, MILLIS_QUART_HEURE);
+        if (quartHeureDate != quartHeure) {
+            quartHeure = quartHeureDate;
+            heure = LocalDateTime.ofInstant(Instant.ofEpochMilli(dateMillis), zone).getHour();
+        }
+        return heure;
+    }
+
+}
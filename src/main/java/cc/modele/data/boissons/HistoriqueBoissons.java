@@ -0,0 +1,439 @@
+package cc.modele.data.boissons;
+
+import cc.modele.data.comptes.Compte;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.AbstractList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+/**
+ * Historique des boissons préparées par une machine, stocké sous forme de types primitifs (cf. {@link StockageBoissons}).
+ * <p>
+ * Les ajouts sont sérialisés par un verrou (l'allocation d'un segment de stockage peut projeter un fichier) ; les lectures sont sans verrou et voient toujours un préfixe cohérent de l'historique.
+ * Chaque boisson est aussi comptée dans les {@link AgregatsTemporels} de l'historique : les boissons les plus anciennes
+ * peuvent être compactées (retirées de l'historique détaillé) sans disparaître des agrégats.
+ * Les positions restent absolues : après compactage, l'historique détaillé commence à {@link #premier()}.
+ */
+public class HistoriqueBoissons {
+
+    public static final int NB_SUCRES_MAX = 255;
+
+    private final StockageBoissons stockage;
+    private final AgregatsTemporels agregats = new AgregatsTemporels();
+    // Verrou plutôt que moniteur : un thread virtuel en attente ne bloque pas son thread porteur
+    private final ReentrantLock verrou = new ReentrantLock();
+    // Publiée après l'écriture de chaque boisson : tout index < taille est lisible sans verrou
+    private volatile int taille;
+    // Position de la plus ancienne boisson encore détaillée
+    private volatile int premier;
+    // Parcours en cours, comptés par parité de génération : un parcours lit premier après s'être compté dans la génération courante
+    private final AtomicInteger[] parcours = {new AtomicInteger(), new AtomicInteger()};
+    private volatile int generation;
+    // Stockage libérable avant cette position, dès que les parcours des générations précédentes sont terminés
+    private int aLiberer;
+    // Stockage déjà libéré avant cette position
+    private int libere;
+
+    /**
+     * Historique stocké dans le tas.
+     */
+    public HistoriqueBoissons() {
+        this(new StockageTas());
+    }
+
+    public HistoriqueBoissons(StockageBoissons stockage) {
+        this.stockage = stockage;
+    }
+
+    /**
+     * Visiteur des boissons de l'historique, sans matérialisation d'objets.
+     */
+    public interface Visiteur {
+        void visiter(long dateMillis, int idCompte, int nbSucres);
+    }
+
+    /**
+     * État de l'historique capturé pour un instantané : les agrégats correspondent exactement aux boissons [0, taille[.
+     */
+    public static final class Capture {
+
+        private final int premier;
+        private final int taille;
+        private final AgregatsTemporels agregats;
+
+        private Capture(int premier, int taille, AgregatsTemporels agregats) {
+            this.premier = premier;
+            this.taille = taille;
+            this.agregats = agregats;
+        }
+
+        public int getPremier() {
+            return premier;
+        }
+
+        public int getTaille() {
+            return taille;
+        }
+
+        public AgregatsTemporels getAgregats() {
+            return agregats;
+        }
+
+    }
+
+    /**
+     * Fin de l'historique : taille et date de la dernière boisson, lues ensemble.
+     */
+    public static final class Fin {
+
+        private final int taille;
+        private final boolean detaillee;
+        private final long derniereDateMillis;
+
+        private Fin(int taille, boolean detaillee, long derniereDateMillis) {
+            this.taille = taille;
+            this.detaillee = detaillee;
+            this.derniereDateMillis = derniereDateMillis;
+        }
+
+        public int getTaille() {
+            return taille;
+        }
+
+        /**
+         * @return false si l'historique est vide ou si sa dernière boisson est compactée : sa date n'est plus connue
+         */
+        public boolean isDetaillee() {
+            return detaillee;
+        }
+
+        public long getDerniereDateMillis() {
+            return derniereDateMillis;
+        }
+
+    }
+
+    /**
+     * Lecture des boissons détaillées à partir de la position de début lue à son ouverture : tant qu'elle n'est pas fermée,
+     * le stockage de ces boissons n'est pas libéré, même si elles sont compactées entre-temps.
+     */
+    public final class Lecture implements AutoCloseable {
+
+        private final AtomicInteger parcoursGeneration;
+        private final int premier;
+        private boolean fermee;
+
+        private Lecture() {
+            this.parcoursGeneration = commencerParcours();
+            this.premier = HistoriqueBoissons.this.premier;
+        }
+
+        /**
+         * @return la position de la plus ancienne boisson détaillée à l'ouverture de la lecture
+         */
+        public int getPremier() {
+            return premier;
+        }
+
+        /**
+         * Parcourt les boissons des positions [{@link #getPremier()}, fin[, dans l'ordre de préparation.
+         *
+         * @param fin      la position de fin (exclue), au plus la taille de l'historique
+         * @param visiteur le visiteur appelé pour chaque boisson
+         */
+        public void parcourir(int fin, Visiteur visiteur) {
+            if (fermee || fin > taille)
+                throw new IllegalStateException("Lecture fermée ou au-delà de l'historique");
+            for (int index = premier; index < fin; index++)
+                visiteur.visiter(stockage.getDateMillis(index), stockage.getIdCompte(index), stockage.getNbSucres(index));
+        }
+
+        @Override
+        public void close() {
+            if (!fermee) {
+                fermee = true;
+                parcoursGeneration.decrementAndGet();
+            }
+        }
+
+    }
+
+    /**
+     * Ajoute une boisson à la fin de l'historique.
+     *
+     * @param dateMillis la date de préparation, en millisecondes epoch
+     * @param idCompte   l'identifiant du compte ayant demandé la boisson
+     * @param nbSucres   le nombre de sucres (entre 0 et {@link #NB_SUCRES_MAX})
+     */
+    public void ajouter(long dateMillis, int idCompte, int nbSucres) {
+        verrou.lock();
+        try {
+            ecrire(dateMillis, idCompte, nbSucres);
+            agregats.ajouter(dateMillis, nbSucres);
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    public int taille() {
+        return taille;
+    }
+
+    /**
+     * @return la position de la plus ancienne boisson encore détaillée (0 si rien n'a été compacté)
+     */
+    public int premier() {
+        return premier;
+    }
+
+    public AgregatsTemporels getAgregats() {
+        return agregats;
+    }
+
+    // Lectures par position : comptées comme un parcours le temps de la lecture, la position étant vérifiée après
+    public long getDateMillis(int index) {
+        AtomicInteger parcoursGeneration = commencerParcours();
+        try {
+            return stockage.getDateMillis(verifier(index));
+        } finally {
+            parcoursGeneration.decrementAndGet();
+        }
+    }
+
+    public int getIdCompte(int index) {
+        AtomicInteger parcoursGeneration = commencerParcours();
+        try {
+            return stockage.getIdCompte(verifier(index));
+        } finally {
+            parcoursGeneration.decrementAndGet();
+        }
+    }
+
+    public int getNbSucres(int index) {
+        AtomicInteger parcoursGeneration = commencerParcours();
+        try {
+            return stockage.getNbSucres(verifier(index));
+        } finally {
+            parcoursGeneration.decrementAndGet();
+        }
+    }
+
+    /**
+     * Parcourt les boissons détaillées présentes au moment de l'appel, dans l'ordre de préparation.
+     *
+     * @param visiteur le visiteur appelé pour chaque boisson
+     */
+    public void parcourir(Visiteur visiteur) {
+        try (Lecture lecture = ouvrirLecture()) {
+            lecture.parcourir(taille, visiteur);
+        }
+    }
+
+    /**
+     * Ouvre une lecture des boissons détaillées, à fermer après usage : une lecture jamais fermée empêche toute libération
+     * ultérieure du stockage.
+     */
+    public Lecture ouvrirLecture() {
+        return new Lecture();
+    }
+
+    /**
+     * Compacte les boissons préparées avant une date : elles ne restent que dans les agrégats temporels.
+     *
+     * @see #compacter(long, Visiteur)
+     */
+    public int compacter(long avantMillis) {
+        return compacter(avantMillis, (dateMillis, idCompte, nbSucres) -> {
+        });
+    }
+
+    /**
+     * Compacte les boissons préparées avant une date : elles ne restent que dans les agrégats temporels.
+     * Les dates de l'historique étant croissantes, le compactage s'arrête à la première boisson plus récente.
+     * <p>
+     * Le stockage n'est libéré qu'à un passage suivant, une fois terminés tous les {@link #parcourir parcours}
+     * et toutes les {@link #ouvrirLecture lectures} commencés avant le compactage : un parcours long (p.ex. un téléchargement lent) retarde la libération, sans jamais lire un stockage libéré.
+     * Les lectures par position et celles de la {@link #vue vue} sont comptées de même, le temps de lire une boisson.
+     *
+     * @param avantMillis la date limite (exclue), en millisecondes epoch
+     * @param compactees  le visiteur appelé pour chaque boisson compactée, avant qu'elle ne quitte l'historique détaillé
+     * @return le nombre de boissons compactées
+     */
+    public int compacter(long avantMillis, Visiteur compactees) {
+        verrou.lock();
+        try {
+            // Parcours de l'autre parité : commencés avant le dernier changement de génération, ils ont pu lire un premier plus ancien
+            boolean parcoursAnciensTermines = parcours[(generation + 1) & 1].get() == 0;
+            if (parcoursAnciensTermines && aLiberer > libere) {
+                stockage.liberer(aLiberer);
+                libere = aLiberer;
+            }
+            int debut = premier;
+            int nouveauPremier = debut;
+            while (nouveauPremier < taille && stockage.getDateMillis(nouveauPremier) < avantMillis) {
+                compactees.visiter(stockage.getDateMillis(nouveauPremier), stockage.getIdCompte(nouveauPremier), stockage.getNbSucres(nouveauPremier));
+                nouveauPremier++;
+            }
+            premier = nouveauPremier;
+            if (parcoursAnciensTermines && nouveauPremier > aLiberer) {
+                // Les parcours suivants lisent le nouveau premier : le stockage qui le précède sera libéré à la fin des parcours en cours
+                aLiberer = nouveauPremier;
+                generation++;
+            }
+            return nouveauPremier - debut;
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * @return l'état de l'historique, cohérent avec ses agrégats
+     */
+    public Capture capturer() {
+        verrou.lock();
+        try {
+            return new Capture(premier, taille, agregats.copier());
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Sans copie des agrégats, contrairement à {@link #capturer()} : pour un état courant demandé fréquemment.
+     *
+     * @return la fin de l'historique
+     */
+    public Fin capturerFin() {
+        verrou.lock();
+        try {
+            // Sous le verrou, aucun compactage ne peut retirer la dernière boisson
+            boolean detaillee = taille > premier;
+            return new Fin(taille, detaillee, detaillee ? stockage.getDateMillis(taille - 1) : 0L);
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Positionne le début d'un historique vide, avant la restauration de ses boissons détaillées.
+     *
+     * @param premier la position de la plus ancienne boisson détaillée persistée
+     */
+    public void restaurerPremier(int premier) {
+        verrou.lock();
+        try {
+            if (taille != 0)
+                throw new IllegalStateException("L'historique n'est pas vide");
+            this.premier = premier;
+            this.aLiberer = premier;
+            this.libere = premier;
+            this.taille = premier;
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Restaure une boisson déjà comptée dans les agrégats persistés.
+     */
+    public void restaurerBoisson(long dateMillis, int idCompte, int nbSucres) {
+        verrou.lock();
+        try {
+            ecrire(dateMillis, idCompte, nbSucres);
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Restaure un lot de boissons déjà comptées dans les agrégats persistés, sous une seule prise du verrou.
+     *
+     * @param nombre le nombre de boissons du lot, au début des tableaux
+     */
+    public void restaurerBoissons(long[] datesMillis, int[] idsComptes, int[] nbSucres, int nombre) {
+        verrou.lock();
+        try {
+            for (int i = 0; i < nombre; i++)
+                ecrire(datesMillis[i], idsComptes[i], nbSucres[i]);
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Vue en lecture seule de l'historique détaillé au moment de l'appel : les boissons sont matérialisées à la demande,
+     * élément par élément. Les boissons préparées ensuite n'y apparaissent pas ; celles compactées ensuite n'y sont plus lisibles.
+     *
+     * @param type             le type des boissons (identique pour toutes les boissons d'une machine)
+     * @param resolveurComptes la résolution d'un id de compte vers le compte
+     * @return la vue de l'historique
+     */
+    public List<Boisson> vue(String type, IntFunction<Compte> resolveurComptes) {
+        // premier lu avant taille : debut <= fin
+        int debut = premier;
+        int fin = taille;
+        return new AbstractList<>() {
+            /**
+             * @throws ConcurrentModificationException si la boisson a été compactée depuis la création de la vue
+             */
+            @Override
+            public Boisson get(int index) {
+                int position = debut + Objects.checkIndex(index, fin - debut);
+                long dateMillis;
+                int idCompte;
+                int nbSucres;
+                AtomicInteger parcoursGeneration = commencerParcours();
+                try {
+                    if (position < premier)
+                        throw new ConcurrentModificationException("Boisson compactée depuis la création de la vue : " + position);
+                    dateMillis = stockage.getDateMillis(position);
+                    idCompte = stockage.getIdCompte(position);
+                    nbSucres = stockage.getNbSucres(position);
+                } finally {
+                    parcoursGeneration.decrementAndGet();
+                }
+                LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(dateMillis), ZoneId.systemDefault());
+                return new Boisson(date, resolveurComptes.apply(idCompte), type, nbSucres);
+            }
+
+            @Override
+            public int size() {
+                return fin - debut;
+            }
+        };
+    }
+
+    private void ecrire(long dateMillis, int idCompte, int nbSucres) {
+        if (nbSucres < 0 || nbSucres > NB_SUCRES_MAX)
+            throw new IllegalArgumentException("nbSucres hors limites : " + nbSucres);
+        int index = taille;
+        stockage.ecrire(index, dateMillis, idCompte, nbSucres);
+        taille = index + 1;
+    }
+
+    // Compte un parcours dans la génération courante, avant toute lecture de premier
+    private AtomicInteger commencerParcours() {
+        while (true) {
+            int generationCourante = generation;
+            AtomicInteger parcoursGeneration = parcours[generationCourante & 1];
+            parcoursGeneration.incrementAndGet();
+            if (generation == generationCourante)
+                return parcoursGeneration;
+            parcoursGeneration.decrementAndGet();
+        }
+    }
+
+    private int verifier(int index) {
+        if (index < premier || index >= taille)
+            throw new IndexOutOfBoundsException(index);
+        return index;
+    }
+
+}
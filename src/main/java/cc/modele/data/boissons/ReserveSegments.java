@@ -0,0 +1,124 @@
+package cc.modele.data.boissons;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Réserve de segments projetés en mémoire, partagée par les historiques de toutes les machines (cf. {@link StockageMappe}).
+ * <p>
+ * Les segments sont découpés dans des fichiers de plusieurs segments ("segments-0.bin", "segments-1.bin", ...), projetés une seule fois
+ * chacun : le nombre de projections dépend du volume total des historiques, pas du nombre de machines, et reste loin de la limite
+ * du noyau (vm.max_map_count, 65530 par défaut sous Linux) quel que soit le nombre de machines.
+ * Les segments libérés par le compactage sont réutilisés par les allocations suivantes.
+ * <p>
+ * Comme les segments, la réserve ne sert qu'à sortir les historiques du tas : les fichiers existants sont effacés à la création.
+ */
+public class ReserveSegments {
+
+    private final Path repertoire;
+    private final int tailleSegment;
+    private final int nbSegmentsParFichier;
+
+    // Verrou plutôt que moniteur : la projection d'un fichier ne bloque pas le thread porteur d'un thread virtuel
+    private final ReentrantLock verrou = new ReentrantLock();
+    private final Deque<ByteBuffer> libres = new ArrayDeque<>();
+    private MappedByteBuffer fichierCourant;
+    private int nbFichiers;
+    private int nbSegmentsDecoupes;
+
+    /**
+     * @param repertoire    le répertoire des fichiers de segments
+     * @param tailleSegment la taille d'un segment, en octets (arrondie pour contenir une puissance de 2 d'entrées)
+     * @param tailleFichier la taille d'un fichier de segments, en octets (au moins un segment, au plus 1 Go)
+     */
+    public ReserveSegments(Path repertoire, int tailleSegment, int tailleFichier) {
+        if (tailleSegment < StockageMappe.TAILLE_ENTREE)
+            throw new IllegalArgumentException("tailleSegment doit contenir au moins une entrée");
+        this.repertoire = repertoire;
+        this.tailleSegment = StockageMappe.TAILLE_ENTREE * Integer.highestOneBit(tailleSegment / StockageMappe.TAILLE_ENTREE);
+        this.nbSegmentsParFichier = Math.max(1, Math.min(tailleFichier, 1 << 30) / this.tailleSegment);
+        try {
+            Files.createDirectories(repertoire);
+            try (DirectoryStream<Path> fichiers = Files.newDirectoryStream(repertoire, "segments-*.bin")) {
+                for (Path fichier : fichiers)
+                    Files.delete(fichier);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return la taille d'un segment, en octets
+     */
+    public int getTailleSegment() {
+        return tailleSegment;
+    }
+
+    /**
+     * @return le nombre de fichiers projetés
+     */
+    public int getNbFichiers() {
+        verrou.lock();
+        try {
+            return nbFichiers;
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * @return un segment libre, réutilisé ou découpé dans le fichier courant (projeté s'il est plein)
+     */
+    public ByteBuffer allouer() {
+        verrou.lock();
+        try {
+            ByteBuffer segment = libres.pollFirst();
+            if (segment != null)
+                return segment;
+            if (fichierCourant == null || nbSegmentsDecoupes == nbSegmentsParFichier) {
+                fichierCourant = projeter(nbFichiers);
+                nbFichiers++;
+                nbSegmentsDecoupes = 0;
+            }
+            segment = fichierCourant.slice(nbSegmentsDecoupes * tailleSegment, tailleSegment);
+            nbSegmentsDecoupes++;
+            return segment;
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Rend un segment à la réserve. L'appelant ne doit plus le lire : il peut être réalloué à un autre historique.
+     */
+    public void liberer(ByteBuffer segment) {
+        verrou.lock();
+        try {
+            libres.addFirst(segment);
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    private MappedByteBuffer projeter(int numeroFichier) {
+        Path fichier = repertoire.resolve("segments-" + numeroFichier + ".bin");
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // La projection reste valide après la fermeture du canal
+            return canal.map(FileChannel.MapMode.READ_WRITE, 0, (long) tailleSegment * nbSegmentsParFichier);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package cc.modele.data.boissons;
+
+/**
+ * Résolutions des agrégats temporels de l'historique, de la plus fine à la plus grossière.
+ * Les intervalles sont alignés sur l'epoch (UTC).
+ */
+public enum Resolution {
+
+    MINUTE(60_000L),
+    HEURE(3_600_000L),
+    JOUR(86_400_000L);
+
+    private final long dureeMillis;
+
+    Resolution(long dureeMillis) {
+        this.dureeMillis = dureeMillis;
+    }
+
+    public long getDureeMillis() {
+        return dureeMillis;
+    }
+
+}
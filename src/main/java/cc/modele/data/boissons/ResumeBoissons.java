@@ -0,0 +1,80 @@
+package cc.modele.data.boissons;
+
+import java.util.Arrays;
+
+/**
+ * Résumé de boissons : nombre de boissons, sucres, histogramme du nombre de sucres et répartition par heure de la journée.
+ * <p>
+ * Ce sont les valeurs des agrégats de statistiques ; persistées avec l'instantané, elles permettent de les reconstruire
+ * après un redémarrage, ainsi que le nombre de boissons bues par compte, sans parcourir les boissons détaillées
+ * ni disposer des boissons compactées. Non synchronisé : cf. {@link ResumesBoissons}.
+ */
+public final class ResumeBoissons {
+
+    // Classes de l'histogramme : 0, 1, ..., 9 sucres, puis 10 sucres et plus
+    public static final int NB_CLASSES_SUCRES = 11;
+    public static final int NB_HEURES = 24;
+
+    private static final int NB_BOISSONS = 0;
+    private static final int TOTAL_SUCRES = 1;
+    private static final int DEBUT_SUCRES = 2;
+    private static final int DEBUT_HEURES = DEBUT_SUCRES + NB_CLASSES_SUCRES;
+
+    public static final int NB_VALEURS = DEBUT_HEURES + NB_HEURES;
+
+    private final long[] valeurs;
+
+    public ResumeBoissons() {
+        this.valeurs = new long[NB_VALEURS];
+    }
+
+    /**
+     * @param valeurs les valeurs d'un résumé persisté (cf. {@link #getValeurs()})
+     */
+    public ResumeBoissons(long[] valeurs) {
+        if (valeurs.length != NB_VALEURS)
+            throw new IllegalArgumentException("Résumé de " + valeurs.length + " valeurs au lieu de " + NB_VALEURS);
+        this.valeurs = valeurs.clone();
+    }
+
+    /**
+     * @param heure    l'heure de préparation (0 à 23)
+     * @param nbSucres le nombre de sucres
+     */
+    void ajouter(int heure, int nbSucres) {
+        valeurs[NB_BOISSONS]++;
+        valeurs[TOTAL_SUCRES] += nbSucres;
+        valeurs[DEBUT_SUCRES + Math.min(nbSucres, NB_CLASSES_SUCRES - 1)]++;
+        valeurs[DEBUT_HEURES + heure]++;
+    }
+
+    public long getNbBoissons() {
+        return valeurs[NB_BOISSONS];
+    }
+
+    public long getTotalSucres() {
+        return valeurs[TOTAL_SUCRES];
+    }
+
+    /**
+     * @return le nombre de boissons par nombre de sucres (la dernière classe regroupe 10 sucres et plus)
+     */
+    public long[] getHistogrammeSucres() {
+        return Arrays.copyOfRange(valeurs, DEBUT_SUCRES, DEBUT_SUCRES + NB_CLASSES_SUCRES);
+    }
+
+    /**
+     * @return le nombre de boissons préparées pour chaque heure de la journée (0 à 23)
+     */
+    public long[] getBoissonsParHeure() {
+        return Arrays.copyOfRange(valeurs, DEBUT_HEURES, DEBUT_HEURES + NB_HEURES);
+    }
+
+    /**
+     * @return toutes les valeurs du résumé, à persister
+     */
+    public long[] getValeurs() {
+        return valeurs.clone();
+    }
+
+}
@@ -0,0 +1,53 @@
+package cc.modele.data.boissons;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Résumés de boissons, par machine et par compte. Non synchronisé.
+ */
+public class ResumesBoissons {
+
+    private final Map<Integer, ResumeBoissons> parMachine = new HashMap<>();
+    private final Map<Integer, ResumeBoissons> parCompte = new HashMap<>();
+
+    /**
+     * Résume une boisson.
+     *
+     * @param heure l'heure de préparation (0 à 23)
+     */
+    public void ajouter(int idMachine, int idCompte, int heure, int nbSucres) {
+        parMachine.computeIfAbsent(idMachine, id -> new ResumeBoissons()).ajouter(heure, nbSucres);
+        parCompte.computeIfAbsent(idCompte, id -> new ResumeBoissons()).ajouter(heure, nbSucres);
+    }
+
+    /**
+     * @return une vue non modifiable des résumés, par id de machine
+     */
+    public Map<Integer, ResumeBoissons> getParMachine() {
+        return Collections.unmodifiableMap(parMachine);
+    }
+
+    /**
+     * @return une vue non modifiable des résumés, par id de compte
+     */
+    public Map<Integer, ResumeBoissons> getParCompte() {
+        return Collections.unmodifiableMap(parCompte);
+    }
+
+    /**
+     * Réservé à la reprise de l'état persisté.
+     */
+    public void restaurerParMachine(int idMachine, ResumeBoissons resume) {
+        parMachine.put(idMachine, resume);
+    }
+
+    /**
+     * Réservé à la reprise de l'état persisté.
+     */
+    public void restaurerParCompte(int idCompte, ResumeBoissons resume) {
+        parCompte.put(idCompte, resume);
+    }
+
+}
@@ -0,0 +1,116 @@
+package cc.modele.data.boissons;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Série de compteurs par intervalle de temps : nombre de boissons et total des sucres de chaque intervalle.
+ * <p>
+ * Les intervalles sont regroupés en pages de taille fixe, créées à la demande : une série ne coûte que pour
+ * les périodes où des boissons ont été préparées. Les écritures sont sérialisées par l'historique ;
+ * les lectures sont sans verrou (une lecture concurrente d'une écriture peut ne pas encore la voir).
+ */
+class SerieTemporelle {
+
+    private static final int BITS_PAGE = 9;
+    private static final int TAILLE_PAGE = 1 << BITS_PAGE;
+    private static final int MASQUE_PAGE = TAILLE_PAGE - 1;
+
+    private final Resolution resolution;
+    // Pour chaque page : nombre de boissons et total des sucres, intervalle par intervalle
+    private final NavigableMap<Long, long[]> pages = new ConcurrentSkipListMap<>();
+    // Les intervalles antérieurs ont été purgés
+    private volatile long premierIntervalle = Long.MIN_VALUE;
+
+    // Dernière page écrite, réservée à l'écrivain
+    private long numeroPageCourante = Long.MIN_VALUE;
+    private long[] pageCourante;
+
+    SerieTemporelle(Resolution resolution) {
+        this.resolution = resolution;
+    }
+
+    Resolution getResolution() {
+        return resolution;
+    }
+
+    void ajouter(long dateMillis, int nbSucres) {
+        long intervalle = Math.floorDiv(dateMillis, resolution.getDureeMillis());
+        long numeroPage = intervalle >> BITS_PAGE;
+        if (numeroPage != numeroPageCourante) {
+            pageCourante = pages.computeIfAbsent(numeroPage, numero -> new long[2 * TAILLE_PAGE]);
+            numeroPageCourante = numeroPage;
+        }
+        int position = 2 * (int) (intervalle & MASQUE_PAGE);
+        pageCourante[position]++;
+        pageCourante[position + 1] += nbSucres;
+    }
+
+    /**
+     * @return le nombre de boissons des intervalles [premier, fin[
+     */
+    long compter(long premier, long fin) {
+        long total = 0;
+        long intervalle = Math.max(premier, premierIntervalle);
+        while (intervalle < fin) {
+            long numeroPage = intervalle >> BITS_PAGE;
+            long finPage = (numeroPage + 1) << BITS_PAGE;
+            long limite = Math.min(fin, finPage);
+            long[] page = pages.get(numeroPage);
+            if (page != null)
+                for (long i = intervalle; i < limite; i++)
+                    total += page[2 * (int) (i & MASQUE_PAGE)];
+            intervalle = limite;
+        }
+        return total;
+    }
+
+    /**
+     * @return true si les intervalles à partir de celui contenant {@code dateMillis} n'ont pas été purgés
+     */
+    boolean couvre(long dateMillis) {
+        return Math.floorDiv(dateMillis, resolution.getDureeMillis()) >= premierIntervalle;
+    }
+
+    /**
+     * Supprime les pages entièrement antérieures à {@code dateMillis}.
+     */
+    void purgerAvant(long dateMillis) {
+        long numeroPage = Math.floorDiv(dateMillis, resolution.getDureeMillis()) >> BITS_PAGE;
+        premierIntervalle = Math.max(premierIntervalle, numeroPage << BITS_PAGE);
+        pages.headMap(numeroPage, false).clear();
+    }
+
+    long getPremierIntervalle() {
+        return premierIntervalle;
+    }
+
+    /**
+     * @return une copie des pages, pour l'instantané de l'historique (à appeler sous le verrou de l'écrivain)
+     */
+    NavigableMap<Long, long[]> copierPages() {
+        NavigableMap<Long, long[]> copie = new ConcurrentSkipListMap<>();
+        for (Map.Entry<Long, long[]> page : pages.entrySet())
+            copie.put(page.getKey(), page.getValue().clone());
+        return copie;
+    }
+
+    /**
+     * Restaure une page et la limite de purge persistées (la série doit être vide de boissons non persistées).
+     */
+    void restaurer(long premierIntervalle, long numeroPage, long[] page) {
+        this.premierIntervalle = premierIntervalle;
+        pages.put(numeroPage, page);
+        numeroPageCourante = Long.MIN_VALUE;
+    }
+
+    void restaurer(long premierIntervalle) {
+        this.premierIntervalle = premierIntervalle;
+    }
+
+    static int taillePage() {
+        return 2 * TAILLE_PAGE;
+    }
+
+}
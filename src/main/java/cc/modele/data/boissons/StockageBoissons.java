@@ -0,0 +1,26 @@
+package cc.modele.data.boissons;
+
+/**
+ * Stockage des boissons d'un historique, par position.
+ * <p>
+ * Les écritures sont sérialisées par l'historique et se font toujours à la position suivant la dernière écrite
+ * (ou, pour un historique restauré, à la position de sa première boisson détaillée).
+ * Les lectures se font sans verrou, uniquement sur des positions déjà publiées par l'historique.
+ */
+public interface StockageBoissons {
+
+    void ecrire(int index, long dateMillis, int idCompte, int nbSucres);
+
+    long getDateMillis(int index);
+
+    int getIdCompte(int index);
+
+    int getNbSucres(int index);
+
+    /**
+     * Libère le stockage des positions antérieures à {@code avant} (qui ne seront plus lues).
+     * Le stockage peut n'en libérer qu'une partie, par blocs entiers.
+     */
+    void liberer(int avant);
+
+}
@@ -0,0 +1,80 @@
+package cc.modele.data.boissons;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Stockage hors du tas, dans des segments de fichiers projetés en mémoire, alloués dans une {@link ReserveSegments} partagée.
+ * <p>
+ * Chaque boisson occupe une entrée de 16 octets (date en millisecondes epoch, id du compte, nombre de sucres, bourrage).
+ * Un nouveau segment est alloué quand le précédent est plein ; les lectures se font directement dans les segments projetés, sans copie.
+ * <p>
+ * Le stockage sert à sortir l'historique du tas, pas à le rendre durable (c'est le rôle du journal).
+ */
+public class StockageMappe implements StockageBoissons {
+
+    static final int TAILLE_ENTREE = 16;
+
+    private static final int DECALAGE_ID_COMPTE = Long.BYTES;
+    private static final int DECALAGE_NB_SUCRES = DECALAGE_ID_COMPTE + Integer.BYTES;
+
+    private final ReserveSegments reserve;
+    private final int bitsSegment;
+    private final int masqueSegment;
+
+    private volatile ByteBuffer[] segments = new ByteBuffer[0];
+
+    /**
+     * @param reserve la réserve dans laquelle sont alloués les segments de cet historique
+     */
+    public StockageMappe(ReserveSegments reserve) {
+        this.reserve = reserve;
+        this.bitsSegment = Integer.numberOfTrailingZeros(reserve.getTailleSegment() / TAILLE_ENTREE);
+        this.masqueSegment = (1 << bitsSegment) - 1;
+    }
+
+    @Override
+    public void ecrire(int index, long dateMillis, int idCompte, int nbSucres) {
+        int numeroSegment = index >>> bitsSegment;
+        ByteBuffer[] segmentsCourants = segments;
+        if (numeroSegment >= segmentsCourants.length) {
+            segmentsCourants = Arrays.copyOf(segmentsCourants, numeroSegment + 1);
+            segmentsCourants[numeroSegment] = reserve.allouer();
+            segments = segmentsCourants;
+        }
+        ByteBuffer segment = segmentsCourants[numeroSegment];
+        int position = (index & masqueSegment) * TAILLE_ENTREE;
+        segment.putLong(position, dateMillis);
+        segment.putInt(position + DECALAGE_ID_COMPTE, idCompte);
+        segment.put(position + DECALAGE_NB_SUCRES, (byte) nbSucres);
+    }
+
+    @Override
+    public long getDateMillis(int index) {
+        return segments[index >>> bitsSegment].getLong((index & masqueSegment) * TAILLE_ENTREE);
+    }
+
+    @Override
+    public int getIdCompte(int index) {
+        return segments[index >>> bitsSegment].getInt((index & masqueSegment) * TAILLE_ENTREE + DECALAGE_ID_COMPTE);
+    }
+
+    @Override
+    public int getNbSucres(int index) {
+        return segments[index >>> bitsSegment].get((index & masqueSegment) * TAILLE_ENTREE + DECALAGE_NB_SUCRES) & 0xFF;
+    }
+
+    // Les segments libérés sont rendus à la réserve, qui les réalloue à n'importe quel historique
+    @Override
+    public void liberer(int avant) {
+        int nbSegmentsLiberes = avant >>> bitsSegment;
+        ByteBuffer[] segmentsCourants = segments.clone();
+        for (int numeroSegment = 0; numeroSegment < Math.min(nbSegmentsLiberes, segmentsCourants.length); numeroSegment++) {
+            if (segmentsCourants[numeroSegment] != null)
+                reserve.liberer(segmentsCourants[numeroSegment]);
+            segmentsCourants[numeroSegment] = null;
+        }
+        segments = segmentsCourants;
+    }
+
+}
@@ -0,0 +1,65 @@
+package cc.modele.data.boissons;
+
+import java.util.Arrays;
+
+/**
+ * Stockage dans le tas, en colonnes de types primitifs.
+ * <p>
+ * Chaque boisson occupe 13 octets (date en millisecondes epoch, id du compte, nombre de sucres),
+ * répartis dans des blocs de taille fixe : le stockage ne grossit que par ajout de blocs, sans recopie des données.
+ */
+public class StockageTas implements StockageBoissons {
+
+    private static final int BITS_BLOC = 10;
+    private static final int TAILLE_BLOC = 1 << BITS_BLOC;
+    private static final int MASQUE_BLOC = TAILLE_BLOC - 1;
+
+    private volatile Bloc[] blocs = new Bloc[0];
+
+    @Override
+    public void ecrire(int index, long dateMillis, int idCompte, int nbSucres) {
+        int numeroBloc = index >>> BITS_BLOC;
+        Bloc[] blocsCourants = blocs;
+        if (numeroBloc >= blocsCourants.length) {
+            blocsCourants = Arrays.copyOf(blocsCourants, numeroBloc + 1);
+            blocsCourants[numeroBloc] = new Bloc();
+            blocs = blocsCourants;
+        }
+        Bloc bloc = blocsCourants[numeroBloc];
+        int position = index & MASQUE_BLOC;
+        bloc.dates[position] = dateMillis;
+        bloc.idsComptes[position] = idCompte;
+        bloc.sucres[position] = (byte) nbSucres;
+    }
+
+    @Override
+    public long getDateMillis(int index) {
+        return blocs[index >>> BITS_BLOC].dates[index & MASQUE_BLOC];
+    }
+
+    @Override
+    public int getIdCompte(int index) {
+        return blocs[index >>> BITS_BLOC].idsComptes[index & MASQUE_BLOC];
+    }
+
+    @Override
+    public int getNbSucres(int index) {
+        return blocs[index >>> BITS_BLOC].sucres[index & MASQUE_BLOC] & 0xFF;
+    }
+
+    @Override
+    public void liberer(int avant) {
+        int nbBlocsLiberes = avant >>> BITS_BLOC;
+        Bloc[] blocsCourants = blocs.clone();
+        for (int numeroBloc = 0; numeroBloc < Math.min(nbBlocsLiberes, blocsCourants.length); numeroBloc++)
+            blocsCourants[numeroBloc] = null;
+        blocs = blocsCourants;
+    }
+
+    private static final class Bloc {
+        private final long[] dates = new long[TAILLE_BLOC];
+        private final int[] idsComptes = new int[TAILLE_BLOC];
+        private final byte[] sucres = new byte[TAILLE_BLOC];
+    }
+
+}
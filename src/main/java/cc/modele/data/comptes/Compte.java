@@ -1,29 +1,40 @@
 package cc.modele.data.comptes;
 
-public class Compte {
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.concurrent.atomic.LongAdder;
 
-    private static Integer lastId = 0;
+public class Compte {
 
     private final Integer id;
     private final String login;
     private final String password;
-    private String type;
+    // Modifié par modifierTypeCompte, lu sans verrou par l'authentification des requêtes suivantes
+    private volatile String type;
 
-    private Integer nbBoissonsBues;
+    // Compteur réparti : un compte populaire peut être servi par de nombreuses machines en même temps
+    private final LongAdder nbBoissonsBues = new LongAdder();
 
-    public Compte(String login, String password, String type) {
-        this.id = ++lastId;
+    public Compte(Integer id, String login, String password, String type) {
+        this.id = id;
         this.login = login;
         this.password = password;
         this.type = type;
-
-        this.nbBoissonsBues = 0;
     }
 
     public void incrementerNbBoissonsBues() {
-        nbBoissonsBues++;
+        nbBoissonsBues.increment();
+    }
+
+    /**
+     * Réservé à la reprise de l'état persisté, avant l'arrivée des premières commandes.
+     */
+    public void setNbBoissonsBues(long nbBoissonsBues) {
+        this.nbBoissonsBues.reset();
+        this.nbBoissonsBues.add(nbBoissonsBues);
     }
 
+    @JsonIgnore
     public String[] getRoles() {
         return TypeCompte.getRoles(type);
     }
@@ -36,12 +47,16 @@ public class Compte {
         return login;
     }
 
+    @JsonIgnore
     public String getPassword() {
         return password;
     }
 
-    public Integer getNbBoissonsBues() {
-        return nbBoissonsBues;
+    /**
+     * @return le nombre de boissons bues, exact dès que les préparations en cours sont terminées
+     */
+    public long getNbBoissonsBues() {
+        return nbBoissonsBues.sum();
     }
 
     public String getType() {
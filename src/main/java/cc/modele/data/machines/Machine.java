@@ -1,38 +1,66 @@
 package cc.modele.data.machines;
 
 import cc.modele.data.boissons.Boisson;
+import cc.modele.data.boissons.HistoriqueBoissons;
 import cc.modele.data.comptes.Compte;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.time.ZoneId;
 import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
 
 public class Machine {
 
-    private static Integer lastId = 0;
-
     private final Integer id;
 
     private final String nom;
     private final String typeBoissons;
     private final String salle;
+    @JsonIgnore
+    private final int cleSalle;
 
     @JsonIgnore
-    private final Collection<Boisson> boissonsPreparees;
+    private final HistoriqueBoissons historique;
+    @JsonIgnore
+    private final IntFunction<Compte> resolveurComptes;
+    @JsonIgnore
+    private final ReentrantLock verrou = new ReentrantLock();
+
+    /**
+     * @param resolveurComptes la résolution des ids de compte de l'historique, pour matérialiser les boissons préparées
+     */
+    public Machine(Integer id, String nom, String typeBoissons, String salle, IntFunction<Compte> resolveurComptes) {
+        this(id, nom, typeBoissons, salle, new HistoriqueBoissons(), resolveurComptes);
+    }
 
-    public Machine(String nom, String typeBoissons, String salle) {
-        this.id = ++lastId;
+    /**
+     * @param historique       l'historique (vide) des boissons préparées
+     * @param resolveurComptes la résolution des ids de compte de l'historique, pour matérialiser les boissons préparées
+     */
+    public Machine(Integer id, String nom, String typeBoissons, String salle, HistoriqueBoissons historique, IntFunction<Compte> resolveurComptes) {
+        this.id = id;
         this.nom = nom;
         this.typeBoissons = typeBoissons;
         this.salle = salle;
-        this.boissonsPreparees = new ArrayList<>();
+        this.cleSalle = Salles.cle(salle);
+        this.historique = historique;
+        this.resolveurComptes = resolveurComptes;
     }
 
     public Boisson preparerBoisson(Compte compte, Integer nbSucres) {
-        Boisson boisson = new Boisson(LocalDateTime.now(), compte, typeBoissons, nbSucres);
-        boissonsPreparees.add(boisson);
-        return boisson;
+        return preparerBoisson(compte, nbSucres, System.currentTimeMillis());
+    }
+
+    /**
+     * @param dateMillis la date de préparation, en millisecondes epoch
+     */
+    public Boisson preparerBoisson(Compte compte, Integer nbSucres, long dateMillis) {
+        historique.ajouter(dateMillis, compte.getId(), nbSucres);
+        LocalDateTime dateHeurePreparation = LocalDateTime.ofInstant(Instant.ofEpochMilli(dateMillis), ZoneId.systemDefault());
+        return new Boisson(dateHeurePreparation, compte, typeBoissons, nbSucres);
     }
 
     public Integer getId() {
@@ -51,12 +79,38 @@ public class Machine {
         return salle;
     }
 
+    /**
+     * @return la clé de la salle (cf. {@link Salles}), ou {@link Salles#CLE_INVALIDE} pour une salle persistée avant la vérification complète du format
+     */
+    @JsonIgnore
+    public int getCleSalle() {
+        return cleSalle;
+    }
+
+    /**
+     * @return une vue en lecture seule des boissons préparées à l'appel, matérialisées à la demande (cf. {@link HistoriqueBoissons#vue})
+     */
+    @JsonIgnore
     public Collection<Boisson> getBoissonsPreparees() {
-        return boissonsPreparees;
+        return historique.vue(typeBoissons, resolveurComptes);
+    }
+
+    @JsonIgnore
+    public int getNbBoissonsPreparees() {
+        return historique.taille();
     }
 
-    public Integer getNbBoissonsPreparees() {
-        return boissonsPreparees.size();
+    @JsonIgnore
+    public HistoriqueBoissons getHistorique() {
+        return historique;
+    }
+
+    /**
+     * @return le verrou qui ordonne les boissons de la machine entre son historique et le journal
+     */
+    @JsonIgnore
+    public ReentrantLock getVerrou() {
+        return verrou;
     }
 
 }
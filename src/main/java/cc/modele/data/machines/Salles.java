@@ -0,0 +1,40 @@
+package cc.modele.data.machines;
+
+/**
+ * Format des noms de salle : 1 lettre suivie de 2 chiffres (p.ex. "A38"), sans distinction de casse.
+ * <p>
+ * Une salle valide est représentée par une clé compacte, lettre × 100 + numéro (de 0 à {@link #NB_CLES} - 1) :
+ * les index par salle sont de simples tableaux indexés par cette clé.
+ * La vérification travaille directement sur la chaîne, sans allocation.
+ */
+public final class Salles {
+
+    public static final int NB_CLES = 26 * 100;
+
+    public static final int CLE_INVALIDE = -1;
+
+    /**
+     * @param salle le nom de la salle
+     * @return la clé de la salle, ou {@link #CLE_INVALIDE} si le format du nom est incorrect
+     */
+    public static int cle(String salle) {
+        if (salle == null || salle.length() != 3)
+            return CLE_INVALIDE;
+        int lettre = (salle.charAt(0) | 0x20) - 'a';
+        int dizaine = salle.charAt(1) - '0';
+        int unite = salle.charAt(2) - '0';
+        if (lettre < 0 || lettre >= 26 || dizaine < 0 || dizaine > 9 || unite < 0 || unite > 9)
+            return CLE_INVALIDE;
+        return lettre * 100 + dizaine * 10 + unite;
+    }
+
+    public static boolean estValide(String salle) {
+        return cle(salle) != CLE_INVALIDE;
+    }
+
+    // Constructeur privé, car classe utilitaire
+    private Salles() {
+        // NOP
+    }
+
+}
@@ -0,0 +1,36 @@
+package cc.modele.evenements;
+
+import cc.modele.data.boissons.Boisson;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.machines.Machine;
+
+/**
+ * Écouteur des modifications du modèle, notifié par la façade après chaque modification réussie.
+ * Les notifications sont faites dans le thread appelant : un écouteur doit rester rapide et ne pas bloquer.
+ */
+public interface EcouteurModele {
+
+    default void compteCree(Compte compte) {
+        // NOP
+    }
+
+    default void typeCompteModifie(Compte compte) {
+        // NOP
+    }
+
+    default void machineAjoutee(Machine machine) {
+        // NOP
+    }
+
+    default void boissonPreparee(Machine machine, Boisson boisson) {
+        // NOP
+    }
+
+    /**
+     * Notifié une fois l'état persisté rechargé (sans notification individuelle des éléments restaurés).
+     */
+    default void modeleRestaure() {
+        // NOP
+    }
+
+}
@@ -0,0 +1,17 @@
+package cc.modele.evenements;
+
+import cc.modele.preparation.Commande;
+
+/**
+ * Écouteur des changements d'état des commandes, notifié par le moteur de préparation :
+ * mise en file ("en_attente"), début de préparation ("en_preparation"), puis "prete" ou "echec".
+ * <p>
+ * Les notifications sont faites dans le thread du moteur (appelant ou worker) : un écouteur doit rester rapide
+ * et ne pas bloquer. Pour une même commande, elles arrivent dans l'ordre des états, et l'état lu sur la commande
+ * pendant la notification est celui notifié.
+ */
+public interface EcouteurPreparation {
+
+    void commandeModifiee(Commande commande);
+
+}
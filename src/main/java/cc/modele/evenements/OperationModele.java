@@ -0,0 +1,23 @@
+package cc.modele.evenements;
+
+/**
+ * Opérations de la façade du modèle mesurées par la {@link SondeModele}.
+ */
+public enum OperationModele {
+    CREER_COMPTE_DRINKER,
+    CREER_COMPTE_FABULOUS,
+    GET_ALL_COMPTES,
+    GET_COMPTES_APRES,
+    GET_COMPTE_BY_ID,
+    GET_LOGINS_EXISTANTS,
+    GET_COMPTE_BY_LOGIN,
+    MODIFIER_TYPE_COMPTE,
+    AJOUTER_MACHINE,
+    GET_ALL_MACHINES,
+    GET_MACHINES_APRES,
+    GET_ALL_MACHINES_BY_SALLE,
+    VERIFIER_FORMAT_SALLE,
+    GET_MACHINE_BY_ID,
+    GET_MACHINE_BY_NOM,
+    PREPARER_BOISSON
+}
@@ -0,0 +1,32 @@
+package cc.modele.evenements;
+
+/**
+ * Sonde de mesure des durées des opérations de la façade du modèle.
+ * <p>
+ * La façade appelle {@link #debut()} en entrant dans une opération et {@link #fin(OperationModele, long)} en sortant,
+ * y compris en cas d'exception. Une implémentation ne doit rien allouer : elle est appelée à chaque opération.
+ */
+public interface SondeModele {
+
+    /**
+     * Sonde inactive : rien n'est mesuré.
+     */
+    SondeModele AUCUNE = new SondeModele() {
+    };
+
+    /**
+     * @return l'instant de début de l'opération (cf. {@link System#nanoTime()}), ou 0 si rien n'est mesuré
+     */
+    default long debut() {
+        return 0;
+    }
+
+    /**
+     * @param operation l'opération terminée
+     * @param debut     la valeur retournée par {@link #debut()} au début de l'opération
+     */
+    default void fin(OperationModele operation, long debut) {
+        // NOP
+    }
+
+}
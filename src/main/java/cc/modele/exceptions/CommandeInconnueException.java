@@ -0,0 +1,4 @@
+package cc.modele.exceptions;
+
+public class CommandeInconnueException extends Exception {
+}
@@ -0,0 +1,29 @@
+package cc.modele.identifiants;
+
+/**
+ * Générateur d'identifiants uniques, utilisable depuis plusieurs threads.
+ */
+public interface GenerateurIdentifiants {
+
+    /**
+     * @return un nouvel identifiant, jamais attribué auparavant par ce générateur
+     */
+    int prochainId();
+
+    /**
+     * Marque haute du générateur : tout identifiant déjà attribué (ou réservé) lui est inférieur ou égal.
+     * C'est la valeur à persister pour repartir sans collision après un redémarrage.
+     *
+     * @return la marque haute courante
+     */
+    int getMarqueHaute();
+
+    /**
+     * Garantit que les prochains identifiants attribués seront strictement supérieurs à {@code id}.
+     * Utilisé lors de la reprise de l'état persisté, avant toute attribution.
+     *
+     * @param id un identifiant déjà attribué
+     */
+    void avancer(int id);
+
+}
@@ -0,0 +1,34 @@
+package cc.modele.identifiants;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Séquence d'identifiants basée sur un compteur atomique.
+ */
+public class SequenceAtomique implements GenerateurIdentifiants {
+
+    private final AtomicInteger dernierId;
+
+    /**
+     * @param marqueHaute la marque haute persistée (0 pour un premier démarrage)
+     */
+    public SequenceAtomique(int marqueHaute) {
+        this.dernierId = new AtomicInteger(marqueHaute);
+    }
+
+    @Override
+    public int prochainId() {
+        return dernierId.incrementAndGet();
+    }
+
+    @Override
+    public int getMarqueHaute() {
+        return dernierId.get();
+    }
+
+    @Override
+    public void avancer(int id) {
+        dernierId.accumulateAndGet(id, Math::max);
+    }
+
+}
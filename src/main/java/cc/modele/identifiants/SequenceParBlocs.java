@@ -0,0 +1,91 @@
+package cc.modele.identifiants;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Séquence d'identifiants par blocs : chaque cellule réserve une plage d'identifiants
+ * sur le compteur partagé, puis les attribue sans verrou jusqu'à épuisement de la plage.
+ * Les identifiants restent uniques mais ne sont plus strictement croissants d'un thread à l'autre.
+ * <p>
+ * Les threads se répartissent les cellules (une puissance de 2 supérieure ou égale au nombre de processeurs) :
+ * le nombre de plages entamées ne dépend pas du nombre de threads. Avec des threads virtuels (un thread par requête),
+ * une plage par thread réserverait une plage entière par identifiant attribué, et épuiserait les identifiants.
+ */
+public class SequenceParBlocs implements GenerateurIdentifiants {
+
+    private static final int NB_CELLULES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+
+    // Plage vide : prochain = 1, fin = 0
+    private static final long PLAGE_VIDE = plage(1, 0);
+
+    private final AtomicInteger marqueHaute;
+    private final int tailleBloc;
+    // Plage de chaque cellule : prochain identifiant (32 bits de poids fort) et fin incluse (32 bits de poids faible)
+    private final AtomicLongArray plages = new AtomicLongArray(NB_CELLULES);
+
+    /**
+     * @param marqueHaute la marque haute persistée (0 pour un premier démarrage)
+     * @param tailleBloc  le nombre d'identifiants réservés à chaque fois par une cellule
+     */
+    public SequenceParBlocs(int marqueHaute, int tailleBloc) {
+        if (tailleBloc < 1)
+            throw new IllegalArgumentException("tailleBloc doit être strictement positive");
+        this.marqueHaute = new AtomicInteger(marqueHaute);
+        this.tailleBloc = tailleBloc;
+        for (int i = 0; i < NB_CELLULES; i++)
+            plages.set(i, PLAGE_VIDE);
+    }
+
+    @Override
+    public int prochainId() {
+        int cellule = cellule();
+        while (true) {
+            long plage = plages.get(cellule);
+            int prochain = (int) (plage >>> 32);
+            int fin = (int) plage;
+            if (prochain <= fin) {
+                if (plages.compareAndSet(cellule, plage, plage(prochain + 1, fin)))
+                    return prochain;
+            } else {
+                int nouvelleFin = reserver();
+                int debut = nouvelleFin - tailleBloc + 1;
+                // Si un autre thread a rempli la cellule entre-temps, la plage réservée est perdue (les identifiants restent uniques)
+                if (plages.compareAndSet(cellule, plage, plage(debut + 1, nouvelleFin)))
+                    return debut;
+            }
+        }
+    }
+
+    @Override
+    public int getMarqueHaute() {
+        return marqueHaute.get();
+    }
+
+    // Les plages déjà réservées ne sont pas concernées : à appeler avant toute attribution
+    @Override
+    public void avancer(int id) {
+        marqueHaute.accumulateAndGet(id, Math::max);
+    }
+
+    // Réserve une plage sur le compteur partagé ; retourne sa fin (incluse)
+    private int reserver() {
+        while (true) {
+            int courante = marqueHaute.get();
+            if (courante > Integer.MAX_VALUE - tailleBloc)
+                throw new IllegalStateException("Identifiants épuisés (marque haute " + courante + ")");
+            if (marqueHaute.compareAndSet(courante, courante + tailleBloc))
+                return courante + tailleBloc;
+        }
+    }
+
+    private static long plage(int prochain, int fin) {
+        return ((long) prochain << 32) | (fin & 0xFFFFFFFFL);
+    }
+
+    private static int cellule() {
+        long idThread = Thread.currentThread().threadId();
+        return (int) (idThread ^ (idThread >>> 16)) & (NB_CELLULES - 1);
+    }
+
+}
@@ -0,0 +1,39 @@
+package cc.modele.identifiants;
+
+/**
+ * Attribution des identifiants des comptes et des machines.
+ */
+public class ServiceIdentifiants {
+
+    private final GenerateurIdentifiants comptes;
+    private final GenerateurIdentifiants machines;
+
+    /**
+     * Service par défaut : séquences atomiques partant de 0.
+     */
+    public ServiceIdentifiants() {
+        this(new SequenceAtomique(0), new SequenceAtomique(0));
+    }
+
+    public ServiceIdentifiants(GenerateurIdentifiants comptes, GenerateurIdentifiants machines) {
+        this.comptes = comptes;
+        this.machines = machines;
+    }
+
+    public int prochainIdCompte() {
+        return comptes.prochainId();
+    }
+
+    public int prochainIdMachine() {
+        return machines.prochainId();
+    }
+
+    public GenerateurIdentifiants getComptes() {
+        return comptes;
+    }
+
+    public GenerateurIdentifiants getMachines() {
+        return machines;
+    }
+
+}
@@ -0,0 +1,44 @@
+package cc.modele.persistance;
+
+import cc.modele.data.boissons.TypeBoisson;
+import cc.modele.data.comptes.TypeCompte;
+
+import java.util.List;
+
+/**
+ * Codage sur un octet des types de comptes et de boissons, dans les fichiers persistés.
+ */
+final class Codes {
+
+    private static final List<String> TYPES_COMPTES = List.copyOf(TypeCompte.getAllTypes());
+    private static final List<String> TYPES_BOISSONS = List.copyOf(TypeBoisson.getAllTypes());
+
+    static int codeTypeCompte(String type) {
+        return code(TYPES_COMPTES, type);
+    }
+
+    static String typeCompte(int code) {
+        return TYPES_COMPTES.get(code);
+    }
+
+    static int codeTypeBoisson(String type) {
+        return code(TYPES_BOISSONS, type);
+    }
+
+    static String typeBoisson(int code) {
+        return TYPES_BOISSONS.get(code);
+    }
+
+    private static int code(List<String> types, String type) {
+        int code = types.indexOf(type);
+        if (code < 0)
+            throw new IllegalArgumentException("Type inconnu : " + type);
+        return code;
+    }
+
+    // Constructeur privé, car classe de constantes
+    private Codes() {
+        // NOP
+    }
+
+}
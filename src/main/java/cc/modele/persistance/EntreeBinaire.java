@@ -0,0 +1,95 @@
+package cc.modele.persistance;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Lecture séquentielle de données binaires depuis un fichier, au travers d'un tampon direct.
+ */
+class EntreeBinaire implements Closeable {
+
+    private final FileChannel canal;
+    private final ByteBuffer tampon;
+    private boolean finFichier;
+
+    EntreeBinaire(FileChannel canal, int tailleTampon) {
+        this.canal = canal;
+        this.tampon = ByteBuffer.allocateDirect(tailleTampon);
+        this.tampon.limit(0);
+    }
+
+    /**
+     * @param taille le nombre d'octets souhaités
+     * @return true si {@code taille} octets sont lisibles, false si le fichier se termine avant
+     */
+    boolean disponible(int taille) throws IOException {
+        if (taille > tampon.capacity())
+            return false;
+        while (tampon.remaining() < taille && !finFichier) {
+            tampon.compact();
+            finFichier = canal.read(tampon) < 0;
+            tampon.flip();
+        }
+        return tampon.remaining() >= taille;
+    }
+
+    int getByte() throws IOException {
+        return exiger(1).get() & 0xFF;
+    }
+
+    int getInt() throws IOException {
+        return exiger(Integer.BYTES).getInt();
+    }
+
+    long getLong() throws IOException {
+        return exiger(Long.BYTES).getLong();
+    }
+
+    String getChaine() throws IOException {
+        int taille = getInt();
+        byte[] octets = new byte[taille];
+        int lus = 0;
+        while (lus < taille) {
+            int morceau = Math.min(taille - lus, tampon.capacity());
+            exiger(morceau).get(octets, lus, morceau);
+            lus += morceau;
+        }
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Calcule le CRC des {@code taille} prochains octets sans les consommer.
+     */
+    int crc(int taille, CRC32 crc) throws IOException {
+        exiger(taille);
+        int position = tampon.position();
+        int limite = tampon.limit();
+        tampon.limit(position + taille);
+        crc.reset();
+        crc.update(tampon);
+        tampon.limit(limite).position(position);
+        return (int) crc.getValue();
+    }
+
+    void sauter(int taille) throws IOException {
+        exiger(taille);
+        tampon.position(tampon.position() + taille);
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    private ByteBuffer exiger(int taille) throws IOException {
+        if (!disponible(taille))
+            throw new EOFException();
+        return tampon;
+    }
+
+}
@@ -0,0 +1,257 @@
+package cc.modele.persistance;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.AgregatsTemporels;
+import cc.modele.data.boissons.BoissonsCompactees;
+import cc.modele.data.boissons.HeureLocale;
+import cc.modele.data.boissons.HistoriqueBoissons;
+import cc.modele.data.boissons.Resolution;
+import cc.modele.data.boissons.ResumeBoissons;
+import cc.modele.data.boissons.ResumesBoissons;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.machines.Machine;
+import cc.modele.exceptions.CompteDejaExistantException;
+import cc.modele.exceptions.MachineDejaExistanteException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Instantané de l'état du modèle : comptes, machines, historiques de boissons et leurs agrégats temporels,
+ * résumés des boissons compactées et des boissons détaillées.
+ * <p>
+ * Les résumés des boissons détaillées, par machine et par compte, sont calculés pendant l'écriture des historiques :
+ * au chargement, ils évitent de reparcourir toutes les boissons pour reconstruire les statistiques et les compteurs
+ * des comptes (cf. {@link FacadeModele#getBoissonsRestaurees()}).
+ * <p>
+ * L'instantané est pris sans arrêter le modèle ; il mémorise le numéro du premier segment de journal à rejouer.
+ * Les modifications faites pendant sa prise sont à la fois (éventuellement) dans l'instantané et dans ce segment :
+ * la relecture du journal ignore ce qui est déjà présent.
+ */
+final class Instantane {
+
+    private static final int MAGIQUE = 0x43434934; // "CCI4"
+    // Versions précédentes, sans les résumés des boissons détaillées (V3), ni ceux des boissons compactées (V2)
+    private static final int MAGIQUE_V3 = 0x43434933; // "CCI3"
+    private static final int MAGIQUE_V2 = 0x43434932; // "CCI2"
+    private static final int TAILLE_TAMPON = 1 << 20;
+    // Boissons restaurées par prise du verrou de l'historique
+    private static final int TAILLE_LOT = 4096;
+
+    private static final int SUITE = 1;
+    private static final int FIN = 0;
+
+    /**
+     * Le verrou de compactage n'est tenu que le temps de figer, pour chaque machine, le début de son historique détaillé
+     * et de copier les résumés des boissons compactées : l'écriture elle-même se fait sans verrou, les stockages lus
+     * restant réservés par les {@link HistoriqueBoissons.Lecture lectures} ouvertes sous le verrou.
+     * Les boissons préparées après ce point peuvent aussi être écrites : elles sont ignorées à la relecture du journal.
+     *
+     * @param premierSegment le numéro du premier segment de journal à rejouer après chargement de cet instantané
+     */
+    static void ecrire(Path fichier, long premierSegment, FacadeModele facadeModele) throws IOException {
+        List<Machine> machines;
+        List<HistoriqueBoissons.Lecture> lectures = new ArrayList<>();
+        Map<Integer, ResumeBoissons> compacteesParMachine;
+        Map<Integer, ResumeBoissons> compacteesParCompte;
+        // Chaque boisson est soit détaillée à partir du début figé ici, soit dans les résumés copiés
+        Lock verrouCompactage = facadeModele.getVerrouCompactage();
+        verrouCompactage.lock();
+        try {
+            machines = new ArrayList<>(facadeModele.getAllMachines());
+            for (Machine machine : machines)
+                lectures.add(machine.getHistorique().ouvrirLecture());
+            BoissonsCompactees boissonsCompactees = facadeModele.getBoissonsCompactees();
+            compacteesParMachine = copier(boissonsCompactees.getParMachine());
+            compacteesParCompte = copier(boissonsCompactees.getParCompte());
+        } catch (RuntimeException e) {
+            lectures.forEach(HistoriqueBoissons.Lecture::close);
+            throw e;
+        } finally {
+            verrouCompactage.unlock();
+        }
+
+        try (SortieBinaire sortie = new SortieBinaire(FileChannel.open(fichier, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), TAILLE_TAMPON)) {
+            sortie.putInt(MAGIQUE).putLong(premierSegment);
+            for (Compte compte : facadeModele.getAllComptes()) {
+                String type;
+                // Lecture cohérente avec l'ordre du journal (cf. FacadeModele.modifierTypeCompte)
+                Lock verrouCompte = facadeModele.getVerrouCompte(compte.getId());
+                verrouCompte.lock();
+                try {
+                    type = compte.getType();
+                } finally {
+                    verrouCompte.unlock();
+                }
+                sortie.putByte(SUITE).putInt(compte.getId()).putChaine(compte.getLogin()).putChaine(compte.getPassword())
+                        .putByte(Codes.codeTypeCompte(type));
+            }
+            sortie.putByte(FIN);
+            ResumesBoissons detaillees = new ResumesBoissons();
+            HeureLocale heureLocale = new HeureLocale(ZoneId.systemDefault());
+            for (int i = 0; i < machines.size(); i++) {
+                Machine machine = machines.get(i);
+                sortie.putByte(SUITE).putInt(machine.getId()).putChaine(machine.getNom())
+                        .putByte(Codes.codeTypeBoisson(machine.getTypeBoissons())).putChaine(machine.getSalle());
+                // Boissons détaillées et agrégats temporels cohérents entre eux, jusqu'à la taille capturée
+                HistoriqueBoissons.Capture capture = machine.getHistorique().capturer();
+                HistoriqueBoissons.Lecture lecture = lectures.get(i);
+                sortie.putInt(lecture.getPremier()).putInt(capture.getTaille());
+                ecrireBoissons(sortie, machine.getId(), lecture, capture.getTaille(), detaillees, heureLocale);
+                lecture.close();
+                ecrirePages(sortie, capture.getAgregats());
+            }
+            sortie.putByte(FIN);
+            ecrireResumes(sortie, compacteesParMachine);
+            ecrireResumes(sortie, compacteesParCompte);
+            ecrireResumes(sortie, detaillees.getParMachine());
+            ecrireResumes(sortie, detaillees.getParCompte());
+            sortie.forcer();
+        } finally {
+            lectures.forEach(HistoriqueBoissons.Lecture::close);
+        }
+    }
+
+    /**
+     * Charge un instantané dans la façade.
+     *
+     * @return le numéro du premier segment de journal à rejouer
+     */
+    static long charger(Path fichier, FacadeModele facadeModele) throws IOException {
+        Lock verrouCompactage = facadeModele.getVerrouCompactage();
+        verrouCompactage.lock();
+        try (EntreeBinaire entree = new EntreeBinaire(FileChannel.open(fichier, StandardOpenOption.READ), TAILLE_TAMPON)) {
+            int magique = entree.getInt();
+            if (magique != MAGIQUE && magique != MAGIQUE_V3 && magique != MAGIQUE_V2)
+                throw new IOException("Instantané invalide : " + fichier);
+            long premierSegment = entree.getLong();
+            ResumesBoissons detaillees = facadeModele.getBoissonsRestaurees();
+            // Sans résumés persistés, les boissons détaillées sont résumées au chargement
+            HeureLocale heureLocale = magique == MAGIQUE ? null : new HeureLocale(ZoneId.systemDefault());
+            long[] datesMillis = new long[TAILLE_LOT];
+            int[] idsComptes = new int[TAILLE_LOT];
+            int[] nbSucres = new int[TAILLE_LOT];
+            while (entree.getByte() == SUITE)
+                facadeModele.restaurerCompte(entree.getInt(), entree.getChaine(), entree.getChaine(), Codes.typeCompte(entree.getByte()));
+            while (entree.getByte() == SUITE) {
+                Machine machine = facadeModele.restaurerMachine(entree.getInt(), entree.getChaine(), Codes.typeBoisson(entree.getByte()), entree.getChaine());
+                HistoriqueBoissons historique = machine.getHistorique();
+                int premier = entree.getInt();
+                int taille = entree.getInt();
+                historique.restaurerPremier(premier);
+                for (int debut = premier; debut < taille; debut += TAILLE_LOT) {
+                    int nombre = Math.min(TAILLE_LOT, taille - debut);
+                    for (int i = 0; i < nombre; i++) {
+                        datesMillis[i] = entree.getLong();
+                        idsComptes[i] = entree.getInt();
+                        nbSucres[i] = entree.getByte();
+                        if (heureLocale != null)
+                            detaillees.ajouter(machine.getId(), idsComptes[i], heureLocale.heure(datesMillis[i]), nbSucres[i]);
+                    }
+                    historique.restaurerBoissons(datesMillis, idsComptes, nbSucres, nombre);
+                }
+                chargerPages(entree, historique.getAgregats());
+            }
+            if (magique != MAGIQUE_V2)
+                chargerResumes(entree, facadeModele.getBoissonsCompactees());
+            if (magique == MAGIQUE)
+                chargerResumes(entree, detaillees);
+            return premierSegment;
+        } catch (CompteDejaExistantException | MachineDejaExistanteException e) {
+            throw new IOException("Instantané incohérent : " + fichier, e);
+        } finally {
+            verrouCompactage.unlock();
+        }
+    }
+
+    private static Map<Integer, ResumeBoissons> copier(Map<Integer, ResumeBoissons> resumes) {
+        Map<Integer, ResumeBoissons> copie = new HashMap<>(resumes.size() * 2);
+        for (Map.Entry<Integer, ResumeBoissons> resume : resumes.entrySet())
+            copie.put(resume.getKey(), new ResumeBoissons(resume.getValue().getValeurs()));
+        return copie;
+    }
+
+    private static void ecrireBoissons(SortieBinaire sortie, int idMachine, HistoriqueBoissons.Lecture lecture, int fin,
+                                       ResumesBoissons detaillees, HeureLocale heureLocale) throws IOException {
+        try {
+            lecture.parcourir(fin, (dateMillis, idCompte, nbSucres) -> {
+                detaillees.ajouter(idMachine, idCompte, heureLocale.heure(dateMillis), nbSucres);
+                try {
+                    sortie.putLong(dateMillis).putInt(idCompte).putByte(nbSucres);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void ecrireResumes(SortieBinaire sortie, Map<Integer, ResumeBoissons> resumes) throws IOException {
+        for (Map.Entry<Integer, ResumeBoissons> resume : resumes.entrySet()) {
+            sortie.putByte(SUITE).putInt(resume.getKey());
+            for (long valeur : resume.getValue().getValeurs())
+                sortie.putLong(valeur);
+        }
+        sortie.putByte(FIN);
+    }
+
+    private static void chargerResumes(EntreeBinaire entree, ResumesBoissons resumes) throws IOException {
+        while (entree.getByte() == SUITE)
+            resumes.restaurerParMachine(entree.getInt(), chargerResume(entree));
+        while (entree.getByte() == SUITE)
+            resumes.restaurerParCompte(entree.getInt(), chargerResume(entree));
+    }
+
+    private static ResumeBoissons chargerResume(EntreeBinaire entree) throws IOException {
+        long[] valeurs = new long[ResumeBoissons.NB_VALEURS];
+        for (int i = 0; i < valeurs.length; i++)
+            valeurs[i] = entree.getLong();
+        return new ResumeBoissons(valeurs);
+    }
+
+    private static void ecrirePages(SortieBinaire sortie, AgregatsTemporels agregats) throws IOException {
+        try {
+            agregats.parcourirPages((resolution, premierIntervalle, numeroPage, page) -> {
+                try {
+                    sortie.putByte(SUITE).putByte(resolution.ordinal()).putLong(premierIntervalle).putLong(numeroPage);
+                    for (long valeur : page)
+                        sortie.putLong(valeur);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        sortie.putByte(FIN);
+    }
+
+    private static void chargerPages(EntreeBinaire entree, AgregatsTemporels agregats) throws IOException {
+        Resolution[] resolutions = Resolution.values();
+        while (entree.getByte() == SUITE) {
+            Resolution resolution = resolutions[entree.getByte()];
+            long premierIntervalle = entree.getLong();
+            long numeroPage = entree.getLong();
+            long[] page = new long[AgregatsTemporels.getTaillePage()];
+            for (int i = 0; i < page.length; i++)
+                page[i] = entree.getLong();
+            agregats.restaurerPage(resolution, premierIntervalle, numeroPage, page);
+        }
+    }
+
+    // Constructeur privé, car classe utilitaire
+    private Instantane() {
+        // NOP
+    }
+
+}
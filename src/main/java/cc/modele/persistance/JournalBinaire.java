@@ -0,0 +1,374 @@
+package cc.modele.persistance;
+
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.machines.Machine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal binaire des modifications du modèle, découpé en segments numérotés ("journal-0000000000000001.log", ...).
+ * <p>
+ * Format d'un enregistrement : longueur du contenu (int), CRC32 du contenu (int), puis le contenu
+ * (type d'enregistrement sur un octet, suivi de ses champs). Un enregistrement tronqué ou corrompu
+ * en fin de segment (arrêt brutal pendant l'écriture) est ignoré à la relecture.
+ * <p>
+ * Écriture groupée : les enregistrements sont ajoutés à un tampon en mémoire ; le premier thread qui attend
+ * la durabilité écrit et force d'un coup tout le tampon, pour lui et pour tous les enregistrements ajoutés entre-temps.
+ * Les threads qui attendent pendant ce temps n'ont le plus souvent plus rien à écrire une fois son tour venu.
+ * <p>
+ * Si une écriture échoue, le segment est tronqué à la fin du dernier enregistrement durable et les enregistrements
+ * non écrits sont conservés, en tête de la prochaine écriture : la séquence durable n'avance jamais au-delà d'octets
+ * non écrits. Si la troncature échoue elle aussi, le segment peut se terminer par un enregistrement partiel :
+ * le journal est alors défaillant, et toute écriture suivante échoue.
+ */
+public class JournalBinaire implements JournalModele, Closeable {
+
+    static final int COMPTE_CREE = 1;
+    static final int TYPE_COMPTE_MODIFIE = 2;
+    static final int MACHINE_AJOUTEE = 3;
+    static final int BOISSON_PREPAREE = 4;
+
+    // Longueur et CRC32 du contenu
+    static final int TAILLE_ENTETE = 2 * Integer.BYTES;
+
+    private static final String PREFIXE_SEGMENT = "journal-";
+    private static final String SUFFIXE_SEGMENT = ".log";
+    private static final int TAILLE_TAMPON_INITIALE = 1 << 16;
+
+    private final Path repertoire;
+    private final boolean synchrone;
+    private final int seuilEcriture;
+
+    // Protège le tampon en attente, la séquence et le segment courant
+    private final ReentrantLock verrouAjout = new ReentrantLock();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer enAttente = ByteBuffer.allocate(TAILLE_TAMPON_INITIALE);
+    private long derniereSequence;
+    private long numeroSegment;
+    private FileChannel canal;
+    private long tailleSegment;
+
+    // Protège le tampon en cours d'écriture ; un seul thread écrit à la fois.
+    // Verrou plutôt que moniteur : un thread virtuel qui écrit ou attend l'écriture ne bloque pas son thread porteur
+    private final ReentrantLock verrouEcriture = new ReentrantLock();
+    // Vide hors écriture, sauf après un échec : il contient alors les enregistrements à réécrire
+    private ByteBuffer enEcriture = ByteBuffer.allocate(TAILLE_TAMPON_INITIALE);
+    // Fin du dernier enregistrement durable du segment courant
+    private long positionSegment;
+    private Exception defaillance;
+    private volatile long sequenceDurable;
+
+    /**
+     * @param repertoire    le répertoire des segments
+     * @param numeroSegment le numéro du premier segment à écrire (qui ne doit pas exister)
+     * @param synchrone     true pour que {@link #attendre(long)} attende l'écriture forcée sur disque,
+     *                      false pour la laisser aux écritures périodiques ({@link #vider()})
+     * @param seuilEcriture taille du tampon (en octets) au-delà de laquelle l'écriture a lieu même en mode asynchrone
+     */
+    public JournalBinaire(Path repertoire, long numeroSegment, boolean synchrone, int seuilEcriture) throws IOException {
+        this.repertoire = repertoire;
+        this.synchrone = synchrone;
+        this.seuilEcriture = seuilEcriture;
+        this.numeroSegment = numeroSegment;
+        this.canal = ouvrirSegment(numeroSegment);
+    }
+
+    static Path cheminSegment(Path repertoire, long numero) {
+        return repertoire.resolve(String.format("%s%016d%s", PREFIXE_SEGMENT, numero, SUFFIXE_SEGMENT));
+    }
+
+    /**
+     * @return les numéros des segments présents dans le répertoire, dans l'ordre croissant
+     */
+    static List<Long> segments(Path repertoire) throws IOException {
+        List<Long> numeros = new ArrayList<>();
+        try (Stream<Path> fichiers = Files.list(repertoire)) {
+            fichiers.map(fichier -> fichier.getFileName().toString())
+                    .filter(nom -> nom.startsWith(PREFIXE_SEGMENT) && nom.endsWith(SUFFIXE_SEGMENT))
+                    .forEach(nom -> numeros.add(Long.parseLong(nom.substring(PREFIXE_SEGMENT.length(), nom.length() - SUFFIXE_SEGMENT.length()))));
+        }
+        numeros.sort(null);
+        return numeros;
+    }
+
+    @Override
+    public long compteCree(Compte compte) {
+        byte[] login = compte.getLogin().getBytes(StandardCharsets.UTF_8);
+        byte[] password = compte.getPassword().getBytes(StandardCharsets.UTF_8);
+        verrouAjout.lock();
+        try {
+            int debut = debuter(COMPTE_CREE, Integer.BYTES * 3 + login.length + password.length + 1);
+            enAttente.putInt(compte.getId());
+            putChaine(login);
+            putChaine(password);
+            enAttente.put((byte) Codes.codeTypeCompte(compte.getType()));
+            return terminer(debut);
+        } finally {
+            verrouAjout.unlock();
+        }
+    }
+
+    @Override
+    public long typeCompteModifie(Compte compte) {
+        verrouAjout.lock();
+        try {
+            int debut = debuter(TYPE_COMPTE_MODIFIE, Integer.BYTES + 1);
+            enAttente.putInt(compte.getId()).put((byte) Codes.codeTypeCompte(compte.getType()));
+            return terminer(debut);
+        } finally {
+            verrouAjout.unlock();
+        }
+    }
+
+    @Override
+    public long machineAjoutee(Machine machine) {
+        byte[] nom = machine.getNom().getBytes(StandardCharsets.UTF_8);
+        byte[] salle = machine.getSalle().getBytes(StandardCharsets.UTF_8);
+        verrouAjout.lock();
+        try {
+            int debut = debuter(MACHINE_AJOUTEE, Integer.BYTES * 3 + nom.length + salle.length + 1);
+            enAttente.putInt(machine.getId());
+            putChaine(nom);
+            enAttente.put((byte) Codes.codeTypeBoisson(machine.getTypeBoissons()));
+            putChaine(salle);
+            return terminer(debut);
+        } finally {
+            verrouAjout.unlock();
+        }
+    }
+
+    @Override
+    public long boissonPreparee(Machine machine, int index, long dateMillis, int idCompte, int nbSucres) {
+        verrouAjout.lock();
+        try {
+            int debut = debuter(BOISSON_PREPAREE, Integer.BYTES * 3 + Long.BYTES + 1);
+            enAttente.putInt(machine.getId()).putInt(index).putLong(dateMillis).putInt(idCompte).put((byte) nbSucres);
+            return terminer(debut);
+        } finally {
+            verrouAjout.unlock();
+        }
+    }
+
+    @Override
+    public void attendre(long sequence) {
+        if (sequence <= sequenceDurable)
+            return;
+        if (!synchrone && !seuilAtteint())
+            return;
+        ecrireJusqua(sequence);
+    }
+
+    /**
+     * Écrit et force sur disque tous les enregistrements ajoutés jusqu'ici.
+     */
+    public void vider() {
+        ecrireJusqua(Long.MAX_VALUE);
+    }
+
+    /**
+     * Termine le segment courant et poursuit l'écriture dans un nouveau segment.
+     * Tous les enregistrements ajoutés avant l'appel sont dans les segments précédents, et sont durables.
+     *
+     * @return le numéro du nouveau segment
+     */
+    public long basculer() {
+        verrouEcriture.lock();
+        try {
+            verrouAjout.lock();
+            try {
+                verifierEtat();
+                echanger();
+                ecrire(canal);
+                sequenceDurable = derniereSequence;
+                FileChannel nouveau = ouvrirSegment(numeroSegment + 1);
+                canal.close();
+                canal = nouveau;
+                numeroSegment++;
+                tailleSegment = 0;
+                positionSegment = 0;
+                return numeroSegment;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                verrouAjout.unlock();
+            }
+        } finally {
+            verrouEcriture.unlock();
+        }
+    }
+
+    /**
+     * @return le nombre d'octets écrits dans le segment courant
+     */
+    public long getTailleSegment() {
+        verrouAjout.lock();
+        try {
+            return tailleSegment;
+        } finally {
+            verrouAjout.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        verrouEcriture.lock();
+        try {
+            verrouAjout.lock();
+            try (FileChannel aFermer = canal) {
+                if (defaillance != null)
+                    throw new IOException("Journal défaillant", defaillance);
+                echanger();
+                ecrire(aFermer);
+                sequenceDurable = derniereSequence;
+            } finally {
+                verrouAjout.unlock();
+            }
+        } finally {
+            verrouEcriture.unlock();
+        }
+    }
+
+    // Redéfini par les tests pour simuler des pannes d'écriture
+    FileChannel ouvrirSegment(long numero) throws IOException {
+        return FileChannel.open(cheminSegment(repertoire, numero), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    // Réserve la place d'un enregistrement et écrit son type ; retourne la position de l'enregistrement
+    private int debuter(int type, int tailleMaxContenu) {
+        int taille = TAILLE_ENTETE + 1 + tailleMaxContenu;
+        if (enAttente.remaining() < taille) {
+            ByteBuffer agrandi = ByteBuffer.allocate(Math.max(enAttente.capacity() * 2, enAttente.position() + taille));
+            enAttente.flip();
+            agrandi.put(enAttente);
+            enAttente = agrandi;
+        }
+        int debut = enAttente.position();
+        enAttente.position(debut + TAILLE_ENTETE);
+        enAttente.put((byte) type);
+        return debut;
+    }
+
+    // Complète l'entête de l'enregistrement commencé en position debut ; retourne sa séquence
+    private long terminer(int debut) {
+        int longueur = enAttente.position() - debut - TAILLE_ENTETE;
+        crc.reset();
+        crc.update(enAttente.array(), enAttente.arrayOffset() + debut + TAILLE_ENTETE, longueur);
+        enAttente.putInt(debut, longueur);
+        enAttente.putInt(debut + Integer.BYTES, (int) crc.getValue());
+        tailleSegment += TAILLE_ENTETE + longueur;
+        return ++derniereSequence;
+    }
+
+    private void putChaine(byte[] octets) {
+        enAttente.putInt(octets.length).put(octets);
+    }
+
+    private boolean seuilAtteint() {
+        verrouAjout.lock();
+        try {
+            return enAttente.position() >= seuilEcriture;
+        } finally {
+            verrouAjout.unlock();
+        }
+    }
+
+    private void ecrireJusqua(long sequence) {
+        verrouEcriture.lock();
+        try {
+            // Un autre thread a pu écrire notre enregistrement pendant que nous attendions le verrou
+            if (sequence <= sequenceDurable)
+                return;
+            verifierEtat();
+            FileChannel cible;
+            long sequenceEcrite;
+            verrouAjout.lock();
+            try {
+                echanger();
+                cible = canal;
+                sequenceEcrite = derniereSequence;
+            } finally {
+                verrouAjout.unlock();
+            }
+            // Les ajouts continuent dans l'autre tampon pendant l'écriture
+            try {
+                ecrire(cible);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            sequenceDurable = sequenceEcrite;
+        } finally {
+            verrouEcriture.unlock();
+        }
+    }
+
+    // Appelé avec les deux verrous : le tampon en attente devient le tampon à écrire
+    private void echanger() {
+        if (enEcriture.position() == 0) {
+            ByteBuffer tampon = enEcriture;
+            enEcriture = enAttente;
+            enAttente = tampon;
+            enAttente.clear();
+            return;
+        }
+        // Échec de la dernière écriture : les enregistrements ajoutés depuis suivent ceux qui restent à écrire
+        enAttente.flip();
+        if (enEcriture.remaining() < enAttente.remaining()) {
+            ByteBuffer agrandi = ByteBuffer.allocate(enEcriture.position() + enAttente.remaining());
+            enEcriture.flip();
+            agrandi.put(enEcriture);
+            enEcriture = agrandi;
+        }
+        enEcriture.put(enAttente);
+        enAttente.clear();
+    }
+
+    // Appelé avec le verrou d'écriture
+    private void ecrire(FileChannel cible) throws IOException {
+        enEcriture.flip();
+        if (!enEcriture.hasRemaining()) {
+            enEcriture.clear();
+            return;
+        }
+        try {
+            while (enEcriture.hasRemaining())
+                cible.write(enEcriture);
+            cible.force(false);
+        } catch (IOException | RuntimeException e) {
+            restaurer(cible, e);
+            throw e;
+        }
+        positionSegment += enEcriture.limit();
+        enEcriture.clear();
+    }
+
+    // Remet le segment et le tampon dans leur état d'avant l'écriture échouée
+    private void restaurer(FileChannel cible, Exception echec) {
+        enEcriture.position(enEcriture.limit()).limit(enEcriture.capacity());
+        try {
+            cible.truncate(positionSegment);
+            cible.position(positionSegment);
+        } catch (IOException | RuntimeException e) {
+            echec.addSuppressed(e);
+            defaillance = echec;
+        }
+    }
+
+    private void verifierEtat() {
+        if (defaillance != null)
+            throw new UncheckedIOException(new IOException("Journal défaillant", defaillance));
+    }
+
+}
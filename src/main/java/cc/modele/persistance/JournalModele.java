@@ -0,0 +1,49 @@
+package cc.modele.persistance;
+
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.machines.Machine;
+
+/**
+ * Journal des modifications du modèle, alimenté directement par la façade.
+ * <p>
+ * Chaque écriture retourne un numéro de séquence ; {@link #attendre(long)} bloque jusqu'à ce que l'écriture
+ * correspondante soit durable. La façade enregistre la modification sous le verrou qui l'ordonne,
+ * puis attend la durabilité en dehors de ce verrou.
+ */
+public interface JournalModele {
+
+    /**
+     * Journal inactif : rien n'est persisté.
+     */
+    JournalModele AUCUN = new JournalModele() {
+    };
+
+    default long compteCree(Compte compte) {
+        return 0;
+    }
+
+    default long typeCompteModifie(Compte compte) {
+        return 0;
+    }
+
+    default long machineAjoutee(Machine machine) {
+        return 0;
+    }
+
+    /**
+     * @param index la position de la boisson dans l'historique de la machine
+     */
+    default long boissonPreparee(Machine machine, int index, long dateMillis, int idCompte, int nbSucres) {
+        return 0;
+    }
+
+    /**
+     * Attend que toutes les écritures jusqu'à {@code sequence} incluse soient durables.
+     *
+     * @param sequence le numéro de séquence retourné par une écriture
+     */
+    default void attendre(long sequence) {
+        // NOP
+    }
+
+}
@@ -0,0 +1,174 @@
+package cc.modele.persistance;
+
+import cc.modele.FacadeModele;
+import cc.modele.evenements.EcouteurModele;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Persistance du modèle : journal des modifications et instantanés périodiques.
+ * <p>
+ * Au démarrage, l'état est reconstruit en chargeant le dernier instantané puis en rejouant les segments
+ * de journal écrits depuis. Un nouvel instantané est pris périodiquement, ou dès que le segment courant
+ * dépasse une taille donnée ; les segments qu'il couvre sont alors supprimés, ce qui borne la durée de reprise.
+ * <p>
+ * Activée par la propriété {@code cc.persistance.actif=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "cc.persistance.actif", havingValue = "true")
+public class PersistanceModele {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistanceModele.class);
+
+    private static final String INSTANTANE = "instantane.bin";
+    private static final String INSTANTANE_TEMPORAIRE = "instantane.tmp";
+
+    private final FacadeModele facadeModele;
+    private final Path repertoire;
+    private final boolean synchrone;
+    private final long intervalleEcritureMillis;
+    private final long intervalleInstantaneSecondes;
+    private final long seuilInstantaneOctets;
+
+    private final ScheduledExecutorService planificateur = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "persistance");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean instantaneEnCours = new AtomicBoolean();
+    private JournalBinaire journal;
+    // Accédé par le seul thread du planificateur
+    private boolean echecEcriture;
+
+    /**
+     * @param ecouteurs les écouteurs du modèle : dépendance qui garantit qu'ils sont créés, et inscrits auprès de la façade,
+     *                  avant la reprise ; ils reconstruisent alors leur état à partir des résumés des boissons restaurées,
+     *                  sans reparcourir les historiques
+     */
+    @Autowired
+    public PersistanceModele(FacadeModele facadeModele,
+                             List<EcouteurModele> ecouteurs,
+                             @Value("${cc.persistance.repertoire:donnees}") String repertoire,
+                             @Value("${cc.persistance.synchrone:true}") boolean synchrone,
+                             @Value("${cc.persistance.intervalle-ecriture-millis:10}") long intervalleEcritureMillis,
+                             @Value("${cc.persistance.instantane.intervalle-secondes:3600}") long intervalleInstantaneSecondes,
+                             @Value("${cc.persistance.instantane.seuil-octets:268435456}") long seuilInstantaneOctets) {
+        this.facadeModele = facadeModele;
+        this.repertoire = Paths.get(repertoire);
+        this.synchrone = synchrone;
+        this.intervalleEcritureMillis = intervalleEcritureMillis;
+        this.intervalleInstantaneSecondes = intervalleInstantaneSecondes;
+        this.seuilInstantaneOctets = seuilInstantaneOctets;
+    }
+
+    /**
+     * Reconstruit l'état du modèle, puis branche le journal sur la façade.
+     */
+    @PostConstruct
+    public void demarrer() throws IOException {
+        Files.createDirectories(repertoire);
+        long debut = System.nanoTime();
+        Files.deleteIfExists(repertoire.resolve(INSTANTANE_TEMPORAIRE));
+
+        Path instantane = repertoire.resolve(INSTANTANE);
+        long premierSegment = Files.exists(instantane) ? Instantane.charger(instantane, facadeModele) : 0;
+        long dernierSegment = premierSegment - 1;
+        long nbEnregistrements = 0;
+        for (long numero : JournalBinaire.segments(repertoire)) {
+            Path segment = JournalBinaire.cheminSegment(repertoire, numero);
+            // Segments couverts par l'instantané mais pas encore supprimés (arrêt pendant la prise de l'instantané)
+            if (numero < premierSegment) {
+                Files.delete(segment);
+                continue;
+            }
+            nbEnregistrements += RelectureJournal.rejouer(segment, facadeModele);
+            dernierSegment = numero;
+        }
+        facadeModele.terminerRestauration();
+        LOGGER.info("Modèle restauré en {} ms ({} enregistrements de journal rejoués)",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - debut), nbEnregistrements);
+
+        journal = new JournalBinaire(repertoire, dernierSegment + 1, synchrone, 1 << 20);
+        facadeModele.setJournal(journal);
+        if (!synchrone)
+            planificateur.scheduleWithFixedDelay(this::viderEnTache, intervalleEcritureMillis, intervalleEcritureMillis, TimeUnit.MILLISECONDS);
+        planificateur.scheduleWithFixedDelay(this::instantaneSiNecessaire, 1, 1, TimeUnit.MINUTES);
+        planificateur.scheduleWithFixedDelay(this::prendreInstantaneEnTache, intervalleInstantaneSecondes, intervalleInstantaneSecondes, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Prend un instantané du modèle et supprime les segments de journal qu'il couvre.
+     * Sans effet si un instantané est déjà en cours.
+     */
+    public void prendreInstantane() throws IOException {
+        if (!instantaneEnCours.compareAndSet(false, true))
+            return;
+        try {
+            long premierSegment = journal.basculer();
+            Path temporaire = repertoire.resolve(INSTANTANE_TEMPORAIRE);
+            Instantane.ecrire(temporaire, premierSegment, facadeModele);
+            Files.move(temporaire, repertoire.resolve(INSTANTANE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            List<Long> segments = JournalBinaire.segments(repertoire);
+            for (long numero : segments)
+                if (numero < premierSegment)
+                    Files.delete(JournalBinaire.cheminSegment(repertoire, numero));
+        } finally {
+            instantaneEnCours.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void arreter() throws IOException {
+        planificateur.shutdownNow();
+        facadeModele.setJournal(JournalModele.AUCUN);
+        if (journal != null)
+            journal.close();
+    }
+
+    // Une exception annulerait les écritures périodiques suivantes : l'échec est journalisé, l'écriture retentée
+    private void viderEnTache() {
+        try {
+            journal.vider();
+            if (echecEcriture) {
+                echecEcriture = false;
+                LOGGER.info("Écriture du journal rétablie");
+            }
+        } catch (RuntimeException e) {
+            if (!echecEcriture)
+                LOGGER.error("Échec de l'écriture du journal", e);
+            echecEcriture = true;
+        }
+    }
+
+    private void instantaneSiNecessaire() {
+        if (journal.getTailleSegment() >= seuilInstantaneOctets)
+            prendreInstantaneEnTache();
+    }
+
+    private void prendreInstantaneEnTache() {
+        try {
+            prendreInstantane();
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.error("Échec de la prise d'instantané", e);
+        }
+    }
+
+}
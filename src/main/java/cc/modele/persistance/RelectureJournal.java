@@ -0,0 +1,71 @@
+package cc.modele.persistance;
+
+import cc.modele.FacadeModele;
+import cc.modele.exceptions.CompteDejaExistantException;
+import cc.modele.exceptions.CompteInconnuException;
+import cc.modele.exceptions.MachineDejaExistanteException;
+import cc.modele.exceptions.MachineInconnueException;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Relecture d'un segment du journal binaire dans la façade.
+ */
+final class RelectureJournal {
+
+    private static final int TAILLE_TAMPON = 1 << 20;
+
+    /**
+     * Rejoue les enregistrements d'un segment, jusqu'au premier enregistrement tronqué ou corrompu.
+     *
+     * @return le nombre d'enregistrements relus
+     */
+    static long rejouer(Path segment, FacadeModele facadeModele) throws IOException {
+        CRC32 crc = new CRC32();
+        long nbEnregistrements = 0;
+        try (EntreeBinaire entree = new EntreeBinaire(FileChannel.open(segment, StandardOpenOption.READ), TAILLE_TAMPON)) {
+            while (entree.disponible(JournalBinaire.TAILLE_ENTETE)) {
+                int longueur = entree.getInt();
+                int crcAttendu = entree.getInt();
+                // Fin de segment écrite partiellement lors d'un arrêt brutal
+                if (longueur <= 0 || !entree.disponible(longueur) || entree.crc(longueur, crc) != crcAttendu)
+                    break;
+                appliquer(entree, facadeModele);
+                nbEnregistrements++;
+            }
+        } catch (CompteDejaExistantException | CompteInconnuException | MachineDejaExistanteException | MachineInconnueException e) {
+            throw new IOException("Journal incohérent : " + segment, e);
+        }
+        return nbEnregistrements;
+    }
+
+    private static void appliquer(EntreeBinaire entree, FacadeModele facadeModele) throws IOException, CompteDejaExistantException, CompteInconnuException, MachineDejaExistanteException, MachineInconnueException {
+        int type = entree.getByte();
+        switch (type) {
+            case JournalBinaire.COMPTE_CREE:
+                facadeModele.restaurerCompte(entree.getInt(), entree.getChaine(), entree.getChaine(), Codes.typeCompte(entree.getByte()));
+                break;
+            case JournalBinaire.TYPE_COMPTE_MODIFIE:
+                facadeModele.restaurerTypeCompte(entree.getInt(), Codes.typeCompte(entree.getByte()));
+                break;
+            case JournalBinaire.MACHINE_AJOUTEE:
+                facadeModele.restaurerMachine(entree.getInt(), entree.getChaine(), Codes.typeBoisson(entree.getByte()), entree.getChaine());
+                break;
+            case JournalBinaire.BOISSON_PREPAREE:
+                facadeModele.restaurerBoisson(entree.getInt(), entree.getInt(), entree.getLong(), entree.getInt(), entree.getByte());
+                break;
+            default:
+                throw new IOException("Type d'enregistrement inconnu : " + type);
+        }
+    }
+
+    // Constructeur privé, car classe utilitaire
+    private RelectureJournal() {
+        // NOP
+    }
+
+}
@@ -0,0 +1,76 @@
+package cc.modele.persistance;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Écriture séquentielle de données binaires dans un fichier, au travers d'un tampon direct.
+ */
+class SortieBinaire implements Closeable {
+
+    private final FileChannel canal;
+    private final ByteBuffer tampon;
+
+    SortieBinaire(FileChannel canal, int tailleTampon) {
+        this.canal = canal;
+        this.tampon = ByteBuffer.allocateDirect(tailleTampon);
+    }
+
+    SortieBinaire putByte(int valeur) throws IOException {
+        reserver(1).put((byte) valeur);
+        return this;
+    }
+
+    SortieBinaire putInt(int valeur) throws IOException {
+        reserver(Integer.BYTES).putInt(valeur);
+        return this;
+    }
+
+    SortieBinaire putLong(long valeur) throws IOException {
+        reserver(Long.BYTES).putLong(valeur);
+        return this;
+    }
+
+    SortieBinaire putChaine(String valeur) throws IOException {
+        byte[] octets = valeur.getBytes(StandardCharsets.UTF_8);
+        reserver(Integer.BYTES).putInt(octets.length);
+        int ecrits = 0;
+        while (ecrits < octets.length) {
+            int taille = Math.min(octets.length - ecrits, tampon.capacity());
+            reserver(taille).put(octets, ecrits, taille);
+            ecrits += taille;
+        }
+        return this;
+    }
+
+    /**
+     * Écrit le tampon et force les données sur le disque.
+     */
+    void forcer() throws IOException {
+        vider();
+        canal.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        vider();
+        canal.close();
+    }
+
+    private ByteBuffer reserver(int taille) throws IOException {
+        if (tampon.remaining() < taille)
+            vider();
+        return tampon;
+    }
+
+    private void vider() throws IOException {
+        tampon.flip();
+        while (tampon.hasRemaining())
+            canal.write(tampon);
+        tampon.clear();
+    }
+
+}
@@ -0,0 +1,89 @@
+package cc.modele.preparation;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Commande de boisson soumise au moteur de préparation.
+ * L'état évolue de "en_attente" à "en_preparation", puis "prete" (ou "echec").
+ */
+public class Commande {
+
+    private final Long id;
+    private final Integer idMachine;
+    private final Integer idDrinker;
+    private final String typeBoisson;
+    private final Integer nbSucres;
+    private final LocalDateTime dateHeureCommande;
+
+    private volatile String etat;
+    private volatile LocalDateTime dateHeurePreparation;
+
+    // Ordonne la mise en file et les notifications de la commande (cf. MoteurPreparation)
+    private final ReentrantLock verrou = new ReentrantLock();
+
+    public Commande(Long id, Integer idMachine, Integer idDrinker, String typeBoisson, Integer nbSucres) {
+        this.id = id;
+        this.idMachine = idMachine;
+        this.idDrinker = idDrinker;
+        this.typeBoisson = typeBoisson;
+        this.nbSucres = nbSucres;
+        this.dateHeureCommande = LocalDateTime.now();
+        this.etat = EtatCommande.EN_ATTENTE;
+    }
+
+    void demarrer() {
+        etat = EtatCommande.EN_PREPARATION;
+    }
+
+    void terminer(LocalDateTime dateHeurePreparation) {
+        this.dateHeurePreparation = dateHeurePreparation;
+        etat = EtatCommande.PRETE;
+    }
+
+    void echouer() {
+        etat = EtatCommande.ECHEC;
+    }
+
+    ReentrantLock getVerrou() {
+        return verrou;
+    }
+
+    public boolean estTerminee() {
+        String etatCourant = etat;
+        return EtatCommande.PRETE.equals(etatCourant) || EtatCommande.ECHEC.equals(etatCourant);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Integer getIdMachine() {
+        return idMachine;
+    }
+
+    public Integer getIdDrinker() {
+        return idDrinker;
+    }
+
+    public String getTypeBoisson() {
+        return typeBoisson;
+    }
+
+    public Integer getNbSucres() {
+        return nbSucres;
+    }
+
+    public LocalDateTime getDateHeureCommande() {
+        return dateHeureCommande;
+    }
+
+    public String getEtat() {
+        return etat;
+    }
+
+    public LocalDateTime getDateHeurePreparation() {
+        return dateHeurePreparation;
+    }
+
+}
@@ -0,0 +1,44 @@
+package cc.modele.preparation;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Demande de préparation d'une boisson, élément d'une commande groupée.
+ * Le compte est facultatif : à défaut, la boisson est commandée pour le compte de l'appelant.
+ */
+public class DemandePreparation {
+
+    private final Integer idMachine;
+    private final String typeBoisson;
+    private final Integer idDrinker;
+    private final Integer nbSucres;
+
+    @JsonCreator
+    public DemandePreparation(@JsonProperty("idMachine") Integer idMachine,
+                              @JsonProperty("typeBoisson") String typeBoisson,
+                              @JsonProperty("idDrinker") Integer idDrinker,
+                              @JsonProperty("nbSucres") Integer nbSucres) {
+        this.idMachine = idMachine;
+        this.typeBoisson = typeBoisson;
+        this.idDrinker = idDrinker;
+        this.nbSucres = nbSucres;
+    }
+
+    public Integer getIdMachine() {
+        return idMachine;
+    }
+
+    public String getTypeBoisson() {
+        return typeBoisson;
+    }
+
+    public Integer getIdDrinker() {
+        return idDrinker;
+    }
+
+    public Integer getNbSucres() {
+        return nbSucres;
+    }
+
+}
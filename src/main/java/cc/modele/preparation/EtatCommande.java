@@ -0,0 +1,15 @@
+package cc.modele.preparation;
+
+public class EtatCommande {
+
+    public static final String EN_ATTENTE = "en_attente";
+    public static final String EN_PREPARATION = "en_preparation";
+    public static final String PRETE = "prete";
+    public static final String ECHEC = "echec";
+
+    // Constructeur privé, car classe de constantes
+    private EtatCommande() {
+        // NOP
+    }
+
+}
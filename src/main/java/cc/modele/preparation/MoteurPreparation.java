@@ -0,0 +1,345 @@
+package cc.modele.preparation;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.Boisson;
+import cc.modele.evenements.EcouteurPreparation;
+import cc.modele.exceptions.CommandeInconnueException;
+import cc.modele.exceptions.CompteInconnuException;
+import cc.modele.exceptions.FileAttentePleineException;
+import cc.modele.exceptions.MachineInconnueException;
+import cc.modele.exceptions.NbSucresIncorrectException;
+import cc.modele.exceptions.TypeBoissonInconnuException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Moteur de préparation asynchrone des boissons.
+ * <p>
+ * Chaque machine possède sa propre file bornée. Un pool de workers partagé vide les files :
+ * une file n'est confiée qu'à un seul worker à la fois (les boissons d'une machine sont préparées dans l'ordre),
+ * et un worker rend la main après un lot de commandes pour ne pas monopoliser le pool au détriment des autres salles.
+ * Quand la file d'une machine est pleine, la commande est refusée immédiatement.
+ * <p>
+ * Avec {@code spring.threads.virtual.enabled=true}, chaque file est vidée par un thread virtuel plutôt que par un pool
+ * de threads plateforme : une préparation bloquée (E/S vers la machine) ne retient plus de thread plateforme.
+ * L'ordre des commandes d'une machine est conservé, une file n'étant toujours vidée que par un seul thread à la fois.
+ * Les files sont exposées en métriques agrégées (files actives, commandes en attente, profondeur maximale) :
+ * le nombre de séries ne dépend pas du nombre de machines, et une file vide ne compte plus.
+ * <p>
+ * Chaque changement d'état d'une commande est notifié aux {@link EcouteurPreparation} enregistrés.
+ */
+@Component
+public class MoteurPreparation implements MeterBinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MoteurPreparation.class);
+
+    // Nombre maximal de commandes traitées d'affilée pour une même machine
+    private static final int LOT_MAX = 16;
+
+    private final FacadeModele facadeModele;
+    private final int capaciteFile;
+    private final long retentionNanos;
+    private final ExecutorService workers;
+
+    private final Map<Integer, FileMachine> files = new ConcurrentHashMap<>();
+    private final Map<Long, Commande> commandes = new ConcurrentHashMap<>();
+    private final Queue<CommandeTerminee> commandesTerminees = new ConcurrentLinkedQueue<>();
+    private final AtomicLong dernierIdCommande = new AtomicLong();
+    private final List<EcouteurPreparation> ecouteurs = new CopyOnWriteArrayList<>();
+    // Files planifiées (commandes en attente ou en préparation) : seules parcourues par les métriques
+    private final Set<FileMachine> filesActives = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public MoteurPreparation(FacadeModele facadeModele,
+                             @Value("${cc.preparation.capacite-file:32}") int capaciteFile,
+                             @Value("${cc.preparation.nb-workers:0}") int nbWorkers,
+                             @Value("${cc.preparation.retention-secondes:300}") long retentionSecondes,
+                             @Value("${spring.threads.virtual.enabled:false}") boolean threadsVirtuels) {
+        this(facadeModele, capaciteFile, retentionSecondes, threadsVirtuels
+                ? creerWorkersVirtuels()
+                : creerWorkers(nbWorkers > 0 ? nbWorkers : Runtime.getRuntime().availableProcessors()));
+    }
+
+    MoteurPreparation(FacadeModele facadeModele, int capaciteFile, long retentionSecondes, ExecutorService workers) {
+        this.facadeModele = facadeModele;
+        this.capaciteFile = capaciteFile;
+        this.retentionNanos = TimeUnit.SECONDS.toNanos(retentionSecondes);
+        this.workers = workers;
+    }
+
+    private static ExecutorService creerWorkers(int nbThreads) {
+        AtomicInteger numeroThread = new AtomicInteger();
+        return Executors.newFixedThreadPool(nbThreads, runnable -> {
+            Thread thread = new Thread(runnable, "preparation-" + numeroThread.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Un thread virtuel par vidage de file : le nombre de workers n'est plus borné par un pool
+    private static ExecutorService creerWorkersVirtuels() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("preparation-", 1).factory());
+    }
+
+    /**
+     * @param ecouteur l'écouteur à notifier à chaque changement d'état d'une commande
+     */
+    public void ajouterEcouteur(EcouteurPreparation ecouteur) {
+        ecouteurs.add(ecouteur);
+    }
+
+    /**
+     * Soumet une commande, déjà validée, sans attendre sa préparation.
+     *
+     * @param idMachine   l'identifiant de la machine
+     * @param typeBoisson le type de boisson
+     * @param idCompte    l'identifiant du compte demandant la boisson
+     * @param nbSucres    le nombre de sucres
+     * @return la commande, à l'état "en_attente"
+     * @throws FileAttentePleineException si la file de la machine est pleine
+     */
+    public Commande soumettre(Integer idMachine, String typeBoisson, Integer idCompte, Integer nbSucres) throws FileAttentePleineException {
+        purgerCommandesTerminees();
+        Commande commande = new Commande(dernierIdCommande.incrementAndGet(), idMachine, idCompte, typeBoisson, nbSucres);
+        FileMachine file = file(idMachine);
+        commandes.put(commande.getId(), commande);
+        if (!mettreEnFile(file, commande)) {
+            commandes.remove(commande.getId());
+            throw new FileAttentePleineException();
+        }
+        file.planifier();
+        return commande;
+    }
+
+    /**
+     * Soumet un lot de commandes, déjà validées, sans attendre leur préparation.
+     * Les commandes sont regroupées par machine : chaque file reçoit ses commandes d'affilée et n'est planifiée qu'une fois.
+     *
+     * @param demandes les demandes (compte renseigné pour chacune)
+     * @return pour chaque demande, dans le même ordre, la commande à l'état "en_attente",
+     * ou null si la file de sa machine était pleine
+     */
+    public List<Commande> soumettreLot(List<DemandePreparation> demandes) {
+        purgerCommandesTerminees();
+        Map<Integer, List<Integer>> indicesParMachine = new LinkedHashMap<>();
+        for (int i = 0; i < demandes.size(); i++)
+            indicesParMachine.computeIfAbsent(demandes.get(i).getIdMachine(), id -> new ArrayList<>()).add(i);
+
+        Commande[] resultat = new Commande[demandes.size()];
+        for (Map.Entry<Integer, List<Integer>> groupe : indicesParMachine.entrySet()) {
+            FileMachine file = file(groupe.getKey());
+            for (int indice : groupe.getValue()) {
+                DemandePreparation demande = demandes.get(indice);
+                Commande commande = new Commande(dernierIdCommande.incrementAndGet(), demande.getIdMachine(), demande.getIdDrinker(), demande.getTypeBoisson(), demande.getNbSucres());
+                commandes.put(commande.getId(), commande);
+                if (mettreEnFile(file, commande))
+                    resultat[indice] = commande;
+                else
+                    commandes.remove(commande.getId());
+            }
+            file.planifier();
+        }
+        return Arrays.asList(resultat);
+    }
+
+    /**
+     * @param idCommande l'identifiant de la commande
+     * @return la commande (les commandes terminées restent consultables pendant la durée de rétention)
+     * @throws CommandeInconnueException si la commande n'existe pas ou a expiré
+     */
+    public Commande getCommande(Long idCommande) throws CommandeInconnueException {
+        purgerCommandesTerminees();
+        Commande commande = idCommande == null ? null : commandes.get(idCommande);
+        if (commande == null)
+            throw new CommandeInconnueException();
+        return commande;
+    }
+
+    /**
+     * @param idMachine l'identifiant de la machine
+     * @return le nombre de commandes en attente pour cette machine
+     */
+    public int getProfondeurFile(Integer idMachine) {
+        FileMachine file = files.get(idMachine);
+        return file == null ? 0 : file.commandes.size();
+    }
+
+    /**
+     * @return le nombre de machines dont la file est en cours de traitement
+     */
+    public int getNbFilesActives() {
+        return filesActives.size();
+    }
+
+    /**
+     * @return le nombre total de commandes en attente, toutes machines confondues
+     */
+    public int getNbEnAttente() {
+        int nbEnAttente = 0;
+        for (FileMachine file : filesActives)
+            nbEnAttente += file.commandes.size();
+        return nbEnAttente;
+    }
+
+    /**
+     * @return la profondeur de la file la plus chargée
+     */
+    public int getProfondeurMax() {
+        int profondeurMax = 0;
+        for (FileMachine file : filesActives)
+            profondeurMax = Math.max(profondeurMax, file.commandes.size());
+        return profondeurMax;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cc.preparation.files.actives", this, MoteurPreparation::getNbFilesActives)
+                .description("Machines dont la file est en cours de traitement")
+                .register(registry);
+        Gauge.builder("cc.preparation.file.attente", this, MoteurPreparation::getNbEnAttente)
+                .description("Commandes en attente de préparation, toutes machines confondues")
+                .register(registry);
+        Gauge.builder("cc.preparation.file.max", this, MoteurPreparation::getProfondeurMax)
+                .description("Profondeur de la file de machine la plus chargée")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void arreter() {
+        workers.shutdownNow();
+    }
+
+    private FileMachine file(Integer idMachine) {
+        FileMachine file = files.get(idMachine);
+        if (file != null)
+            return file;
+        return files.computeIfAbsent(idMachine, id -> new FileMachine());
+    }
+
+    private boolean mettreEnFile(FileMachine file, Commande commande) {
+        if (ecouteurs.isEmpty())
+            return file.commandes.offer(commande);
+        // Verrou de la commande : un worker ne peut pas notifier son démarrage avant sa mise en file.
+        // Verrou plutôt que moniteur : les écouteurs peuvent attendre un verrou, sans bloquer le thread porteur d'un thread virtuel
+        ReentrantLock verrou = commande.getVerrou();
+        verrou.lock();
+        try {
+            if (!file.commandes.offer(commande))
+                return false;
+            notifier(commande);
+            return true;
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    private void preparer(Commande commande) {
+        ReentrantLock verrou = commande.getVerrou();
+        verrou.lock();
+        try {
+            commande.demarrer();
+            notifier(commande);
+        } finally {
+            verrou.unlock();
+        }
+        try {
+            Boisson boisson = facadeModele.preparerBoisson(commande.getIdMachine(), commande.getTypeBoisson(), commande.getIdDrinker(), commande.getNbSucres());
+            commande.terminer(boisson.getDateHeurePreparation());
+        } catch (CompteInconnuException | MachineInconnueException | TypeBoissonInconnuException | NbSucresIncorrectException e) {
+            // Commande refusée par le modèle
+            commande.echouer();
+        } catch (RuntimeException e) {
+            // Panne (p.ex. écriture du journal impossible) : la commande échoue, le worker continue de vider la file
+            LOGGER.error("Préparation de la commande {} impossible", commande.getId(), e);
+            commande.echouer();
+        }
+        notifier(commande);
+        commandesTerminees.add(new CommandeTerminee(commande.getId(), System.nanoTime() + retentionNanos));
+    }
+
+    private void notifier(Commande commande) {
+        for (EcouteurPreparation ecouteur : ecouteurs)
+            ecouteur.commandeModifiee(commande);
+    }
+
+    private void purgerCommandesTerminees() {
+        long maintenant = System.nanoTime();
+        CommandeTerminee plusAncienne;
+        while ((plusAncienne = commandesTerminees.peek()) != null && plusAncienne.expiration - maintenant <= 0) {
+            if (commandesTerminees.remove(plusAncienne))
+                commandes.remove(plusAncienne.idCommande);
+        }
+    }
+
+    // File d'une machine, vidée par au plus un worker à la fois
+    private final class FileMachine implements Runnable {
+
+        private final BlockingQueue<Commande> commandes = new ArrayBlockingQueue<>(capaciteFile);
+        private final AtomicBoolean planifiee = new AtomicBoolean();
+
+        void planifier() {
+            if (planifiee.compareAndSet(false, true)) {
+                filesActives.add(this);
+                workers.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            Commande commande;
+            int traitees = 0;
+            while (traitees < LOT_MAX && (commande = commandes.poll()) != null) {
+                preparer(commande);
+                traitees++;
+            }
+            // Retirée avant la libération : une commande arrivée entre-temps la replanifie, et la réactive
+            if (commandes.isEmpty())
+                filesActives.remove(this);
+            planifiee.set(false);
+            // Commandes arrivées entre le dernier poll et la libération : on se replanifie
+            if (!commandes.isEmpty())
+                planifier();
+        }
+
+    }
+
+    private static final class CommandeTerminee {
+
+        private final Long idCommande;
+        private final long expiration;
+
+        private CommandeTerminee(Long idCommande, long expiration) {
+            this.idCommande = idCommande;
+            this.expiration = expiration;
+        }
+
+    }
+
+}
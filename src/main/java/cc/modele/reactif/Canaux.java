@@ -0,0 +1,85 @@
+package cc.modele.reactif;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Canaux de diffusion par clé (machine, compte) : un canal est créé au premier abonnement et retiré au départ de son dernier abonné,
+ * une clé qui n'est plus suivie ne coûte rien.
+ * <p>
+ * Les émissions d'un canal sont sérialisées par un verrou, tenu le temps de déposer l'événement : jamais l'émetteur n'attend un abonné.
+ * Le canal ne retient rien pour un abonné qui n'a pas de demande ; c'est à l'abonné de choisir (p.ex. {@link Flux#onBackpressureLatest()},
+ * ou un tampon borné qui termine le flux s'il déborde).
+ *
+ * @param <E> le type des événements
+ */
+public final class Canaux<E> {
+
+    private final Map<Integer, Canal<E>> canaux = new ConcurrentHashMap<>();
+    private final AtomicInteger nbAbonnes = new AtomicInteger();
+
+    /**
+     * @return les événements publiés sur la clé, à partir de l'abonnement
+     */
+    public Flux<E> suivre(Integer cle) {
+        return Flux.defer(() -> {
+            // Nombre d'abonnés modifié sous le verrou de la clé : un canal n'est jamais retiré pendant qu'un abonné le rejoint
+            Canal<E> canal = canaux.compute(cle, (c, existant) -> {
+                Canal<E> rejoint = existant != null ? existant : new Canal<>();
+                rejoint.nbAbonnes++;
+                return rejoint;
+            });
+            nbAbonnes.incrementAndGet();
+            return canal.sink.asFlux().doFinally(signal -> {
+                nbAbonnes.decrementAndGet();
+                canaux.computeIfPresent(cle, (c, existant) -> existant == canal && --existant.nbAbonnes == 0 ? null : existant);
+            });
+        });
+    }
+
+    /**
+     * Publie un événement aux abonnés de la clé ; l'événement n'est construit que si la clé est suivie.
+     */
+    public void publier(Integer cle, Supplier<? extends E> evenement) {
+        Canal<E> canal = canaux.get(cle);
+        if (canal == null)
+            return;
+        canal.verrou.lock();
+        try {
+            canal.sink.tryEmitNext(evenement.get());
+        } finally {
+            canal.verrou.unlock();
+        }
+    }
+
+    /**
+     * @return true si la clé a au moins un abonné
+     */
+    public boolean estSuivie(Integer cle) {
+        return canaux.containsKey(cle);
+    }
+
+    public int getNbAbonnes() {
+        return nbAbonnes.get();
+    }
+
+    public int getNbCanaux() {
+        return canaux.size();
+    }
+
+    private static final class Canal<E> {
+
+        private final Sinks.Many<E> sink = Sinks.many().multicast().directBestEffort();
+        private final ReentrantLock verrou = new ReentrantLock();
+        // Modifié uniquement dans les fonctions de calcul de la map, sous le verrou de la clé
+        private int nbAbonnes;
+
+    }
+
+}
@@ -0,0 +1,36 @@
+package cc.modele.reactif;
+
+import java.time.LocalDateTime;
+
+/**
+ * État d'une machine diffusé à ses abonnés : le nombre de boissons préparées et la date de la dernière préparation.
+ */
+public final class EtatMachine {
+
+    private final Integer idMachine;
+    private final int nbBoissonsPreparees;
+    private final LocalDateTime dateHeureDernierePreparation;
+
+    /**
+     * @param dateHeureDernierePreparation la date de la dernière préparation, null si elle n'est pas connue
+     *                                     (aucune boisson, ou boissons compactées)
+     */
+    public EtatMachine(Integer idMachine, int nbBoissonsPreparees, LocalDateTime dateHeureDernierePreparation) {
+        this.idMachine = idMachine;
+        this.nbBoissonsPreparees = nbBoissonsPreparees;
+        this.dateHeureDernierePreparation = dateHeureDernierePreparation;
+    }
+
+    public Integer getIdMachine() {
+        return idMachine;
+    }
+
+    public int getNbBoissonsPreparees() {
+        return nbBoissonsPreparees;
+    }
+
+    public LocalDateTime getDateHeureDernierePreparation() {
+        return dateHeureDernierePreparation;
+    }
+
+}
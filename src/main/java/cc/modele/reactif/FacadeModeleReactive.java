@@ -0,0 +1,208 @@
+package cc.modele.reactif;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.Boisson;
+import cc.modele.data.boissons.HistoriqueBoissons;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.machines.Machine;
+import cc.modele.evenements.EcouteurModele;
+import cc.modele.preparation.Commande;
+import cc.modele.preparation.DemandePreparation;
+import cc.modele.preparation.MoteurPreparation;
+import cc.modele.statistiques.Agregat;
+import cc.modele.statistiques.ClassementBuveurs;
+import cc.modele.statistiques.HeureDePointe;
+import cc.modele.statistiques.PlaceClassement;
+import cc.modele.statistiques.SerieBoissons;
+import cc.modele.statistiques.StatistiquesBoissons;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Façade réactive du modèle, pour le profil "reactif".
+ * <p>
+ * Les lectures sont en mémoire et ne bloquent pas : elles sont différées jusqu'à l'abonnement et exécutées dans le thread abonné,
+ * sauf les plus coûteuses (listes complètes, séries et plages des statistiques), exécutées sur le scheduler élastique
+ * pour ne pas retenir un thread Netty.
+ * Les modifications (création de compte, changement de type, ajout de machine) attendent l'écriture du journal sur disque :
+ * elles s'exécutent sur le scheduler élastique, jamais sur les threads Netty ni sur ceux du service de hachage.
+ * Les exceptions du modèle sont transmises comme erreurs du Mono.
+ * <p>
+ * L'état des machines (nombre de boissons préparées) est diffusé aux abonnés de la machine concernée à chaque boisson préparée.
+ * Un abonné trop lent pour suivre perd les états intermédiaires, jamais le modèle n'attend un abonné.
+ */
+@Component
+@Profile("reactif")
+public class FacadeModeleReactive implements EcouteurModele {
+
+    private final FacadeModele facadeModele;
+    private final MoteurPreparation moteurPreparation;
+    private final StatistiquesBoissons statistiquesBoissons;
+    private final ClassementBuveurs classementBuveurs;
+
+    // Un canal par machine suivie
+    private final Canaux<EtatMachine> etatsMachines = new Canaux<>();
+
+    public FacadeModeleReactive(FacadeModele facadeModele, MoteurPreparation moteurPreparation,
+                                StatistiquesBoissons statistiquesBoissons, ClassementBuveurs classementBuveurs) {
+        this.facadeModele = facadeModele;
+        this.moteurPreparation = moteurPreparation;
+        this.statistiquesBoissons = statistiquesBoissons;
+        this.classementBuveurs = classementBuveurs;
+        facadeModele.ajouterEcouteur(this);
+    }
+
+    @Override
+    public void boissonPreparee(Machine machine, Boisson boisson) {
+        // Nombre lu sous le verrou du canal : les états émis ne reculent jamais, même servis depuis plusieurs threads
+        etatsMachines.publier(machine.getId(),
+                () -> new EtatMachine(machine.getId(), machine.getNbBoissonsPreparees(), boisson.getDateHeurePreparation()));
+    }
+
+    /**
+     * @param idMachine l'identifiant de la machine
+     * @return l'état courant de la machine, puis son nouvel état à chaque boisson préparée ;
+     * en erreur {@link cc.modele.exceptions.MachineInconnueException} si la machine n'existe pas
+     */
+    public Flux<EtatMachine> getEvenementsMachine(Integer idMachine) {
+        return getMachineById(idMachine).flatMapMany(machine -> Flux.merge(
+                // Abonnement au canal avant la lecture de l'état courant : aucun changement n'est manqué
+                etatsMachines.suivre(machine.getId()).onBackpressureLatest(),
+                Mono.fromCallable(() -> etatCourant(machine))));
+    }
+
+    /**
+     * @return le nombre de machines suivies
+     */
+    public int getNbMachinesSuivies() {
+        return etatsMachines.getNbCanaux();
+    }
+
+    public Mono<Compte> creerCompteDrinker(String login, String password) {
+        return Mono.fromCallable(() -> facadeModele.creerCompteDrinker(login, password))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<Collection<Compte>> getAllComptes() {
+        return Mono.fromCallable(facadeModele::getAllComptes)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<List<Compte>> getComptesApres(Integer apres, int limite) {
+        return Mono.fromCallable(() -> facadeModele.getComptesApres(apres, limite));
+    }
+
+    public Mono<Compte> getCompteById(Integer idCompte) {
+        return Mono.fromCallable(() -> facadeModele.getCompteById(idCompte));
+    }
+
+    public Mono<Set<String>> getLoginsExistants(Collection<String> logins) {
+        return Mono.fromCallable(() -> facadeModele.getLoginsExistants(logins));
+    }
+
+    public Mono<Compte> getCompteByLogin(String login) {
+        return Mono.fromCallable(() -> facadeModele.getCompteByLogin(login));
+    }
+
+    public Mono<Compte> modifierTypeCompte(Integer idCompte, String nouveauType) {
+        return Mono.fromCallable(() -> facadeModele.modifierTypeCompte(idCompte, nouveauType))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<Machine> ajouterMachine(String nom, String typeBoissons, String salle) {
+        return Mono.fromCallable(() -> facadeModele.ajouterMachine(nom, typeBoissons, salle))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<Collection<Machine>> getAllMachines() {
+        return Mono.fromCallable(facadeModele::getAllMachines)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<List<Machine>> getMachinesApres(Integer apres, int limite) {
+        return Mono.fromCallable(() -> facadeModele.getMachinesApres(apres, limite));
+    }
+
+    public Mono<Collection<Machine>> getAllMachinesBySalle(String salle) {
+        return Mono.fromCallable(() -> facadeModele.getAllMachinesBySalle(salle));
+    }
+
+    public Mono<Machine> getMachineById(Integer idMachine) {
+        return Mono.fromCallable(() -> facadeModele.getMachineById(idMachine));
+    }
+
+    public Mono<Commande> soumettre(Integer idMachine, String typeBoisson, Integer idCompte, Integer nbSucres) {
+        return Mono.fromCallable(() -> moteurPreparation.soumettre(idMachine, typeBoisson, idCompte, nbSucres));
+    }
+
+    public Mono<List<Commande>> soumettreLot(List<DemandePreparation> demandes) {
+        return Mono.fromCallable(() -> moteurPreparation.soumettreLot(demandes));
+    }
+
+    public Mono<Commande> getCommande(Long idCommande) {
+        return Mono.fromCallable(() -> moteurPreparation.getCommande(idCommande));
+    }
+
+    public Mono<List<PlaceClassement>> getPremiers(int k) {
+        return Mono.fromCallable(() -> classementBuveurs.getPremiers(k));
+    }
+
+    public Mono<Agregat> getStatistiquesGlobales() {
+        return Mono.fromCallable(statistiquesBoissons::getGlobal);
+    }
+
+    public Mono<Agregat> getStatistiquesType(String typeBoisson) {
+        return Mono.fromCallable(() -> statistiquesBoissons.getParType(typeBoisson));
+    }
+
+    public Mono<Agregat> getStatistiquesMachine(Integer idMachine) {
+        return Mono.fromCallable(() -> statistiquesBoissons.getParMachine(idMachine));
+    }
+
+    public Mono<Agregat> getStatistiquesSalle(String salle) {
+        return Mono.fromCallable(() -> statistiquesBoissons.getParSalle(salle));
+    }
+
+    public Mono<Agregat> getStatistiquesCompte(Integer idCompte) {
+        return Mono.fromCallable(() -> statistiquesBoissons.getParCompte(idCompte));
+    }
+
+    public Mono<Long> compterBoissons(Integer idMachine, LocalDateTime debut, LocalDateTime fin) {
+        return Mono.fromCallable(() -> statistiquesBoissons.compterBoissons(idMachine, debut, fin))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<SerieBoissons> getSerie(Integer idMachine, LocalDateTime debut, LocalDateTime fin, Duration pas) {
+        return Mono.fromCallable(() -> statistiquesBoissons.getSerie(idMachine, debut, fin, pas))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * @return l'heure de pointe, ou un Mono vide si aucune boisson n'a été préparée dans la salle sur la période
+     */
+    public Mono<HeureDePointe> getHeureDePointe(String salle, LocalDateTime debut, LocalDateTime fin) {
+        return Mono.fromCallable(() -> statistiquesBoissons.getHeureDePointe(salle, debut, fin))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static EtatMachine etatCourant(Machine machine) {
+        HistoriqueBoissons.Fin fin = machine.getHistorique().capturerFin();
+        // Dernière boisson compactée : date inconnue
+        LocalDateTime derniere = fin.isDetaillee()
+                ? LocalDateTime.ofInstant(Instant.ofEpochMilli(fin.getDerniereDateMillis()), ZoneId.systemDefault())
+                : null;
+        return new EtatMachine(machine.getId(), fin.getTaille(), derniere);
+    }
+
+}
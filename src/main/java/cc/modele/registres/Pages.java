@@ -0,0 +1,28 @@
+package cc.modele.registres;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+
+final class Pages {
+
+    /**
+     * @param suite  la suite triée des éléments, à partir du curseur
+     * @param limite le nombre maximal d'éléments à retourner
+     * @return au plus {@code limite} premiers éléments de la suite
+     */
+    static <T> List<T> page(NavigableMap<Integer, T> suite, int limite) {
+        List<T> page = new ArrayList<>(Math.min(limite, 1024));
+        Iterator<T> iterateur = suite.values().iterator();
+        while (page.size() < limite && iterateur.hasNext())
+            page.add(iterateur.next());
+        return page;
+    }
+
+    // Constructeur privé, car classe utilitaire
+    private Pages() {
+        // NOP
+    }
+
+}
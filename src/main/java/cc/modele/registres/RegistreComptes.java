@@ -0,0 +1,124 @@
+package cc.modele.registres;
+
+import cc.modele.data.comptes.Compte;
+import cc.modele.exceptions.CompteDejaExistantException;
+import cc.modele.exceptions.CompteInconnuException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Registre concurrent des comptes.
+ * Index primaire par id, index secondaire unique par login : recherches et contrôles de doublons en O(1).
+ * Un index trié par id sert aux parcours ordonnés et à la pagination.
+ */
+public class RegistreComptes {
+
+    private final Map<Integer, Compte> comptesParId = new ConcurrentHashMap<>();
+    private final Map<String, Compte> comptesParLogin = new ConcurrentHashMap<>();
+    private final NavigableMap<Integer, Compte> comptesTries = new ConcurrentSkipListMap<>();
+
+    /**
+     * Indique si un compte existe déjà avec ce login.
+     *
+     * @param login le login recherché
+     * @return true si le login est déjà pris
+     */
+    public boolean contientLogin(String login) {
+        return login != null && comptesParLogin.containsKey(login);
+    }
+
+    /**
+     * Ajoute un compte au registre. La réservation du login est atomique :
+     * deux ajouts concurrents avec le même login ne peuvent pas réussir tous les deux.
+     *
+     * @param compte le compte à ajouter
+     * @throws CompteDejaExistantException si un compte existe déjà avec le même login
+     */
+    public void ajouter(Compte compte) throws CompteDejaExistantException {
+        reserver(compte);
+        publier(compte);
+    }
+
+    /**
+     * Première étape d'un ajout : réserve le login du compte, de façon atomique.
+     * Le compte n'est pas encore accessible par son id, ni listé.
+     *
+     * @param compte le compte à ajouter
+     * @throws CompteDejaExistantException si un compte existe déjà avec le même login
+     */
+    public void reserver(Compte compte) throws CompteDejaExistantException {
+        if (comptesParLogin.putIfAbsent(compte.getLogin(), compte) != null)
+            throw new CompteDejaExistantException();
+    }
+
+    /**
+     * Seconde étape d'un ajout : rend accessible par son id, et listé, un compte dont le login est réservé.
+     *
+     * @param compte le compte réservé
+     */
+    public void publier(Compte compte) {
+        comptesParId.put(compte.getId(), compte);
+        comptesTries.put(compte.getId(), compte);
+    }
+
+    /**
+     * @param idCompte l'identifiant du compte recherché
+     * @return le compte
+     * @throws CompteInconnuException si aucun compte n'existe avec cet identifiant
+     */
+    public Compte getParId(Integer idCompte) throws CompteInconnuException {
+        Compte compte = idCompte == null ? null : comptesParId.get(idCompte);
+        if (compte == null)
+            throw new CompteInconnuException();
+        return compte;
+    }
+
+    /**
+     * @param idCompte l'identifiant du compte recherché
+     * @return le compte, ou null si aucun compte n'existe avec cet identifiant
+     */
+    public Compte trouverParId(int idCompte) {
+        return comptesParId.get(idCompte);
+    }
+
+    /**
+     * @param login le login du compte recherché
+     * @return le compte
+     * @throws CompteInconnuException si aucun compte n'existe avec ce login
+     */
+    public Compte getParLogin(String login) throws CompteInconnuException {
+        Compte compte = login == null ? null : comptesParLogin.get(login);
+        if (compte == null)
+            throw new CompteInconnuException();
+        return compte;
+    }
+
+    /**
+     * @return une vue non modifiable de tous les comptes, triés par id
+     */
+    public Collection<Compte> getTous() {
+        return Collections.unmodifiableCollection(comptesTries.values());
+    }
+
+    /**
+     * Page de comptes triés par id, en O(log n + limite).
+     *
+     * @param apres  l'id à partir duquel commencer (exclu), ou null pour partir du début
+     * @param limite le nombre maximal de comptes à retourner
+     * @return les comptes d'id strictement supérieur à {@code apres}
+     */
+    public List<Compte> getPage(Integer apres, int limite) {
+        return Pages.page(apres == null ? comptesTries : comptesTries.tailMap(apres, false), limite);
+    }
+
+    public int taille() {
+        return comptesParId.size();
+    }
+
+}
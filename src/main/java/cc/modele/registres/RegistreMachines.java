@@ -0,0 +1,152 @@
+package cc.modele.registres;
+
+import cc.modele.data.machines.Machine;
+import cc.modele.data.machines.Salles;
+import cc.modele.exceptions.MachineDejaExistanteException;
+import cc.modele.exceptions.MachineInconnueException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Registre concurrent des machines.
+ * Index par id, index unique par nom et index par salle : les consultations par salle
+ * se font directement sur le groupe de machines de la salle, sans parcourir tout le parc.
+ * L'index par salle est un tableau indexé par la clé de la salle (cf. {@link Salles}).
+ */
+public class RegistreMachines {
+
+    private final Map<Integer, Machine> machinesParId = new ConcurrentHashMap<>();
+    private final Map<String, Machine> machinesParNom = new ConcurrentHashMap<>();
+    private final NavigableMap<Integer, Machine> machinesTriees = new ConcurrentSkipListMap<>();
+    // Peu d'ajouts et beaucoup de lectures par salle : copie à l'écriture
+    private final AtomicReferenceArray<List<Machine>> machinesParSalle = new AtomicReferenceArray<>(Salles.NB_CLES);
+
+    /**
+     * Indique si une machine existe déjà avec ce nom.
+     *
+     * @param nom le nom recherché
+     * @return true si le nom est déjà pris
+     */
+    public boolean contientNom(String nom) {
+        return nom != null && machinesParNom.containsKey(nom);
+    }
+
+    /**
+     * Ajoute une machine au registre. La réservation du nom est atomique :
+     * deux ajouts concurrents avec le même nom ne peuvent pas réussir tous les deux.
+     *
+     * @param machine la machine à ajouter
+     * @throws MachineDejaExistanteException si une machine existe déjà avec le même nom
+     */
+    public void ajouter(Machine machine) throws MachineDejaExistanteException {
+        reserver(machine);
+        publier(machine);
+    }
+
+    /**
+     * Première étape d'un ajout : réserve le nom de la machine, de façon atomique.
+     * La machine n'est pas encore accessible par son id, ni listée.
+     *
+     * @param machine la machine à ajouter
+     * @throws MachineDejaExistanteException si une machine existe déjà avec le même nom
+     */
+    public void reserver(Machine machine) throws MachineDejaExistanteException {
+        if (machinesParNom.putIfAbsent(machine.getNom(), machine) != null)
+            throw new MachineDejaExistanteException();
+    }
+
+    /**
+     * Seconde étape d'un ajout : rend accessible par son id, et listée, une machine dont le nom est réservé.
+     *
+     * @param machine la machine réservée
+     */
+    public void publier(Machine machine) {
+        machinesParId.put(machine.getId(), machine);
+        machinesTriees.put(machine.getId(), machine);
+        // Salle persistée avant la vérification complète du format : la machine n'est pas indexée par salle
+        int cleSalle = machine.getCleSalle();
+        if (cleSalle != Salles.CLE_INVALIDE)
+            groupeSalle(cleSalle).add(machine);
+    }
+
+    private List<Machine> groupeSalle(int cleSalle) {
+        List<Machine> machines = machinesParSalle.get(cleSalle);
+        if (machines == null) {
+            machinesParSalle.compareAndSet(cleSalle, null, new CopyOnWriteArrayList<>());
+            machines = machinesParSalle.get(cleSalle);
+        }
+        return machines;
+    }
+
+    /**
+     * @param idMachine l'identifiant de la machine recherchée
+     * @return la machine
+     * @throws MachineInconnueException si aucune machine n'existe avec cet identifiant
+     */
+    public Machine getParId(Integer idMachine) throws MachineInconnueException {
+        Machine machine = idMachine == null ? null : machinesParId.get(idMachine);
+        if (machine == null)
+            throw new MachineInconnueException();
+        return machine;
+    }
+
+    /**
+     * @param idMachine l'identifiant de la machine recherchée
+     * @return la machine, ou null si aucune machine n'existe avec cet identifiant
+     */
+    public Machine trouverParId(int idMachine) {
+        return machinesParId.get(idMachine);
+    }
+
+    /**
+     * @param nom le nom de la machine recherchée
+     * @return la machine
+     * @throws MachineInconnueException si aucune machine n'existe avec ce nom
+     */
+    public Machine getParNom(String nom) throws MachineInconnueException {
+        Machine machine = nom == null ? null : machinesParNom.get(nom);
+        if (machine == null)
+            throw new MachineInconnueException();
+        return machine;
+    }
+
+    /**
+     * @param cleSalle la clé de la salle (cf. {@link Salles})
+     * @return une vue non modifiable des machines de la salle (vide si la salle n'en contient aucune)
+     */
+    public Collection<Machine> getParSalle(int cleSalle) {
+        List<Machine> machines = machinesParSalle.get(cleSalle);
+        return machines == null ? Collections.emptyList() : Collections.unmodifiableList(machines);
+    }
+
+    /**
+     * @return une vue non modifiable de toutes les machines, triées par id
+     */
+    public Collection<Machine> getToutes() {
+        return Collections.unmodifiableCollection(machinesTriees.values());
+    }
+
+    /**
+     * Page de machines triées par id, en O(log n + limite).
+     *
+     * @param apres  l'id à partir duquel commencer (exclu), ou null pour partir du début
+     * @param limite le nombre maximal de machines à retourner
+     * @return les machines d'id strictement supérieur à {@code apres}
+     */
+    public List<Machine> getPage(Integer apres, int limite) {
+        return Pages.page(apres == null ? machinesTriees : machinesTriees.tailMap(apres, false), limite);
+    }
+
+    public int taille() {
+        return machinesParId.size();
+    }
+
+}
@@ -0,0 +1,170 @@
+package cc.modele.statistiques;
+
+import cc.modele.data.boissons.ResumeBoissons;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Agrégat de consommation, mis à jour à chaque boisson préparée : nombre de boissons, sucres,
+ * histogramme du nombre de sucres et répartition par heure de la journée.
+ * Lectures et mises à jour sont sans verrou ; une boisson coûte au plus trois incréments (sucres, classe de sucres, heure),
+ * le nombre de boissons étant la somme de la répartition par heure.
+ * <p>
+ * Un agrégat compact tient dans un seul tableau atomique tant qu'il n'est pas disputé ; à la première mise à jour disputée
+ * (p.ex. un compte servi par plusieurs machines en même temps), il se répartit en cellules, choisies par thread.
+ * Un agrégat réparti dès sa création utilise des compteurs {@link LongAdder} :
+ * plus coûteux en mémoire, il reste sans contention quand de nombreuses machines le mettent à jour en même temps.
+ */
+public class Agregat {
+
+    // Classes de l'histogramme : 0, 1, ..., 9 sucres, puis 10 sucres et plus
+    public static final int NB_CLASSES_SUCRES = ResumeBoissons.NB_CLASSES_SUCRES;
+    public static final int NB_HEURES = ResumeBoissons.NB_HEURES;
+
+    private static final int TOTAL_SUCRES = 0;
+    private static final int DEBUT_SUCRES = 1;
+    private static final int DEBUT_HEURES = DEBUT_SUCRES + NB_CLASSES_SUCRES;
+
+    private static final int NB_VALEURS = DEBUT_HEURES + NB_HEURES;
+
+    // Puissance de 2 supérieure ou égale au nombre de processeurs
+    private static final int NB_CELLULES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+
+    private static final AtomicReferenceFieldUpdater<Agregat, AtomicLongArray[]> CELLULES =
+            AtomicReferenceFieldUpdater.newUpdater(Agregat.class, AtomicLongArray[].class, "cellules");
+
+    // Agrégat compact : toutes les valeurs dans un seul tableau, un objet par agrégat
+    private final AtomicLongArray valeurs;
+    // Agrégat compact disputé : des tableaux supplémentaires, un par groupe de threads (null tant que l'agrégat n'est pas disputé)
+    private volatile AtomicLongArray[] cellules;
+    // Agrégat réparti : un compteur par valeur
+    private final LongAdder[] compteurs;
+
+    /**
+     * Agrégat compact, pour les agrégats nombreux et peu disputés.
+     */
+    public Agregat() {
+        this(false);
+    }
+
+    /**
+     * @param reparti true pour un agrégat mis à jour en parallèle par de nombreuses machines
+     */
+    public Agregat(boolean reparti) {
+        if (reparti) {
+            valeurs = null;
+            compteurs = new LongAdder[NB_VALEURS];
+            for (int i = 0; i < NB_VALEURS; i++)
+                compteurs[i] = new LongAdder();
+        } else {
+            valeurs = new AtomicLongArray(NB_VALEURS);
+            compteurs = null;
+        }
+    }
+
+    /**
+     * @param heure    l'heure de préparation (0 à 23)
+     * @param nbSucres le nombre de sucres
+     */
+    void ajouter(int heure, int nbSucres) {
+        if (nbSucres != 0)
+            incrementer(TOTAL_SUCRES, nbSucres);
+        incrementer(DEBUT_SUCRES + Math.min(nbSucres, NB_CLASSES_SUCRES - 1), 1);
+        incrementer(DEBUT_HEURES + heure, 1);
+    }
+
+    /**
+     * Ajoute les boissons d'un résumé de boissons compactées.
+     */
+    void ajouter(ResumeBoissons resume) {
+        incrementer(TOTAL_SUCRES, resume.getTotalSucres());
+        long[] sucres = resume.getHistogrammeSucres();
+        for (int classe = 0; classe < NB_CLASSES_SUCRES; classe++)
+            incrementer(DEBUT_SUCRES + classe, sucres[classe]);
+        long[] heures = resume.getBoissonsParHeure();
+        for (int heure = 0; heure < NB_HEURES; heure++)
+            incrementer(DEBUT_HEURES + heure, heures[heure]);
+    }
+
+    public long getNbBoissons() {
+        long nbBoissons = 0;
+        for (int heure = 0; heure < NB_HEURES; heure++)
+            nbBoissons += valeur(DEBUT_HEURES + heure);
+        return nbBoissons;
+    }
+
+    public long getTotalSucres() {
+        return valeur(TOTAL_SUCRES);
+    }
+
+    public double getMoyenneSucres() {
+        long nbBoissons = getNbBoissons();
+        return nbBoissons == 0 ? 0 : (double) getTotalSucres() / nbBoissons;
+    }
+
+    /**
+     * @return le nombre de boissons par nombre de sucres (la dernière classe regroupe 10 sucres et plus)
+     */
+    public long[] getHistogrammeSucres() {
+        return extraire(DEBUT_SUCRES, NB_CLASSES_SUCRES);
+    }
+
+    /**
+     * @return le nombre de boissons préparées pour chaque heure de la journée (0 à 23)
+     */
+    public long[] getBoissonsParHeure() {
+        return extraire(DEBUT_HEURES, NB_HEURES);
+    }
+
+    private long[] extraire(int debut, int taille) {
+        long[] resultat = new long[taille];
+        for (int i = 0; i < taille; i++)
+            resultat[i] = valeur(debut + i);
+        return resultat;
+    }
+
+    private void incrementer(int indice, long delta) {
+        if (compteurs != null) {
+            compteurs[indice].add(delta);
+            return;
+        }
+        AtomicLongArray[] cellulesCourantes = cellules;
+        if (cellulesCourantes == null) {
+            long valeur = valeurs.get(indice);
+            if (valeurs.compareAndSet(indice, valeur, valeur + delta))
+                return;
+            // Mise à jour disputée : l'agrégat se répartit
+            cellulesCourantes = repartir();
+        }
+        cellulesCourantes[cellule()].addAndGet(indice, delta);
+    }
+
+    private AtomicLongArray[] repartir() {
+        AtomicLongArray[] nouvellesCellules = new AtomicLongArray[NB_CELLULES];
+        for (int i = 0; i < NB_CELLULES; i++)
+            nouvellesCellules[i] = new AtomicLongArray(NB_VALEURS);
+        // Sans moniteur : un thread virtuel en concurrence ne bloque pas son thread porteur
+        CELLULES.compareAndSet(this, null, nouvellesCellules);
+        return cellules;
+    }
+
+    // Les threads d'une même cellule se disputent encore ses valeurs, mais à NB_CELLULES fois moins
+    private static int cellule() {
+        long idThread = Thread.currentThread().threadId();
+        return (int) (idThread ^ (idThread >>> 16)) & (NB_CELLULES - 1);
+    }
+
+    private long valeur(int indice) {
+        if (compteurs != null)
+            return compteurs[indice].sum();
+        long valeur = valeurs.get(indice);
+        AtomicLongArray[] cellulesCourantes = cellules;
+        if (cellulesCourantes != null)
+            for (AtomicLongArray cellule : cellulesCourantes)
+                valeur += cellule.get(indice);
+        return valeur;
+    }
+
+}
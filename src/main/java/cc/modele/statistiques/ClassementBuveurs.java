@@ -0,0 +1,129 @@
+package cc.modele.statistiques;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.Boisson;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.machines.Machine;
+import cc.modele.evenements.EcouteurModele;
+import cc.modele.exceptions.CompteInconnuException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Classement des buveurs, tenu à jour à chaque boisson préparée.
+ * <p>
+ * Les comptes sont triés dans une skip list concurrente par (nombre de boissons décroissant, id croissant) :
+ * une mise à jour coûte O(log n) et la lecture des k premiers O(k), quel que soit le nombre de comptes.
+ * <p>
+ * Le nombre de boissons est lu dans le compteur réparti du compte ({@link Compte#getNbBoissonsBues()}) ; la place classée
+ * de chaque compte avance par compare-and-set, sans verrou : parmi des mises à jour concurrentes d'un même compte,
+ * seule celle qui lit le plus grand nombre de boissons le déplace. Pendant un déplacement, le compte peut être brièvement
+ * présent deux fois dans la skip list ; la lecture ignore la place qui n'est plus la sienne.
+ */
+@Component
+public class ClassementBuveurs implements EcouteurModele {
+
+    private static final Comparator<Place> ORDRE = Comparator.comparingLong((Place place) -> place.nbBoissons).reversed()
+            .thenComparingInt(place -> place.idCompte);
+
+    private final FacadeModele facadeModele;
+    private final NavigableSet<Place> classement = new ConcurrentSkipListSet<>(ORDRE);
+    // Nombre de boissons auquel chaque compte est classé
+    private final Map<Integer, AtomicLong> classes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ClassementBuveurs(FacadeModele facadeModele) {
+        this.facadeModele = facadeModele;
+        facadeModele.ajouterEcouteur(this);
+        reconstruire();
+    }
+
+    @Override
+    public void boissonPreparee(Machine machine, Boisson boisson) {
+        Compte compte = boisson.getCompte();
+        int idCompte = compte.getId();
+        AtomicLong classe = classes.get(idCompte);
+        if (classe == null)
+            classe = classes.computeIfAbsent(idCompte, id -> new AtomicLong());
+        while (true) {
+            long ancienNbBoissons = classe.get();
+            long nbBoissons = compte.getNbBoissonsBues();
+            // Une mise à jour concurrente a déjà classé le compte à ce nombre de boissons (ou plus)
+            if (nbBoissons <= ancienNbBoissons)
+                return;
+            if (classe.compareAndSet(ancienNbBoissons, nbBoissons)) {
+                classement.add(new Place(nbBoissons, idCompte));
+                if (ancienNbBoissons > 0)
+                    classement.remove(new Place(ancienNbBoissons, idCompte));
+                // Une mise à jour plus récente a pu retirer cette place avant son ajout
+                if (classe.get() != nbBoissons)
+                    classement.remove(new Place(nbBoissons, idCompte));
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void modeleRestaure() {
+        reconstruire();
+    }
+
+    /**
+     * @param k le nombre de places souhaitées
+     * @return les k premiers buveurs (moins si moins de k comptes ont bu une boisson)
+     */
+    public List<PlaceClassement> getPremiers(int k) {
+        List<PlaceClassement> premiers = new ArrayList<>(k);
+        Iterator<Place> places = classement.iterator();
+        while (premiers.size() < k && places.hasNext()) {
+            Place place = places.next();
+            AtomicLong classe = classes.get(place.idCompte);
+            // Ancienne place d'un compte en cours de déplacement
+            if (classe == null || classe.get() != place.nbBoissons)
+                continue;
+            try {
+                Compte compte = facadeModele.getCompteById(place.idCompte);
+                premiers.add(new PlaceClassement(premiers.size() + 1, place.idCompte, compte.getLogin(), place.nbBoissons));
+            } catch (CompteInconnuException e) {
+                // Compte absent du registre : ignoré
+            }
+        }
+        return premiers;
+    }
+
+    // Uniquement au démarrage, avant l'arrivée des premières commandes
+    private void reconstruire() {
+        classement.clear();
+        classes.clear();
+        for (Compte compte : facadeModele.getAllComptes()) {
+            long nbBoissons = compte.getNbBoissonsBues();
+            if (nbBoissons == 0)
+                continue;
+            classes.put(compte.getId(), new AtomicLong(nbBoissons));
+            classement.add(new Place(nbBoissons, compte.getId()));
+        }
+    }
+
+    private static final class Place {
+
+        private final long nbBoissons;
+        private final int idCompte;
+
+        private Place(long nbBoissons, int idCompte) {
+            this.nbBoissons = nbBoissons;
+            this.idCompte = idCompte;
+        }
+
+    }
+
+}
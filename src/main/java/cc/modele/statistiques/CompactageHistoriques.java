@@ -0,0 +1,84 @@
+package cc.modele.statistiques;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.Resolution;
+import cc.modele.data.machines.Machine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compactage périodique des historiques : au-delà de la durée de rétention, les boissons détaillées
+ * ne sont conservées que dans les agrégats temporels ; les agrégats par minute sont eux aussi purgés
+ * au-delà de leur propre durée de rétention (les agrégats par heure et par jour sont conservés).
+ */
+@Component
+public class CompactageHistoriques {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompactageHistoriques.class);
+    private static final long MILLIS_JOUR = Resolution.JOUR.getDureeMillis();
+
+    private final FacadeModele facadeModele;
+    private final long retentionDetailMillis;
+    private final long retentionMinutesMillis;
+    private final ScheduledExecutorService planificateur = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "compactage");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param retentionDetailJours  la durée de conservation des boissons détaillées (0 : pas de compactage)
+     * @param retentionMinutesJours la durée de conservation des agrégats par minute
+     */
+    @Autowired
+    public CompactageHistoriques(FacadeModele facadeModele,
+                                 @Value("${cc.historique.retention-detail-jours:0}") long retentionDetailJours,
+                                 @Value("${cc.historique.retention-minutes-jours:7}") long retentionMinutesJours) {
+        this.facadeModele = facadeModele;
+        this.retentionDetailMillis = retentionDetailJours * MILLIS_JOUR;
+        this.retentionMinutesMillis = retentionMinutesJours * MILLIS_JOUR;
+    }
+
+    @PostConstruct
+    public void demarrer() {
+        planificateur.scheduleWithFixedDelay(this::compacterEnTache, 1, 1, TimeUnit.HOURS);
+    }
+
+    /**
+     * @param maintenantMillis la date courante, en millisecondes epoch
+     * @return le nombre de boissons compactées
+     */
+    public long compacter(long maintenantMillis) {
+        long nbCompactees = 0;
+        if (retentionDetailMillis > 0)
+            nbCompactees = facadeModele.compacterHistoriques(maintenantMillis - retentionDetailMillis);
+        for (Machine machine : facadeModele.getAllMachines())
+            machine.getHistorique().getAgregats().purgerAvant(Resolution.MINUTE, maintenantMillis - retentionMinutesMillis);
+        return nbCompactees;
+    }
+
+    @PreDestroy
+    public void arreter() {
+        planificateur.shutdownNow();
+    }
+
+    private void compacterEnTache() {
+        try {
+            long nbCompactees = compacter(System.currentTimeMillis());
+            if (nbCompactees > 0)
+                LOGGER.info("{} boissons compactées", nbCompactees);
+        } catch (RuntimeException e) {
+            LOGGER.error("Échec du compactage des historiques", e);
+        }
+    }
+
+}
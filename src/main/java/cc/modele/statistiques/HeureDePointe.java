@@ -0,0 +1,26 @@
+package cc.modele.statistiques;
+
+import java.time.LocalDateTime;
+
+/**
+ * Heure de la plage où le plus de boissons ont été préparées.
+ */
+public class HeureDePointe {
+
+    private final LocalDateTime debut;
+    private final long nbBoissons;
+
+    public HeureDePointe(LocalDateTime debut, long nbBoissons) {
+        this.debut = debut;
+        this.nbBoissons = nbBoissons;
+    }
+
+    public LocalDateTime getDebut() {
+        return debut;
+    }
+
+    public long getNbBoissons() {
+        return nbBoissons;
+    }
+
+}
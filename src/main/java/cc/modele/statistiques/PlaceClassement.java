@@ -0,0 +1,36 @@
+package cc.modele.statistiques;
+
+/**
+ * Place d'un compte dans le classement des buveurs.
+ */
+public class PlaceClassement {
+
+    private final int rang;
+    private final Integer idDrinker;
+    private final String login;
+    private final long nbBoissons;
+
+    public PlaceClassement(int rang, Integer idDrinker, String login, long nbBoissons) {
+        this.rang = rang;
+        this.idDrinker = idDrinker;
+        this.login = login;
+        this.nbBoissons = nbBoissons;
+    }
+
+    public int getRang() {
+        return rang;
+    }
+
+    public Integer getIdDrinker() {
+        return idDrinker;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public long getNbBoissons() {
+        return nbBoissons;
+    }
+
+}
@@ -0,0 +1,36 @@
+package cc.modele.statistiques;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Nombre de boissons préparées par pas de temps, sur une plage de dates.
+ */
+public class SerieBoissons {
+
+    private final LocalDateTime debut;
+    private final Duration pas;
+    private final long[] valeurs;
+
+    public SerieBoissons(LocalDateTime debut, Duration pas, long[] valeurs) {
+        this.debut = debut;
+        this.pas = pas;
+        this.valeurs = valeurs;
+    }
+
+    public LocalDateTime getDebut() {
+        return debut;
+    }
+
+    /**
+     * @return le pas, au format ISO-8601 (p.ex. "PT1H")
+     */
+    public String getPas() {
+        return pas.toString();
+    }
+
+    public long[] getValeurs() {
+        return valeurs;
+    }
+
+}
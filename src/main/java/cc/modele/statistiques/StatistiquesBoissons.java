@@ -0,0 +1,246 @@
+package cc.modele.statistiques;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.Boisson;
+import cc.modele.data.boissons.BoissonsCompactees;
+import cc.modele.data.boissons.HeureLocale;
+import cc.modele.data.boissons.Resolution;
+import cc.modele.data.boissons.ResumeBoissons;
+import cc.modele.data.boissons.ResumesBoissons;
+import cc.modele.data.boissons.TypeBoisson;
+import cc.modele.data.machines.Machine;
+import cc.modele.data.machines.Salles;
+import cc.modele.evenements.EcouteurModele;
+import cc.modele.exceptions.CompteInconnuException;
+import cc.modele.exceptions.FormatSalleIncorrectException;
+import cc.modele.exceptions.MachineInconnueException;
+import cc.modele.exceptions.TypeBoissonInconnuException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Statistiques de consommation : agrégats globaux, par type de boisson, par machine, par salle et par compte.
+ * <p>
+ * Les agrégats sont mis à jour à chaque boisson préparée : une consultation ne reparcourt jamais les historiques.
+ * Ils ne sont reconstruits qu'après la reprise de l'état persisté, à partir des résumés des boissons restaurées et compactées,
+ * sans parcourir les historiques.
+ */
+@Component
+public class StatistiquesBoissons implements EcouteurModele {
+
+    // Nombre maximal de valeurs d'une série ou d'heures d'une plage (plus d'un an par heure)
+    private static final int NB_VALEURS_MAX = 10_000;
+
+    private final FacadeModele facadeModele;
+
+    // Agrégats partagés par de nombreuses machines : répartis ; agrégats par machine et par compte : compacts
+    private volatile Agregat global = new Agregat(true);
+    private final Map<String, Agregat> parType = new ConcurrentHashMap<>();
+    private final Map<Integer, Agregat> parMachine = new ConcurrentHashMap<>();
+    // Indexé par la clé de la salle (cf. Salles)
+    private final AtomicReferenceArray<Agregat> parSalle = new AtomicReferenceArray<>(Salles.NB_CLES);
+    private final Map<Integer, Agregat> parCompte = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StatistiquesBoissons(FacadeModele facadeModele) {
+        this.facadeModele = facadeModele;
+        facadeModele.ajouterEcouteur(this);
+        reconstruireParParcours();
+    }
+
+    @Override
+    public void boissonPreparee(Machine machine, Boisson boisson) {
+        ajouter(machine, boisson.getIdDrinker(), boisson.getDateHeurePreparation().getHour(), boisson.getNbSucres());
+    }
+
+    @Override
+    public void modeleRestaure() {
+        Lock verrouCompactage = facadeModele.getVerrouCompactage();
+        verrouCompactage.lock();
+        try {
+            reconstruire(facadeModele.getBoissonsRestaurees(), facadeModele.getBoissonsCompactees());
+        } finally {
+            verrouCompactage.unlock();
+        }
+    }
+
+    public Agregat getGlobal() {
+        return global;
+    }
+
+    /**
+     * @return l'agrégat d'un type de boisson
+     * @throws TypeBoissonInconnuException si le type de boisson n'existe pas
+     */
+    public Agregat getParType(String typeBoisson) throws TypeBoissonInconnuException {
+        if (!TypeBoisson.getAllTypes().contains(typeBoisson))
+            throw new TypeBoissonInconnuException();
+        return agregatOuVide(parType, typeBoisson, true);
+    }
+
+    /**
+     * @throws MachineInconnueException si aucune machine n'existe avec cet identifiant
+     */
+    public Agregat getParMachine(Integer idMachine) throws MachineInconnueException {
+        facadeModele.getMachineById(idMachine);
+        return agregatOuVide(parMachine, idMachine, false);
+    }
+
+    /**
+     * @throws FormatSalleIncorrectException si le format du nom de la salle est incorrect
+     */
+    public Agregat getParSalle(String salle) throws FormatSalleIncorrectException {
+        Agregat agregat = parSalle.get(facadeModele.verifierFormatSalle(salle));
+        return agregat != null ? agregat : new Agregat(true);
+    }
+
+    /**
+     * @throws CompteInconnuException si aucun compte n'existe avec cet identifiant
+     */
+    public Agregat getParCompte(Integer idCompte) throws CompteInconnuException {
+        facadeModele.getCompteById(idCompte);
+        return agregatOuVide(parCompte, idCompte, false);
+    }
+
+    /**
+     * @return le nombre de boissons préparées par la machine dans la plage [debut, fin[
+     * @throws MachineInconnueException si aucune machine n'existe avec cet identifiant
+     */
+    public long compterBoissons(Integer idMachine, LocalDateTime debut, LocalDateTime fin) throws MachineInconnueException {
+        return facadeModele.getMachineById(idMachine).getHistorique().getAgregats().compter(millis(debut), millis(fin));
+    }
+
+    /**
+     * @return le nombre de boissons préparées par la machine pour chaque pas de la plage [debut, fin[
+     * @throws MachineInconnueException si aucune machine n'existe avec cet identifiant
+     * @throws IllegalArgumentException si le pas n'est pas un multiple d'une minute ou si la série est trop longue
+     */
+    public SerieBoissons getSerie(Integer idMachine, LocalDateTime debut, LocalDateTime fin, Duration pas) throws MachineInconnueException {
+        Machine machine = facadeModele.getMachineById(idMachine);
+        long debutMillis = millis(debut);
+        long finMillis = millis(fin);
+        if (pas.toMillis() <= 0 || (finMillis - debutMillis) / pas.toMillis() >= NB_VALEURS_MAX)
+            throw new IllegalArgumentException("Série trop longue");
+        return new SerieBoissons(debut, pas, machine.getHistorique().getAgregats().reechantillonner(debutMillis, finMillis, pas.toMillis()));
+    }
+
+    /**
+     * @return l'heure de la plage [debut, fin[ où les machines de la salle ont préparé le plus de boissons,
+     * ou null si aucune boisson n'y a été préparée
+     * @throws FormatSalleIncorrectException si le format du nom de la salle est incorrect
+     * @throws IllegalArgumentException      si la plage est trop longue
+     */
+    public HeureDePointe getHeureDePointe(String salle, LocalDateTime debut, LocalDateTime fin) throws FormatSalleIncorrectException {
+        long debutMillis = millis(debut);
+        long finMillis = millis(fin);
+        long dureeHeure = Resolution.HEURE.getDureeMillis();
+        long premiereHeure = Math.floorDiv(debutMillis, dureeHeure);
+        long nbHeures = Math.floorDiv(finMillis - 1, dureeHeure) + 1 - premiereHeure;
+        if (nbHeures >= NB_VALEURS_MAX)
+            throw new IllegalArgumentException("Plage trop longue");
+        long[] parHeure = new long[(int) Math.max(0, nbHeures)];
+        for (Machine machine : facadeModele.getAllMachinesBySalle(salle))
+            machine.getHistorique().getAgregats().cumuler(Resolution.HEURE, debutMillis, finMillis, parHeure);
+        int pointe = -1;
+        for (int i = 0; i < parHeure.length; i++)
+            if (parHeure[i] > 0 && (pointe < 0 || parHeure[i] > parHeure[pointe]))
+                pointe = i;
+        if (pointe < 0)
+            return null;
+        Instant debutPointe = Instant.ofEpochMilli((premiereHeure + pointe) * dureeHeure);
+        return new HeureDePointe(LocalDateTime.ofInstant(debutPointe, ZoneId.systemDefault()), parHeure[pointe]);
+    }
+
+    private static long millis(LocalDateTime date) {
+        return date.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void ajouter(Machine machine, int idCompte, int heure, int nbSucres) {
+        global.ajouter(heure, nbSucres);
+        agregat(parType, machine.getTypeBoissons(), true).ajouter(heure, nbSucres);
+        agregat(parMachine, machine.getId(), false).ajouter(heure, nbSucres);
+        Agregat agregatSalle = agregatSalle(machine);
+        if (agregatSalle != null)
+            agregatSalle.ajouter(heure, nbSucres);
+        agregat(parCompte, idCompte, false).ajouter(heure, nbSucres);
+    }
+
+    // Parcours complet des historiques : uniquement si le modèle a été restauré avant la création des statistiques
+    private void reconstruireParParcours() {
+        Lock verrouCompactage = facadeModele.getVerrouCompactage();
+        verrouCompactage.lock();
+        try {
+            ResumesBoissons detaillees = new ResumesBoissons();
+            // L'heure locale est recalculée une fois par quart d'heure de l'historique, pas à chaque boisson
+            HeureLocale heureLocale = new HeureLocale(ZoneId.systemDefault());
+            for (Machine machine : facadeModele.getAllMachines())
+                machine.getHistorique().parcourir((dateMillis, idCompte, nbSucres) ->
+                        detaillees.ajouter(machine.getId(), idCompte, heureLocale.heure(dateMillis), nbSucres));
+            reconstruire(detaillees, facadeModele.getBoissonsCompactees());
+        } finally {
+            verrouCompactage.unlock();
+        }
+    }
+
+    // Sous le verrou de compactage : chaque boisson est soit détaillée (et résumée dans detaillees), soit compactée
+    private void reconstruire(ResumesBoissons detaillees, BoissonsCompactees boissonsCompactees) {
+        global = new Agregat(true);
+        parType.clear();
+        parMachine.clear();
+        for (int cle = 0; cle < Salles.NB_CLES; cle++)
+            parSalle.set(cle, null);
+        parCompte.clear();
+        for (Machine machine : facadeModele.getAllMachines()) {
+            Agregat agregatType = agregat(parType, machine.getTypeBoissons(), true);
+            Agregat agregatMachine = agregat(parMachine, machine.getId(), false);
+            Agregat agregatSalle = agregatSalle(machine);
+            for (ResumesBoissons resumes : List.of(detaillees, boissonsCompactees)) {
+                ResumeBoissons resume = resumes.getParMachine().get(machine.getId());
+                if (resume != null) {
+                    global.ajouter(resume);
+                    agregatType.ajouter(resume);
+                    agregatMachine.ajouter(resume);
+                    if (agregatSalle != null)
+                        agregatSalle.ajouter(resume);
+                }
+            }
+        }
+        for (ResumesBoissons resumes : List.of(detaillees, boissonsCompactees))
+            for (Map.Entry<Integer, ResumeBoissons> resume : resumes.getParCompte().entrySet())
+                agregat(parCompte, resume.getKey(), false).ajouter(resume.getValue());
+    }
+
+    // Null pour une salle persistée avant la vérification complète du format
+    private Agregat agregatSalle(Machine machine) {
+        int cle = machine.getCleSalle();
+        if (cle == Salles.CLE_INVALIDE)
+            return null;
+        Agregat agregat = parSalle.get(cle);
+        if (agregat == null) {
+            parSalle.compareAndSet(cle, null, new Agregat(true));
+            agregat = parSalle.get(cle);
+        }
+        return agregat;
+    }
+
+    private static <K> Agregat agregat(Map<K, Agregat> agregats, K cle, boolean reparti) {
+        Agregat agregat = agregats.get(cle);
+        return agregat != null ? agregat : agregats.computeIfAbsent(cle, k -> new Agregat(reparti));
+    }
+
+    private static <K> Agregat agregatOuVide(Map<K, Agregat> agregats, K cle, boolean reparti) {
+        Agregat agregat = agregats.get(cle);
+        return agregat != null ? agregat : new Agregat(reparti);
+    }
+
+}
@@ -0,0 +1,58 @@
+package cc.config;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.TypeBoisson;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.machines.Machine;
+import cc.modele.statistiques.StatistiquesBoissons;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+class MesuresModeleTest {
+
+    private FacadeModele facadeModele;
+    private SimpleMeterRegistry registry;
+    private MesuresModele classeTestee;
+
+    @BeforeEach
+    void setUp() {
+        facadeModele = new FacadeModele();
+        registry = new SimpleMeterRegistry();
+        classeTestee = new MesuresModele(facadeModele, new StatistiquesBoissons(facadeModele), new CacheAuthentification(facadeModele, 300, 100));
+    }
+
+    @Test
+    void bindTo_OK_mesuresDesOperations() throws Exception {
+        // ARRANGE
+        classeTestee.bindTo(registry);
+        Compte compte = facadeModele.creerCompteDrinker("foo", "bar");
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+
+        // ACT
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 2);
+
+        // ASSERT
+        Assertions.assertEquals(2, registry.get("cc.modele.operations").tag("operation", "preparer_boisson").timer().count());
+        Assertions.assertEquals(1, registry.get("cc.modele.operations").tag("operation", "creer_compte_drinker").timer().count());
+        Assertions.assertEquals(2, registry.get("cc.boissons.preparees").tag("type", TypeBoisson.CAFE).functionCounter().count());
+        Assertions.assertEquals(0, registry.get("cc.boissons.preparees").tag("type", TypeBoisson.THE).functionCounter().count());
+        Assertions.assertEquals(1, registry.get("cc.comptes").gauge().value());
+        Assertions.assertEquals(1, registry.get("cc.machines").gauge().value());
+    }
+
+    @Test
+    void fin_OK_avantBindTo() throws Exception {
+        // ARRANGE
+        facadeModele.setSonde(classeTestee);
+
+        // ACT & ASSERT
+        // Sonde branchée avant l'enregistrement des métriques : les mesures sont ignorées
+        Assertions.assertDoesNotThrow(() -> facadeModele.creerCompteDrinker("foo", "bar"));
+        Assertions.assertTrue(registry.getMeters().isEmpty());
+    }
+
+}
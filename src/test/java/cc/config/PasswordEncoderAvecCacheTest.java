@@ -0,0 +1,184 @@
+package cc.config;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.comptes.TypeCompte;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+class PasswordEncoderAvecCacheTest {
+
+    private FacadeModele facadeModele;
+    private EncodeurCompteur bcrypt;
+    private ServiceHachage serviceHachage;
+    private CacheAuthentification cache;
+    private PasswordEncoderAvecCache classeTestee;
+
+    @BeforeEach
+    void setUp() {
+        facadeModele = new FacadeModele();
+        bcrypt = new EncodeurCompteur();
+        serviceHachage = new ServiceHachage(bcrypt, 1, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        serviceHachage.arreter();
+    }
+
+    @Test
+    void matches_OK_succesMisEnCache() {
+        // ARRANGE
+        creerEncodeur(300);
+        String hash = classeTestee.encode("bar");
+        int nbVerifications = bcrypt.nbVerifications.get();
+
+        // ACT
+        boolean premiere = classeTestee.matches("bar", hash);
+        boolean seconde = classeTestee.matches("bar", hash);
+
+        // ASSERT
+        Assertions.assertTrue(premiere);
+        Assertions.assertTrue(seconde);
+        // Seule la première vérification passe par BCrypt
+        Assertions.assertEquals(nbVerifications + 1, bcrypt.nbVerifications.get());
+        Assertions.assertEquals(1, cache.getNbSucces());
+        Assertions.assertEquals(1, cache.getNbAbsences());
+    }
+
+    @Test
+    void matches_KO_mauvaisMotDePasseJamaisMisEnCache() {
+        // ARRANGE
+        creerEncodeur(300);
+        String hash = classeTestee.encode("bar");
+
+        // ACT
+        boolean premiere = classeTestee.matches("baz", hash);
+        boolean seconde = classeTestee.matches("baz", hash);
+
+        // ASSERT
+        Assertions.assertFalse(premiere);
+        Assertions.assertFalse(seconde);
+        Assertions.assertEquals(0, cache.taille());
+        Assertions.assertEquals(0, cache.getNbSucces());
+    }
+
+    @Test
+    void matches_KO_mauvaisMotDePasseApresSucces() {
+        // ARRANGE
+        creerEncodeur(300);
+        String hash = classeTestee.encode("bar");
+        Assertions.assertTrue(classeTestee.matches("bar", hash));
+        int nbVerifications = bcrypt.nbVerifications.get();
+
+        // ACT
+        boolean resultat = classeTestee.matches("baz", hash);
+
+        // ASSERT
+        Assertions.assertFalse(resultat);
+        // L'entrée du compte ne valide que le mot de passe vérifié : l'autre repasse par BCrypt
+        Assertions.assertEquals(nbVerifications + 1, bcrypt.nbVerifications.get());
+        Assertions.assertTrue(classeTestee.matches("bar", hash));
+    }
+
+    @Test
+    void matches_OK_entreeExpiree() {
+        // ARRANGE
+        // Durée de vie nulle : une entrée expire dès sa mémorisation
+        creerEncodeur(0);
+        String hash = classeTestee.encode("bar");
+        Assertions.assertTrue(classeTestee.matches("bar", hash));
+        int nbVerifications = bcrypt.nbVerifications.get();
+
+        // ACT
+        boolean resultat = classeTestee.matches("bar", hash);
+
+        // ASSERT
+        Assertions.assertTrue(resultat);
+        Assertions.assertEquals(nbVerifications + 1, bcrypt.nbVerifications.get());
+        Assertions.assertEquals(0, cache.getNbSucces());
+    }
+
+    @Test
+    void matches_OK_invalidationSurChangementDeType() throws Exception {
+        // ARRANGE
+        creerEncodeur(300);
+        Compte compte = facadeModele.creerCompteDrinker("foo", classeTestee.encode("bar"));
+        Compte autre = facadeModele.creerCompteDrinker("foo2", classeTestee.encode("bar2"));
+        Assertions.assertTrue(classeTestee.matches("bar", compte.getPassword()));
+        Assertions.assertTrue(classeTestee.matches("bar2", autre.getPassword()));
+
+        // ACT
+        facadeModele.modifierTypeCompte(compte.getId(), TypeCompte.FABULOUS);
+
+        // ASSERT
+        Assertions.assertFalse(cache.estVerifie("bar", compte.getPassword()));
+        // Les entrées des autres comptes sont conservées
+        Assertions.assertTrue(cache.estVerifie("bar2", autre.getPassword()));
+        int nbVerifications = bcrypt.nbVerifications.get();
+        Assertions.assertTrue(classeTestee.matches("bar", compte.getPassword()));
+        Assertions.assertEquals(nbVerifications + 1, bcrypt.nbVerifications.get());
+    }
+
+    @Test
+    void memoriser_OK_plusAncienneEvinceeCachePlein() {
+        // ARRANGE
+        cache = new CacheAuthentification(facadeModele, 300, 2);
+        cache.memoriser("bar1", "hash1");
+        cache.memoriser("bar2", "hash2");
+
+        // ACT
+        cache.memoriser("bar3", "hash3");
+
+        // ASSERT
+        Assertions.assertEquals(2, cache.taille());
+        Assertions.assertFalse(cache.estVerifie("bar1", "hash1"));
+        Assertions.assertTrue(cache.estVerifie("bar2", "hash2"));
+        Assertions.assertTrue(cache.estVerifie("bar3", "hash3"));
+    }
+
+    @Test
+    void memoriser_OK_remplacementNeCompteQuUneEntree() {
+        // ARRANGE
+        cache = new CacheAuthentification(facadeModele, 300, 2);
+        cache.memoriser("bar1", "hash1");
+        cache.memoriser("bar1", "hash1");
+
+        // ACT
+        cache.memoriser("bar2", "hash2");
+
+        // ASSERT
+        // L'ancienne entrée de hash1, remplacée, quitte la file sans retirer la nouvelle
+        Assertions.assertTrue(cache.estVerifie("bar1", "hash1"));
+        Assertions.assertTrue(cache.estVerifie("bar2", "hash2"));
+    }
+
+    private void creerEncodeur(long dureeVieSecondes) {
+        cache = new CacheAuthentification(facadeModele, dureeVieSecondes, 100);
+        classeTestee = new PasswordEncoderAvecCache(serviceHachage, cache);
+    }
+
+    // BCrypt au coût minimal, qui compte ses vérifications
+    private static final class EncodeurCompteur extends BCryptPasswordEncoder {
+
+        private final AtomicInteger nbVerifications = new AtomicInteger();
+
+        private EncodeurCompteur() {
+            super(4);
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            nbVerifications.incrementAndGet();
+            return super.matches(rawPassword, encodedPassword);
+        }
+
+    }
+
+}
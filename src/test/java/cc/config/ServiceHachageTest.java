@@ -0,0 +1,131 @@
+package cc.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+
+class ServiceHachageTest {
+
+    private ServiceHachage classeTestee;
+
+    @AfterEach
+    void tearDown() {
+        if (classeTestee != null)
+            classeTestee.arreter();
+    }
+
+    @Test
+    void encoder_OK() throws Exception {
+        // ARRANGE
+        classeTestee = new ServiceHachage(new EncodeurBloquant(new CountDownLatch(0)), 2, 4);
+
+        // ACT
+        String hash = classeTestee.encoder("bar").get();
+
+        // ASSERT
+        Assertions.assertEquals("#bar", hash);
+        Assertions.assertTrue(classeTestee.verifier("bar", hash).get());
+        Assertions.assertFalse(classeTestee.verifier("baz", hash).get());
+    }
+
+    @Test
+    void encoder_KO_sature() throws Exception {
+        // ARRANGE
+        // Thread unique bloqué et file d'une place : la troisième demande est refusée
+        CountDownLatch liberation = new CountDownLatch(1);
+        classeTestee = new ServiceHachage(new EncodeurBloquant(liberation), 1, 1);
+        CompletableFuture<String> enCours = classeTestee.encoder("bar1");
+        for (int i = 0; i < 500 && classeTestee.getNbActifs() == 0; i++)
+            Thread.sleep(10);
+        CompletableFuture<String> enAttente = classeTestee.encoder("bar2");
+
+        // ACT
+        CompletableFuture<String> refusee = classeTestee.encoder("bar3");
+
+        // ASSERT
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, refusee::get);
+        Assertions.assertTrue(exception.getCause() instanceof RejectedExecutionException);
+        Assertions.assertEquals(1, classeTestee.getNbRejets());
+        Assertions.assertEquals(1, classeTestee.getProfondeurFile());
+        liberation.countDown();
+        Assertions.assertEquals("#bar1", enCours.get());
+        Assertions.assertEquals("#bar2", enAttente.get());
+    }
+
+    @Test
+    void encoder_KO_erreurDuCalcul() {
+        // ARRANGE
+        classeTestee = new ServiceHachage(new EncodeurBloquant(new CountDownLatch(0)) {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                throw new StackOverflowError();
+            }
+        }, 1, 1);
+
+        // ACT
+        CompletableFuture<String> resultat = classeTestee.encoder("bar");
+
+        // ASSERT
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> resultat.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(exception.getCause() instanceof StackOverflowError);
+    }
+
+    @Test
+    void arreter_OK_demandesEnFileTerminees() throws Exception {
+        // ARRANGE
+        CountDownLatch liberation = new CountDownLatch(1);
+        classeTestee = new ServiceHachage(new EncodeurBloquant(liberation), 1, 2);
+        CompletableFuture<String> enCours = classeTestee.encoder("bar1");
+        for (int i = 0; i < 500 && classeTestee.getNbActifs() == 0; i++)
+            Thread.sleep(10);
+        CompletableFuture<String> enAttente = classeTestee.encoder("bar2");
+
+        // ACT
+        classeTestee.arreter();
+        CompletableFuture<String> apresArret = classeTestee.encoder("bar3");
+
+        // ASSERT
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> enAttente.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(exception.getCause() instanceof RejectedExecutionException);
+        exception = Assertions.assertThrows(ExecutionException.class, () -> apresArret.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(exception.getCause() instanceof RejectedExecutionException);
+        Assertions.assertEquals(0, classeTestee.getNbRejets());
+        // Calcul en cours interrompu par l'arrêt : il se termine quand même
+        Assertions.assertEquals("#bar1", enCours.get(5, TimeUnit.SECONDS));
+    }
+
+    // Encodeur trivial, bloqué jusqu'à la libération du verrou
+    private static class EncodeurBloquant implements PasswordEncoder {
+
+        private final CountDownLatch liberation;
+
+        private EncodeurBloquant(CountDownLatch liberation) {
+            this.liberation = liberation;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            try {
+                liberation.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "#" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+
+    }
+
+}
@@ -0,0 +1,1135 @@
+package cc.controleur;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.TypeBoisson;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.comptes.TypeCompte;
+import cc.modele.data.machines.Machine;
+import cc.modele.persistance.JournalModele;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Mêmes scénarios que {@link ControleurTest}, sur la variante réactive de l'API (profil "reactif").
+ */
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles("reactif")
+@AutoConfigureWebTestClient
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ControleurReactifTest {
+
+    @Autowired
+    FacadeModele facadeModele;
+
+    @Autowired
+    PasswordEncoder passwordEncoder;
+
+    @Autowired
+    WebTestClient client;
+
+    private final String loginFabulous = "fabulous";
+    private final String passwordFabulous = "CoffeeLover";
+
+    @Test
+    void postDrinker_OK_201() throws Exception {
+        // ACT & ASSERT
+        client.post().uri("/api/drinkers")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .bodyValue("login=foo&password=bar")
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().exists("Location");
+    }
+
+    @Test
+    void postDrinker_OK_201_creationHorsDuPoolDeHachage() throws Exception {
+        // ARRANGE
+        List<String> threadsCreation = new CopyOnWriteArrayList<>();
+        facadeModele.setJournal(new JournalModele() {
+            @Override
+            public long compteCree(Compte compte) {
+                threadsCreation.add(Thread.currentThread().getName());
+                return 0;
+            }
+        });
+
+        // ACT
+        client.post().uri("/api/drinkers")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .bodyValue("login=foo&password=bar")
+                .exchange()
+                .expectStatus().isCreated();
+
+        // ASSERT
+        // La création attend l'écriture du journal : jamais sur un thread du service de hachage
+        Assertions.assertEquals(1, threadsCreation.size());
+        Assertions.assertFalse(threadsCreation.get(0).startsWith("hachage-"), threadsCreation.get(0));
+    }
+
+    @Test
+    void postDrinker_KO_400_loginInvalide() throws Exception {
+        // ACT & ASSERT
+        client.post().uri("/api/drinkers")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .bodyValue("login=   &password=bar")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void postDrinker_KO_400_passwordInvalide() throws Exception {
+        // ACT & ASSERT
+        client.post().uri("/api/drinkers")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .bodyValue("login=foo&password=   ")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void postDrinker_KO_409_compteDejaExistant() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.post().uri("/api/drinkers")
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .bodyValue("login=foo&password=bar")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    void postImportDrinkers_OK_200_ndjson() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("existant", passwordEncoder.encode("bar"));
+        String corps = String.join("\n",
+                new JSONObject().put("login", "foo1").put("password", "bar1").toString(),
+                new JSONObject().put("login", "existant").put("password", "bar").toString(),
+                "pas du json");
+
+        // ACT
+        String reponse = client.post().uri("/api/drinkers/import")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .bodyValue(corps)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        // ASSERT
+        String[] lignes = reponse.split("\n");
+        Assertions.assertEquals(3, lignes.length);
+        Assertions.assertEquals(201, new JSONObject(lignes[0]).getInt("statut"));
+        Assertions.assertEquals(409, new JSONObject(lignes[1]).getInt("statut"));
+        Assertions.assertEquals(400, new JSONObject(lignes[2]).getInt("statut"));
+        Assertions.assertTrue(passwordEncoder.matches("bar1", facadeModele.getCompteByLogin("foo1").getPassword()));
+    }
+
+    @Test
+    void postImportDrinkers_OK_200_csv() throws Exception {
+        // ARRANGE
+        String corps = "login,password\nfoo1,bar,1\nfoo2\n";
+
+        // ACT
+        String reponse = client.post().uri("/api/drinkers/import")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .bodyValue(corps)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        // ASSERT
+        String[] lignes = reponse.split("\n");
+        Assertions.assertEquals(2, lignes.length);
+        Assertions.assertEquals(201, new JSONObject(lignes[0]).getInt("statut"));
+        Assertions.assertEquals(400, new JSONObject(lignes[1]).getInt("statut"));
+        Assertions.assertTrue(passwordEncoder.matches("bar,1", facadeModele.getCompteByLogin("foo1").getPassword()));
+    }
+
+    @Test
+    void postImportDrinkers_OK_200_corpsVolumineux() throws Exception {
+        // ARRANGE
+        // Corps et compte rendu plus grands que la limite des codecs (256 Kio) : ni l'un ni l'autre n'est rassemblé en mémoire
+        int nbLignes = 50_000;
+        StringBuilder corps = new StringBuilder();
+        for (int i = 0; i < nbLignes; i++)
+            corps.append("sansvirgule").append(i).append('\n');
+        corps.append("foo,bar\n");
+
+        // ACT
+        Flux<DataBuffer> compteRendu = client.post().uri("/api/drinkers/import")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .bodyValue(corps.toString())
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(DataBuffer.class)
+                .getResponseBody();
+        long nbLignesCompteRendu = compteRendu
+                .map(tampon -> {
+                    long nb = 0;
+                    for (int i = tampon.readPosition(); i < tampon.writePosition(); i++)
+                        if (tampon.getByte(i) == '\n')
+                            nb++;
+                    DataBufferUtils.release(tampon);
+                    return nb;
+                })
+                .reduce(0L, Long::sum)
+                .block(Duration.ofSeconds(30));
+
+        // ASSERT
+        Assertions.assertEquals(nbLignes + 1, nbLignesCompteRendu);
+        Assertions.assertTrue(passwordEncoder.matches("bar", facadeModele.getCompteByLogin("foo").getPassword()));
+    }
+
+    @Test
+    void postImportDrinkers_KO_403() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.post().uri("/api/drinkers/import")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .bodyValue("foo2,bar2")
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    void getDrinkers_OK_200() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo1", passwordEncoder.encode("bar1"));
+
+        // ACT & ASSERT
+        client.get().uri("/api/drinkers")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void getDrinkers_KO_403() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo1", passwordEncoder.encode("bar1"));
+
+        // ACT & ASSERT
+        client.get().uri("/api/drinkers")
+                .headers(entetes -> entetes.setBasicAuth("foo1", "bar1"))
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    void getDrinkerById_OK_200_drinker() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo1", passwordEncoder.encode("bar1"));
+        Compte compte2 = facadeModele.creerCompteFabulous("foo2", passwordEncoder.encode("bar2"));
+
+        // ACT & ASSERT
+        client.get().uri("/api/drinkers/" + compte2.getId())
+                .headers(entetes -> entetes.setBasicAuth("foo1", "bar1"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void getDrinkerById_OK_200_fabulous() throws Exception {
+        // ARRANGE
+        Compte compte = facadeModele.creerCompteDrinker("foo1", passwordEncoder.encode("bar1"));
+
+        // ACT & ASSERT
+        client.get().uri("/api/drinkers/" + compte.getId())
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void getDrinkerById_KO_401_sansAuth() throws Exception {
+        // ARRANGE
+        Compte compte = facadeModele.creerCompteDrinker("foo1", passwordEncoder.encode("bar1"));
+
+        // ACT & ASSERT
+        client.get().uri("/api/drinkers/" + compte.getId())
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    void getDrinkerById_OK_404() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo1", passwordEncoder.encode("bar1"));
+
+        // ACT & ASSERT
+        client.get().uri("/api/drinkers/-1")
+                .headers(entetes -> entetes.setBasicAuth("foo1", "bar1"))
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void patchDrinker_OK_200() throws Exception {
+        // ARRANGE
+        Compte compte = facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.patch().uri("/api/drinkers/" + compte.getId() + "/type")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue(TypeCompte.FABULOUS)
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void patchDrinker_KO_403() throws Exception {
+        // ARRANGE
+        Compte compte = facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.patch().uri("/api/drinkers/" + compte.getId() + "/type")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue(TypeCompte.FABULOUS)
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    void patchDrinker_KO_401() throws Exception {
+        // ARRANGE
+        Compte compte = facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.patch().uri("/api/drinkers/" + compte.getId() + "/type")
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue(TypeCompte.FABULOUS)
+                .exchange()
+                .expectStatus().isUnauthorized();
+        Assertions.assertEquals(TypeCompte.DRINKER, compte.getType());
+    }
+
+    @Test
+    void patchDrinker_KO_400() throws Exception {
+        // ARRANGE
+        Compte compte = facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.patch().uri("/api/drinkers/" + compte.getId() + "/type")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue("dummy")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void patchDrinker_KO_404() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo1", passwordEncoder.encode("bar1"));
+        facadeModele.creerCompteFabulous("foo2", passwordEncoder.encode("bar2"));
+
+        // ACT & ASSERT
+        client.patch().uri("/api/drinkers/-1/type")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue(TypeCompte.FABULOUS)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void postMachine_OK_201() throws Exception {
+        // ARRANGE
+        String jsonMachine = new JSONObject()
+                .put("nom", "coffee")
+                .put("typeBoissons", TypeBoisson.CAFE)
+                .put("salle", "A38")
+                .toString();
+
+        // ACT & ASSERT
+        client.post().uri("/api/machines")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(jsonMachine)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().exists("Location");
+    }
+
+    @Test
+    void postMachine_KO_401() throws Exception {
+        // ARRANGE
+        String jsonMachine = new JSONObject()
+                .put("nom", "coffee")
+                .put("typeBoissons", TypeBoisson.CAFE)
+                .put("salle", "A38")
+                .toString();
+
+        // ACT & ASSERT
+        client.post().uri("/api/machines")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(jsonMachine)
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    void postMachine_KO_403() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+        String jsonMachine = new JSONObject()
+                .put("nom", "coffee")
+                .put("typeBoissons", TypeBoisson.CAFE)
+                .put("salle", "A38")
+                .toString();
+
+        // ACT & ASSERT
+        client.post().uri("/api/machines")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(jsonMachine)
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    void postMachine_KO_400_nomVide() throws Exception {
+        // ARRANGE
+        String jsonMachine = new JSONObject()
+                .put("nom", "   ")
+                .put("typeBoissons", TypeBoisson.CAFE)
+                .put("salle", "A38")
+                .toString();
+
+        // ACT & ASSERT
+        client.post().uri("/api/machines")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(jsonMachine)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void postMachine_KO_400_typeBoissonVide() throws Exception {
+        // ARRANGE
+        String jsonMachine = new JSONObject()
+                .put("nom", "coffee")
+                .put("typeBoissons", "   ")
+                .put("salle", "A38")
+                .toString();
+
+        // ACT & ASSERT
+        client.post().uri("/api/machines")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(jsonMachine)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void postMachine_KO_400_salleVide() throws Exception {
+        // ARRANGE
+        String jsonMachine = new JSONObject()
+                .put("nom", "coffee")
+                .put("typeBoissons", TypeBoisson.CAFE)
+                .put("salle", "   ")
+                .toString();
+
+        // ACT & ASSERT
+        client.post().uri("/api/machines")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(jsonMachine)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void postMachine_KO_400_formatSalleIncorrect() throws Exception {
+        // ARRANGE
+        String jsonMachine = new JSONObject()
+                .put("nom", "coffee")
+                .put("typeBoissons", TypeBoisson.CAFE)
+                .put("salle", "420")
+                .toString();
+
+        // ACT & ASSERT
+        client.post().uri("/api/machines")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(jsonMachine)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void postMachine_KO_409_machineDejaExistante() throws Exception {
+        // ARRANGE
+        facadeModele.ajouterMachine("coffee", TypeBoisson.CAFE, "A38");
+        String jsonMachine = new JSONObject()
+                .put("nom", "coffee")
+                .put("typeBoissons", TypeBoisson.CAFE)
+                .put("salle", "A38")
+                .toString();
+
+        // ACT & ASSERT
+        client.post().uri("/api/machines")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(jsonMachine)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    void getMachines_OK_200_sansFiltre() throws Exception {
+        // ARRANGE
+        facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.ajouterMachine("tea2", TypeBoisson.THE, "B73");
+
+        // ACT & ASSERT
+        client.get().uri("/api/machines")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2);
+    }
+
+    @Test
+    void getMachines_OK_200_pagination() throws Exception {
+        // ARRANGE
+        Machine machine1 = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        Machine machine2 = facadeModele.ajouterMachine("coffee2", TypeBoisson.CAFE, "A38");
+        Machine machine3 = facadeModele.ajouterMachine("tea3", TypeBoisson.THE, "A38");
+
+        // ACT & ASSERT
+        client.get().uri("/api/machines?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value("Link", lien -> Assertions.assertTrue(lien.contains("after=" + machine2.getId())))
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].id").isEqualTo(machine1.getId())
+                .jsonPath("$[1].id").isEqualTo(machine2.getId());
+        client.get().uri("/api/machines?after=" + machine2.getId() + "&limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist("Link")
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].id").isEqualTo(machine3.getId());
+    }
+
+    @Test
+    void getMachines_OK_304_etagInchange() throws Exception {
+        // ARRANGE
+        facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        String etag = client.get().uri("/api/machines?salle=A38")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class)
+                .getResponseHeaders().getETag();
+
+        // ACT & ASSERT
+        client.get().uri("/api/machines?salle=A38")
+                .ifNoneMatch(etag)
+                .exchange()
+                .expectStatus().isNotModified();
+        facadeModele.ajouterMachine("coffee2", TypeBoisson.CAFE, "A38");
+        client.get().uri("/api/machines?salle=A38")
+                .ifNoneMatch(etag)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2);
+    }
+
+    @Test
+    void getMachines_OK_200_salleExistante() throws Exception {
+        // ARRANGE
+        Machine machine1 = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.ajouterMachine("tea2", TypeBoisson.THE, "B73");
+
+        // ACT & ASSERT
+        client.get().uri("/api/machines?salle=A38")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].id").isEqualTo(machine1.getId());
+    }
+
+    @Test
+    void getMachines_OK_200_salleInexistante() throws Exception {
+        // ARRANGE
+        facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.ajouterMachine("tea2", TypeBoisson.THE, "B73");
+
+        // ACT & ASSERT
+        client.get().uri("/api/machines?salle=Z00")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(0);
+    }
+
+    @Test
+    void getMachines_KO_400_formatSalleIncorrect() throws Exception {
+        // ACT & ASSERT
+        client.get().uri("/api/machines?salle=420")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void getMachineById_OK_200_sansAuth() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+
+        // ACT & ASSERT
+        client.get().uri("/api/machines/" + machine.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(machine.getId());
+    }
+
+    @Test
+    void getMachineById_OK_200_authDrinker() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.get().uri("/api/machines/" + machine.getId())
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(machine.getId());
+    }
+
+    @Test
+    void getMachineById_OK_200_authFabulous() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+
+        // ACT & ASSERT
+        client.get().uri("/api/machines/" + machine.getId())
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(machine.getId());
+    }
+
+    @Test
+    void getMachineById_OK_404() throws Exception {
+        // ACT & ASSERT
+        client.get().uri("/api/machines/-1")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void getEvenementsMachine_OK_200_etatCourantPuisBoissons() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        Compte compte = facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT
+        Flux<ServerSentEvent<String>> evenements = client.get().uri("/api/machines/" + machine.getId() + "/evenements")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<String>>() {
+                })
+                .getResponseBody();
+        Iterator<ServerSentEvent<String>> recus = evenements.timeout(Duration.ofSeconds(5)).toIterable().iterator();
+        ServerSentEvent<String> etatCourant = recus.next();
+        // Boisson préparée après réception de l'état courant, donc après l'abonnement
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+        ServerSentEvent<String> etatApresBoisson = recus.next();
+
+        // ASSERT
+        Assertions.assertEquals("machine", etatCourant.event());
+        Assertions.assertEquals(machine.getId(), new JSONObject(etatCourant.data()).getInt("idMachine"));
+        Assertions.assertEquals(0, new JSONObject(etatCourant.data()).getInt("nbBoissonsPreparees"));
+        Assertions.assertEquals("machine", etatApresBoisson.event());
+        Assertions.assertEquals(machine.getId(), new JSONObject(etatApresBoisson.data()).getInt("idMachine"));
+        Assertions.assertEquals(1, new JSONObject(etatApresBoisson.data()).getInt("nbBoissonsPreparees"));
+    }
+
+    @Test
+    void getEvenementsMachine_KO_401_sansAuth() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+
+        // ACT & ASSERT
+        client.get().uri("/api/machines/" + machine.getId() + "/evenements")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    void getEvenementsMachine_KO_404() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.get().uri("/api/machines/-1/evenements")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void putMachineCafe_OK_202_authDrinker() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.put().uri("/api/machines/" + machine.getId() + "/cafe")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new JSONObject().put("nbSucres", 1).toString())
+                .exchange()
+                .expectStatus().isAccepted();
+    }
+
+    @Test
+    void putMachineCafe_OK_202_authFabulous() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+
+        // ACT & ASSERT
+        client.put().uri("/api/machines/" + machine.getId() + "/cafe")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new JSONObject().put("nbSucres", 1).toString())
+                .exchange()
+                .expectStatus().isAccepted();
+    }
+
+    @Test
+    void putMachineCafe_KO_401_sansAuth() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+
+        // ACT & ASSERT
+        client.put().uri("/api/machines/" + machine.getId() + "/cafe")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new JSONObject().put("nbSucres", 1).toString())
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    void putMachineCafe_KO_400_nbSucresIncorrect() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.put().uri("/api/machines/" + machine.getId() + "/cafe")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new JSONObject().put("nbSucres", -1).toString())
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void putMachineCafe_KO_404_machineInexistante() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.put().uri("/api/machines/" + -1 + "/cafe")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new JSONObject().put("nbSucres", 1).toString())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void putMachineCafe_KO_418_theiere() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("tea1", TypeBoisson.THE, "A38");
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.put().uri("/api/machines/" + machine.getId() + "/cafe")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new JSONObject().put("nbSucres", 1).toString())
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.I_AM_A_TEAPOT);
+    }
+
+    @Test
+    void putMachineThe_OK_202_authDrinker() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("tea1", TypeBoisson.THE, "A38");
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.put().uri("/api/machines/" + machine.getId() + "/the")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new JSONObject().put("nbSucres", 1).toString())
+                .exchange()
+                .expectStatus().isAccepted();
+    }
+
+    @Test
+    void putMachineThe_OK_202_authFabulous() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("tea1", TypeBoisson.THE, "A38");
+
+        // ACT & ASSERT
+        client.put().uri("/api/machines/" + machine.getId() + "/the")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new JSONObject().put("nbSucres", 1).toString())
+                .exchange()
+                .expectStatus().isAccepted();
+    }
+
+    @Test
+    void putMachineThe_KO_401_sansAuth() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("tea1", TypeBoisson.THE, "A38");
+
+        // ACT & ASSERT
+        client.put().uri("/api/machines/" + machine.getId() + "/the")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new JSONObject().put("nbSucres", 1).toString())
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    void putMachineThe_KO_400_nbSucresIncorrect() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("tea1", TypeBoisson.THE, "A38");
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.put().uri("/api/machines/" + machine.getId() + "/the")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new JSONObject().put("nbSucres", -1).toString())
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void putMachineThe_KO_404_machineInexistante() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.put().uri("/api/machines/-1/the")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new JSONObject().put("nbSucres", 1).toString())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void putMachineThe_KO_400_cafetiere() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.put().uri("/api/machines/" + machine.getId() + "/the")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new JSONObject().put("nbSucres", 1).toString())
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void putMachine_KO_400_typeBoissonInconnu() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.put().uri("/api/machines/" + machine.getId() + "/dummy")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new JSONObject().put("nbSucres", 1).toString())
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void getEvenementsCommandesMachine_OK_200() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+        Flux<ServerSentEvent<String>> evenements = client.get().uri("/api/machines/" + machine.getId() + "/commandes/evenements")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<String>>() {
+                })
+                .getResponseBody();
+        Iterator<ServerSentEvent<String>> recus = evenements.timeout(Duration.ofSeconds(5)).toIterable().iterator();
+        // Commentaire d'ouverture : abonnement effectif avant la commande
+        ServerSentEvent<String> ouverture = recus.next();
+
+        // ACT
+        client.put().uri("/api/machines/" + machine.getId() + "/cafe")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new JSONObject().put("nbSucres", 1).toString())
+                .exchange()
+                .expectStatus().isAccepted();
+
+        // ASSERT
+        ServerSentEvent<String> enAttente = recus.next();
+        ServerSentEvent<String> enPreparation = recus.next();
+        ServerSentEvent<String> prete = recus.next();
+        Assertions.assertNull(ouverture.event());
+        Assertions.assertNotNull(ouverture.comment());
+        Assertions.assertEquals("en_attente", enAttente.event());
+        Assertions.assertEquals("en_preparation", enPreparation.event());
+        Assertions.assertEquals("prete", prete.event());
+        Assertions.assertEquals(machine.getId(), new JSONObject(prete.data()).getInt("idMachine"));
+    }
+
+    @Test
+    void getEvenementsCommandesMachine_KO_404() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        client.get().uri("/api/machines/-1/commandes/evenements")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void getEvenementsCommandesDrinker_KO_403() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+        Compte autre = facadeModele.creerCompteDrinker("foo2", passwordEncoder.encode("bar2"));
+
+        // ACT & ASSERT
+        client.get().uri("/api/drinkers/" + autre.getId() + "/commandes/evenements")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    void getStatistiquesMachine_OK_200() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        Compte compte = facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 2);
+
+        // ACT & ASSERT
+        client.get().uri("/api/stats/machines/" + machine.getId())
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.nbBoissons").isEqualTo(1)
+                .jsonPath("$.histogrammeSucres[2]").isEqualTo(1);
+    }
+
+    @Test
+    void getStatistiquesDrinker_KO_403() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+        Compte autre = facadeModele.creerCompteDrinker("foo2", passwordEncoder.encode("bar2"));
+
+        // ACT & ASSERT
+        client.get().uri("/api/stats/drinkers/" + autre.getId())
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    void getSerieMachine_OK_200() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        Compte compte = facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+        LocalDateTime debut = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+
+        // ACT & ASSERT
+        client.get().uri("/api/stats/machines/" + machine.getId() + "/serie?debut=" + debut + "&fin=" + debut.plusHours(4) + "&pas=PT2H")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.pas").isEqualTo("PT2H")
+                .jsonPath("$.valeurs.length()").isEqualTo(2)
+                .jsonPath("$.valeurs[0]").isEqualTo(1);
+    }
+
+    @Test
+    void getTopDrinkers_OK_200() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        Compte compte = facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+
+        // ACT & ASSERT
+        client.get().uri("/api/drinkers/top?k=5")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].login").isEqualTo("foo")
+                .jsonPath("$[0].nbBoissons").isEqualTo(1);
+    }
+
+    @Test
+    void getTopDrinkers_KO_403() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+
+        // ACT & ASSERT
+        // Le classement expose les logins : réservé, comme la liste des comptes
+        client.get().uri("/api/drinkers/top?k=5")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    void getTopDrinkers_KO_400() throws Exception {
+        // ACT & ASSERT
+        client.get().uri("/api/drinkers/top?k=0")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void postCommandes_OK_200_statutsParDemande() throws Exception {
+        // ARRANGE
+        Machine cafetiere = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        Machine theiere = facadeModele.ajouterMachine("tea1", TypeBoisson.THE, "A38");
+        Compte compte = facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+        JSONArray demandes = new JSONArray()
+                .put(new JSONObject().put("idMachine", cafetiere.getId()).put("typeBoisson", TypeBoisson.CAFE).put("nbSucres", 1))
+                .put(new JSONObject().put("idMachine", theiere.getId()).put("typeBoisson", TypeBoisson.THE).put("nbSucres", 0)
+                        .put("idDrinker", compte.getId()))
+                .put(new JSONObject().put("idMachine", theiere.getId()).put("typeBoisson", TypeBoisson.CAFE).put("nbSucres", 1))
+                .put(new JSONObject().put("idMachine", cafetiere.getId()).put("typeBoisson", TypeBoisson.CAFE).put("nbSucres", -1))
+                .put(new JSONObject().put("idMachine", Integer.MAX_VALUE).put("typeBoisson", TypeBoisson.CAFE).put("nbSucres", 1));
+
+        // ACT & ASSERT
+        client.post().uri("/api/commandes")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(demandes.toString())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(5)
+                .jsonPath("$[0].statut").isEqualTo(202)
+                .jsonPath("$[0].commande.etat").exists()
+                .jsonPath("$[1].statut").isEqualTo(202)
+                .jsonPath("$[1].commande.idDrinker").isEqualTo(compte.getId())
+                .jsonPath("$[2].statut").isEqualTo(418)
+                .jsonPath("$[3].statut").isEqualTo(400)
+                .jsonPath("$[4].statut").isEqualTo(404)
+                .jsonPath("$[4].commande").doesNotExist();
+    }
+
+    @Test
+    void postCommandes_OK_200_drinkerPourUnAutreCompte() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        Compte compte = facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+        Compte autreCompte = facadeModele.creerCompteDrinker("foo2", passwordEncoder.encode("bar2"));
+        JSONArray demandes = new JSONArray()
+                .put(new JSONObject().put("idMachine", machine.getId()).put("typeBoisson", TypeBoisson.CAFE).put("nbSucres", 1)
+                        .put("idDrinker", compte.getId()))
+                .put(new JSONObject().put("idMachine", machine.getId()).put("typeBoisson", TypeBoisson.CAFE).put("nbSucres", 1)
+                        .put("idDrinker", autreCompte.getId()));
+
+        // ACT & ASSERT
+        client.post().uri("/api/commandes")
+                .headers(entetes -> entetes.setBasicAuth("foo", "bar"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(demandes.toString())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].statut").isEqualTo(202)
+                .jsonPath("$[1].statut").isEqualTo(403);
+    }
+
+    @Test
+    void postCommandes_KO_400_lotVide() throws Exception {
+        // ACT & ASSERT
+        client.post().uri("/api/commandes")
+                .headers(entetes -> entetes.setBasicAuth(loginFabulous, passwordFabulous))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[]")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+}
@@ -5,7 +5,10 @@ import cc.modele.data.boissons.TypeBoisson;
 import cc.modele.data.comptes.Compte;
 import cc.modele.data.comptes.TypeCompte;
 import cc.modele.data.machines.Machine;
+import cc.modele.persistance.JournalModele;
+import org.json.JSONArray;
 import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -14,10 +17,16 @@ import org.springframework.http.MediaType;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.net.URI;
 import java.text.MessageFormat;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -48,15 +57,45 @@ class ControleurTest {
 
         // ACT & ASSERT
         String params = MessageFormat.format("login={0}&password={1}", login, password);
-        mvc.perform(post(URI.create("/api/drinkers"))
+        MvcResult resultat = mvc.perform(post(URI.create("/api/drinkers"))
                         .contentType(MediaType.APPLICATION_FORM_URLENCODED)
                         .content(params))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(resultat))
                 .andExpectAll(
                         status().isCreated(),
                         header().exists("Location")
                 );
     }
 
+    @Test
+    void postDrinker_OK_201_creationHorsDuPoolDeHachage() throws Exception {
+        // ARRANGE
+        List<String> threadsCreation = new CopyOnWriteArrayList<>();
+        facadeModele.setJournal(new JournalModele() {
+            @Override
+            public long compteCree(Compte compte) {
+                threadsCreation.add(Thread.currentThread().getName());
+                return 0;
+            }
+        });
+
+        // ACT
+        MvcResult resultat = mvc.perform(post(URI.create("/api/drinkers"))
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .content("login=foo&password=bar"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(resultat))
+                .andExpect(status().isCreated());
+
+        // ASSERT
+        // La création attend l'écriture du journal : jamais sur un thread du service de hachage
+        Assertions.assertEquals(1, threadsCreation.size());
+        Assertions.assertFalse(threadsCreation.get(0).startsWith("hachage-"), threadsCreation.get(0));
+    }
+
     @Test
     void postDrinker_KO_400_loginInvalide() throws Exception {
         // ARRANGE
@@ -65,9 +104,12 @@ class ControleurTest {
 
         // ACT & ASSERT
         String params = MessageFormat.format("login={0}&password={1}", login, password);
-        mvc.perform(post(URI.create("/api/drinkers"))
+        MvcResult resultat = mvc.perform(post(URI.create("/api/drinkers"))
                         .contentType(MediaType.APPLICATION_FORM_URLENCODED)
                         .content(params))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(resultat))
                 .andExpect(status().isBadRequest());
     }
 
@@ -79,9 +121,12 @@ class ControleurTest {
 
         // ACT & ASSERT
         String params = MessageFormat.format("login={0}&password={1}", login, password);
-        mvc.perform(post(URI.create("/api/drinkers"))
+        MvcResult resultat = mvc.perform(post(URI.create("/api/drinkers"))
                         .contentType(MediaType.APPLICATION_FORM_URLENCODED)
                         .content(params))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(resultat))
                 .andExpect(status().isBadRequest());
     }
 
@@ -94,12 +139,89 @@ class ControleurTest {
 
         // ACT & ASSERT
         String params = MessageFormat.format("login={0}&password={1}", login, password);
-        mvc.perform(post(URI.create("/api/drinkers"))
+        MvcResult resultat = mvc.perform(post(URI.create("/api/drinkers"))
                         .contentType(MediaType.APPLICATION_FORM_URLENCODED)
                         .content(params))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(resultat))
                 .andExpect(status().isConflict());
     }
 
+    @Test
+    void postImportDrinkers_OK_200_ndjson() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("existant", passwordEncoder.encode("bar"));
+        String corps = String.join("\n",
+                new JSONObject().put("login", "foo1").put("password", "bar1").toString(),
+                new JSONObject().put("login", "existant").put("password", "bar").toString(),
+                "",
+                new JSONObject().put("login", "foo1").put("password", "bar2").toString(),
+                "pas du json",
+                new JSONObject().put("login", "foo2").put("password", "bar2").toString());
+
+        // ACT
+        MvcResult resultat = mvc.perform(post(URI.create("/api/drinkers/import"))
+                        .with(httpBasic(loginFabulous, passwordFabulous))
+                        .contentType("application/x-ndjson")
+                        .content(corps))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // ASSERT
+        mvc.perform(asyncDispatch(resultat))
+                .andExpect(status().isOk());
+        String[] lignes = resultat.getResponse().getContentAsString().split("\n");
+        Assertions.assertEquals(5, lignes.length);
+        Compte foo1 = facadeModele.getCompteByLogin("foo1");
+        Assertions.assertEquals(new JSONObject().put("ligne", 1).put("statut", 201).put("idDrinker", foo1.getId()).toString(), new JSONObject(lignes[0]).toString());
+        Assertions.assertEquals(409, new JSONObject(lignes[1]).getInt("statut"));
+        Assertions.assertEquals(4, new JSONObject(lignes[2]).getInt("ligne"));
+        Assertions.assertEquals(409, new JSONObject(lignes[2]).getInt("statut"));
+        Assertions.assertEquals(400, new JSONObject(lignes[3]).getInt("statut"));
+        Assertions.assertEquals(201, new JSONObject(lignes[4]).getInt("statut"));
+        Assertions.assertTrue(passwordEncoder.matches("bar2", facadeModele.getCompteByLogin("foo2").getPassword()));
+        Assertions.assertEquals(TypeCompte.DRINKER, foo1.getType());
+    }
+
+    @Test
+    void postImportDrinkers_OK_200_csv() throws Exception {
+        // ARRANGE
+        String corps = "login,password\nfoo1,bar,1\nfoo2\n";
+
+        // ACT
+        MvcResult resultat = mvc.perform(post(URI.create("/api/drinkers/import"))
+                        .with(httpBasic(loginFabulous, passwordFabulous))
+                        .contentType("text/csv")
+                        .content(corps))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // ASSERT
+        mvc.perform(asyncDispatch(resultat))
+                .andExpect(status().isOk());
+        String[] lignes = resultat.getResponse().getContentAsString().split("\n");
+        Assertions.assertEquals(2, lignes.length);
+        Assertions.assertEquals(201, new JSONObject(lignes[0]).getInt("statut"));
+        Assertions.assertEquals(400, new JSONObject(lignes[1]).getInt("statut"));
+        Assertions.assertTrue(passwordEncoder.matches("bar,1", facadeModele.getCompteByLogin("foo1").getPassword()));
+    }
+
+    @Test
+    void postImportDrinkers_KO_403() throws Exception {
+        // ARRANGE
+        String login = "foo";
+        String password = "bar";
+        facadeModele.creerCompteDrinker(login, passwordEncoder.encode(password));
+
+        // ACT & ASSERT
+        mvc.perform(post(URI.create("/api/drinkers/import"))
+                        .with(httpBasic(login, password))
+                        .contentType("text/csv")
+                        .content("foo2,bar2"))
+                .andExpect(status().isForbidden());
+    }
+
     @Test
     void getDrinkers_OK_200() throws Exception {
         // ARRANGE
@@ -232,6 +354,22 @@ class ControleurTest {
                 .andExpect(status().isForbidden());
     }
 
+    @Test
+    void patchDrinker_KO_401() throws Exception {
+        // ARRANGE
+        String typeCompte = TypeCompte.FABULOUS;
+        String login = "foo";
+        String password = "bar";
+        Compte compte = facadeModele.creerCompteDrinker(login, passwordEncoder.encode(password));
+
+        // ACT & ASSERT
+        mvc.perform(patch(URI.create("/api/drinkers/" + compte.getId() + "/type"))
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .content(typeCompte))
+                .andExpect(status().isUnauthorized());
+        Assertions.assertEquals(TypeCompte.DRINKER, compte.getType());
+    }
+
     @Test
     void patchDrinker_KO_400() throws Exception {
         // ARRANGE
@@ -456,6 +594,56 @@ class ControleurTest {
                 );
     }
 
+    @Test
+    void getMachines_OK_200_pagination() throws Exception {
+        // ARRANGE
+        String salle = "A38";
+        Machine machine1 = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, salle);
+        Machine machine2 = facadeModele.ajouterMachine("coffee2", TypeBoisson.CAFE, salle);
+        Machine machine3 = facadeModele.ajouterMachine("tea3", TypeBoisson.THE, salle);
+
+        // ACT & ASSERT
+        mvc.perform(get(URI.create("/api/machines?limit=2")))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.length()").value(2),
+                        jsonPath("$[0].id").value(machine1.getId()),
+                        jsonPath("$[1].id").value(machine2.getId()),
+                        header().string("Link", containsString("after=" + machine2.getId()))
+                );
+        mvc.perform(get(URI.create("/api/machines?after=" + machine2.getId() + "&limit=2")))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.length()").value(1),
+                        jsonPath("$[0].id").value(machine3.getId()),
+                        header().doesNotExist("Link")
+                );
+    }
+
+    @Test
+    void getMachines_OK_304_etagInchange() throws Exception {
+        // ARRANGE
+        facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        String etag = mvc.perform(get(URI.create("/api/machines?salle=A38")))
+                .andExpectAll(
+                        status().isOk(),
+                        header().exists("ETag")
+                )
+                .andReturn().getResponse().getHeader("ETag");
+
+        // ACT & ASSERT
+        mvc.perform(get(URI.create("/api/machines?salle=A38"))
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        facadeModele.ajouterMachine("coffee2", TypeBoisson.CAFE, "A38");
+        mvc.perform(get(URI.create("/api/machines?salle=A38"))
+                        .header("If-None-Match", etag))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.length()").value(2)
+                );
+    }
+
     @Test
     void getMachines_OK_200_salleExistante() throws Exception {
         // ARRANGE
@@ -971,4 +1159,227 @@ class ControleurTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void getEvenementsCommandesMachine_OK_200() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        String login = "foo";
+        String password = "bar";
+        facadeModele.creerCompteDrinker(login, passwordEncoder.encode(password));
+        MvcResult resultat = mvc.perform(get(URI.create("/api/machines/" + machine.getId() + "/commandes/evenements"))
+                        .with(httpBasic(login, password)))
+                .andExpectAll(
+                        status().isOk(),
+                        request().asyncStarted()
+                )
+                .andReturn();
+
+        // ACT
+        mvc.perform(put(URI.create("/api/machines/" + machine.getId() + "/cafe"))
+                        .with(httpBasic(login, password))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new JSONObject().put("nbSucres", 1).toString()))
+                .andExpect(status().isAccepted());
+
+        // ASSERT
+        // Événements écrits par les expéditeurs au fil de la préparation
+        for (int i = 0; i < 500 && !resultat.getResponse().getContentAsString().contains("event:prete"); i++)
+            Thread.sleep(10);
+        String evenements = resultat.getResponse().getContentAsString();
+        Assertions.assertTrue(evenements.startsWith("event:en_attente"));
+        Assertions.assertTrue(evenements.indexOf("event:en_attente") < evenements.indexOf("event:en_preparation"));
+        Assertions.assertTrue(evenements.indexOf("event:en_preparation") < evenements.indexOf("event:prete"));
+    }
+
+    @Test
+    void getEvenementsCommandesMachine_KO_404() throws Exception {
+        // ARRANGE
+        String login = "foo";
+        String password = "bar";
+        facadeModele.creerCompteDrinker(login, passwordEncoder.encode(password));
+
+        // ACT & ASSERT
+        mvc.perform(get(URI.create("/api/machines/-1/commandes/evenements"))
+                        .with(httpBasic(login, password)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getEvenementsCommandesDrinker_KO_403() throws Exception {
+        // ARRANGE
+        String login = "foo";
+        String password = "bar";
+        facadeModele.creerCompteDrinker(login, passwordEncoder.encode(password));
+        Compte autre = facadeModele.creerCompteDrinker("foo2", passwordEncoder.encode("bar2"));
+
+        // ACT & ASSERT
+        mvc.perform(get(URI.create("/api/drinkers/" + autre.getId() + "/commandes/evenements"))
+                        .with(httpBasic(login, password)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void getStatistiquesMachine_OK_200() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        String login = "foo";
+        String password = "bar";
+        Compte compte = facadeModele.creerCompteDrinker(login, passwordEncoder.encode(password));
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 2);
+
+        // ACT & ASSERT
+        mvc.perform(get(URI.create("/api/stats/machines/" + machine.getId()))
+                        .with(httpBasic(login, password)))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.nbBoissons").value(1),
+                        jsonPath("$.histogrammeSucres[2]").value(1)
+                );
+    }
+
+    @Test
+    void getStatistiquesDrinker_KO_403() throws Exception {
+        // ARRANGE
+        String login = "foo";
+        String password = "bar";
+        facadeModele.creerCompteDrinker(login, passwordEncoder.encode(password));
+        Compte autre = facadeModele.creerCompteDrinker("foo2", passwordEncoder.encode("bar2"));
+
+        // ACT & ASSERT
+        mvc.perform(get(URI.create("/api/stats/drinkers/" + autre.getId()))
+                        .with(httpBasic(login, password)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void getSerieMachine_OK_200() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        String login = "foo";
+        String password = "bar";
+        Compte compte = facadeModele.creerCompteDrinker(login, passwordEncoder.encode(password));
+        LocalDateTime debut = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+
+        // ACT & ASSERT
+        mvc.perform(get(URI.create("/api/stats/machines/" + machine.getId() + "/serie?debut=" + debut + "&fin=" + debut.plusHours(4) + "&pas=PT2H"))
+                        .with(httpBasic(login, password)))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.pas").value("PT2H"),
+                        jsonPath("$.valeurs.length()").value(2),
+                        jsonPath("$.valeurs[0]").value(1)
+                );
+    }
+
+    @Test
+    void getTopDrinkers_OK_200() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        String login = "foo";
+        Compte compte = facadeModele.creerCompteDrinker(login, passwordEncoder.encode("bar"));
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+
+        // ACT & ASSERT
+        mvc.perform(get(URI.create("/api/drinkers/top?k=5"))
+                        .with(httpBasic(loginFabulous, passwordFabulous)))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.length()").value(1),
+                        jsonPath("$[0].login").value(login),
+                        jsonPath("$[0].nbBoissons").value(1)
+                );
+    }
+
+    @Test
+    void getTopDrinkers_KO_403() throws Exception {
+        // ARRANGE
+        String login = "foo";
+        String password = "bar";
+        facadeModele.creerCompteDrinker(login, passwordEncoder.encode(password));
+
+        // ACT & ASSERT
+        // Le classement expose les logins : réservé, comme la liste des comptes
+        mvc.perform(get(URI.create("/api/drinkers/top?k=5"))
+                        .with(httpBasic(login, password)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void getTopDrinkers_KO_400() throws Exception {
+        // ACT & ASSERT
+        mvc.perform(get(URI.create("/api/drinkers/top?k=0"))
+                        .with(httpBasic(loginFabulous, passwordFabulous)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void postCommandes_OK_200_statutsParDemande() throws Exception {
+        // ARRANGE
+        Machine cafetiere = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        Machine theiere = facadeModele.ajouterMachine("tea1", TypeBoisson.THE, "A38");
+        Compte compte = facadeModele.creerCompteDrinker("foo", passwordEncoder.encode("bar"));
+        JSONArray demandes = new JSONArray()
+                .put(new JSONObject().put("idMachine", cafetiere.getId()).put("typeBoisson", TypeBoisson.CAFE).put("nbSucres", 1))
+                .put(new JSONObject().put("idMachine", theiere.getId()).put("typeBoisson", TypeBoisson.THE).put("nbSucres", 0)
+                        .put("idDrinker", compte.getId()))
+                .put(new JSONObject().put("idMachine", theiere.getId()).put("typeBoisson", TypeBoisson.CAFE).put("nbSucres", 1))
+                .put(new JSONObject().put("idMachine", cafetiere.getId()).put("typeBoisson", TypeBoisson.CAFE).put("nbSucres", -1))
+                .put(new JSONObject().put("idMachine", Integer.MAX_VALUE).put("typeBoisson", TypeBoisson.CAFE).put("nbSucres", 1));
+
+        // ACT & ASSERT
+        mvc.perform(post(URI.create("/api/commandes"))
+                        .with(httpBasic(loginFabulous, passwordFabulous))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(demandes.toString()))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$.length()").value(5),
+                        jsonPath("$[0].statut").value(202),
+                        jsonPath("$[0].commande.etat").exists(),
+                        jsonPath("$[1].statut").value(202),
+                        jsonPath("$[1].commande.idDrinker").value(compte.getId()),
+                        jsonPath("$[2].statut").value(418),
+                        jsonPath("$[3].statut").value(400),
+                        jsonPath("$[4].statut").value(404),
+                        jsonPath("$[4].commande").doesNotExist()
+                );
+    }
+
+    @Test
+    void postCommandes_OK_200_drinkerPourUnAutreCompte() throws Exception {
+        // ARRANGE
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        String login = "foo";
+        String password = "bar";
+        Compte compte = facadeModele.creerCompteDrinker(login, passwordEncoder.encode(password));
+        Compte autreCompte = facadeModele.creerCompteDrinker("foo2", passwordEncoder.encode("bar2"));
+        JSONArray demandes = new JSONArray()
+                .put(new JSONObject().put("idMachine", machine.getId()).put("typeBoisson", TypeBoisson.CAFE).put("nbSucres", 1)
+                        .put("idDrinker", compte.getId()))
+                .put(new JSONObject().put("idMachine", machine.getId()).put("typeBoisson", TypeBoisson.CAFE).put("nbSucres", 1)
+                        .put("idDrinker", autreCompte.getId()));
+
+        // ACT & ASSERT
+        mvc.perform(post(URI.create("/api/commandes"))
+                        .with(httpBasic(login, password))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(demandes.toString()))
+                .andExpectAll(
+                        status().isOk(),
+                        jsonPath("$[0].statut").value(202),
+                        jsonPath("$[1].statut").value(403)
+                );
+    }
+
+    @Test
+    void postCommandes_KO_400_lotVide() throws Exception {
+        // ACT & ASSERT
+        mvc.perform(post(URI.create("/api/commandes"))
+                        .with(httpBasic(loginFabulous, passwordFabulous))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
 }
@@ -0,0 +1,114 @@
+package cc.controleur;
+
+import cc.modele.data.boissons.TypeBoisson;
+import cc.modele.preparation.Commande;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+class DiffusionCommandesReactiveTest {
+
+    @Test
+    void commandeModifiee_OK_diffusionParMachineEtParCompte() {
+        // ARRANGE
+        DiffusionCommandesReactive classeTestee = new DiffusionCommandesReactive(new ObjectMapper().findAndRegisterModules(), 8, 60);
+        AbonneTest toutesCommandesMachine = new AbonneTest(Long.MAX_VALUE);
+        AbonneTest commandesMachineCompte1 = new AbonneTest(Long.MAX_VALUE);
+        AbonneTest commandesCompte2 = new AbonneTest(Long.MAX_VALUE);
+        classeTestee.suivreMachine(1, null).subscribe(toutesCommandesMachine);
+        classeTestee.suivreMachine(1, 1).subscribe(commandesMachineCompte1);
+        classeTestee.suivreCompte(2).subscribe(commandesCompte2);
+
+        // ACT
+        classeTestee.commandeModifiee(new Commande(1L, 1, 1, TypeBoisson.CAFE, 0));
+        classeTestee.commandeModifiee(new Commande(2L, 1, 2, TypeBoisson.CAFE, 0));
+        classeTestee.commandeModifiee(new Commande(3L, 2, 2, TypeBoisson.THE, 0));
+        classeTestee.commandeModifiee(new Commande(4L, 2, 3, TypeBoisson.THE, 0));
+
+        // ASSERT
+        // Chaque flux s'ouvre sur un commentaire
+        Assertions.assertNotNull(toutesCommandesMachine.evenements.get(0).comment());
+        Assertions.assertEquals(1 + 2, toutesCommandesMachine.evenements.size());
+        Assertions.assertEquals(1 + 1, commandesMachineCompte1.evenements.size());
+        Assertions.assertTrue(commandesMachineCompte1.evenements.get(1).data().contains("\"id\":1"));
+        Assertions.assertEquals(1 + 2, commandesCompte2.evenements.size());
+        Assertions.assertEquals("en_attente", commandesCompte2.evenements.get(1).event());
+        Assertions.assertEquals(3, classeTestee.getNbAbonnes());
+    }
+
+    @Test
+    void commandeModifiee_OK_evictionAbonneLent() {
+        // ARRANGE
+        DiffusionCommandesReactive classeTestee = new DiffusionCommandesReactive(new ObjectMapper().findAndRegisterModules(), 2, 60);
+        // Ne demande que le commentaire d'ouverture : les événements suivants s'accumulent
+        AbonneTest lent = new AbonneTest(1);
+        AbonneTest rapide = new AbonneTest(Long.MAX_VALUE);
+        classeTestee.suivreMachine(1, null).subscribe(lent);
+        classeTestee.suivreMachine(1, null).subscribe(rapide);
+
+        // ACT
+        for (long i = 1; i <= 4; i++)
+            classeTestee.commandeModifiee(new Commande(i, 1, 1, TypeBoisson.CAFE, 0));
+        // Désinscrit du canal dès le débordement ; la fin du flux suit les événements déjà retenus
+        int nbAbonnesApresDebordement = classeTestee.getNbAbonnes();
+        lent.request(Long.MAX_VALUE);
+
+        // ASSERT
+        Assertions.assertEquals(1, classeTestee.getNbEvictions());
+        Assertions.assertEquals(1, nbAbonnesApresDebordement);
+        Assertions.assertTrue(lent.termine);
+        Assertions.assertTrue(lent.evenements.size() < 1 + 4, "événements reçus " + lent.evenements.size());
+        Assertions.assertEquals(1 + 4, rapide.evenements.size());
+    }
+
+    @Test
+    void suivreCompte_OK_canalRetireAuDepartDuDernierAbonne() {
+        // ARRANGE
+        DiffusionCommandesReactive classeTestee = new DiffusionCommandesReactive(new ObjectMapper().findAndRegisterModules(), 8, 60);
+        AbonneTest abonne = new AbonneTest(Long.MAX_VALUE);
+        classeTestee.suivreCompte(1).subscribe(abonne);
+
+        // ACT
+        abonne.dispose();
+        classeTestee.commandeModifiee(new Commande(1L, 1, 1, TypeBoisson.CAFE, 0));
+
+        // ASSERT
+        Assertions.assertEquals(0, classeTestee.getNbAbonnes());
+        Assertions.assertEquals(1, abonne.evenements.size());
+    }
+
+    private static class AbonneTest extends BaseSubscriber<ServerSentEvent<String>> {
+
+        private final long demande;
+        private final List<ServerSentEvent<String>> evenements = new CopyOnWriteArrayList<>();
+        private volatile boolean termine;
+
+        private AbonneTest(long demande) {
+            this.demande = demande;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            subscription.request(demande);
+        }
+
+        @Override
+        protected void hookOnNext(ServerSentEvent<String> evenement) {
+            evenements.add(evenement);
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            termine = true;
+        }
+
+    }
+
+}
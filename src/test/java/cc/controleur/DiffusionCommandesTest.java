@@ -0,0 +1,151 @@
+package cc.controleur;
+
+import cc.modele.data.boissons.TypeBoisson;
+import cc.modele.preparation.Commande;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+class DiffusionCommandesTest {
+
+    @Test
+    void commandeModifiee_OK_diffusionParMachineEtParCompte() throws Exception {
+        // ARRANGE
+        ExecutorService expediteurs = Executors.newSingleThreadExecutor();
+        DiffusionCommandes classeTestee = new DiffusionCommandes(new ObjectMapper().findAndRegisterModules(), 8, 60, 5000, expediteurs);
+        EmetteurTest toutesCommandesMachine = new EmetteurTest();
+        EmetteurTest commandesMachineCompte1 = new EmetteurTest();
+        EmetteurTest commandesCompte2 = new EmetteurTest();
+        classeTestee.abonner(toutesCommandesMachine, 1, null);
+        classeTestee.abonner(commandesMachineCompte1, 1, 1);
+        classeTestee.abonner(commandesCompte2, null, 2);
+
+        // ACT
+        classeTestee.commandeModifiee(new Commande(1L, 1, 1, TypeBoisson.CAFE, 0));
+        classeTestee.commandeModifiee(new Commande(2L, 1, 2, TypeBoisson.CAFE, 0));
+        classeTestee.commandeModifiee(new Commande(3L, 2, 2, TypeBoisson.THE, 0));
+        classeTestee.commandeModifiee(new Commande(4L, 2, 3, TypeBoisson.THE, 0));
+        expediteurs.shutdown();
+        Assertions.assertTrue(expediteurs.awaitTermination(5, TimeUnit.SECONDS));
+
+        // ASSERT
+        Assertions.assertEquals(2, toutesCommandesMachine.evenements.size());
+        Assertions.assertEquals(1, commandesMachineCompte1.evenements.size());
+        Assertions.assertTrue(commandesMachineCompte1.evenements.get(0).contains("\"id\":1"));
+        Assertions.assertEquals(2, commandesCompte2.evenements.size());
+        Assertions.assertTrue(commandesCompte2.evenements.get(0).contains("event:en_attente"));
+        Assertions.assertEquals(3, classeTestee.getNbAbonnes());
+    }
+
+    @Test
+    void commandeModifiee_OK_evictionAbonneLent() throws Exception {
+        // ARRANGE
+        // Expéditeur unique bloqué : les files des abonnés ne sont pas vidées
+        CountDownLatch liberation = new CountDownLatch(1);
+        ExecutorService expediteurs = Executors.newSingleThreadExecutor();
+        expediteurs.execute(() -> {
+            try {
+                liberation.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        DiffusionCommandes classeTestee = new DiffusionCommandes(new ObjectMapper().findAndRegisterModules(), 2, 60, 5000, expediteurs);
+        EmetteurTest lent = new EmetteurTest();
+        EmetteurTest rapide = new EmetteurTest();
+        classeTestee.abonner(lent, 1, null);
+
+        // ACT
+        for (long i = 1; i <= 3; i++)
+            classeTestee.commandeModifiee(new Commande(i, 1, 1, TypeBoisson.CAFE, 0));
+        classeTestee.abonner(rapide, 1, null);
+        classeTestee.commandeModifiee(new Commande(4L, 1, 1, TypeBoisson.CAFE, 0));
+        liberation.countDown();
+        expediteurs.shutdown();
+        Assertions.assertTrue(expediteurs.awaitTermination(5, TimeUnit.SECONDS));
+
+        // ASSERT
+        Assertions.assertEquals(1, classeTestee.getNbEvictions());
+        Assertions.assertEquals(1, classeTestee.getNbAbonnes());
+        Assertions.assertTrue(lent.termine);
+        Assertions.assertTrue(lent.evenements.isEmpty());
+        Assertions.assertEquals(1, rapide.evenements.size());
+        Assertions.assertFalse(rapide.termine);
+    }
+
+    @Test
+    void surveiller_OK_evictionAbonneBloque() throws Exception {
+        // ARRANGE
+        // Expéditeur unique : bloqué dans l'envoi vers un client qui ne lit plus
+        CountDownLatch liberation = new CountDownLatch(1);
+        ExecutorService expediteurs = Executors.newFixedThreadPool(1);
+        DiffusionCommandes classeTestee = new DiffusionCommandes(new ObjectMapper().findAndRegisterModules(), 8, 60, 100, expediteurs);
+        EmetteurTest bloque = new EmetteurTest() {
+            @Override
+            public void send(SseEventBuilder builder) {
+                try {
+                    liberation.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.send(builder);
+            }
+        };
+        EmetteurTest rapide = new EmetteurTest();
+        classeTestee.abonner(bloque, 1, null);
+        classeTestee.abonner(rapide, 2, null);
+
+        // ACT
+        classeTestee.commandeModifiee(new Commande(1L, 1, 1, TypeBoisson.CAFE, 0));
+        classeTestee.commandeModifiee(new Commande(2L, 2, 1, TypeBoisson.CAFE, 0));
+        // Servi malgré l'expéditeur bloqué, une fois celui-ci remplacé
+        for (int i = 0; i < 500 && rapide.evenements.isEmpty(); i++)
+            Thread.sleep(10);
+        int nbAbonnesPendantBlocage = classeTestee.getNbAbonnes();
+        liberation.countDown();
+        for (int i = 0; i < 500 && !bloque.termine; i++)
+            Thread.sleep(10);
+        expediteurs.shutdown();
+        Assertions.assertTrue(expediteurs.awaitTermination(5, TimeUnit.SECONDS));
+
+        // ASSERT
+        Assertions.assertEquals(1, rapide.evenements.size());
+        Assertions.assertEquals(1, classeTestee.getNbEvictions());
+        Assertions.assertEquals(1, nbAbonnesPendantBlocage);
+        Assertions.assertTrue(bloque.termine);
+        Assertions.assertFalse(rapide.termine);
+        // Remplaçant rendu à la fin de l'envoi bloqué
+        Assertions.assertEquals(1, ((ThreadPoolExecutor) expediteurs).getCorePoolSize());
+    }
+
+    // Émetteur hors conteneur : enregistre les événements envoyés
+    private static class EmetteurTest extends SseEmitter {
+
+        private final List<String> evenements = new ArrayList<>();
+        private volatile boolean termine;
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            StringBuilder texte = new StringBuilder();
+            builder.build().forEach(donnee -> texte.append(donnee.getData()));
+            evenements.add(texte.toString());
+        }
+
+        @Override
+        public void complete() {
+            termine = true;
+        }
+
+    }
+
+}
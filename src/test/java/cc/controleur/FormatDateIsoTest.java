@@ -0,0 +1,53 @@
+package cc.controleur;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+
+class FormatDateIsoTest {
+
+    @Test
+    void formater_OK_identiqueAuFormatJackson() {
+        // ARRANGE
+        ZoneId zone = ZoneId.of("Europe/Paris");
+        FormatDateIso classeTestee = new FormatDateIso(zone);
+        // Traverse le passage à l'heure d'été, avec des millisecondes variées et des secondes à zéro
+        long debut = Instant.parse("2026-03-28T22:00:00Z").toEpochMilli();
+        long[] pas = {0, 1, 10, 100, 120, 999, 1000, 60_000, 3_599_999, 3_600_000};
+
+        // ACT
+        // ASSERT
+        long dateMillis = debut;
+        for (int i = 0; i < 2_000; i++) {
+            dateMillis += pas[i % pas.length] + 37_000L * (i % 3);
+            String attendu = DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(dateMillis), zone));
+            Assertions.assertEquals(attendu, new String(classeTestee.getTampon(), 0, classeTestee.formater(dateMillis)));
+        }
+    }
+
+    @Test
+    void formater_OK_datesNonTriees() {
+        // ARRANGE
+        ZoneId zone = ZoneId.of("Europe/Paris");
+        FormatDateIso classeTestee = new FormatDateIso(zone);
+        long[] dates = {
+                Instant.parse("2026-07-14T10:15:00Z").toEpochMilli(),
+                Instant.parse("2026-01-01T00:00:00.500Z").toEpochMilli(),
+                Instant.parse("2026-10-25T00:59:59.990Z").toEpochMilli(),
+                Instant.parse("2026-10-25T01:00:00Z").toEpochMilli(),
+                Instant.parse("1969-12-31T23:59:59.001Z").toEpochMilli()};
+
+        // ACT
+        // ASSERT
+        for (long dateMillis : dates) {
+            String attendu = DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(dateMillis), zone));
+            Assertions.assertEquals(attendu, new String(classeTestee.getTampon(), 0, classeTestee.formater(dateMillis)));
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+package cc.controleur;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.TypeBoisson;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.comptes.TypeCompte;
+import cc.modele.data.machines.Machine;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+
+class VuesJsonTest {
+
+    private FacadeModele facadeModele;
+    private VuesJson classeTestee;
+
+    @BeforeEach
+    void setUp() {
+        facadeModele = new FacadeModele();
+        classeTestee = new VuesJson(facadeModele, new ObjectMapper());
+    }
+
+    @Test
+    void getTousComptes_OK_vueReutiliseeTantQueInchangee() throws Exception {
+        // ARRANGE
+        facadeModele.creerCompteDrinker("foo", "bar");
+        VuesJson.Vue vue = classeTestee.getTousComptes();
+
+        // ACT
+        VuesJson.Vue vueSuivante = classeTestee.getTousComptes();
+
+        // ASSERT
+        Assertions.assertSame(vue, vueSuivante);
+        Assertions.assertEquals(1, new JSONArray(texte(vue.getOctets())).length());
+    }
+
+    @Test
+    void getTousComptes_OK_invalidationModifications() throws Exception {
+        // ARRANGE
+        Compte compte = facadeModele.creerCompteDrinker("foo", "bar");
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        VuesJson.Vue vueInitiale = classeTestee.getTousComptes();
+
+        // ACT
+        facadeModele.modifierTypeCompte(compte.getId(), TypeCompte.FABULOUS);
+        VuesJson.Vue vueTypeModifie = classeTestee.getTousComptes();
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+        VuesJson.Vue vueBoissonPreparee = classeTestee.getTousComptes();
+
+        // ASSERT
+        Assertions.assertNotEquals(vueInitiale.getEtag(), vueTypeModifie.getEtag());
+        Assertions.assertEquals(TypeCompte.FABULOUS, new JSONArray(texte(vueTypeModifie.getOctets())).getJSONObject(0).getString("type"));
+        Assertions.assertNotEquals(vueTypeModifie.getEtag(), vueBoissonPreparee.getEtag());
+        Assertions.assertEquals(1, new JSONArray(texte(vueBoissonPreparee.getOctets())).getJSONObject(0).getLong("nbBoissonsBues"));
+        Assertions.assertEquals(1, new JSONObject(texte(classeTestee.getCompte(compte))).getLong("nbBoissonsBues"));
+    }
+
+    @Test
+    void getMachinesSalle_OK_invalidationAjoutMachine() throws Exception {
+        // ARRANGE
+        facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.ajouterMachine("tea1", TypeBoisson.THE, "B73");
+        VuesJson.Vue vueInitiale = classeTestee.getMachinesSalle("A38");
+
+        // ACT
+        facadeModele.ajouterMachine("coffee2", TypeBoisson.CAFE, "A38");
+        VuesJson.Vue vueApresAjout = classeTestee.getMachinesSalle("A38");
+
+        // ASSERT
+        Assertions.assertEquals(1, new JSONArray(texte(vueInitiale.getOctets())).length());
+        Assertions.assertEquals(2, new JSONArray(texte(vueApresAjout.getOctets())).length());
+        Assertions.assertNotEquals(vueInitiale.getEtag(), vueApresAjout.getEtag());
+        Assertions.assertEquals("[]", texte(classeTestee.getMachinesSalle("Z00").getOctets()));
+    }
+
+    private static String texte(byte[] octets) {
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+
+}
@@ -5,12 +5,24 @@ import cc.modele.data.boissons.TypeBoisson;
 import cc.modele.data.comptes.Compte;
 import cc.modele.data.comptes.TypeCompte;
 import cc.modele.data.machines.Machine;
+import cc.modele.evenements.OperationModele;
+import cc.modele.evenements.SondeModele;
 import cc.modele.exceptions.*;
+import cc.modele.identifiants.SequenceAtomique;
+import cc.modele.identifiants.SequenceParBlocs;
+import cc.modele.identifiants.ServiceIdentifiants;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 class FacadeModeleTest {
@@ -51,6 +63,58 @@ class FacadeModeleTest {
         Assertions.assertThrows(CompteDejaExistantException.class, () -> classeTestee.creerCompteDrinker(login, password2));
     }
 
+    @Test
+    void creerCompteDrinker_KO_compteDejaExistant_concurrent() throws InterruptedException {
+        // ARRANGE
+        String login = "foo";
+        String password = "bar";
+        int nbThreads = 16;
+        AtomicInteger nbCrees = new AtomicInteger();
+        AtomicInteger nbRefuses = new AtomicInteger();
+        CountDownLatch depart = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+
+        // ACT
+        for (int i = 0; i < nbThreads; i++) {
+            executor.submit(() -> {
+                depart.await();
+                try {
+                    classeTestee.creerCompteDrinker(login, password);
+                    nbCrees.incrementAndGet();
+                } catch (CompteDejaExistantException e) {
+                    nbRefuses.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        depart.countDown();
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // ASSERT
+        Assertions.assertEquals(1, nbCrees.get());
+        Assertions.assertEquals(nbThreads - 1, nbRefuses.get());
+        Assertions.assertEquals(1, classeTestee.getAllComptes().size());
+    }
+
+    @Test
+    void creerCompteDrinker_OK_repriseMarqueHaute() throws InformationsIncompletesException, CompteDejaExistantException {
+        // ARRANGE
+        int marqueHaute = 41;
+        ServiceIdentifiants serviceIdentifiants = new ServiceIdentifiants(new SequenceParBlocs(marqueHaute, 10), new SequenceAtomique(marqueHaute));
+        classeTestee = new FacadeModele(serviceIdentifiants);
+
+        // ACT
+        Compte compte1 = classeTestee.creerCompteDrinker("foo1", "bar1");
+        Compte compte2 = classeTestee.creerCompteDrinker("foo2", "bar2");
+
+        // ASSERT
+        Assertions.assertTrue(compte1.getId() > marqueHaute);
+        Assertions.assertTrue(compte2.getId() > marqueHaute);
+        Assertions.assertNotEquals(compte1.getId(), compte2.getId());
+        Assertions.assertTrue(serviceIdentifiants.getComptes().getMarqueHaute() >= compte2.getId());
+    }
+
     @Test
     void creerCompteDrinker_KO_loginVide() {
         // ARRANGE
@@ -176,6 +240,41 @@ class FacadeModeleTest {
         Assertions.assertThrows(CompteInconnuException.class, () -> classeTestee.getCompteById(idDummy));
     }
 
+    @Test
+    void getLoginsExistants_OK() throws InformationsIncompletesException, CompteDejaExistantException {
+        // ARRANGE
+        classeTestee.creerCompteDrinker("foo1", "bar1");
+        classeTestee.creerCompteFabulous("foo2", "bar2");
+
+        // ACT
+        Collection<String> existants = classeTestee.getLoginsExistants(List.of("foo1", "foo2", "foo3"));
+
+        // ASSERT
+        Assertions.assertEquals(2, existants.size());
+        Assertions.assertTrue(existants.containsAll(List.of("foo1", "foo2")));
+    }
+
+    @Test
+    void sonde_OK_operationsMesureesUneFois() throws InformationsIncompletesException, CompteDejaExistantException, CompteInconnuException, TypeCompteInconnuException {
+        // ARRANGE
+        List<OperationModele> operations = new ArrayList<>();
+        classeTestee.setSonde(new SondeModele() {
+            @Override
+            public void fin(OperationModele operation, long debut) {
+                operations.add(operation);
+            }
+        });
+
+        // ACT
+        Compte compte = classeTestee.creerCompteDrinker("foo", "bar");
+        classeTestee.modifierTypeCompte(compte.getId(), TypeCompte.FABULOUS);
+        Assertions.assertThrows(CompteInconnuException.class, () -> classeTestee.getCompteById(-1));
+
+        // ASSERT
+        Assertions.assertEquals(List.of(OperationModele.CREER_COMPTE_DRINKER, OperationModele.MODIFIER_TYPE_COMPTE,
+                OperationModele.GET_COMPTE_BY_ID), operations);
+    }
+
     @Test
     void getCompteByLogin_OK() throws InformationsIncompletesException, CompteDejaExistantException, CompteInconnuException {
         // ARRANGE
@@ -418,6 +517,42 @@ class FacadeModeleTest {
         Assertions.assertTrue(machines.isEmpty());
     }
 
+    @Test
+    void getAllMachinesBySalle_OK_ajoutsConcurrents() throws InterruptedException, FormatSalleIncorrectException {
+        // ARRANGE
+        String salle1 = "A38";
+        String salle2 = "B73";
+        int nbThreads = 8;
+        int nbMachinesParThread = 250;
+        CountDownLatch depart = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+
+        // ACT
+        for (int t = 0; t < nbThreads; t++) {
+            int numThread = t;
+            executor.submit(() -> {
+                depart.await();
+                for (int i = 0; i < nbMachinesParThread; i++) {
+                    String salle = i % 2 == 0 ? salle1 : salle2;
+                    classeTestee.ajouterMachine("machine-" + numThread + "-" + i, TypeBoisson.CAFE, salle);
+                    // Lectures concurrentes des index pendant les ajouts
+                    classeTestee.getAllMachinesBySalle(salle).size();
+                }
+                return null;
+            });
+        }
+        depart.countDown();
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // ASSERT
+        int nbMachines = nbThreads * nbMachinesParThread;
+        Assertions.assertEquals(nbMachines, classeTestee.getAllMachines().size());
+        Assertions.assertEquals(nbMachines / 2, classeTestee.getAllMachinesBySalle(salle1).size());
+        Assertions.assertEquals(nbMachines / 2, classeTestee.getAllMachinesBySalle(salle2).size());
+        Assertions.assertEquals(nbMachines, classeTestee.getAllMachines().stream().map(Machine::getId).distinct().count());
+    }
+
     @Test
     void getAllMachinesBySalle_KO_formatSalleIncorrect() {
         // ARRANGE
@@ -427,6 +562,38 @@ class FacadeModeleTest {
         Assertions.assertThrows(FormatSalleIncorrectException.class, () -> classeTestee.getAllMachinesBySalle(salleDummy));
     }
 
+    @Test
+    void getAllMachinesBySalle_OK_casseIndifferente() throws MachineDejaExistanteException, InformationsIncompletesException, TypeBoissonInconnuException, FormatSalleIncorrectException {
+        // ARRANGE
+        classeTestee.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        classeTestee.ajouterMachine("coffee2", TypeBoisson.CAFE, "a38");
+        classeTestee.ajouterMachine("coffee3", TypeBoisson.CAFE, "A83");
+
+        // ACT
+        Collection<Machine> machines = classeTestee.getAllMachinesBySalle("a38");
+
+        // ASSERT
+        Assertions.assertEquals(2, machines.size());
+        Assertions.assertTrue(machines.stream().noneMatch(m -> "coffee3".equals(m.getNom())));
+    }
+
+    @Test
+    void verifierFormatSalle_KO_formatsIncorrects() {
+        // ACT & ASSERT
+        for (String salle : new String[]{"", "AB1", "A3B", "A3", "A381", "@38", "[38", "É38", "A 8"})
+            Assertions.assertThrows(FormatSalleIncorrectException.class, () -> classeTestee.verifierFormatSalle(salle), salle);
+        Assertions.assertThrows(FormatSalleIncorrectException.class, () -> classeTestee.verifierFormatSalle(null));
+    }
+
+    @Test
+    void verifierFormatSalle_OK_cle() throws FormatSalleIncorrectException {
+        // ACT & ASSERT
+        Assertions.assertEquals(0, classeTestee.verifierFormatSalle("A00"));
+        Assertions.assertEquals(38, classeTestee.verifierFormatSalle("a38"));
+        Assertions.assertEquals(173, classeTestee.verifierFormatSalle("B73"));
+        Assertions.assertEquals(2599, classeTestee.verifierFormatSalle("Z99"));
+    }
+
     @Test
     void getMachineById_OK() throws MachineDejaExistanteException, InformationsIncompletesException, TypeBoissonInconnuException, FormatSalleIncorrectException, MachineInconnueException {
         // ARRANGE
@@ -539,6 +706,64 @@ class FacadeModeleTest {
         Assertions.assertEquals(1, compte1.getNbBoissonsBues());
     }
 
+    @Test
+    void preparerBoisson_OK_historique() throws InformationsIncompletesException, CompteDejaExistantException, MachineDejaExistanteException, FormatSalleIncorrectException, NbSucresIncorrectException, TypeBoissonInconnuException, CompteInconnuException, MachineInconnueException {
+        // ARRANGE
+        String typeBoisson = TypeBoisson.CAFE;
+        Compte compte1 = classeTestee.creerCompteDrinker("foo1", "bar1");
+        Compte compte2 = classeTestee.creerCompteDrinker("foo2", "bar2");
+        Machine machine1 = classeTestee.ajouterMachine("coffee1", typeBoisson, "A38");
+
+        // ACT
+        int nbBoissons = 3000;
+        for (int i = 0; i < nbBoissons; i++) {
+            Compte compte = i % 2 == 0 ? compte1 : compte2;
+            classeTestee.preparerBoisson(machine1.getId(), typeBoisson, compte.getId(), i % 5);
+        }
+
+        // ASSERT
+        Assertions.assertEquals(nbBoissons, machine1.getNbBoissonsPreparees());
+        List<Boisson> boissons = List.copyOf(machine1.getBoissonsPreparees());
+        Assertions.assertEquals(nbBoissons, boissons.size());
+        Boisson derniere = boissons.get(nbBoissons - 1);
+        Assertions.assertEquals(compte2.getLogin(), derniere.getCompte().getLogin());
+        Assertions.assertEquals((nbBoissons - 1) % 5, derniere.getNbSucres());
+        Assertions.assertEquals(typeBoisson, derniere.getType());
+        Assertions.assertNotNull(derniere.getDateHeurePreparation());
+    }
+
+    @Test
+    void preparerBoisson_OK_concurrent() throws InformationsIncompletesException, CompteDejaExistantException, MachineDejaExistanteException, FormatSalleIncorrectException, TypeBoissonInconnuException, InterruptedException {
+        // ARRANGE
+        String typeBoisson = TypeBoisson.CAFE;
+        Compte compte = classeTestee.creerCompteDrinker("foo", "bar");
+        int nbThreads = 16;
+        int nbBoissonsParThread = 500;
+        Machine[] machines = new Machine[nbThreads];
+        for (int i = 0; i < nbThreads; i++)
+            machines[i] = classeTestee.ajouterMachine("coffee" + i, typeBoisson, "A38");
+        CountDownLatch depart = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+
+        // ACT
+        for (Machine machine : machines) {
+            executor.submit(() -> {
+                depart.await();
+                for (int i = 0; i < nbBoissonsParThread; i++)
+                    classeTestee.preparerBoisson(machine.getId(), typeBoisson, compte.getId(), 1);
+                return null;
+            });
+        }
+        depart.countDown();
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // ASSERT
+        Assertions.assertEquals((long) nbThreads * nbBoissonsParThread, compte.getNbBoissonsBues());
+        for (Machine machine : machines)
+            Assertions.assertEquals(nbBoissonsParThread, machine.getNbBoissonsPreparees());
+    }
+
     @Test
     void preparerBoisson_KO_machineInconnue() throws InformationsIncompletesException, CompteDejaExistantException, MachineDejaExistanteException, TypeBoissonInconnuException, FormatSalleIncorrectException {
         // ARRANGE
@@ -0,0 +1,82 @@
+package cc.modele.data.boissons;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+class AgregatsTemporelsTest {
+
+    private static final long MINUTE = Resolution.MINUTE.getDureeMillis();
+    private static final long HEURE = Resolution.HEURE.getDureeMillis();
+    private static final long JOUR = Resolution.JOUR.getDureeMillis();
+
+    private HistoriqueBoissons historique;
+    private AgregatsTemporels classeTestee;
+
+    @BeforeEach
+    void setUp() {
+        historique = new HistoriqueBoissons();
+        classeTestee = historique.getAgregats();
+        // Une boisson toutes les 10 minutes pendant 3 jours, à partir du jour 100
+        for (long date = 100 * JOUR; date < 103 * JOUR; date += 10 * MINUTE)
+            historique.ajouter(date, 1, 1);
+    }
+
+    @Test
+    void compter_OK_plageQuelconque() {
+        // ACT & ASSERT
+        Assertions.assertEquals(432, classeTestee.compter(0, 200 * JOUR));
+        Assertions.assertEquals(144, classeTestee.compter(101 * JOUR, 102 * JOUR));
+        // Du jour 100 à 10h05 au jour 102 à 3h25 : 11h55 + 1 jour + 3h25
+        long debut = 100 * JOUR + 10 * HEURE + 5 * MINUTE;
+        long fin = 102 * JOUR + 3 * HEURE + 25 * MINUTE;
+        Assertions.assertEquals(83 + 144 + 21, classeTestee.compter(debut, fin));
+        Assertions.assertEquals(0, classeTestee.compter(fin, fin));
+    }
+
+    @Test
+    void compter_OK_minutesPurgees() {
+        // ARRANGE
+        classeTestee.purgerAvant(Resolution.MINUTE, 110 * JOUR);
+        long debut = 100 * JOUR + 10 * HEURE + 5 * MINUTE;
+        long fin = 100 * JOUR + 12 * HEURE + 25 * MINUTE;
+
+        // ACT & ASSERT
+        // Bords arrondis à l'heure : seules les heures commençant dans la plage (11h et 12h) sont comptées
+        Assertions.assertEquals(12, classeTestee.compter(debut, fin));
+    }
+
+    @Test
+    void reechantillonner_OK() {
+        // ACT
+        long[] valeurs = classeTestee.reechantillonner(100 * JOUR, 101 * JOUR + 6 * HEURE, 6 * HEURE);
+
+        // ASSERT
+        Assertions.assertArrayEquals(new long[]{36, 36, 36, 36, 36}, valeurs);
+    }
+
+    @Test
+    void reechantillonner_KO_pasIncorrect() {
+        // ACT & ASSERT
+        Assertions.assertThrows(IllegalArgumentException.class, () -> classeTestee.reechantillonner(0, JOUR, 1000));
+    }
+
+    @Test
+    void compacter_OK_agregatsConserves() {
+        // ACT
+        int nbCompactees = historique.compacter(101 * JOUR);
+
+        // ASSERT
+        Assertions.assertEquals(144, nbCompactees);
+        Assertions.assertEquals(144, historique.premier());
+        Assertions.assertEquals(432, historique.taille());
+        Assertions.assertEquals(288, historique.vue(TypeBoisson.CAFE, idCompte -> null).size());
+        Assertions.assertEquals(432, classeTestee.compter(0, 200 * JOUR));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> historique.getDateMillis(0));
+        // Le stockage des boissons compactées n'est libéré qu'au passage suivant
+        historique.compacter(102 * JOUR);
+        Assertions.assertEquals(102 * JOUR, historique.getDateMillis(historique.premier()));
+    }
+
+}
@@ -0,0 +1,267 @@
+package cc.modele.data.boissons;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+
+class HistoriqueBoissonsTest {
+
+    private Path repertoire;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repertoire = Files.createTempDirectory("cc-historique");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> fichiers = Files.walk(repertoire)) {
+            fichiers.sorted(Comparator.reverseOrder()).forEach(fichier -> fichier.toFile().delete());
+        }
+    }
+
+    @Test
+    void ajouter_OK_stockageMappe_plusieursSegments() throws IOException {
+        // ARRANGE
+        // 4 entrées de 16 octets par segment, 2 segments par fichier
+        HistoriqueBoissons classeTestee = new HistoriqueBoissons(new StockageMappe(new ReserveSegments(repertoire, 64, 128)));
+
+        // ACT
+        for (int i = 0; i < 10; i++)
+            classeTestee.ajouter(1000L + i, i + 1, i % 3);
+
+        // ASSERT
+        Assertions.assertEquals(10, classeTestee.taille());
+        try (Stream<Path> segments = Files.list(repertoire)) {
+            Assertions.assertEquals(2, segments.count());
+        }
+        Assertions.assertEquals(1009L, classeTestee.getDateMillis(9));
+        Assertions.assertEquals(5, classeTestee.getIdCompte(4));
+        Assertions.assertEquals(2, classeTestee.getNbSucres(5));
+        AtomicLong sommeDates = new AtomicLong();
+        classeTestee.parcourir((dateMillis, idCompte, nbSucres) -> sommeDates.addAndGet(dateMillis));
+        Assertions.assertEquals(10045L, sommeDates.get());
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> classeTestee.getDateMillis(10));
+    }
+
+    @Test
+    void ajouter_OK_stockageMappe_nbSucresMax() {
+        // ARRANGE
+        HistoriqueBoissons classeTestee = new HistoriqueBoissons(new StockageMappe(new ReserveSegments(repertoire, 1024, 1024)));
+
+        // ACT
+        classeTestee.ajouter(1L, 1, HistoriqueBoissons.NB_SUCRES_MAX);
+
+        // ASSERT
+        Assertions.assertEquals(HistoriqueBoissons.NB_SUCRES_MAX, classeTestee.getNbSucres(0));
+    }
+
+    @Test
+    void ajouter_OK_stockageMappe_fichiersPartagesEntreMachines() throws IOException {
+        // ARRANGE
+        // 4 entrées par segment, 4 segments par fichier
+        ReserveSegments reserve = new ReserveSegments(repertoire, 64, 256);
+        HistoriqueBoissons historique1 = new HistoriqueBoissons(new StockageMappe(reserve));
+        HistoriqueBoissons historique2 = new HistoriqueBoissons(new StockageMappe(reserve));
+        for (int i = 0; i < 8; i++)
+            historique1.ajouter(1000L + i, 1, 0);
+        historique2.ajouter(2000L, 2, 1);
+        // Le stockage des boissons compactées n'est libéré qu'aux passages suivants
+        for (int passage = 0; passage < 3; passage++)
+            historique1.compacter(1004L);
+
+        // ACT
+        // Réutilise le segment libéré par le compactage du premier historique
+        for (int i = 1; i < 9; i++)
+            historique2.ajouter(2000L + i, 2, 1);
+
+        // ASSERT
+        Assertions.assertEquals(1, reserve.getNbFichiers());
+        try (Stream<Path> fichiers = Files.list(repertoire)) {
+            Assertions.assertEquals(1, fichiers.count());
+        }
+        Assertions.assertEquals(1004L, historique1.getDateMillis(4));
+        Assertions.assertEquals(2008L, historique2.getDateMillis(8));
+        Assertions.assertEquals(2, historique2.getIdCompte(0));
+    }
+
+    @Test
+    void compacter_OK_stockageConserveSousUnParcoursEnCours() throws Exception {
+        // ARRANGE
+        List<Integer> liberations = new CopyOnWriteArrayList<>();
+        HistoriqueBoissons classeTestee = new HistoriqueBoissons(new StockageTas() {
+            @Override
+            public void liberer(int avant) {
+                liberations.add(avant);
+                super.liberer(avant);
+            }
+        });
+        // Plusieurs blocs de 1024 boissons
+        for (int i = 0; i < 3000; i++)
+            classeTestee.ajouter(i, i + 1, i % 4);
+        CountDownLatch parcoursCommence = new CountDownLatch(1);
+        CountDownLatch reprise = new CountDownLatch(1);
+        AtomicLong sommeComptes = new AtomicLong();
+        ExecutorService executeur = Executors.newSingleThreadExecutor();
+        // Parcours suspendu après sa première boisson, comme un téléchargement lent
+        Future<?> parcours = executeur.submit(() -> classeTestee.parcourir((dateMillis, idCompte, nbSucres) -> {
+            if (sommeComptes.getAndAdd(idCompte) == 0) {
+                parcoursCommence.countDown();
+                try {
+                    reprise.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }));
+        parcoursCommence.await();
+
+        // ACT
+        for (int passage = 0; passage < 3; passage++)
+            classeTestee.compacter(2500);
+        reprise.countDown();
+        parcours.get(10, TimeUnit.SECONDS);
+        executeur.shutdown();
+
+        // ASSERT
+        // Le parcours a lu toutes les boissons présentes à son début, compactées ou non
+        Assertions.assertEquals(3000L * 3001 / 2, sommeComptes.get());
+        Assertions.assertEquals(2500, classeTestee.premier());
+        Assertions.assertTrue(liberations.isEmpty());
+        // Parcours terminé : le stockage est libéré au passage suivant
+        classeTestee.compacter(2500);
+        Assertions.assertEquals(List.of(2500), liberations);
+    }
+
+    @Test
+    void ouvrirLecture_OK_stockageConserveJusquaFermeture() {
+        // ARRANGE
+        List<Integer> liberations = new CopyOnWriteArrayList<>();
+        HistoriqueBoissons classeTestee = new HistoriqueBoissons(new StockageTas() {
+            @Override
+            public void liberer(int avant) {
+                liberations.add(avant);
+                super.liberer(avant);
+            }
+        });
+        for (int i = 0; i < 3000; i++)
+            classeTestee.ajouter(i, i + 1, i % 4);
+        AtomicLong sommeComptes = new AtomicLong();
+
+        // ACT
+        HistoriqueBoissons.Lecture lecture = classeTestee.ouvrirLecture();
+        for (int passage = 0; passage < 3; passage++)
+            classeTestee.compacter(2500);
+        lecture.parcourir(classeTestee.taille(), (dateMillis, idCompte, nbSucres) -> sommeComptes.addAndGet(idCompte));
+
+        // ASSERT
+        // La lecture voit les boissons compactées après son ouverture : leur stockage n'est pas libéré
+        Assertions.assertEquals(0, lecture.getPremier());
+        Assertions.assertEquals(3000L * 3001 / 2, sommeComptes.get());
+        Assertions.assertTrue(liberations.isEmpty());
+        lecture.close();
+        classeTestee.compacter(2500);
+        Assertions.assertEquals(List.of(2500), liberations);
+        Assertions.assertThrows(IllegalStateException.class, () -> lecture.parcourir(classeTestee.taille(), (dateMillis, idCompte, nbSucres) -> {
+        }));
+    }
+
+    @Test
+    void getIdCompte_OK_stockageConserveSousUneLectureParPosition() {
+        // ARRANGE
+        List<Integer> liberations = new CopyOnWriteArrayList<>();
+        AtomicBoolean compacterPendantLecture = new AtomicBoolean();
+        HistoriqueBoissons[] historique = new HistoriqueBoissons[1];
+        historique[0] = new HistoriqueBoissons(new StockageTas() {
+            @Override
+            public int getIdCompte(int index) {
+                // Compactage concurrent, entre la vérification de la position et la lecture du stockage
+                if (compacterPendantLecture.getAndSet(false))
+                    for (int passage = 0; passage < 3; passage++)
+                        historique[0].compacter(2500);
+                return super.getIdCompte(index);
+            }
+
+            @Override
+            public void liberer(int avant) {
+                liberations.add(avant);
+                super.liberer(avant);
+            }
+        });
+        HistoriqueBoissons classeTestee = historique[0];
+        for (int i = 0; i < 3000; i++)
+            classeTestee.ajouter(i, i + 1, i % 4);
+        compacterPendantLecture.set(true);
+
+        // ACT
+        int idCompte = classeTestee.getIdCompte(10);
+
+        // ASSERT
+        Assertions.assertEquals(11, idCompte);
+        Assertions.assertEquals(2500, classeTestee.premier());
+        Assertions.assertTrue(liberations.isEmpty());
+        classeTestee.compacter(2500);
+        Assertions.assertEquals(List.of(2500), liberations);
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> classeTestee.getIdCompte(10));
+    }
+
+    @Test
+    void vue_KO_boissonCompacteeDepuisCreation() {
+        // ARRANGE
+        HistoriqueBoissons classeTestee = new HistoriqueBoissons();
+        for (int i = 0; i < 3000; i++)
+            classeTestee.ajouter(i, i + 1, i % 4);
+        List<Boisson> vue = classeTestee.vue(TypeBoisson.CAFE, idCompte -> null);
+
+        // ACT
+        for (int passage = 0; passage < 3; passage++)
+            classeTestee.compacter(2500);
+        classeTestee.ajouter(3000, 3001, 0);
+
+        // ASSERT
+        // La vue reste celle des boissons détaillées à sa création
+        Assertions.assertEquals(3000, vue.size());
+        Assertions.assertThrows(ConcurrentModificationException.class, () -> vue.get(0));
+        Assertions.assertEquals(3, vue.get(2999).getNbSucres());
+        Assertions.assertEquals(501, classeTestee.vue(TypeBoisson.CAFE, idCompte -> null).size());
+    }
+
+    @Test
+    void capturerFin_OK_derniereBoissonCompactee() {
+        // ARRANGE
+        HistoriqueBoissons classeTestee = new HistoriqueBoissons();
+        for (int i = 0; i < 10; i++)
+            classeTestee.ajouter(1000L + i, i + 1, 0);
+        HistoriqueBoissons.Fin avantCompactage = classeTestee.capturerFin();
+
+        // ACT
+        classeTestee.compacter(Long.MAX_VALUE);
+        HistoriqueBoissons.Fin apresCompactage = classeTestee.capturerFin();
+
+        // ASSERT
+        Assertions.assertTrue(avantCompactage.isDetaillee());
+        Assertions.assertEquals(1009L, avantCompactage.getDerniereDateMillis());
+        Assertions.assertEquals(10, apresCompactage.getTaille());
+        Assertions.assertFalse(apresCompactage.isDetaillee());
+        Assertions.assertFalse(new HistoriqueBoissons().capturerFin().isDetaillee());
+    }
+
+}
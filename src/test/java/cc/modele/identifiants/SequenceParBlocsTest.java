@@ -0,0 +1,60 @@
+package cc.modele.identifiants;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+
+class SequenceParBlocsTest {
+
+    @Test
+    void prochainId_OK_marqueHauteIndependanteDuNombreDeThreads() throws Exception {
+        // ARRANGE
+        SequenceParBlocs classeTestee = new SequenceParBlocs(0, 1000);
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        int nbThreads = 10_000;
+
+        // ACT
+        // Un thread virtuel par identifiant, comme un thread par requête
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < nbThreads; i++)
+                threads.execute(() -> ids.add(classeTestee.prochainId()));
+            threads.shutdown();
+            Assertions.assertTrue(threads.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        // ASSERT
+        Assertions.assertEquals(nbThreads, ids.size());
+        // Une plage par thread aurait porté la marque haute à 10 000 000
+        Assertions.assertTrue(classeTestee.getMarqueHaute() < 100 * 1000, "marque haute " + classeTestee.getMarqueHaute());
+    }
+
+    @Test
+    void prochainId_OK_apresAvancer() {
+        // ARRANGE
+        SequenceParBlocs classeTestee = new SequenceParBlocs(0, 10);
+        classeTestee.avancer(42);
+
+        // ACT
+        int id = classeTestee.prochainId();
+
+        // ASSERT
+        Assertions.assertEquals(43, id);
+        Assertions.assertEquals(52, classeTestee.getMarqueHaute());
+    }
+
+    @Test
+    void prochainId_KO_identifiantsEpuises() {
+        // ARRANGE
+        SequenceParBlocs classeTestee = new SequenceParBlocs(Integer.MAX_VALUE - 5, 10);
+
+        // ACT & ASSERT
+        Assertions.assertThrows(IllegalStateException.class, classeTestee::prochainId);
+    }
+
+}
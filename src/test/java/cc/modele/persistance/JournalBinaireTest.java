@@ -0,0 +1,218 @@
+package cc.modele.persistance;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.comptes.TypeCompte;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+
+class JournalBinaireTest {
+
+    private Path repertoire;
+    // Pannes simulées sur les segments ouverts par le journal
+    private volatile boolean panneEcriture;
+    private volatile boolean panneTroncature;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repertoire = Files.createTempDirectory("cc-journal");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> fichiers = Files.walk(repertoire)) {
+            fichiers.sorted(Comparator.reverseOrder()).forEach(fichier -> fichier.toFile().delete());
+        }
+    }
+
+    @Test
+    void attendre_KO_enregistrementsConservesApresEchec() throws Exception {
+        // ARRANGE
+        JournalBinaire classeTestee = journal();
+        Compte compte = new Compte(1, "foo", "bar", TypeCompte.DRINKER);
+        long sequence = classeTestee.compteCree(compte);
+        panneEcriture = true;
+
+        // ACT
+        Assertions.assertThrows(UncheckedIOException.class, () -> classeTestee.attendre(sequence));
+        panneEcriture = false;
+        compte.setType(TypeCompte.FABULOUS);
+        classeTestee.attendre(classeTestee.typeCompteModifie(compte));
+        classeTestee.close();
+
+        // ASSERT
+        // Aucun octet de l'écriture échouée ne reste dans le segment : les deux enregistrements sont relus
+        FacadeModele facadeRestauree = new FacadeModele();
+        Assertions.assertEquals(2, RelectureJournal.rejouer(JournalBinaire.cheminSegment(repertoire, 0), facadeRestauree));
+        Assertions.assertEquals(TypeCompte.FABULOUS, facadeRestauree.getCompteById(1).getType());
+    }
+
+    @Test
+    void basculer_KO_segmentConserveApresEchec() throws Exception {
+        // ARRANGE
+        JournalBinaire classeTestee = journal();
+        classeTestee.compteCree(new Compte(1, "foo", "bar", TypeCompte.DRINKER));
+        panneEcriture = true;
+
+        // ACT
+        Assertions.assertThrows(UncheckedIOException.class, classeTestee::basculer);
+        panneEcriture = false;
+        long nouveauSegment = classeTestee.basculer();
+        classeTestee.close();
+
+        // ASSERT
+        Assertions.assertEquals(1, nouveauSegment);
+        Assertions.assertEquals(1, RelectureJournal.rejouer(JournalBinaire.cheminSegment(repertoire, 0), new FacadeModele()));
+    }
+
+    @Test
+    void attendre_KO_defaillantSiTroncatureImpossible() throws Exception {
+        // ARRANGE
+        JournalBinaire classeTestee = journal();
+        long sequence = classeTestee.compteCree(new Compte(1, "foo", "bar", TypeCompte.DRINKER));
+        panneEcriture = true;
+        panneTroncature = true;
+        Assertions.assertThrows(UncheckedIOException.class, () -> classeTestee.attendre(sequence));
+        panneEcriture = false;
+        panneTroncature = false;
+
+        // ACT
+        UncheckedIOException exception = Assertions.assertThrows(UncheckedIOException.class, classeTestee::vider);
+
+        // ASSERT
+        // Le segment peut se terminer par un enregistrement partiel : rien n'est plus écrit à sa suite
+        Assertions.assertEquals("Journal défaillant", exception.getCause().getMessage());
+        Assertions.assertThrows(IOException.class, classeTestee::close);
+    }
+
+    private JournalBinaire journal() throws IOException {
+        return new JournalBinaire(repertoire, 0, true, 1 << 20) {
+            @Override
+            FileChannel ouvrirSegment(long numero) throws IOException {
+                return new CanalEnPanne(super.ouvrirSegment(numero));
+            }
+        };
+    }
+
+    // Canal qui, en panne, écrit quelques octets puis échoue : l'enregistrement en cours est écrit partiellement
+    private final class CanalEnPanne extends FileChannel {
+
+        private final FileChannel canal;
+
+        private CanalEnPanne(FileChannel canal) {
+            this.canal = canal;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!panneEcriture)
+                return canal.write(src);
+            ByteBuffer debut = src.slice();
+            debut.limit(Math.min(debut.limit(), 5));
+            src.position(src.position() + canal.write(debut));
+            throw new IOException("Panne d'écriture simulée");
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            if (panneTroncature)
+                throw new IOException("Panne de troncature simulée");
+            canal.truncate(size);
+            return this;
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            canal.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long position() throws IOException {
+            return canal.position();
+        }
+
+        @Override
+        public long size() throws IOException {
+            return canal.size();
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            canal.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return canal.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return canal.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return canal.write(srcs, offset, length);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return canal.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return canal.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return canal.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return canal.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return canal.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return canal.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return canal.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            canal.close();
+        }
+
+    }
+
+}
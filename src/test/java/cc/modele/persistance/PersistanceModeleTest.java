@@ -0,0 +1,277 @@
+package cc.modele.persistance;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.TypeBoisson;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.comptes.TypeCompte;
+import cc.modele.data.machines.Machine;
+import cc.modele.exceptions.CompteInconnuException;
+import cc.modele.exceptions.MachineInconnueException;
+import cc.modele.statistiques.Agregat;
+import cc.modele.statistiques.StatistiquesBoissons;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+
+class PersistanceModeleTest {
+
+    private Path repertoire;
+    private PersistanceModele persistance;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        repertoire = Files.createTempDirectory("cc-persistance");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (persistance != null)
+            persistance.arreter();
+        try (Stream<Path> fichiers = Files.walk(repertoire)) {
+            fichiers.sorted(Comparator.reverseOrder()).forEach(fichier -> fichier.toFile().delete());
+        }
+    }
+
+    @Test
+    void demarrer_OK_repriseDuJournal() throws Exception {
+        // ARRANGE
+        FacadeModele facadeModele = demarrer();
+        Compte compte = facadeModele.creerCompteDrinker("foo", "bar");
+        facadeModele.creerCompteFabulous("admin", "secret");
+        facadeModele.modifierTypeCompte(compte.getId(), TypeCompte.FABULOUS);
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 2);
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 0);
+        persistance.arreter();
+
+        // ACT
+        FacadeModele facadeRestauree = demarrer();
+
+        // ASSERT
+        Compte compteRestaure = facadeRestauree.getCompteByLogin("foo");
+        Assertions.assertEquals(compte.getId(), compteRestaure.getId());
+        Assertions.assertEquals("bar", compteRestaure.getPassword());
+        Assertions.assertEquals(TypeCompte.FABULOUS, compteRestaure.getType());
+        Assertions.assertEquals(2, facadeRestauree.getAllComptes().size());
+        Machine machineRestauree = facadeRestauree.getMachineById(machine.getId());
+        Assertions.assertEquals("coffee1", machineRestauree.getNom());
+        Assertions.assertEquals("A38", machineRestauree.getSalle());
+        Assertions.assertEquals(2, machineRestauree.getNbBoissonsPreparees());
+        Assertions.assertEquals(2, machineRestauree.getHistorique().getNbSucres(0));
+        Assertions.assertEquals(machine.getHistorique().getDateMillis(1), machineRestauree.getHistorique().getDateMillis(1));
+        // Les identifiants reprennent après les identifiants restaurés
+        Assertions.assertEquals(3, facadeRestauree.creerCompteDrinker("nouveau", "password").getId());
+    }
+
+    @Test
+    void prendreInstantane_OK_repriseInstantaneEtJournal() throws Exception {
+        // ARRANGE
+        FacadeModele facadeModele = demarrer();
+        Compte compte = facadeModele.creerCompteDrinker("foo", "bar");
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+        persistance.prendreInstantane();
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 3);
+        facadeModele.ajouterMachine("tea1", TypeBoisson.THE, "B12");
+        persistance.arreter();
+
+        // ACT
+        FacadeModele facadeRestauree = demarrer();
+
+        // ASSERT
+        Assertions.assertTrue(Files.exists(repertoire.resolve("instantane.bin")));
+        Assertions.assertEquals(2, JournalBinaire.segments(repertoire).size());
+        Machine machineRestauree = facadeRestauree.getMachineById(machine.getId());
+        Assertions.assertEquals(2, machineRestauree.getNbBoissonsPreparees());
+        Assertions.assertEquals(3, machineRestauree.getHistorique().getNbSucres(1));
+        Assertions.assertEquals("tea1", facadeRestauree.getMachineById(2).getNom());
+    }
+
+    @Test
+    void prendreInstantane_OK_historiqueCompacte() throws Exception {
+        // ARRANGE
+        FacadeModele facadeModele = demarrer();
+        Compte compte = facadeModele.creerCompteDrinker("foo", "bar");
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        for (int i = 0; i < 3; i++)
+            facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), i);
+        facadeModele.compacterHistoriques(Long.MAX_VALUE);
+        persistance.prendreInstantane();
+        // Boisson détaillée, rejouée depuis le journal
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 12);
+        persistance.arreter();
+
+        // ACT
+        FacadeModele facadeRestauree = new FacadeModele();
+        StatistiquesBoissons statistiques = new StatistiquesBoissons(facadeRestauree);
+        persistance = new PersistanceModele(facadeRestauree, List.of(statistiques), repertoire.toString(), true, 10L, 3600L, Long.MAX_VALUE);
+        persistance.demarrer();
+
+        // ASSERT
+        Machine machineRestauree = facadeRestauree.getMachineById(machine.getId());
+        Assertions.assertEquals(4, machineRestauree.getNbBoissonsPreparees());
+        Assertions.assertEquals(1, machineRestauree.getBoissonsPreparees().size());
+        Assertions.assertEquals(4, machineRestauree.getHistorique().getAgregats().compter(0, Long.MAX_VALUE));
+        // Boissons compactées comptées à partir de leurs résumés
+        Assertions.assertEquals(4, facadeRestauree.getCompteById(compte.getId()).getNbBoissonsBues());
+        Agregat parCompte = statistiques.getParCompte(compte.getId());
+        Assertions.assertEquals(4, parCompte.getNbBoissons());
+        Assertions.assertEquals(15, parCompte.getTotalSucres());
+        Assertions.assertEquals(1, parCompte.getHistogrammeSucres()[Agregat.NB_CLASSES_SUCRES - 1]);
+        Assertions.assertEquals(4, statistiques.getParMachine(machine.getId()).getNbBoissons());
+        Assertions.assertEquals(4, statistiques.getParSalle("A38").getNbBoissons());
+        Assertions.assertEquals(4, Arrays.stream(statistiques.getGlobal().getBoissonsParHeure()).sum());
+    }
+
+    @Test
+    void demarrer_OK_statistiquesDepuisResumesDetailles() throws Exception {
+        // ARRANGE
+        FacadeModele facadeModele = demarrer();
+        Compte foo = facadeModele.creerCompteDrinker("foo", "bar");
+        Compte baz = facadeModele.creerCompteDrinker("baz", "bar");
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, foo.getId(), 1);
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, baz.getId(), 3);
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, foo.getId(), 12);
+        persistance.prendreInstantane();
+        // Boisson détaillée, rejouée depuis le journal
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, baz.getId(), 2);
+        persistance.arreter();
+
+        // ACT
+        FacadeModele facadeRestauree = new FacadeModele();
+        StatistiquesBoissons statistiques = new StatistiquesBoissons(facadeRestauree);
+        persistance = new PersistanceModele(facadeRestauree, List.of(statistiques), repertoire.toString(), true, 10L, 3600L, Long.MAX_VALUE);
+        persistance.demarrer();
+
+        // ASSERT
+        // Reconstruites à partir des résumés de l'instantané et du journal : identiques à un parcours des historiques
+        StatistiquesBoissons parParcours = new StatistiquesBoissons(facadeRestauree);
+        for (Compte compte : List.of(foo, baz)) {
+            Assertions.assertEquals(2, facadeRestauree.getCompteById(compte.getId()).getNbBoissonsBues());
+            Assertions.assertArrayEquals(parParcours.getParCompte(compte.getId()).getHistogrammeSucres(), statistiques.getParCompte(compte.getId()).getHistogrammeSucres());
+        }
+        Assertions.assertEquals(13, statistiques.getParCompte(foo.getId()).getTotalSucres());
+        Assertions.assertEquals(4, statistiques.getParMachine(machine.getId()).getNbBoissons());
+        Assertions.assertEquals(18, statistiques.getParSalle("A38").getTotalSucres());
+        Assertions.assertArrayEquals(parParcours.getGlobal().getBoissonsParHeure(), statistiques.getGlobal().getBoissonsParHeure());
+        // Les résumés des boissons restaurées ne sont conservés que pendant la reprise
+        Assertions.assertTrue(facadeRestauree.getBoissonsRestaurees().getParCompte().isEmpty());
+    }
+
+    @Test
+    void demarrer_OK_finDeJournalTronquee() throws Exception {
+        // ARRANGE
+        FacadeModele facadeModele = demarrer();
+        Compte compte = facadeModele.creerCompteDrinker("foo", "bar");
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+        persistance.arreter();
+        List<Long> segments = JournalBinaire.segments(repertoire);
+        Path segment = JournalBinaire.cheminSegment(repertoire, segments.get(segments.size() - 1));
+        // Arrêt brutal au milieu de l'écriture de la dernière boisson
+        try (FileChannel canal = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            canal.truncate(canal.size() - 3);
+        }
+
+        // ACT
+        FacadeModele facadeRestauree = demarrer();
+
+        // ASSERT
+        Assertions.assertEquals("foo", facadeRestauree.getCompteById(compte.getId()).getLogin());
+        Assertions.assertEquals(0, facadeRestauree.getMachineById(machine.getId()).getNbBoissonsPreparees());
+    }
+
+    @Test
+    void demarrer_OK_creationJournaliseeAvantLesModificationsQuiEnDependent() throws Exception {
+        // ARRANGE
+        FacadeModele facadeModele = new FacadeModele();
+        Compte compte = facadeModele.creerCompteDrinker("foo", "bar");
+        JournalBinaire journal = new JournalBinaire(repertoire, 0, true, 1 << 20);
+        ExecutorService concurrent = Executors.newSingleThreadExecutor();
+        List<Class<?>> refus = new ArrayList<>();
+        // Pendant l'écriture de chaque création, un autre thread tente de modifier l'entité en cours de création
+        facadeModele.setJournal(new JournalModele() {
+            @Override
+            public long compteCree(Compte nouveau) {
+                refus.add(tenter(concurrent, () -> facadeModele.modifierTypeCompte(nouveau.getId(), TypeCompte.FABULOUS)));
+                return journal.compteCree(nouveau);
+            }
+
+            @Override
+            public long typeCompteModifie(Compte modifie) {
+                return journal.typeCompteModifie(modifie);
+            }
+
+            @Override
+            public long machineAjoutee(Machine nouvelle) {
+                refus.add(tenter(concurrent, () -> facadeModele.preparerBoisson(nouvelle.getId(), TypeBoisson.CAFE, compte.getId(), 1)));
+                return journal.machineAjoutee(nouvelle);
+            }
+
+            @Override
+            public long boissonPreparee(Machine machine, int index, long dateMillis, int idCompte, int nbSucres) {
+                return journal.boissonPreparee(machine, index, dateMillis, idCompte, nbSucres);
+            }
+
+            @Override
+            public void attendre(long sequence) {
+                journal.attendre(sequence);
+            }
+        });
+
+        // ACT
+        Compte nouveau = facadeModele.creerCompteDrinker("foo2", "bar2");
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, nouveau.getId(), 2);
+        concurrent.shutdown();
+        journal.close();
+
+        // ASSERT
+        // L'entité n'est pas accessible par son id tant que sa création n'est pas dans le journal
+        Assertions.assertEquals(List.of(CompteInconnuException.class, MachineInconnueException.class), refus);
+        FacadeModele facadeRestauree = new FacadeModele();
+        facadeRestauree.creerCompteDrinker("foo", "bar");
+        Assertions.assertEquals(3, RelectureJournal.rejouer(JournalBinaire.cheminSegment(repertoire, 0), facadeRestauree));
+        Assertions.assertEquals(TypeCompte.DRINKER, facadeRestauree.getCompteByLogin("foo2").getType());
+        Assertions.assertEquals(1, facadeRestauree.getMachineById(machine.getId()).getNbBoissonsPreparees());
+    }
+
+    // Exécute la modification dans un autre thread ; retourne la classe de l'exception levée, ou null
+    private static Class<?> tenter(ExecutorService executeur, Callable<?> modification) {
+        try {
+            executeur.submit(modification).get(5, TimeUnit.SECONDS);
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause().getClass();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private FacadeModele demarrer() throws IOException {
+        FacadeModele facadeModele = new FacadeModele();
+        persistance = new PersistanceModele(facadeModele, List.of(), repertoire.toString(), true, 10L, 3600L, Long.MAX_VALUE);
+        persistance.demarrer();
+        return facadeModele;
+    }
+
+}
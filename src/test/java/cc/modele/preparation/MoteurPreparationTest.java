@@ -0,0 +1,250 @@
+package cc.modele.preparation;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.TypeBoisson;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.machines.Machine;
+import cc.modele.exceptions.*;
+import cc.modele.persistance.JournalModele;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+class MoteurPreparationTest {
+
+    private FacadeModele facadeModele;
+    private MoteurPreparation classeTestee;
+
+    @BeforeEach
+    void setUp() {
+        facadeModele = new FacadeModele();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (classeTestee != null)
+            classeTestee.arreter();
+    }
+
+    @Test
+    void soumettre_OK() throws Exception {
+        // ARRANGE
+        classeTestee = new MoteurPreparation(facadeModele, 8, 2, 300L, false);
+        Compte compte = facadeModele.creerCompteDrinker("foo", "bar");
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+
+        // ACT
+        Commande commande = classeTestee.soumettre(machine.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+
+        // ASSERT
+        Assertions.assertNotNull(commande);
+        attendreFin(commande);
+        Assertions.assertEquals(EtatCommande.PRETE, classeTestee.getCommande(commande.getId()).getEtat());
+        Assertions.assertNotNull(commande.getDateHeurePreparation());
+        Assertions.assertEquals(1, machine.getNbBoissonsPreparees());
+    }
+
+    @Test
+    void soumettre_OK_threadsVirtuels() throws Exception {
+        // ARRANGE
+        classeTestee = new MoteurPreparation(facadeModele, 8, 0, 300L, true);
+        Compte compte = facadeModele.creerCompteDrinker("foo", "bar");
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+
+        // ACT
+        Commande commande1 = classeTestee.soumettre(machine.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+        Commande commande2 = classeTestee.soumettre(machine.getId(), TypeBoisson.CAFE, compte.getId(), 2);
+
+        // ASSERT
+        attendreFin(commande2);
+        Assertions.assertEquals(EtatCommande.PRETE, commande1.getEtat());
+        Assertions.assertEquals(EtatCommande.PRETE, commande2.getEtat());
+        Assertions.assertFalse(commande2.getDateHeurePreparation().isBefore(commande1.getDateHeurePreparation()));
+        Assertions.assertEquals(2, machine.getNbBoissonsPreparees());
+    }
+
+    @Test
+    void soumettre_KO_filePleine() throws Exception {
+        // ARRANGE
+        // Worker unique bloqué : les commandes s'accumulent dans la file de la machine
+        int capacite = 2;
+        CountDownLatch liberation = new CountDownLatch(1);
+        ExecutorService workers = Executors.newSingleThreadExecutor();
+        workers.execute(() -> {
+            try {
+                liberation.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        classeTestee = new MoteurPreparation(facadeModele, capacite, 300, workers);
+        Compte compte = facadeModele.creerCompteDrinker("foo", "bar");
+        Machine machine1 = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        Machine machine2 = facadeModele.ajouterMachine("coffee2", TypeBoisson.CAFE, "B73");
+        for (int i = 0; i < capacite; i++)
+            classeTestee.soumettre(machine1.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+
+        // ACT & ASSERT
+        Assertions.assertThrows(FileAttentePleineException.class, () -> classeTestee.soumettre(machine1.getId(), TypeBoisson.CAFE, compte.getId(), 1));
+        Assertions.assertEquals(capacite, classeTestee.getProfondeurFile(machine1.getId()));
+        // La file pleine d'une machine n'empêche pas de commander sur une autre
+        Commande commande = classeTestee.soumettre(machine2.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+        liberation.countDown();
+        attendreFin(commande);
+        Assertions.assertEquals(EtatCommande.PRETE, commande.getEtat());
+    }
+
+    @Test
+    void bindTo_OK_mesuresAgregeesDesFiles() throws Exception {
+        // ARRANGE
+        // Worker unique bloqué : les commandes s'accumulent dans les files
+        CountDownLatch liberation = new CountDownLatch(1);
+        ExecutorService workers = Executors.newSingleThreadExecutor();
+        workers.execute(() -> {
+            try {
+                liberation.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        classeTestee = new MoteurPreparation(facadeModele, 8, 300, workers);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        classeTestee.bindTo(registry);
+        Compte compte = facadeModele.creerCompteDrinker("foo", "bar");
+        Machine machine1 = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        Machine machine2 = facadeModele.ajouterMachine("coffee2", TypeBoisson.CAFE, "B73");
+        classeTestee.soumettre(machine1.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+        classeTestee.soumettre(machine1.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+        Commande derniere = classeTestee.soumettre(machine2.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+
+        // ACT
+        double nbFilesActives = registry.get("cc.preparation.files.actives").gauge().value();
+        double nbEnAttente = registry.get("cc.preparation.file.attente").gauge().value();
+        double profondeurMax = registry.get("cc.preparation.file.max").gauge().value();
+        liberation.countDown();
+        attendreFin(derniere);
+        for (int i = 0; i < 500 && classeTestee.getNbFilesActives() > 0; i++)
+            Thread.sleep(10);
+
+        // ASSERT
+        Assertions.assertEquals(2, nbFilesActives);
+        Assertions.assertEquals(3, nbEnAttente);
+        Assertions.assertEquals(2, profondeurMax);
+        // Files vidées : plus rien à mesurer, et aucune série par machine
+        Assertions.assertEquals(0, registry.get("cc.preparation.files.actives").gauge().value());
+        Assertions.assertEquals(0, registry.get("cc.preparation.file.max").gauge().value());
+        Assertions.assertEquals(3, registry.getMeters().size());
+    }
+
+    @Test
+    void soumettreLot_OK_regroupementParMachine() throws Exception {
+        // ARRANGE
+        // Worker unique bloqué : le lot est mis en file sans être préparé
+        int capacite = 2;
+        CountDownLatch liberation = new CountDownLatch(1);
+        ExecutorService workers = Executors.newSingleThreadExecutor();
+        workers.execute(() -> {
+            try {
+                liberation.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        classeTestee = new MoteurPreparation(facadeModele, capacite, 300, workers);
+        Compte compte = facadeModele.creerCompteDrinker("foo", "bar");
+        Machine machine1 = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        Machine machine2 = facadeModele.ajouterMachine("coffee2", TypeBoisson.CAFE, "B73");
+        List<DemandePreparation> demandes = List.of(
+                new DemandePreparation(machine1.getId(), TypeBoisson.CAFE, compte.getId(), 1),
+                new DemandePreparation(machine2.getId(), TypeBoisson.CAFE, compte.getId(), 2),
+                new DemandePreparation(machine1.getId(), TypeBoisson.CAFE, compte.getId(), 3),
+                new DemandePreparation(machine1.getId(), TypeBoisson.CAFE, compte.getId(), 4));
+
+        // ACT
+        List<Commande> commandes = classeTestee.soumettreLot(demandes);
+
+        // ASSERT
+        Assertions.assertEquals(demandes.size(), commandes.size());
+        Assertions.assertEquals(1, commandes.get(0).getNbSucres());
+        Assertions.assertEquals(2, commandes.get(1).getNbSucres());
+        Assertions.assertEquals(3, commandes.get(2).getNbSucres());
+        // File de la première machine pleine : dernière demande refusée
+        Assertions.assertNull(commandes.get(3));
+        Assertions.assertEquals(capacite, classeTestee.getProfondeurFile(machine1.getId()));
+        liberation.countDown();
+        attendreFin(commandes.get(2));
+        Assertions.assertEquals(EtatCommande.PRETE, commandes.get(2).getEtat());
+    }
+
+    @Test
+    void ajouterEcouteur_OK_etatsNotifiesDansLOrdre() throws Exception {
+        // ARRANGE
+        classeTestee = new MoteurPreparation(facadeModele, 8, 2, 300L, false);
+        Compte compte = facadeModele.creerCompteDrinker("foo", "bar");
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        List<String> etats = new CopyOnWriteArrayList<>();
+        classeTestee.ajouterEcouteur(commande -> etats.add(commande.getEtat()));
+
+        // ACT
+        Commande commande = classeTestee.soumettre(machine.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+
+        // ASSERT
+        attendreFin(commande);
+        for (int i = 0; i < 500 && etats.size() < 3; i++)
+            Thread.sleep(10);
+        Assertions.assertEquals(List.of(EtatCommande.EN_ATTENTE, EtatCommande.EN_PREPARATION, EtatCommande.PRETE), etats);
+    }
+
+    @Test
+    void soumettre_OK_echecSurPanneJournal() throws Exception {
+        // ARRANGE
+        classeTestee = new MoteurPreparation(facadeModele, 8, 1, 300L, false);
+        Compte compte = facadeModele.creerCompteDrinker("foo", "bar");
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.setJournal(new JournalModele() {
+            @Override
+            public void attendre(long sequence) {
+                throw new UncheckedIOException(new IOException("disque plein"));
+            }
+        });
+
+        // ACT
+        Commande enEchec = classeTestee.soumettre(machine.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+        attendreFin(enEchec);
+        facadeModele.setJournal(JournalModele.AUCUN);
+        Commande suivante = classeTestee.soumettre(machine.getId(), TypeBoisson.CAFE, compte.getId(), 1);
+
+        // ASSERT
+        Assertions.assertEquals(EtatCommande.ECHEC, enEchec.getEtat());
+        // Le worker a survécu à la panne : la file de la machine est toujours vidée
+        attendreFin(suivante);
+        Assertions.assertEquals(EtatCommande.PRETE, suivante.getEtat());
+    }
+
+    @Test
+    void getCommande_KO_commandeInconnue() {
+        // ARRANGE
+        classeTestee = new MoteurPreparation(facadeModele, 8, 1, 300L, false);
+        Long idDummy = -1L;
+
+        // ACT & ASSERT
+        Assertions.assertThrows(CommandeInconnueException.class, () -> classeTestee.getCommande(idDummy));
+    }
+
+    private static void attendreFin(Commande commande) throws InterruptedException {
+        for (int i = 0; i < 500 && !commande.estTerminee(); i++)
+            Thread.sleep(10);
+    }
+
+}
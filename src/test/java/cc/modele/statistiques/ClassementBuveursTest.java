@@ -0,0 +1,83 @@
+package cc.modele.statistiques;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.TypeBoisson;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.machines.Machine;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+
+class ClassementBuveursTest {
+
+    private FacadeModele facadeModele;
+    private ClassementBuveurs classeTestee;
+
+    @BeforeEach
+    void setUp() {
+        facadeModele = new FacadeModele();
+        classeTestee = new ClassementBuveurs(facadeModele);
+    }
+
+    @Test
+    void getPremiers_OK() throws Exception {
+        // ARRANGE
+        Compte compte1 = facadeModele.creerCompteDrinker("foo1", "bar1");
+        Compte compte2 = facadeModele.creerCompteDrinker("foo2", "bar2");
+        Compte compte3 = facadeModele.creerCompteDrinker("foo3", "bar3");
+        facadeModele.creerCompteDrinker("foo4", "bar4");
+        Machine machine = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        for (int i = 0; i < 3; i++)
+            facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte2.getId(), 0);
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte3.getId(), 0);
+        facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte1.getId(), 0);
+
+        // ACT
+        List<PlaceClassement> premiers = classeTestee.getPremiers(10);
+
+        // ASSERT
+        Assertions.assertEquals(3, premiers.size());
+        Assertions.assertEquals(compte2.getId(), premiers.get(0).getIdDrinker());
+        Assertions.assertEquals(3, premiers.get(0).getNbBoissons());
+        // À égalité, par id croissant
+        Assertions.assertEquals(compte1.getId(), premiers.get(1).getIdDrinker());
+        Assertions.assertEquals(2, premiers.get(1).getRang());
+        Assertions.assertEquals(compte3.getId(), premiers.get(2).getIdDrinker());
+        Assertions.assertEquals(1, classeTestee.getPremiers(1).size());
+    }
+
+    @Test
+    void getPremiers_OK_preparationsConcurrentes() throws Exception {
+        // ARRANGE
+        Compte compte1 = facadeModele.creerCompteDrinker("foo1", "bar1");
+        Compte compte2 = facadeModele.creerCompteDrinker("foo2", "bar2");
+        int nbMachines = 8;
+        int nbBoissonsParMachine = 500;
+        ExecutorService executeur = Executors.newFixedThreadPool(nbMachines);
+        for (int m = 0; m < nbMachines; m++) {
+            Machine machine = facadeModele.ajouterMachine("coffee" + m, TypeBoisson.CAFE, "A38");
+            executeur.submit(() -> {
+                for (int i = 0; i < nbBoissonsParMachine; i++)
+                    facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, (i % 4 == 0 ? compte2 : compte1).getId(), 0);
+                return null;
+            });
+        }
+
+        // ACT
+        executeur.shutdown();
+        Assertions.assertTrue(executeur.awaitTermination(30, TimeUnit.SECONDS));
+        List<PlaceClassement> premiers = classeTestee.getPremiers(10);
+
+        // ASSERT
+        Assertions.assertEquals(2, premiers.size());
+        Assertions.assertEquals(3000, premiers.get(0).getNbBoissons());
+        Assertions.assertEquals(1000, premiers.get(1).getNbBoissons());
+    }
+
+}
@@ -0,0 +1,123 @@
+package cc.modele.statistiques;
+
+import cc.modele.FacadeModele;
+import cc.modele.data.boissons.TypeBoisson;
+import cc.modele.data.comptes.Compte;
+import cc.modele.data.machines.Machine;
+import cc.modele.exceptions.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+
+class StatistiquesBoissonsTest {
+
+    private FacadeModele facadeModele;
+    private StatistiquesBoissons classeTestee;
+
+    @BeforeEach
+    void setUp() {
+        facadeModele = new FacadeModele();
+        classeTestee = new StatistiquesBoissons(facadeModele);
+    }
+
+    @Test
+    void boissonPreparee_OK_agregats() throws Exception {
+        // ARRANGE
+        Compte compte1 = facadeModele.creerCompteDrinker("foo1", "bar1");
+        Compte compte2 = facadeModele.creerCompteDrinker("foo2", "bar2");
+        Machine machine1 = facadeModele.ajouterMachine("coffee1", TypeBoisson.CAFE, "A38");
+        Machine machine2 = facadeModele.ajouterMachine("tea2", TypeBoisson.THE, "A38");
+
+        // ACT
+        facadeModele.preparerBoisson(machine1.getId(), TypeBoisson.CAFE, compte1.getId(), 1);
+        facadeModele.preparerBoisson(machine1.getId(), TypeBoisson.CAFE, compte2.getId(), 3);
+        facadeModele.preparerBoisson(machine2.getId(), TypeBoisson.THE, compte1.getId(), 12);
+
+        // ASSERT
+        Assertions.assertEquals(3, classeTestee.getGlobal().getNbBoissons());
+        Assertions.assertEquals(2, classeTestee.getParType(TypeBoisson.CAFE).getNbBoissons());
+        Assertions.assertEquals(2.0, classeTestee.getParMachine(machine1.getId()).getMoyenneSucres());
+        Assertions.assertEquals(3, classeTestee.getParSalle("A38").getNbBoissons());
+        Agregat agregatCompte1 = classeTestee.getParCompte(compte1.getId());
+        Assertions.assertEquals(2, agregatCompte1.getNbBoissons());
+        Assertions.assertEquals(1, agregatCompte1.getHistogrammeSucres()[1]);
+        Assertions.assertEquals(1, agregatCompte1.getHistogrammeSucres()[Agregat.NB_CLASSES_SUCRES - 1]);
+        Assertions.assertEquals(2, Arrays.stream(agregatCompte1.getBoissonsParHeure()).sum());
+        Assertions.assertEquals(2, compte1.getNbBoissonsBues());
+    }
+
+    @Test
+    void boissonPreparee_OK_compteServiParPlusieursMachines() throws Exception {
+        // ARRANGE
+        Compte compte = facadeModele.creerCompteDrinker("foo", "bar");
+        int nbMachines = 8;
+        int nbBoissonsParMachine = 500;
+        ExecutorService executeur = Executors.newFixedThreadPool(nbMachines);
+        for (int m = 0; m < nbMachines; m++) {
+            Machine machine = facadeModele.ajouterMachine("coffee" + m, TypeBoisson.CAFE, "A38");
+
+            // ACT
+            executeur.submit(() -> {
+                for (int i = 0; i < nbBoissonsParMachine; i++)
+                    facadeModele.preparerBoisson(machine.getId(), TypeBoisson.CAFE, compte.getId(), i % 2);
+                return null;
+            });
+        }
+        executeur.shutdown();
+        Assertions.assertTrue(executeur.awaitTermination(30, TimeUnit.SECONDS));
+
+        // ASSERT
+        // Agrégat du compte mis à jour en parallèle : aucun incrément perdu, qu'il soit réparti ou non
+        Agregat agregat = classeTestee.getParCompte(compte.getId());
+        Assertions.assertEquals(nbMachines * nbBoissonsParMachine, agregat.getNbBoissons());
+        Assertions.assertEquals(nbMachines * nbBoissonsParMachine / 2, agregat.getTotalSucres());
+        Assertions.assertEquals(nbMachines * nbBoissonsParMachine / 2, agregat.getHistogrammeSucres()[0]);
+        Assertions.assertEquals(nbMachines * nbBoissonsParMachine, Arrays.stream(agregat.getBoissonsParHeure()).sum());
+    }
+
+    @Test
+    void getParSalle_OK_salleSansBoisson() throws Exception {
+        // ACT
+        Agregat agregat = classeTestee.getParSalle("B12");
+
+        // ASSERT
+        Assertions.assertEquals(0, agregat.getNbBoissons());
+        Assertions.assertEquals(0.0, agregat.getMoyenneSucres());
+    }
+
+    @Test
+    void getParSalle_KO_formatSalleIncorrect() {
+        // ACT & ASSERT
+        Assertions.assertThrows(FormatSalleIncorrectException.class, () -> classeTestee.getParSalle("1AB"));
+    }
+
+    @Test
+    void getParMachine_KO_machineInconnue() {
+        // ACT & ASSERT
+        Assertions.assertThrows(MachineInconnueException.class, () -> classeTestee.getParMachine(42));
+    }
+
+    @Test
+    void modeleRestaure_OK_reconstruction() throws Exception {
+        // ARRANGE
+        Compte compte = facadeModele.restaurerCompte(1, "foo", "bar", "drinker");
+        Machine machine = facadeModele.restaurerMachine(1, "coffee1", TypeBoisson.CAFE, "A38");
+        facadeModele.restaurerBoisson(machine.getId(), 0, 0L, compte.getId(), 2);
+        facadeModele.restaurerBoisson(machine.getId(), 1, 1000L, compte.getId(), 4);
+
+        // ACT
+        facadeModele.terminerRestauration();
+
+        // ASSERT
+        Assertions.assertEquals(2, classeTestee.getParCompte(compte.getId()).getNbBoissons());
+        Assertions.assertEquals(3.0, classeTestee.getParSalle("A38").getMoyenneSucres());
+        Assertions.assertEquals(2, compte.getNbBoissonsBues());
+    }
+
+}